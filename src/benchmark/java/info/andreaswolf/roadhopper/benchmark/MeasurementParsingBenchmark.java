@@ -0,0 +1,68 @@
+package info.andreaswolf.roadhopper.benchmark;
+
+import info.andreaswolf.roadhopper.measurements.MeasurementFile;
+import info.andreaswolf.roadhopper.measurements.MeasurementLineParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import scala.collection.JavaConversions;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading measurement files: parsing single lines, and reading a whole file into measurements. The results are given
+ * in lines per second.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MeasurementParsingBenchmark
+{
+
+	private static final int LINE_COUNT = 20000;
+
+	/** The lines of a file, starting with the header line */
+	private String[] lines;
+
+	private final MeasurementLineParser parser = new MeasurementLineParser();
+
+	@Setup
+	public void setUp()
+	{
+		lines = BenchmarkFixtures.createMeasurementLines(LINE_COUNT, 42L);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(LINE_COUNT)
+	public double parseLines()
+	{
+		double sum = 0.0;
+		for (int i = 1; i < lines.length; ++i)
+		{
+			parser.parse(lines[i]);
+			sum += parser.latitude() + parser.time();
+		}
+		return sum;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(LINE_COUNT)
+	public int readFile()
+	{
+		MeasurementFile file = new MeasurementFile("benchmark.txt",
+				JavaConversions.asScalaIterator(Arrays.asList(lines).iterator()), null);
+		return file.measurements().size();
+	}
+}
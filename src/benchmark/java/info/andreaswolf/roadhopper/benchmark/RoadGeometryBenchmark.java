@@ -0,0 +1,111 @@
+package info.andreaswolf.roadhopper.benchmark;
+
+import com.graphhopper.util.shapes.GHPoint3D;
+import info.andreaswolf.roadhopper.road.RoadBend;
+import info.andreaswolf.roadhopper.road.RoadBendAnalyzer;
+import info.andreaswolf.roadhopper.road.RoadSegment;
+import info.andreaswolf.roadhopper.road.Route;
+import info.andreaswolf.roadhopper.road.RouteFactory;
+import info.andreaswolf.roadhopper.road.RouteOptions;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import scala.collection.JavaConversions;
+import scala.collection.immutable.List;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Post-processing of routes: simplifying the road segments, finding turns and bends, and the geometry calculations
+ * of single segments.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RoadGeometryBenchmark
+{
+
+	@Param({"100", "10000"})
+	public int segmentCount;
+
+	private List<RoadSegment> segments;
+
+	private RoadSegment[] segmentArray;
+
+	private final RoadBendAnalyzer analyzer = new RoadBendAnalyzer();
+
+	@Setup
+	public void setUp()
+	{
+		segments = BenchmarkFixtures.createSegments(segmentCount, 42L);
+		segmentArray = JavaConversions.seqAsJavaList(segments).toArray(new RoadSegment[segments.size()]);
+	}
+
+	@Benchmark
+	public Object simplifyRoadSegments()
+	{
+		return RouteFactory.simplifyRoadSegments(segments, 2.0);
+	}
+
+	@Benchmark
+	public List<RoadSegment> markTurns()
+	{
+		return analyzer.markTurns(segments);
+	}
+
+	@Benchmark
+	public List<RoadBend> findBends()
+	{
+		return analyzer.findBends(segments);
+	}
+
+	/**
+	 * All of the above in a single pass, as done when a route is built.
+	 */
+	@Benchmark
+	public Route buildRoute()
+	{
+		return RouteFactory.buildRoute(segments.iterator(), new RouteOptions("car", "fastest", "", true, true));
+	}
+
+	/**
+	 * Creates a new segment for each existing one, which calculates its length and orientation from the coordinates.
+	 */
+	@Benchmark
+	public double lengthAndOrientation()
+	{
+		double sum = 0.0;
+		for (RoadSegment segment : segmentArray)
+		{
+			GHPoint3D start = segment.start();
+			RoadSegment copy = RoadSegment.fromPoints(start, segment.end());
+			sum += copy.length() + copy.orientation();
+		}
+		return sum;
+	}
+
+	/**
+	 * Splits each segment in the middle, as done when the vehicle moves along a segment.
+	 */
+	@Benchmark
+	public double fromExisting()
+	{
+		double sum = 0.0;
+		for (RoadSegment segment : segmentArray)
+		{
+			sum += RoadSegment.fromExisting(segment.length() / 2, segment).start().lat;
+		}
+		return sum;
+	}
+}
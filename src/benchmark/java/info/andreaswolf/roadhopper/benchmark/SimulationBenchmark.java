@@ -0,0 +1,65 @@
+package info.andreaswolf.roadhopper.benchmark;
+
+import info.andreaswolf.roadhopper.road.Route;
+import info.andreaswolf.roadhopper.simulation.CompiledSignalBasedSimulation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the signal-based simulation on a synthetic route; the result is given in simulated time steps (of 10 ms) per
+ * second.
+ * <p/>
+ * This uses {@link CompiledSignalBasedSimulation}, which runs the same components as the actor-based simulation on
+ * a single thread; the actor-based simulation is not deterministic enough for a micro benchmark.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SimulationBenchmark
+{
+
+	/** The simulated time per invocation, in milliseconds */
+	private static final int SIMULATED_TIME = 60 * 1000;
+
+	private static final int STEPS = SIMULATED_TIME / 10;
+
+	private Route route;
+
+	private CompiledSignalBasedSimulation simulation;
+
+	@Setup(Level.Trial)
+	public void createRoute()
+	{
+		// about 25 km, so the vehicle does not reach the end within the simulated time
+		route = BenchmarkFixtures.createRoute(500);
+		route.velocityProfile();
+	}
+
+	@Setup(Level.Invocation)
+	public void createSimulation()
+	{
+		simulation = BenchmarkFixtures.createSimulation(route);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(STEPS)
+	public boolean runSimulation()
+	{
+		return simulation.run(SIMULATED_TIME);
+	}
+}
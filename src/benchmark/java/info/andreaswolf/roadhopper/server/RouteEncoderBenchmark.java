@@ -0,0 +1,70 @@
+package info.andreaswolf.roadhopper.server;
+
+import info.andreaswolf.roadhopper.benchmark.BenchmarkFixtures;
+import info.andreaswolf.roadhopper.road.Route;
+import org.json.JSONArray;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serializing a route for the /roadhopper/route response, as GeoJSON and in the binary format.
+ * <p/>
+ * This is in the server package because the encoders are only visible there.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RouteEncoderBenchmark
+{
+
+	@Param({"100", "10000"})
+	public int segmentCount;
+
+	private Route route;
+
+	@Setup
+	public void setUp()
+	{
+		route = BenchmarkFixtures.createRoute(segmentCount);
+	}
+
+	@Benchmark
+	public List<Object> encodeRoute()
+	{
+		return new GeoJsonEncoder().encodeRoute(route);
+	}
+
+	/**
+	 * Encodes the route to GeoJSON and serializes it to a string, as done for the response.
+	 */
+	@Benchmark
+	public String encodeRouteToJson()
+	{
+		return new JSONArray(new GeoJsonEncoder().encodeRoute(route)).toString();
+	}
+
+	@Benchmark
+	public int encodeRouteToBinary() throws IOException
+	{
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		new BinaryRouteEncoder().encodeRoute(route, output);
+		return output.size();
+	}
+}
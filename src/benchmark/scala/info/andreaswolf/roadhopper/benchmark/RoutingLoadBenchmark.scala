@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2015 Andreas Wolf
+ *
+ * See te LICENSE file in the project root for further copyright information.
+ */
+
+package info.andreaswolf.roadhopper.benchmark
+
+import java.util.concurrent.{Callable, Executors, TimeUnit}
+
+import com.graphhopper.util.CmdArgs
+import com.graphhopper.util.shapes.GHPoint
+import info.andreaswolf.roadhopper.RoadHopper
+import info.andreaswolf.roadhopper.road.RouteFactory
+
+import scala.collection.JavaConverters._
+import scala.util.Random
+
+
+/**
+ * Measures the routing throughput with an increasing number of threads, the same way concurrent requests are handled
+ * by the Jetty worker threads.
+ * <p/>
+ * Run it with the same arguments as the server (e.g. config=config.properties); the graph must already have been
+ * imported. The optional arguments "benchmark.routes" and "benchmark.threads" set the number of routes per run and the
+ * maximum number of threads.
+ * <p/>
+ * Every route is calculated once on a single thread first; the concurrent runs must produce exactly the same routes,
+ * so the benchmark also fails if concurrent requests interfere with each other.
+ * <p/>
+ * This is no JMH benchmark, as it needs an imported graph; it is compiled with the benchmark profile, but must be
+ * started separately.
+ */
+object RoutingLoadBenchmark {
+
+	def main(args: Array[String]): Unit = {
+		val cmdArgs = CmdArgs.read(args)
+		val hopper = new RoadHopper
+		hopper.forServer().init(cmdArgs)
+		hopper.importOrLoad()
+
+		val routeCount = cmdArgs.getInt("benchmark.routes", 200)
+		val maximumThreads = cmdArgs.getInt("benchmark.threads", Runtime.getRuntime.availableProcessors() * 2)
+
+		val bounds = hopper.getGraphHopperStorage.getBounds
+		val random = new Random(42)
+		def randomPoint = new GHPoint(
+			bounds.minLat + random.nextDouble() * (bounds.maxLat - bounds.minLat),
+			bounds.minLon + random.nextDouble() * (bounds.maxLon - bounds.minLon)
+		)
+		val requests = List.fill(routeCount)(List(randomPoint, randomPoint))
+
+		def calculate(points: List[GHPoint]): Int = {
+			try {
+				new RouteFactory(hopper).getRoute(points).parts.size
+			} catch {
+				// points outside the road network cannot be routed
+				case e: RuntimeException => -1
+			}
+		}
+
+		// warm up and record the expected results
+		val expected = requests.map(calculate)
+		println(s"${expected.count(_ >= 0)} of $routeCount routes found")
+
+		println("threads\troutes/s\tspeedup")
+		var singleThreadThroughput = 0.0
+		Iterator.iterate(1)(_ * 2).takeWhile(_ <= maximumThreads).foreach(threads => {
+			val executor = Executors.newFixedThreadPool(threads)
+			val start = System.nanoTime()
+			val futures = executor.invokeAll(requests.map(points => new Callable[Int] {
+				override def call(): Int = calculate(points)
+			}).asJava)
+			val results = futures.asScala.map(_.get()).toList
+			val seconds = (System.nanoTime() - start) / 1e9
+			executor.shutdown()
+			executor.awaitTermination(1, TimeUnit.MINUTES)
+
+			if (results != expected) {
+				val mismatches = results.zip(expected).count(pair => pair._1 != pair._2)
+				throw new IllegalStateException(s"$mismatches routes differ when calculated on $threads threads")
+			}
+
+			val throughput = routeCount / seconds
+			if (threads == 1) {
+				singleThreadThroughput = throughput
+			}
+			println(f"$threads\t$throughput%.1f\t${throughput / singleThreadThroughput}%.2f")
+		})
+
+		hopper.close()
+	}
+
+}
@@ -13,31 +13,53 @@ import java.util.List;
 public class RoadHopper extends GraphHopper
 {
 
-	protected QueryGraph queryGraph;
+	/**
+	 * The query graph created for the routing request currently running on a thread. GraphHopper creates the query
+	 * graph deep inside getPaths(), so it is handed over to {@link #createRoute(GHRequest)} via this thread-local
+	 * field; this keeps concurrent requests from seeing each other’s query graph. Every routing method removes it again,
+	 * so the pooled request threads do not keep the last query graph alive.
+	 */
+	private final ThreadLocal<QueryGraph> currentQueryGraph = new ThreadLocal<>();
 
+	/**
+	 * Calculates the paths for the given request, together with the query graph they refer to.
+	 */
 	public Route createRoute(GHRequest request) {
-		return new Route(getPaths(request));
+		GHResponse response = new GHResponse();
+		try
+		{
+			List<Path> paths = getPaths(request, response);
+
+			return new Route(paths, currentQueryGraph.get());
+		} finally
+		{
+			currentQueryGraph.remove();
+		}
 	}
 
 	public List<Path> getPaths(GHRequest request)
 	{
-		GHResponse response = new GHResponse();
-		List<Path> paths = getPaths(request, response);
-
-		return paths;
+		return createRoute(request).getPaths();
 	}
 
 	@Override
-	protected QueryGraph createQueryGraph(Graph routingGraph)
+	public GHResponse route(GHRequest request)
 	{
-		// store the query graph for usage outside this class
-		queryGraph = super.createQueryGraph(routingGraph);
-
-		return queryGraph;
+		try
+		{
+			return super.route(request);
+		} finally
+		{
+			currentQueryGraph.remove();
+		}
 	}
 
-	public QueryGraph getQueryGraph()
+	@Override
+	protected QueryGraph createQueryGraph(Graph routingGraph)
 	{
+		QueryGraph queryGraph = super.createQueryGraph(routingGraph);
+		currentQueryGraph.set(queryGraph);
+
 		return queryGraph;
 	}
 }
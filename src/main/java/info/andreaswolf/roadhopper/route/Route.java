@@ -1,6 +1,7 @@
 package info.andreaswolf.roadhopper.route;
 
 import com.graphhopper.routing.Path;
+import com.graphhopper.routing.QueryGraph;
 import com.graphhopper.util.EdgeIteratorState;
 import gnu.trove.list.TIntList;
 import gnu.trove.list.array.TIntArrayList;
@@ -9,14 +10,20 @@ import java.util.List;
 
 /**
  * A collection of paths that together form a route requested by a user.
+ * <p/>
+ * The edges of the paths belong to the query graph created for the request, so edge properties must be looked up
+ * there instead of in the base graph.
  */
 public class Route
 {
 
 	protected List<Path> paths;
 
-	public Route(List<Path> paths) {
+	protected QueryGraph queryGraph;
+
+	public Route(List<Path> paths, QueryGraph queryGraph) {
 		this.paths = paths;
+		this.queryGraph = queryGraph;
 	}
 
 	public List<Path> getPaths()
@@ -24,6 +31,11 @@ public class Route
 		return paths;
 	}
 
+	public QueryGraph getQueryGraph()
+	{
+		return queryGraph;
+	}
+
 	public TIntList getTowerNodeIds() {
 		TIntList nodes = new TIntArrayList();
 		for (Path path : paths) {
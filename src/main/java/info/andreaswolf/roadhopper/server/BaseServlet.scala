@@ -6,17 +6,60 @@
 
 package info.andreaswolf.roadhopper.server
 
-import javax.servlet.http.{HttpServletResponse, HttpServlet}
+import java.io.{BufferedOutputStream, OutputStream, OutputStreamWriter, Writer}
+import java.nio.charset.StandardCharsets
+import java.util.zip.GZIPOutputStream
+import javax.servlet.http.{HttpServletRequest, HttpServletResponse, HttpServlet}
 
 import info.andreaswolf.roadhopper.simulation.{VehicleState, SimulationResult}
 import org.json.JSONStringer
 
 import scala.collection.{JavaConversions, mutable}
+import scala.util.Try
 
 
-class BaseServlet extends HttpServlet {
+object BaseServlet {
+
+	/** The size of the buffer between the response and the code writing to it */
+	val outputBufferSize = 16 * 1024
+
+	/**
+	 * Checks if a client accepts gzip compressed responses, according to its Accept-Encoding header.
+	 */
+	def acceptsGzip(acceptEncoding: String): Boolean = {
+		if (acceptEncoding == null) {
+			return false
+		}
+		// the quality of each coding, e.g. "gzip;q=0.5" or "deflate"
+		val qualities = acceptEncoding.split(",").map(_.split(";").map(_.trim.toLowerCase)).filter(_.head.nonEmpty)
+			.map(parts => parts.head -> parts.tail.find(_.startsWith("q=")).map(q => Try(q.substring(2).toDouble).getOrElse(0.0))
+				.getOrElse(1.0)
+			).toMap
+
+		qualities.get("gzip").orElse(qualities.get("x-gzip")).orElse(qualities.get("*")).exists(_ > 0)
+	}
 
+	/**
+	 * Opens the output stream of the response, compressed with gzip if the client accepts it, and sets the headers
+	 * accordingly. The stream is buffered and must be closed by the caller.
+	 */
+	def openOutputStream(req: HttpServletRequest, resp: HttpServletResponse): OutputStream = {
+		resp.addHeader("Vary", "Accept-Encoding")
+		if (acceptsGzip(req.getHeader("Accept-Encoding"))) {
+			resp.setHeader("Content-Encoding", "gzip")
+			new GZIPOutputStream(resp.getOutputStream, outputBufferSize)
+		} else {
+			new BufferedOutputStream(resp.getOutputStream, outputBufferSize)
+		}
+	}
+
+	/**
+	 * Sets the status of the response and writes the error message as JSON.
+	 */
 	def writeError(resp: HttpServletResponse, code: Int, message: String): Unit = {
+		resp.setStatus(code)
+		resp.setContentType("application/json")
+		resp.setCharacterEncoding("UTF-8")
 		resp.getWriter.append(new JSONStringer().`object`()
 			.key("code").value(code)
 			.key("error").value(message)
@@ -24,6 +67,45 @@ class BaseServlet extends HttpServlet {
 		)
 	}
 
+}
+
+
+class BaseServlet extends HttpServlet {
+
+	/**
+	 * Writes the response body to a stream that is compressed with gzip if the client accepts it. The stream is closed
+	 * afterwards.
+	 * <p/>
+	 * The status and content type must be set before, as the response might be committed as soon as the body is
+	 * written. Large responses should be written in chunks instead of being built in memory first.
+	 */
+	def withOutputStream(req: HttpServletRequest, resp: HttpServletResponse)(body: OutputStream => Unit): Unit = {
+		val output = BaseServlet.openOutputStream(req, resp)
+		try {
+			body(output)
+		} finally {
+			output.close()
+		}
+	}
+
+	/**
+	 * Writes the response body as UTF-8 text, compressed if the client accepts it; see [[withOutputStream()]].
+	 */
+	def withWriter(req: HttpServletRequest, resp: HttpServletResponse)(body: Writer => Unit): Unit = {
+		resp.setCharacterEncoding("UTF-8")
+		withOutputStream(req, resp)(output => {
+			val writer = new OutputStreamWriter(output, StandardCharsets.UTF_8)
+			body(writer)
+			writer.flush()
+		})
+	}
+
+	/**
+	 * Sets the status of the response and writes the error message as JSON.
+	 */
+	def writeError(resp: HttpServletResponse, code: Int, message: String): Unit = BaseServlet.writeError(resp, code,
+		message)
+
 	def serializeSimulationResult(result: SimulationResult) = {
 		val serialized = new mutable.HashMap[Int, Object]()
 		for ((time: Int, state: VehicleState) <- result.map) {
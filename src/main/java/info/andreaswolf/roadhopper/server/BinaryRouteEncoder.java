@@ -0,0 +1,190 @@
+package info.andreaswolf.roadhopper.server;
+
+import com.graphhopper.util.shapes.GHPoint;
+import info.andreaswolf.roadhopper.road.PackedRoute;
+import info.andreaswolf.roadhopper.road.RoadBend;
+import info.andreaswolf.roadhopper.road.RoadSign;
+import info.andreaswolf.roadhopper.road.Route;
+import scala.collection.JavaConversions;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Encodes a route to a compact binary format, as an alternative to the GeoJSON structures of {@link GeoJsonEncoder}.
+ * The segments are written straight to the output stream as columns, without building an object per segment.
+ * <p/>
+ * All values are big-endian (as written by {@link DataOutputStream}); coordinates are stored as int32 in units of
+ * 1e-7 degrees, all other decimal values as float32. The layout is:
+ * <ul>
+ * <li>header: magic number "RHRB" (int32), format version (int8), route id (modified UTF-8), segment count n
+ * (int32)</li>
+ * <li>points: n + 1 times lon, lat (int32 each) and elevation (float32); segment i runs from point i to point
+ * i + 1</li>
+ * <li>gaps: count (int32), then for each segment i that does not start at the end of its predecessor the index i
+ * (int32) and the end point of segment i - 1 (as above)</li>
+ * <li>one column per segment attribute, n values each: length (m), orientation (rad), grade (rad), speed limit
+ * (m/s)</li>
+ * <li>road names: dictionary size (int32) and the names (modified UTF-8; the first one is the empty name), followed by
+ * the name index of each segment (int32 each)</li>
+ * <li>road signs: count (int32), then for each sign the segment it is at the end of (int32), its id (int32), its type
+ * (modified UTF-8) and its lon, lat (int32 each)</li>
+ * <li>road bends: count (int32), then for each bend the index of its first segment and its segment count (int32
+ * each), its length (m), angle (rad) and radius (m) (float32 each) and its direction (int8, see
+ * {@link info.andreaswolf.roadhopper.road.TurnDirection})</li>
+ * </ul>
+ */
+class BinaryRouteEncoder
+{
+
+	/**
+	 * "RHRB" – RoadHopper route, binary
+	 */
+	public static final int MAGIC = 0x52485242;
+
+	public static final byte VERSION = 1;
+
+	private static final double COORDINATE_SCALE = 1e7;
+
+	public void encodeRoute(Route route, OutputStream outputStream) throws IOException
+	{
+		DataOutputStream output = new DataOutputStream(new BufferedOutputStream(outputStream));
+		PackedRoute segments = route.packed();
+		int size = segments.size();
+
+		output.writeInt(MAGIC);
+		output.writeByte(VERSION);
+		output.writeUTF(route.identifier());
+		output.writeInt(size);
+
+		encodePoints(output, segments);
+
+		for (int i = 0; i < size; ++i)
+		{
+			output.writeFloat((float) segments.length(i));
+		}
+		for (int i = 0; i < size; ++i)
+		{
+			output.writeFloat((float) segments.orientation(i));
+		}
+		for (int i = 0; i < size; ++i)
+		{
+			output.writeFloat((float) segments.grade(i));
+		}
+		for (int i = 0; i < size; ++i)
+		{
+			output.writeFloat((float) segments.speedLimit(i));
+		}
+
+		encodeRoadNames(output, segments);
+		encodeRoadSigns(output, segments);
+		encodeRoadBends(output, route);
+
+		output.flush();
+	}
+
+	private void encodePoints(DataOutputStream output, PackedRoute segments) throws IOException
+	{
+		int size = segments.size();
+		List<Integer> gaps = new ArrayList<Integer>();
+		for (int i = 0; i < size; ++i)
+		{
+			writePoint(output, segments.startLatitude(i), segments.startLongitude(i), segments.startElevation(i));
+			if (i > 0 && !(segments.endLatitude(i - 1) == segments.startLatitude(i)
+					&& segments.endLongitude(i - 1) == segments.startLongitude(i)
+					&& segments.endElevation(i - 1) == segments.startElevation(i)))
+			{
+				gaps.add(i);
+			}
+		}
+		if (size > 0)
+		{
+			writePoint(output, segments.endLatitude(size - 1), segments.endLongitude(size - 1),
+					segments.endElevation(size - 1));
+		}
+
+		// the points written above are the segment starts, so a gap is described by the end of the previous segment
+		output.writeInt(gaps.size());
+		for (int gap : gaps)
+		{
+			output.writeInt(gap);
+			writePoint(output, segments.endLatitude(gap - 1), segments.endLongitude(gap - 1),
+					segments.endElevation(gap - 1));
+		}
+	}
+
+	private void encodeRoadNames(DataOutputStream output, PackedRoute segments) throws IOException
+	{
+		// the route’s own dictionary, shifted by one to make room for the empty name
+		String[] roadNames = segments.roadNames();
+		output.writeInt(roadNames.length + 1);
+		output.writeUTF("");
+		for (String name : roadNames)
+		{
+			output.writeUTF(name);
+		}
+		for (int i = 0; i < segments.size(); ++i)
+		{
+			output.writeInt(segments.roadNameIndex(i) + 1);
+		}
+	}
+
+	private void encodeRoadSigns(DataOutputStream output, PackedRoute segments) throws IOException
+	{
+		int count = 0;
+		for (int i = 0; i < segments.size(); ++i)
+		{
+			if (segments.roadSign(i).isDefined())
+			{
+				++count;
+			}
+		}
+
+		output.writeInt(count);
+		for (int i = 0; i < segments.size(); ++i)
+		{
+			// road signs are by convention always added to the end of the road segment that precedes them
+			// (see RouteFactory)
+			if (segments.roadSign(i).isDefined())
+			{
+				RoadSign sign = segments.roadSign(i).get();
+				output.writeInt(i);
+				output.writeInt(sign.id());
+				output.writeUTF(sign.typeInfo());
+				writeCoordinates(output, sign.coordinates());
+			}
+		}
+	}
+
+	private void encodeRoadBends(DataOutputStream output, Route route) throws IOException
+	{
+		List<RoadBend> bends = JavaConversions.seqAsJavaList(route.bends());
+		output.writeInt(bends.size());
+		for (RoadBend bend : bends)
+		{
+			output.writeInt(bend.firstIndex());
+			output.writeInt(bend.segmentCount());
+			output.writeFloat((float) bend.length());
+			output.writeFloat((float) bend.angle());
+			output.writeFloat((float) bend.radius());
+			output.writeByte(bend.direction().id());
+		}
+	}
+
+	private void writePoint(DataOutputStream output, double lat, double lon, double ele) throws IOException
+	{
+		output.writeInt((int) Math.round(lon * COORDINATE_SCALE));
+		output.writeInt((int) Math.round(lat * COORDINATE_SCALE));
+		output.writeFloat((float) ele);
+	}
+
+	private void writeCoordinates(DataOutputStream output, GHPoint point) throws IOException
+	{
+		output.writeInt((int) Math.round(point.getLon() * COORDINATE_SCALE));
+		output.writeInt((int) Math.round(point.getLat() * COORDINATE_SCALE));
+	}
+}
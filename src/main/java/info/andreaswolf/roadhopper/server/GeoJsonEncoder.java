@@ -2,11 +2,11 @@ package info.andreaswolf.roadhopper.server;
 
 import com.graphhopper.util.EdgeIteratorState;
 import com.graphhopper.util.PointList;
+import info.andreaswolf.roadhopper.road.PackedRoute;
 import info.andreaswolf.roadhopper.road.RoadBend;
-import info.andreaswolf.roadhopper.road.RoadSegment;
 import info.andreaswolf.roadhopper.road.RoadSign;
 import info.andreaswolf.roadhopper.road.Route;
-import scala.collection.JavaConversions;
+import info.andreaswolf.roadhopper.road.SegmentView;
 
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -22,11 +22,14 @@ class GeoJsonEncoder
 	public List<Object> encodeRoute(Route hopperRoute)
 	{
 		// The list of points/road segments that make up the route
-		List<Object> pointList = new ArrayList<Object>(10);
-		for (RoadSegment part : JavaConversions.asJavaCollection(hopperRoute.parts()))
+		// read from the packed route, so long routes do not need to be traversed as a list of objects
+		PackedRoute route = hopperRoute.packed();
+		List<Object> pointList = new ArrayList<Object>(route.size());
+		for (int i = 0; i < route.size(); ++i)
 		{
+			SegmentView part = route.segment(i);
 			HashMap<String, Object> partInfo = new HashMap<String, Object>();
-			encodeRoadSegment(partInfo, part, false);
+			encodeRoadSegment(partInfo, part);
 
 			// road signs are by convention always added to the end of the road segment that precedes them
 			// (see RouteFactory)
@@ -48,7 +51,7 @@ class GeoJsonEncoder
 		return points.toGeoJson();
 	}
 
-	public void encodeRoadSegment(HashMap<String, Object> partInfo, RoadSegment segment, Boolean includeElevation)
+	public void encodeRoadSegment(HashMap<String, Object> partInfo, SegmentView segment)
 	{
 		ArrayList<Double[]> points = new ArrayList<Double[]>(2);
 
@@ -2,14 +2,20 @@ package info.andreaswolf.roadhopper.server;
 
 import com.graphhopper.GraphHopper;
 import com.graphhopper.http.DefaultModule;
-import com.graphhopper.reader.dem.HighPrecisionSRTMProvider;
 import com.graphhopper.reader.dem.SRTMProvider;
+import com.graphhopper.storage.DAType;
 import com.graphhopper.util.CmdArgs;
 import info.andreaswolf.roadhopper.RoadHopper;
+import info.andreaswolf.roadhopper.measurements.MeasurementMatcher;
 import info.andreaswolf.roadhopper.measurements.MeasurementRepository;
 import info.andreaswolf.roadhopper.persistence.Database;
+import info.andreaswolf.roadhopper.road.ElevationTileCache;
+import info.andreaswolf.roadhopper.road.RoadSegment;
+import info.andreaswolf.roadhopper.road.RouteCache;
 import info.andreaswolf.roadhopper.road.RouteRepository;
 import info.andreaswolf.roadhopper.simulation.SimulationRepository;
+import info.andreaswolf.roadhopper.simulation.distributed.DistributedSweep;
+import info.andreaswolf.roadhopper.simulation.sweep.ParameterSweep;
 
 
 public class RoadHopperModule extends DefaultModule
@@ -37,15 +43,56 @@ public class RoadHopperModule extends DefaultModule
 	{
 		super.configure();
 		bind(RoadHopper.class).toInstance((RoadHopper) getGraphHopper());
-		bind(SRTMProvider.class).toInstance(new HighPrecisionSRTMProvider());
+
+		// use the same SRTM tiles as GraphHopper’s import, instead of downloading them to a different directory
+		String srtmCacheDir = args.get("graph.elevation.cachedir", "");
+		DAType srtmDAType = DAType.fromString(args.get("graph.elevation.dataaccess", "MMAP"));
+		bind(SRTMProvider.class).toInstance(ElevationTileCache.createSRTMProvider(srtmCacheDir, srtmDAType));
+		RoadSegment.setElevationCache(ElevationTileCache.forSRTM(srtmCacheDir, srtmDAType));
 
 		Database database = new Database();
 		bind(Database.class).toInstance(database);
 
 		bind(CmdArgs.class).toInstance(this.args);
 
-		bind(RouteRepository.class).toInstance(new RouteRepository());
-		bind(SimulationRepository.class).toInstance(new SimulationRepository());
-		bind(MeasurementRepository.class).toInstance(new MeasurementRepository());
+		bind(RouteRepository.class).toInstance(new RouteRepository(
+				args.getInt("roadhopper.routes.maxEntries", 1000),
+				args.getLong("roadhopper.routes.maxParts", 1000000L),
+				args.getLong("roadhopper.routes.timeToLive", 60 * 60 * 1000L)
+		));
+		bind(RouteCache.class).toInstance(new RouteCache((RoadHopper) getGraphHopper(),
+				args.getInt("roadhopper.routeCache.maxEntries", 1000), 1e-5));
+		bind(SimulationRepository.class).toInstance(new SimulationRepository(
+				args.getInt("roadhopper.simulations.maxEntries", 100),
+				args.getLong("roadhopper.simulations.maxSignalBytes", 1024L * 1024 * 1024),
+				args.getLong("roadhopper.simulations.timeToLive", 60 * 60 * 1000L)
+		));
+		MeasurementRepository measurementRepository = new MeasurementRepository();
+		bind(MeasurementRepository.class).toInstance(measurementRepository);
+		bind(MeasurementMatcher.class).toInstance(new MeasurementMatcher(getGraphHopper(), measurementRepository,
+				args.getInt("roadhopper.matching.threads", Runtime.getRuntime().availableProcessors())));
+
+		bind(ParameterSweep.class).toInstance(new ParameterSweep());
+		bind(DistributedSweep.class).toInstance(new DistributedSweep(
+				args.get("roadhopper.coordinator.host", "127.0.0.1"),
+				args.getInt("roadhopper.coordinator.port", -1),
+				args.getLong("roadhopper.coordinator.jobTimeout", 5 * 60 * 1000L)
+		));
+
+		int processors = Runtime.getRuntime().availableProcessors();
+		bind(RequestExecutors.class).toInstance(new RequestExecutors(
+				new RequestExecutor("routing",
+						args.getInt("roadhopper.routing.threads", processors),
+						args.getInt("roadhopper.routing.queueSize", 50 * processors),
+						args.getLong("roadhopper.routing.timeout", 60 * 1000L)),
+				new RequestExecutor("simulation",
+						args.getInt("roadhopper.simulation.threads", Math.max(1, processors / 2)),
+						args.getInt("roadhopper.simulation.queueSize", 20),
+						args.getLong("roadhopper.simulation.timeout", 120 * 1000L)),
+				new RequestExecutor("sweep",
+						args.getInt("roadhopper.sweep.threads", 4),
+						args.getInt("roadhopper.sweep.queueSize", 10),
+						args.getLong("roadhopper.sweep.timeout", 120 * 1000L))
+		));
 	}
 }
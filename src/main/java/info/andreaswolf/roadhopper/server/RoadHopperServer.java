@@ -73,9 +73,14 @@ public class RoadHopperServer
 		ServletContextHandler servHandler = new ServletContextHandler(ServletContextHandler.NO_SECURITY | ServletContextHandler.NO_SESSIONS);
 		servHandler.setContextPath("/");
 
-		servHandler.addServlet(new ServletHolder(new InvalidRequestServlet()), "/*");
+		// async processing must be enabled for the whole chain, as the routing and simulation requests are handled
+		// asynchronously; see RequestExecutor
+		ServletHolder invalidRequestServlet = new ServletHolder(new InvalidRequestServlet());
+		invalidRequestServlet.setAsyncSupported(true);
+		servHandler.addServlet(invalidRequestServlet, "/*");
 
 		FilterHolder guiceFilter = new FilterHolder(injector.getInstance(GuiceFilter.class));
+		guiceFilter.setAsyncSupported(true);
 		servHandler.addFilter(guiceFilter, "/*", EnumSet.allOf(DispatcherType.class));
 
 		SelectChannelConnector connector0 = new SelectChannelConnector();
@@ -21,6 +21,7 @@ import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -37,8 +38,23 @@ public class RoadHopperServlet extends GraphHopperServlet
 	@Inject
 	private RouteRepository routeRepository;
 
+	@Inject
+	private RouteCache routeCache;
+
+	@Inject
+	private RequestExecutors executors;
+
+	/**
+	 * Routing is done on a separate executor, so concurrent requests cannot block all threads of the web server; see
+	 * {@link RequestExecutor}.
+	 */
 	@Override
 	public void doGet(HttpServletRequest req, HttpServletResponse res) throws ServletException, IOException
+	{
+		executors.routing().execute(req, res, this::handleRequest);
+	}
+
+	private void handleRequest(HttpServletRequest req, HttpServletResponse res) throws IOException
 	{
 		// TODO this code is copied from GraphHopperServlet
 		try
@@ -48,9 +64,16 @@ public class RoadHopperServlet extends GraphHopperServlet
 			if (req.getParameter("id") != null)
 			{
 				String routeId = req.getParameter("id");
-				if (routeRepository.has(routeId))
+				scala.Option<Route> storedRoute = routeRepository.getByIdentifier(routeId);
+				if (storedRoute.isDefined())
 				{
-					Route route = routeRepository.getByIdentifier(routeId).get();
+					Route route = storedRoute.get();
+
+					if ("binary".equalsIgnoreCase(getParam(req, "type", "json")))
+					{
+						writeBinary(req, res, route);
+						return;
+					}
 
 					JsonWriter writer = new JsonWriter(hopper, true, true, true, false);
 					// fake (or rather reconstruct) a response from GraphHopper; this does not include everything, but
@@ -92,6 +115,7 @@ public class RoadHopperServlet extends GraphHopperServlet
 		// we can reduce the path length based on the maximum differences to the original coordinates
 		double minPathPrecision = getDoubleParam(httpRequest, "way_point_max_distance", 1d);
 		boolean writeGPX = "gpx".equalsIgnoreCase(getParam(httpRequest, "type", "json"));
+		boolean writeBinary = "binary".equalsIgnoreCase(getParam(httpRequest, "type", "json"));
 		boolean enableInstructions = writeGPX || getBooleanParam(httpRequest, "instructions", true);
 		boolean calcPoints = getBooleanParam(httpRequest, "calc_points", true);
 		boolean enableElevation = getBooleanParam(httpRequest, "elevation", false);
@@ -116,29 +140,32 @@ public class RoadHopperServlet extends GraphHopperServlet
 			FlagEncoder algoVehicle = hopper.getEncodingManager().getEncoder(vehicleStr);
 			GHRequest request = new GHRequest(infoPoints);
 
+			// the response is cached with the route, so it always contains the points and instructions; the JsonWriter
+			// leaves them out if they were not requested
 			initHints(request, httpRequest.getParameterMap());
 			request.setVehicle(algoVehicle.toString()).
 					setWeighting(weighting).
 					setAlgorithm(algoStr).
 					setLocale(localeStr).
 					getHints().
-					put("calcPoints", calcPoints).
-					put("instructions", enableInstructions).
+					put("calcPoints", true).
+					put("instructions", true).
 					put("wayPointMaxDistance", minPathPrecision);
 
-			ghRsp = hopper.route(request);
-			info.andreaswolf.roadhopper.route.Route route = hopper.createRoute(request);
+			RouteOptions options = new RouteOptions(vehicleStr, weighting, algoStr,
+					getParam(httpRequest, "simplify", "1").equals("1"), true);
+			// GraphHopper is only asked if the route is not cached yet
+			scala.Tuple2<scala.Option<Route>, GHResponse> cachedRoute = routeCache.getRouteWithResponse(
+					JavaConversions.asScalaBuffer(infoPoints).toList(), options, localeStr + "|" + minPathPrecision,
+					() -> hopper.route(request)
+			);
+			ghRsp = cachedRoute._2();
 
-			RouteFactory factory = new RouteFactory(hopper);
-			hopperRoute = factory.createRouteFromPaths(JavaConversions.asScalaBuffer(route.getPaths()).toList());
-			if (getParam(httpRequest, "simplify", "1").equals("1"))
+			if (cachedRoute._1().isDefined())
 			{
-				hopperRoute = factory.simplify(hopperRoute.parts(), 2.0);
+				hopperRoute = cachedRoute._1().get();
+				routeRepository.add(hopperRoute);
 			}
-			RoadBendAnalyzer analyzer = new RoadBendAnalyzer();
-			hopperRoute = new Route(analyzer.markTurns(hopperRoute.parts()));
-
-			routeRepository.add(hopperRoute);
 		}
 
 		float took = sw.stop().getSeconds();
@@ -156,6 +183,9 @@ public class RoadHopperServlet extends GraphHopperServlet
 		if (writeGPX)
 		{
 			writeResponse(httpResponse, createGPXString(httpRequest, httpResponse, ghRsp));
+		} else if (writeBinary && hopperRoute != null && !ghRsp.hasErrors())
+		{
+			writeBinary(httpRequest, httpResponse, hopperRoute);
 		} else
 		{
 			JsonWriter writer = new JsonWriter(hopper, calcPoints, pointsEncoded, enableElevation, enableInstructions);
@@ -171,6 +201,23 @@ public class RoadHopperServlet extends GraphHopperServlet
 		return ghRsp;
 	}
 
+	/**
+	 * Writes the route in the binary format of {@link BinaryRouteEncoder}, compressed if the client accepts it.
+	 */
+	private void writeBinary(HttpServletRequest req, HttpServletResponse res, Route route) throws IOException
+	{
+		res.setStatus(200);
+		res.setContentType("application/octet-stream");
+		OutputStream output = BaseServlet.openOutputStream(req, res);
+		try
+		{
+			new BinaryRouteEncoder().encodeRoute(route, output);
+		} finally
+		{
+			output.close();
+		}
+	}
+
 	private Map<String, Object> serializeRoute(JsonWriter writer, GHResponse ghRsp, Route hopperRoute)
 	{
 		Map<String, Object> outputMap = writer.createJson(ghRsp);
@@ -196,10 +243,10 @@ public class RoadHopperServlet extends GraphHopperServlet
 
 	protected void analyzeRoadBends(List<Object> points, Route route)
 	{
-		final RoadBendAnalyzer evaluator = new RoadBendAnalyzer();
 		final GeoJsonEncoder encoder = new GeoJsonEncoder();
 
-		scala.collection.immutable.List<RoadBend> bends = evaluator.findBends(route.getRoadSegments());
+		// the bends are usually found while the route is built, see RouteFactory
+		scala.collection.immutable.List<RoadBend> bends = route.bends();
 
 		HashMap<String, Object> bendInfo;
 
@@ -10,6 +10,9 @@ public class RoadHopperServletModule extends com.google.inject.servlet.ServletMo
 	@Override
 	protected void configureServlets()
 	{
+		filter("/*").through(RequestMetricsFilter.class);
+		bind(RequestMetricsFilter.class).in(Singleton.class);
+
 		serve("/road").with(RoadProfileServlet.class);
 		bind(RoadProfileServlet.class).in(Singleton.class);
 
@@ -19,13 +22,22 @@ public class RoadHopperServletModule extends com.google.inject.servlet.ServletMo
 		serve("/roadhopper/simulate").with(SimulationServlet.class);
 		bind(SimulationServlet.class).in(Singleton.class);
 
+		serve("/roadhopper/sweep").with(ParameterSweepServlet.class);
+		bind(ParameterSweepServlet.class).in(Singleton.class);
+
 		serve("/roadhopper/simulationstatus").with(SimulationStatusServlet.class);
 		bind(SimulationStatusServlet.class).in(Singleton.class);
 
+		serve("/roadhopper/simulationstream").with(SimulationStreamServlet.class);
+		bind(SimulationStreamServlet.class).in(Singleton.class);
+
 		serve("/roadhopper/signalvalues").with(SimulationExportServlet.class);
 		bind(SimulationExportServlet.class).in(Singleton.class);
 
 		serve("/roadhopper/measurements").with(MeasurementsServlet.class);
 		bind(MeasurementsServlet.class).in(Singleton.class);
+
+		serve("/roadhopper/metrics").with(MetricsServlet.class);
+		bind(MetricsServlet.class).in(Singleton.class);
 	}
 }
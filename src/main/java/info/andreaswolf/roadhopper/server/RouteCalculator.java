@@ -41,6 +41,14 @@ public class RouteCalculator
 	}
 
 	public List<Path> getPaths(String vehicle, List<GHPoint> infoPoints)
+	{
+		return getRoute(vehicle, infoPoints).getPaths();
+	}
+
+	/**
+	 * Calculates the paths between the given points, together with the query graph of this request.
+	 */
+	public info.andreaswolf.roadhopper.route.Route getRoute(String vehicle, List<GHPoint> infoPoints)
 	{
 		FlagEncoder algoVehicle = hopper.getEncodingManager().getEncoder(vehicle);
 		GHRequest request = new GHRequest(infoPoints);
@@ -55,7 +63,7 @@ public class RouteCalculator
 				put("instructions", enableInstructions).
 				put("wayPointMaxDistance", minPathPrecision)*/;
 
-		return hopper.getPaths(request);
+		return hopper.createRoute(request);
 	}
 
 }
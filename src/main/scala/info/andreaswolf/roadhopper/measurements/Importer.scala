@@ -7,15 +7,30 @@
 package info.andreaswolf.roadhopper.measurements
 
 import java.io.File
+import java.util.concurrent.Executors
 
-import com.google.inject.{Guice, Inject}
-import com.graphhopper.util.CmdArgs
+import com.google.inject.Guice
+import com.graphhopper.util.{CmdArgs, StopWatch}
 import info.andreaswolf.roadhopper.server.RoadHopperModule
 import org.slf4j.LoggerFactory
 
+import scala.concurrent.duration.Duration
+import scala.concurrent.{Await, ExecutionContext, Future}
 import scala.io.Source
-
-
+import scala.util.{Failure, Success, Try}
+
+
+/**
+ * Imports all measurement files (*.txt) from the folder given in "measurements.path".
+ * <p/>
+ * The files are parsed in parallel on "measurements.threads" threads (default: one per core). Writing to the database
+ * is serialized by the [[MeasurementRepository]]; the measurements of a file are written in transactions of
+ * "measurements.batchSize" measurements, packed into one binary field per measurement unless "measurements.packed" is
+ * false (see [[PackedMeasurement]]). Files that were already imported are skipped.
+ * <p/>
+ * With "measurements.match", the measurements are matched to the road graph after the import, so the matched roads
+ * need not be computed when they are first requested (see [[MeasurementMatcher]]).
+ */
 object Importer extends App {
 
 	val log = LoggerFactory.getLogger(this.getClass)
@@ -26,28 +41,80 @@ object Importer extends App {
 	var measurementRepository: MeasurementRepository = injector.getInstance(classOf[MeasurementRepository])
 
 	val basePath = arguments.get("measurements.path", "./measurements/")
+	val threads = arguments.getInt("measurements.threads", Runtime.getRuntime.availableProcessors())
+	val batchSize = arguments.getInt("measurements.batchSize", 50)
+	val packed = arguments.getBool("measurements.packed", true)
+	val matchMeasurements = arguments.getBool("measurements.match", false)
 
 	val folder = new File(basePath)
 
-	folder.listFiles().filter(_.getName.endsWith(".txt")).sorted.foreach(importFile)
-
-	log.info("Finished import")
+	val executor = Executors.newFixedThreadPool(threads)
+	implicit val executionContext = ExecutionContext.fromExecutorService(executor)
+
+	val sw = new StopWatch().start()
+	val imports = folder.listFiles().filter(_.getName.endsWith(".txt")).sorted.toList.map(file => Future {
+		file -> Try(importFile(file))
+	})
+	val results = Await.result(Future.sequence(imports), Duration.Inf)
+	executor.shutdown()
+	sw.stop()
+
+	results.foreach({
+		case (file, Failure(e)) => log.error(s"Could not import $file", e)
+		case _ =>
+	})
+	val lines = results.map(_._2).collect({ case Success(x) => x }).sum
+	log.info(s"Finished import of ${results.size} files with $lines lines in ${sw.getSeconds}s " +
+		s"(${results.count(_._2.isFailure)} failed)")
+
+	if (matchMeasurements) {
+		val matchWatch = new StopWatch().start()
+		val names = results.filter(_._2.isSuccess).flatMap(result =>
+			measurementRepository.findGroupByName(result._1.getName).flatMap(_.measurements)
+		)
+		val roads = Await.result(injector.getInstance(classOf[MeasurementMatcher]).matchAll(names), Duration.Inf)
+		matchWatch.stop()
+		log.info(s"Matched ${roads.size} measurements in ${matchWatch.getSeconds}s (${roads.count(!_.isMatched)} failed)")
+	}
 
 	System.exit(0)
 
 
-	def importFile(file: File): Unit = {
+	/**
+	 * Reads a file and stores its measurements.
+	 *
+	 * @return The number of lines read, 0 if the file was skipped
+	 */
+	def importFile(file: File): Int = {
 		log.info(s"Beginning to import $file")
 
 		val items: List[MeasurementGroup] = measurementRepository.findGroupByName(file.getName)
 		if (items.nonEmpty) {
 			log.info(s"Skipping file because it is already present; ${items.apply(0).measurements.length} measurements")
-			return
+			return 0
 		}
-		val measurementFile = new MeasurementFile(file.getName, Source.fromFile(file).getLines())
-
-		measurementFile.measurements.foreach(measurementRepository.add)
 
-		measurementRepository.add(new MeasurementGroup(file.getName, measurementFile.measurements.map(_.name)))
+		val parseWatch = new StopWatch().start()
+		val source = Source.fromFile(file)
+		val measurementFile = try {
+			val measurementFile = new MeasurementFile(file.getName, source.getLines())
+			// read the file before closing it
+			measurementFile.measurements
+			measurementFile
+		} finally {
+			source.close()
+		}
+		parseWatch.stop()
+
+		val writeWatch = new StopWatch().start()
+		measurementRepository.addAll(measurementFile.measurements,
+			new MeasurementGroup(file.getName, measurementFile.measurements.map(_.name)), batchSize, packed)
+		writeWatch.stop()
+
+		val lines = measurementFile.lineCount
+		log.info(s"Imported $file: $lines lines and ${measurementFile.measurements.size} measurements; " +
+			s"parsed in ${parseWatch.getTime} ms (${(lines / Math.max(parseWatch.getSeconds, 0.001)).round} lines/s), " +
+			s"written in ${writeWatch.getTime} ms")
+		lines
 	}
 }
@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2015 Andreas Wolf
+ *
+ * See te LICENSE file in the project root for further copyright information.
+ */
+
+package info.andreaswolf.roadhopper.measurements
+
+import java.nio.ByteBuffer
+
+import com.emotioncity.soriento.ODocumentReader
+import com.emotioncity.soriento.RichODocumentImpl._
+import com.orientechnologies.orient.core.record.impl.ODocument
+
+
+object MatchedRoad {
+
+	implicit object MatchedRoadReader extends ODocumentReader[MatchedRoad] {
+		def read(oDocument: ODocument): MatchedRoad = {
+			new MatchedRoad(
+				// this typed get() call is possible because we imported implicit conversions from soriento.RichODocumentImpl
+				oDocument.get[String]("measurement").get,
+				oDocument.field[Array[Byte]]("edges"),
+				oDocument.field[Array[Byte]]("coordinates"),
+				oDocument.get[String]("error").getOrElse("")
+			)
+		}
+	}
+
+	/** The resolution of the stored coordinates, as for the points of [[PackedPoints]] */
+	val coordinateScale = 1e7
+
+	/**
+	 * @param coordinates The geometry of the road, as (longitude, latitude) pairs
+	 */
+	def apply(measurement: String, edges: Seq[Int], coordinates: Seq[(Double, Double)]): MatchedRoad = {
+		val edgeBuffer = ByteBuffer.allocate(4 * edges.size)
+		edges.foreach(edgeBuffer.putInt)
+
+		val coordinateBuffer = ByteBuffer.allocate(8 * coordinates.size)
+		coordinates.foreach({ case (lon, lat) =>
+			coordinateBuffer.putInt(Math.round(lon * coordinateScale).toInt).putInt(Math.round(lat * coordinateScale).toInt)
+		})
+
+		new MatchedRoad(measurement, edgeBuffer.array(), coordinateBuffer.array(), "")
+	}
+
+	/**
+	 * Records that a measurement could not be matched, so the matching is not tried again.
+	 */
+	def failed(measurement: String, error: String): MatchedRoad =
+		new MatchedRoad(measurement, Array[Byte](), Array[Byte](), if (error == null || error.isEmpty) "Unknown error" else error)
+
+}
+
+/**
+ * The road a measurement was driven on, as found by map matching.
+ * <p/>
+ * The edge ids and the coordinates are stored as binary fields; see [[MatchedRoad.apply()]].
+ *
+ * @param measurement The name of the measurement
+ * @param error The reason why the measurement could not be matched, or an empty string if it was matched
+ */
+case class MatchedRoad(measurement: String, edges: Array[Byte], coordinates: Array[Byte], error: String) {
+
+	def isMatched: Boolean = error.isEmpty
+
+	/** The ids of the matched edges in the graph, in the order they were driven on */
+	def edgeIds: Array[Int] = {
+		val buffer = ByteBuffer.wrap(edges).asIntBuffer()
+		val result = new Array[Int](buffer.remaining())
+		buffer.get(result)
+		result
+	}
+
+	/** The geometry of the road, as (longitude, latitude) pairs */
+	def coordinateIterator: Iterator[(Double, Double)] = {
+		val buffer = ByteBuffer.wrap(coordinates)
+		Iterator.continually(buffer).takeWhile(_.remaining() >= 8).map(b =>
+			(b.getInt / MatchedRoad.coordinateScale, b.getInt / MatchedRoad.coordinateScale)
+		)
+	}
+
+}
@@ -6,7 +6,6 @@
 
 package info.andreaswolf.roadhopper.measurements
 
-import com.graphhopper.util.StopWatch
 import com.graphhopper.util.shapes.GHPoint3D
 import info.andreaswolf.roadhopper.map.Point
 import info.andreaswolf.roadhopper.road.{RoadBuilder, RoadSegment, RouteFactory}
@@ -25,6 +24,9 @@ class MeasurementFile(val name: String, val lines: Iterator[String], val headerL
 
 	lines.next()
 
+	/** The number of data lines read, excluding the header; set once the measurements have been read */
+	var lineCount = 0
+
 	lazy val measurements = {
 		val items = new ListBuffer[Measurement]()
 
@@ -32,12 +34,7 @@ class MeasurementFile(val name: String, val lines: Iterator[String], val headerL
 		//
 		var timeSinceStopping = 0
 
-		var min: Long = Long.MaxValue
-		var max: Long = 0
-		var sum: Long = 0
 		var group = 0
-		val sw = new StopWatch().start()
-		val sw2 = new StopWatch().start()
 		def endMeasurementGroup(): Unit = {
 			val newSet = buffer
 			if (newSet.nonEmpty) {
@@ -51,6 +48,7 @@ class MeasurementFile(val name: String, val lines: Iterator[String], val headerL
 			timeSinceStopping = 0
 		}
 
+		val parser = new MeasurementLineParser
 		var c = 0
 		for (line <- lines) {
 			// using ";0.000;" as an indicator that the speed is 0
@@ -64,50 +62,35 @@ class MeasurementFile(val name: String, val lines: Iterator[String], val headerL
 				}
 			}
 			c += 1
-			if (c % 1000 == 0) {
-				sw.stop()
-				log.debug(s"Handled $c lines - ${sw.getTime} (min/avg/max: $min/${sum / 1000}/$max)")
-				// restart stop watch
-				sw.reset().start()
-				min = Long.MaxValue
-				max = 0
-				sum = 0
-			}
 
-			val Array(time, _latitude, _longitude, _velocity, _heading) = line.split(";").map(_.trim)
-			// NOTE only some of our files had a velocity in knots; therefore, we assume km/h for now.
-			val velocityKmh = _velocity.replace(",", ".").toDouble
-			val latitude = _latitude.replace(",", ".").toDouble
-			val longitude = _longitude.replace(",", ".").toDouble
-			val orientation = _heading.replace(",", ".").toDouble.toRadians
+			try {
+				parser.parse(line)
+			} catch {
+				case ex: IllegalArgumentException =>
+					// also covers NumberFormatException
+					throw new IllegalArgumentException(s"Could not parse line ${c + 1} of $name: ${ex.getMessage}", ex)
+			}
 
 			// only include one measurement per second
-			if (time.indexOf(",") == -1 || time.split(",").apply(1).equals("00")) {
-				sw2.reset().start()
+			if (parser.fullSecond) {
+				// NOTE only some of our files had a velocity in knots; therefore, we assume km/h for now.
+				val velocityKmh = parser.velocity
 
 				// ignore slow movements for creating the road
 				if (velocityKmh > 1.0) {
-					handlePointForRoad(latitude, longitude, velocityKmh)
+					handlePointForRoad(parser.latitude, parser.longitude, velocityKmh)
 				}
 
-				try {
-					val date = (time.substring(0, 2).toLong * 3600 + time.substring(2, 4).toLong * 60
-						+ time.substring(4, 6).toLong) * 1000 + time.substring(7, 9).toLong * 10
-
-					buffer += DataPoint(date, Point(latitude, longitude, 0.0), velocityKmh / 3.6, orientation)
-				} catch {
-					case ex: NumberFormatException =>
-						log.error(s"Could not parse time '$time': ${ex.getMessage}")
-				}
-				sw2.stop().getNanos match {
-					case x if x > max => max = x
-					case x if x < min => min = x
-					case x =>
+				if (parser.time >= 0) {
+					buffer += DataPoint(parser.time, Point(parser.latitude, parser.longitude, 0.0), velocityKmh / 3.6,
+						parser.heading.toRadians)
+				} else {
+					log.error(s"Could not parse time '${parser.timeText(line)}'")
 				}
-				sum += sw2.getNanos
 			}
 		}
 		endMeasurementGroup()
+		lineCount = c
 
 		log.debug(s"Read file ${name}")
 
@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2015 Andreas Wolf
+ *
+ * See te LICENSE file in the project root for further copyright information.
+ */
+
+package info.andreaswolf.roadhopper.measurements
+
+
+/**
+ * Parses the lines of a measurement file character by character, without splitting them into strings.
+ * <p/>
+ * A line has the fields time;latitude;longitude;velocity;heading, each optionally surrounded by spaces. The time is
+ * given as HHMMSS, followed by a separator and the hundredths of the second; the numbers may use a comma as decimal
+ * separator.
+ * <p/>
+ * The values of the last parsed line are kept in this object, so an instance must only be used by one thread.
+ */
+class MeasurementLineParser {
+
+	var latitude = 0.0
+	var longitude = 0.0
+	/** The velocity as given in the file, usually in km/h */
+	var velocity = 0.0
+	/** The heading in degrees */
+	var heading = 0.0
+
+	/** The time of day in milliseconds, or -1 if the time could not be parsed */
+	var time: Long = -1
+
+	/** Set if the time has no fraction or a fraction of "00", i.e. the line is the first one for its second */
+	var fullSecond = false
+
+	/** The bounds of the time field (without surrounding spaces) in the last line */
+	private var timeStart = 0
+	private var timeEnd = 0
+
+	/** The start and end of each field in the current line */
+	private val bounds = new Array[Int](2 * MeasurementLineParser.fieldCount)
+
+
+	/**
+	 * Parses the given line.
+	 *
+	 * @throws IllegalArgumentException If the line does not have five fields
+	 * @throws NumberFormatException If one of the numeric fields is not a number
+	 */
+	def parse(line: CharSequence): Unit = {
+		val length = line.length()
+		var field = 0
+		var start = 0
+		var i = 0
+		while (i <= length) {
+			if (i == length || line.charAt(i) == ';') {
+				if (field == MeasurementLineParser.fieldCount) {
+					throw new IllegalArgumentException(s"More than ${MeasurementLineParser.fieldCount} fields in line")
+				}
+				var fieldStart = start
+				var fieldEnd = i
+				while (fieldStart < fieldEnd && line.charAt(fieldStart) == ' ') fieldStart += 1
+				while (fieldEnd > fieldStart && line.charAt(fieldEnd - 1) == ' ') fieldEnd -= 1
+				bounds(2 * field) = fieldStart
+				bounds(2 * field + 1) = fieldEnd
+				field += 1
+				start = i + 1
+			}
+			i += 1
+		}
+		if (field != MeasurementLineParser.fieldCount) {
+			throw new IllegalArgumentException(s"Expected ${MeasurementLineParser.fieldCount} fields, got $field")
+		}
+
+		latitude = MeasurementLineParser.parseDouble(line, bounds(2), bounds(3))
+		longitude = MeasurementLineParser.parseDouble(line, bounds(4), bounds(5))
+		velocity = MeasurementLineParser.parseDouble(line, bounds(6), bounds(7))
+		heading = MeasurementLineParser.parseDouble(line, bounds(8), bounds(9))
+		parseTime(line, bounds(0), bounds(1))
+	}
+
+	/** The time field of the last line, e.g. for error messages */
+	def timeText(line: CharSequence): String = line.subSequence(timeStart, timeEnd).toString
+
+	private def parseTime(line: CharSequence, start: Int, end: Int): Unit = {
+		timeStart = start
+		timeEnd = end
+
+		var comma = start
+		while (comma < end && line.charAt(comma) != ',') comma += 1
+		// only the hundredths "00" count as full second, as in 123456,00
+		fullSecond = comma == end || (end - comma == 3 && line.charAt(comma + 1) == '0' && line.charAt(comma + 2) == '0')
+
+		time = if (end - start < 9) {
+			-1
+		} else {
+			val hours = MeasurementLineParser.parseDigits(line, start, start + 2)
+			val minutes = MeasurementLineParser.parseDigits(line, start + 2, start + 4)
+			val seconds = MeasurementLineParser.parseDigits(line, start + 4, start + 6)
+			val hundredths = MeasurementLineParser.parseDigits(line, start + 7, start + 9)
+			if (hours < 0 || minutes < 0 || seconds < 0 || hundredths < 0) {
+				-1
+			} else {
+				(hours * 3600 + minutes * 60 + seconds) * 1000 + hundredths * 10
+			}
+		}
+	}
+
+}
+
+object MeasurementLineParser {
+
+	val fieldCount = 5
+
+	/** The largest mantissa that can be converted to a double without rounding */
+	private val maximumExactMantissa = 1L << 53
+
+	/** The powers of ten that can be represented exactly as double */
+	private val powersOfTen = Array.iterate(1.0, 23)(_ * 10)
+
+	/**
+	 * Parses a decimal number with a comma or dot as decimal separator.
+	 * <p/>
+	 * Plain numbers whose digits fit into the 53 bits of a double’s mantissa are converted directly; the result is the
+	 * same as with parseDouble(), as both the digits and the power of ten are exactly representable and the division
+	 * rounds correctly. All other numbers (e.g. with an exponent) are passed to [[java.lang.Double.parseDouble()]].
+	 */
+	def parseDouble(text: CharSequence, start: Int, end: Int): Double = {
+		var i = start
+		val negative = i < end && text.charAt(i) == '-'
+		if (i < end && (text.charAt(i) == '-' || text.charAt(i) == '+')) {
+			i += 1
+		}
+		var mantissa = 0L
+		var digits = 0
+		var decimals = 0
+		var separator = false
+		while (i < end) {
+			val c = text.charAt(i)
+			if (c >= '0' && c <= '9' && digits < 18) {
+				mantissa = mantissa * 10 + (c - '0')
+				digits += 1
+				if (separator) {
+					decimals += 1
+				}
+			} else if ((c == ',' || c == '.') && !separator) {
+				separator = true
+			} else {
+				return parseDoubleSlowly(text, start, end)
+			}
+			i += 1
+		}
+		if (digits == 0 || mantissa >= maximumExactMantissa || decimals >= powersOfTen.length) {
+			return parseDoubleSlowly(text, start, end)
+		}
+
+		val value = mantissa / powersOfTen(decimals)
+		if (negative) -value else value
+	}
+
+	private def parseDoubleSlowly(text: CharSequence, start: Int, end: Int): Double =
+		java.lang.Double.parseDouble(text.subSequence(start, end).toString.replace(',', '.'))
+
+	/**
+	 * Parses a non-negative integer from the given digits.
+	 *
+	 * @return The number, or -1 if any of the characters is not a digit
+	 */
+	def parseDigits(text: CharSequence, start: Int, end: Int): Long = {
+		var result = 0L
+		var i = start
+		while (i < end) {
+			val c = text.charAt(i)
+			if (c < '0' || c > '9') {
+				return -1
+			}
+			result = result * 10 + (c - '0')
+			i += 1
+		}
+		result
+	}
+
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2015 Andreas Wolf
+ *
+ * See te LICENSE file in the project root for further copyright information.
+ */
+
+package info.andreaswolf.roadhopper.measurements
+
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.{ConcurrentHashMap, Executors, ThreadFactory}
+
+import com.graphhopper.GraphHopper
+import com.graphhopper.matching.{EdgeMatch, LocationIndexMatch, MapMatching}
+import com.graphhopper.storage.index.LocationIndexTree
+import com.graphhopper.util.GPXEntry
+import org.slf4j.LoggerFactory
+
+import scala.collection.JavaConversions._
+import scala.collection.mutable.ListBuffer
+import scala.concurrent.{ExecutionContext, Future, Promise}
+
+
+/**
+ * Matches measurements to the road graph and stores the results, so each measurement is only matched once.
+ * <p/>
+ * The matching runs on a fixed pool of threads. If the road of a measurement is requested while it is being matched,
+ * the running matching is shared instead of starting another one. Measurements that cannot be matched are stored as
+ * failed as well, so the (expensive) matching is not retried on every request. Other errors (e.g. of the database or
+ * the graph) are only passed on, so the measurement is matched again on the next request.
+ *
+ * @param parallelism The number of measurements to match at the same time
+ */
+class MeasurementMatcher(val hopper: GraphHopper, val repository: MeasurementRepository, val parallelism: Int) {
+
+	val log = LoggerFactory.getLogger(this.getClass)
+
+	private val threadCounter = new AtomicInteger()
+
+	private val executor = Executors.newFixedThreadPool(parallelism, new ThreadFactory {
+		override def newThread(r: Runnable): Thread = {
+			val thread = new Thread(r, s"measurement-matching-${threadCounter.incrementAndGet()}")
+			thread.setDaemon(true)
+			thread
+		}
+	})
+
+	implicit val executionContext = ExecutionContext.fromExecutorService(executor)
+
+	/** The matchings that are currently running, by measurement name */
+	private val running = new ConcurrentHashMap[String, Future[MatchedRoad]]()
+
+
+	/**
+	 * Returns the matched road of a measurement, from the repository or by matching it now.
+	 *
+	 * @param points Returns the points of the measurement; only called if the measurement must be matched
+	 */
+	def getMatchedRoad(measurement: String, points: () => Iterator[DataPoint]): Future[MatchedRoad] = {
+		repository.findMatchedRoad(measurement) match {
+			case Some(road) => Future.successful(road)
+			case None =>
+				val promise = Promise[MatchedRoad]()
+				val existing = running.putIfAbsent(measurement, promise.future)
+				if (existing != null) {
+					return existing
+				}
+				promise.completeWith(Future {
+					// another thread might have finished the matching since we looked into the repository
+					repository.findMatchedRoad(measurement).getOrElse({
+						val road = matchPoints(measurement, points())
+						repository.add(road)
+						road
+					})
+				})
+				promise.future.onComplete(_ => running.remove(measurement))
+				promise.future
+		}
+	}
+
+	/** The number of measurements that are currently being matched or waiting for a thread */
+	def runningCount: Int = running.size()
+
+	/**
+	 * Matches all given measurements that have not been matched yet, in parallel.
+	 */
+	def matchAll(measurements: Seq[String]): Future[Seq[MatchedRoad]] = Future.sequence(measurements.map(name =>
+		getMatchedRoad(name, () => repository.findByName(name).headOption.map(_.points.iterator).getOrElse(Iterator.empty))
+	))
+
+	/**
+	 * Matches the given points to the road graph.
+	 * <p/>
+	 * The map matching signals points that cannot be matched (too few points, no route between them, …) with an
+	 * IllegalArgumentException or IllegalStateException; these are returned as a failed road, all other exceptions are
+	 * thrown.
+	 * <p/>
+	 * Each matching uses its own LocationIndexMatch, as the lookups are not known to be thread-safe; it only wraps the
+	 * graph’s location index, so creating it is cheap.
+	 */
+	def matchPoints(measurement: String, points: Iterator[DataPoint]): MatchedRoad = {
+		val graph = hopper.getGraphHopperStorage
+		val locationIndex = new LocationIndexMatch(graph, hopper.getLocationIndex.asInstanceOf[LocationIndexTree])
+		val mapMatching = new MapMatching(graph, locationIndex, hopper.getEncodingManager.getEncoder("car"))
+
+		val gpxPointsBuffer = new ListBuffer[GPXEntry]()
+		points.foreach(dp => gpxPointsBuffer.append(new GPXEntry(dp.position, dp.date)))
+
+		try {
+			val edges = mapMatching.doWork(gpxPointsBuffer.toList).getEdgeMatches.toList
+			log.debug(s"Matched measurement $measurement to ${edges.size} edges")
+			MatchedRoad(measurement, edges.map(_.getEdgeState.getEdge), coordinates(edges))
+		} catch {
+			case e @ (_: IllegalArgumentException | _: IllegalStateException) =>
+				log.warn(s"Could not match measurement $measurement: ${e.getMessage}")
+				MatchedRoad.failed(measurement, e.getMessage)
+		}
+	}
+
+	/**
+	 * Converts a bunch of edges into a continuous list of coordinates fit for GeoJSON usage.
+	 *
+	 * @return A list of (lon, lat) pairs
+	 */
+	def coordinates(edges: List[EdgeMatch]): List[(Double, Double)] = {
+		if (edges.isEmpty) {
+			return List()
+		}
+		val nodes = hopper.getGraphHopperStorage.getNodeAccess
+		val result = new ListBuffer[(Double, Double)]()
+
+		val node: Int = edges.head.getEdgeState.getBaseNode
+		result.append((nodes.getLon(node), nodes.getLat(node)))
+		edges.foreach(edge => {
+			val wayNodes = edge.getEdgeState.fetchWayGeometry(2)
+			for (i <- 0 to wayNodes.size() - 1) {
+				result.append((wayNodes.getLon(i), wayNodes.getLat(i)))
+			}
+		})
+		result.toList
+	}
+
+}
@@ -9,37 +9,122 @@ package info.andreaswolf.roadhopper.measurements
 import com.emotioncity.soriento.Dsl
 import com.emotioncity.soriento.RichODatabaseDocumentImpl._
 import com.google.inject.Inject
+import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx
+import com.orientechnologies.orient.core.intent.OIntentMassiveInsert
 import com.orientechnologies.orient.core.record.impl.ODocument
 import info.andreaswolf.roadhopper.persistence.Database
 
 // RichODatabaseDocumentImpl._ is required for queryBySql() to work
 
 
+/**
+ * Access to the measurements stored in the database.
+ * <p/>
+ * The database connection must not be used by multiple threads at once, so all methods are serialized on the
+ * database.
+ */
 class MeasurementRepository extends Dsl {
 
 	@Inject var database: Database = null
 
 
-	def findAllGroups: List[MeasurementGroup] = database.conn.queryBySql[MeasurementGroup]("select * from MeasurementGroup")
+	def findAllGroups: List[MeasurementGroup] = withConnection(_.queryBySql[MeasurementGroup]("select * from MeasurementGroup"))
 
-	def findAll: List[Measurement] = database.conn.queryBySql[Measurement]("select * from Measurement")
+	/**
+	 * Returns all measurements; the points of packed measurements are decoded lazily.
+	 */
+	def findAll: List[Measurement] = withConnection(connection =>
+		connection.queryBySql[Measurement]("select * from Measurement")
+			++ connection.queryBySql[PackedMeasurement]("select * from PackedMeasurement").map(_.toMeasurement)
+	)
 
 	def findGroupByName(name: String): List[MeasurementGroup] =
-		database.conn.queryBySql[MeasurementGroup]("SELECT * FROM MeasurementGroup WHERE name = \"%s\"".format(name)) match {
+		withConnection(_.queryBySql[MeasurementGroup]("SELECT * FROM MeasurementGroup WHERE name = \"%s\"".format(name))) match {
 			case null => List()
 			case Nil => List()
 			case x => x
 		}
 
+	/**
+	 * Finds a measurement by its name, regardless of the way it is stored; the points of packed measurements are
+	 * decoded lazily.
+	 */
 	def findByName(name: String): List[Measurement] =
-		database.conn.queryBySql[Measurement]("SELECT * FROM Measurement WHERE name = \"%s\"".format(name)) match {
+		withConnection(_.queryBySql[Measurement]("SELECT * FROM Measurement WHERE name = \"%s\"".format(name))) match {
+			case null => findPackedByName(name).map(_.toMeasurement)
+			case Nil => findPackedByName(name).map(_.toMeasurement)
+			case x => x
+		}
+
+	def findPackedByName(name: String): List[PackedMeasurement] =
+		withConnection(_.queryBySql[PackedMeasurement]("SELECT * FROM PackedMeasurement WHERE name = \"%s\"".format(name))) match {
 			case null => List()
 			case Nil => List()
 			case x => x
 		}
 
-	def add(measurement: Measurement): ODocument = database.conn.save(measurement)
+	def add(measurement: Measurement): ODocument = withConnection(_.save(measurement))
+
+	def findMatchedRoad(measurement: String): Option[MatchedRoad] =
+		withConnection(_.queryBySql[MatchedRoad]("SELECT * FROM MatchedRoad WHERE measurement = \"%s\"".format(measurement))) match {
+			case null => None
+			case x => x.headOption
+		}
+
+	def add(measurement: PackedMeasurement): ODocument = withConnection(_.save(measurement))
+
+	def add(road: MatchedRoad): ODocument = withConnection(_.save(road))
+
+	def add(group: MeasurementGroup): ODocument = withConnection(_.save(group))
+
+	/**
+	 * Stores the measurements of a file and their group, in transactions of `batchSize` measurements each. The group is
+	 * saved last, so a file is only marked as imported once all of its measurements are stored.
+	 * <p/>
+	 * If saving fails, the current transaction is rolled back; measurements from earlier transactions are kept.
+	 *
+	 * @param packed If set, the points are stored as [[PackedMeasurement]]s, otherwise as one document per point
+	 */
+	def addAll(measurements: Seq[Measurement], group: MeasurementGroup, batchSize: Int = 50,
+	           packed: Boolean = true): Unit = {
+		require(batchSize > 0, "The batch size must be positive")
+		// encode outside of the lock, so multiple importers can do this in parallel
+		val packedMeasurements = if (packed) measurements.map(PackedMeasurement(_)) else Seq()
+		withConnection(connection => {
+			connection.declareIntent(new OIntentMassiveInsert())
+			try {
+				if (packed) {
+					packedMeasurements.grouped(batchSize).foreach(batch => inTransaction(connection) {
+						batch.foreach(measurement => connection.save(measurement))
+					})
+				} else {
+					measurements.grouped(batchSize).foreach(batch => inTransaction(connection) {
+						batch.foreach(measurement => connection.save(measurement))
+					})
+				}
+				inTransaction(connection) {
+					connection.save(group)
+				}
+			} finally {
+				connection.declareIntent(null)
+			}
+		})
+	}
+
+	private def inTransaction(connection: ODatabaseDocumentTx)(block: => Unit): Unit = {
+		connection.begin()
+		try {
+			block
+			connection.commit()
+		} catch {
+			case e: Exception =>
+				connection.rollback()
+				throw e
+		}
+	}
 
-	def add(group: MeasurementGroup): ODocument = database.conn.save(group)
+	private def withConnection[T](block: ODatabaseDocumentTx => T): T = database.synchronized {
+		block(database.conn)
+	}
 
 }
@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) 2015 Andreas Wolf
+ *
+ * See te LICENSE file in the project root for further copyright information.
+ */
+
+package info.andreaswolf.roadhopper.measurements
+
+import com.emotioncity.soriento.ODocumentReader
+import com.emotioncity.soriento.RichODocumentImpl._
+import com.orientechnologies.orient.core.record.impl.ODocument
+import info.andreaswolf.roadhopper.road.RoadSegment
+
+
+object PackedMeasurement {
+
+	implicit object PackedMeasurementReader extends ODocumentReader[PackedMeasurement] {
+		def read(oDocument: ODocument): PackedMeasurement = {
+			new PackedMeasurement(
+				// this typed get() call is possible because we imported implicit conversions from soriento.RichODocumentImpl
+				oDocument.get[String]("name").get,
+				oDocument.field[Array[Byte]]("points"),
+				oDocument.getAsList[RoadSegment]("road")(Measurement.RoadSegmentReader).getOrElse(List[RoadSegment]())
+			)
+		}
+	}
+
+	def apply(measurement: Measurement): PackedMeasurement =
+		new PackedMeasurement(measurement.name, PackedPoints.encode(measurement.points).bytes, measurement.road)
+
+}
+
+/**
+ * A [[Measurement]] with its points stored as one binary field (see [[PackedPoints]]) instead of one embedded document
+ * per point.
+ */
+case class PackedMeasurement(name: String, points: Array[Byte], road: List[RoadSegment]) {
+
+	lazy val packedPoints = new PackedPoints(points)
+
+	/**
+	 * Returns this measurement with its points decoded lazily, i.e. only as far as they are read.
+	 */
+	def toMeasurement: Measurement = new Measurement(name, packedPoints.iterator.toStream, road)
+
+}
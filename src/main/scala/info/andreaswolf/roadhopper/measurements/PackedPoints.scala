@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2015 Andreas Wolf
+ *
+ * See te LICENSE file in the project root for further copyright information.
+ */
+
+package info.andreaswolf.roadhopper.measurements
+
+import java.io.ByteArrayOutputStream
+import java.nio.ByteBuffer
+
+import info.andreaswolf.roadhopper.map.Point
+
+
+object PackedPoints {
+
+	val version: Byte = 1
+
+	/** The number of values per point: time, latitude, longitude, velocity and orientation */
+	private val fieldCount = 5
+
+	/** The fixed-point resolution of each field */
+	val coordinateScale = 1e7
+	val velocityScale = 1e3
+	val orientationScale = 1e5
+
+	/** version, point count, block size, block count */
+	private val headerSize = 1 + 3 * 4
+
+	/** minimum time, maximum time, offset */
+	private val blockIndexEntrySize = 2 * 8 + 4
+
+	/**
+	 * Encodes the given points.
+	 *
+	 * @param blockSize The number of points per block; smaller blocks make slicing more precise, but take more space
+	 */
+	def encode(points: Seq[DataPoint], blockSize: Int = 64): PackedPoints = {
+		require(blockSize > 0, "The block size must be positive")
+
+		val data = new VarLongOutputStream
+		val blockCount = (points.size + blockSize - 1) / blockSize
+		val index = ByteBuffer.allocate(headerSize + blockCount * blockIndexEntrySize)
+		index.put(version).putInt(points.size).putInt(blockSize).putInt(blockCount)
+
+		val previous = new Array[Long](fieldCount)
+		val values = new Array[Long](fieldCount)
+		points.grouped(blockSize).foreach(block => {
+			index.putLong(block.map(_.date).min).putLong(block.map(_.date).max).putInt(data.size())
+			// the first point of each block is stored as is, so blocks can be decoded independently
+			java.util.Arrays.fill(previous, 0L)
+			block.foreach(point => {
+				values(0) = point.date
+				values(1) = Math.round(point.position.lat * coordinateScale)
+				values(2) = Math.round(point.position.lon * coordinateScale)
+				values(3) = Math.round(point.velocity * velocityScale)
+				values(4) = Math.round(point.orientation * orientationScale)
+				var i = 0
+				while (i < fieldCount) {
+					data.writeVarLong(values(i) - previous(i))
+					previous(i) = values(i)
+					i += 1
+				}
+			})
+		})
+
+		val bytes = new Array[Byte](index.capacity() + data.size())
+		System.arraycopy(index.array(), 0, bytes, 0, index.capacity())
+		data.copyTo(bytes, index.capacity())
+		new PackedPoints(bytes)
+	}
+
+	/**
+	 * Writes variable-length, zigzag-encoded numbers, so small differences (positive or negative) take one or two bytes.
+	 */
+	private class VarLongOutputStream extends ByteArrayOutputStream {
+
+		def writeVarLong(value: Long): Unit = {
+			var zigzag = (value << 1) ^ (value >> 63)
+			while ((zigzag & ~0x7FL) != 0) {
+				write(((zigzag & 0x7F) | 0x80).toInt)
+				zigzag >>>= 7
+			}
+			write(zigzag.toInt)
+		}
+
+		def copyTo(target: Array[Byte], offset: Int): Unit = System.arraycopy(buf, 0, target, offset, count)
+
+	}
+
+}
+
+/**
+ * A series of measured data points in a compact binary format, decoded only while iterating.
+ * <p/>
+ * The time, latitude, longitude, velocity and orientation of each point are stored as fixed-point numbers (with a
+ * resolution of 1 ms, 10<sup>-7</sup>°, 1 mm/s and 10<sup>-5</sup> rad) and delta-encoded as variable-length
+ * numbers. The elevation is not stored; it is always 0 for the imported measurements.
+ * <p/>
+ * The points are split into blocks that can be decoded independently. An index with the time range of each block
+ * allows to decode only the blocks that overlap a given time range, see [[slice()]].
+ *
+ * @param bytes The encoded points, as created by [[PackedPoints.encode()]]
+ */
+class PackedPoints(val bytes: Array[Byte]) {
+
+	import PackedPoints._
+
+	private val header = ByteBuffer.wrap(bytes)
+
+	if (bytes.length < headerSize || header.get(0) != version) {
+		throw new IllegalArgumentException("Unsupported packed points format")
+	}
+
+	/** The number of points */
+	val size = header.getInt(1)
+
+	private val blockSize = header.getInt(5)
+
+	private val blockCount = header.getInt(9)
+
+	private val dataStart = headerSize + blockCount * blockIndexEntrySize
+
+
+	def isEmpty = size == 0
+
+	/** Decodes all points */
+	def iterator: Iterator[DataPoint] = slice(Long.MinValue, Long.MaxValue)
+
+	/**
+	 * Decodes the points within the given time range (inclusive); only the blocks overlapping the range are read.
+	 */
+	def slice(from: Long, to: Long): Iterator[DataPoint] = {
+		(0 until blockCount).iterator
+			.filter(block => blockMaximumTime(block) >= from && blockMinimumTime(block) <= to)
+			.flatMap(decodeBlock)
+			.filter(point => point.date >= from && point.date <= to)
+	}
+
+	private def blockEntry(block: Int) = headerSize + block * blockIndexEntrySize
+
+	private def blockMinimumTime(block: Int): Long = header.getLong(blockEntry(block))
+
+	private def blockMaximumTime(block: Int): Long = header.getLong(blockEntry(block) + 8)
+
+	private def decodeBlock(block: Int): Iterator[DataPoint] = new Iterator[DataPoint] {
+		private var position = dataStart + header.getInt(blockEntry(block) + 16)
+		private var remaining = Math.min(blockSize, size - block * blockSize)
+
+		private var time = 0L
+		private var latitude = 0L
+		private var longitude = 0L
+		private var velocity = 0L
+		private var orientation = 0L
+
+		override def hasNext: Boolean = remaining > 0
+
+		override def next(): DataPoint = {
+			if (remaining == 0) {
+				throw new NoSuchElementException
+			}
+			remaining -= 1
+			time += readVarLong()
+			latitude += readVarLong()
+			longitude += readVarLong()
+			velocity += readVarLong()
+			orientation += readVarLong()
+
+			DataPoint(time, Point(latitude / coordinateScale, longitude / coordinateScale, 0.0), velocity / velocityScale,
+				orientation / orientationScale)
+		}
+
+		private def readVarLong(): Long = {
+			var result = 0L
+			var shift = 0
+			var byte = 0
+			do {
+				byte = bytes(position)
+				position += 1
+				result |= (byte & 0x7FL) << shift
+				shift += 7
+			} while ((byte & 0x80) != 0)
+			(result >>> 1) ^ -(result & 1)
+		}
+	}
+
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright (c) 2015 Andreas Wolf
+ *
+ * See te LICENSE file in the project root for further copyright information.
+ */
+
+package info.andreaswolf.roadhopper.metrics
+
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.{AtomicLong, LongAdder}
+
+import scala.collection.JavaConverters._
+
+
+/**
+ * A value that is increased (or decreased) from many threads, e.g. the number of live actor systems.
+ */
+class Counter {
+
+	private val value = new LongAdder
+
+	def increment(): Unit = value.increment()
+
+	def decrement(): Unit = value.decrement()
+
+	def add(delta: Long): Unit = value.add(delta)
+
+	def get: Long = value.sum()
+
+}
+
+
+/**
+ * Counts the invocations of something and the time they took.
+ * <p/>
+ * To keep the overhead low, callers may only measure the time of some invocations (see [[recordSampled()]]); the
+ * mean duration is then calculated from the sampled invocations only.
+ */
+class Timer {
+
+	private val count = new LongAdder
+	private val sampledCount = new LongAdder
+	private val sampledNanos = new LongAdder
+
+	/** Records one invocation that took the given time */
+	def record(nanos: Long): Unit = {
+		count.increment()
+		sampledCount.increment()
+		sampledNanos.add(nanos)
+	}
+
+	/** Records invocations whose duration was not measured */
+	def recordCount(invocations: Long): Unit = count.add(invocations)
+
+	/** Records the total duration of some invocations that were already counted with [[recordCount()]] */
+	def recordSampled(invocations: Long, nanos: Long): Unit = {
+		sampledCount.add(invocations)
+		sampledNanos.add(nanos)
+	}
+
+	def invocations: Long = count.sum()
+
+	/** The mean duration of an invocation in nanoseconds, or 0 if no duration was measured yet */
+	def meanNanos: Double = {
+		val sampled = sampledCount.sum()
+		if (sampled == 0) 0.0 else sampledNanos.sum().toDouble / sampled
+	}
+
+	/** The estimated total time of all invocations in nanoseconds */
+	def totalNanos: Double = meanNanos * invocations
+
+}
+
+
+/**
+ * The distribution of non-negative values, e.g. request latencies.
+ * <p/>
+ * The values are counted in buckets by powers of two, so recording a value is cheap and the memory use is constant,
+ * but percentiles are only accurate to a factor of two: a percentile is reported as the upper bound of the bucket it
+ * falls into.
+ */
+class Histogram {
+
+	/** Bucket 0 holds the value 0, bucket i the values in [2^(i-1), 2^i) */
+	private val buckets = Array.fill(64)(new LongAdder)
+	private val sum = new LongAdder
+	private val max = new AtomicLong
+
+	def record(value: Long, times: Long = 1): Unit = {
+		val v = Math.max(value, 0L)
+		buckets(64 - java.lang.Long.numberOfLeadingZeros(v)).add(times)
+		sum.add(v * times)
+		var currentMax = max.get()
+		while (v > currentMax && !max.compareAndSet(currentMax, v)) {
+			currentMax = max.get()
+		}
+	}
+
+	def count: Long = buckets.map(_.sum()).sum
+
+	def mean: Double = {
+		val c = count
+		if (c == 0) 0.0 else sum.sum().toDouble / c
+	}
+
+	def maximum: Long = max.get()
+
+	/**
+	 * Returns the upper bound of the bucket containing the given quantile (0..1), or 0 if nothing was recorded.
+	 */
+	def percentile(quantile: Double): Long = {
+		val counts = buckets.map(_.sum())
+		val total = counts.sum
+		if (total == 0) {
+			return 0
+		}
+		val rank = Math.max(1L, Math.ceil(quantile * total).toLong)
+		var cumulative = 0L
+		var i = 0
+		while (i < counts.length) {
+			cumulative += counts(i)
+			if (cumulative >= rank) {
+				return Math.min(if (i == 0) 0L else (1L << i) - 1, max.get())
+			}
+			i += 1
+		}
+		max.get()
+	}
+
+}
+
+
+/**
+ * A value that is read when the metrics are reported, e.g. the length of a queue.
+ */
+class Gauge(read: () => Long) {
+
+	def get: Long = read()
+
+}
+
+
+/**
+ * The registry of all metrics of this process, reported by [[info.andreaswolf.roadhopper.server.MetricsServlet]].
+ * <p/>
+ * This is a global object because the components that record metrics (e.g. processes and signal buses) are created
+ * by the simulations, outside of the injector. Metrics are created on first use and live as long as the process.
+ */
+object Metrics {
+
+	private val counters = new ConcurrentHashMap[String, Counter]()
+	private val timers = new ConcurrentHashMap[String, Timer]()
+	private val histograms = new ConcurrentHashMap[String, Histogram]()
+	private val gauges = new ConcurrentHashMap[String, Gauge]()
+
+	def counter(name: String): Counter = getOrCreate(counters, name, new Counter)
+
+	def timer(name: String): Timer = getOrCreate(timers, name, new Timer)
+
+	def histogram(name: String): Histogram = getOrCreate(histograms, name, new Histogram)
+
+	/**
+	 * Registers a gauge that reads the given value. An existing gauge with the same name is replaced, as the value
+	 * usually belongs to a specific object (e.g. a queue).
+	 */
+	def gauge(name: String, read: () => Long): Gauge = {
+		val gauge = new Gauge(read)
+		gauges.put(name, gauge)
+		gauge
+	}
+
+	def allCounters: Map[String, Counter] = counters.asScala.toMap
+
+	def allTimers: Map[String, Timer] = timers.asScala.toMap
+
+	def allHistograms: Map[String, Histogram] = histograms.asScala.toMap
+
+	def allGauges: Map[String, Gauge] = gauges.asScala.toMap
+
+	private def getOrCreate[T](map: ConcurrentHashMap[String, T], name: String, create: => T): T = {
+		val existing = map.get(name)
+		if (existing != null) {
+			return existing
+		}
+		val created = create
+		val previous = map.putIfAbsent(name, created)
+		if (previous != null) previous else created
+	}
+
+}
@@ -10,7 +10,7 @@ import com.emotioncity.soriento.{Dsl, ODb}
 import com.graphhopper.util.shapes.GHPoint3D
 import com.orientechnologies.orient.core.db.document.ODatabaseDocumentTx
 import com.orientechnologies.orient.server.OServerMain
-import info.andreaswolf.roadhopper.measurements.{MeasurementGroup, Measurement}
+import info.andreaswolf.roadhopper.measurements.{MatchedRoad, Measurement, MeasurementGroup, PackedMeasurement}
 import com.emotioncity.soriento.RichODatabaseDocumentImpl._
 
 
@@ -45,6 +45,12 @@ class Database extends ODb with Dsl {
 
 		createOClass[MeasurementGroup]
 		_conn.getMetadata.getSchema.reload()
+
+		createOClass[PackedMeasurement]
+		_conn.getMetadata.getSchema.reload()
+
+		createOClass[MatchedRoad]
+		_conn.getMetadata.getSchema.reload()
 	}
 
 	def conn: ODatabaseDocumentTx = {
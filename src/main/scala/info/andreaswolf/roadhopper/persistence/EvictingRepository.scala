@@ -0,0 +1,243 @@
+/*
+ * Copyright (c) 2015 Andreas Wolf
+ *
+ * See te LICENSE file in the project root for further copyright information.
+ */
+
+package info.andreaswolf.roadhopper.persistence
+
+import java.util
+import java.util.concurrent.atomic.AtomicLong
+
+import org.slf4j.LoggerFactory
+
+import scala.collection.JavaConverters._
+import scala.collection.mutable.ListBuffer
+
+
+/**
+ * The counters of an [[EvictingRepository]] at one point in time.
+ *
+ * @param weight The summed weight of all entries, in the unit of the repository’s weigher
+ */
+case class RepositoryStatistics(size: Int, weight: Long, hits: Long, misses: Long, evictions: Long) {
+
+	/** The share of lookups that found an entry, or 0 if there were no lookups yet */
+	def hitRate: Double = if (hits + misses == 0) 0.0 else hits.toDouble / (hits + misses)
+
+}
+
+
+/**
+ * Thread-safe in-memory storage for objects that are kept between requests, with a bounded size.
+ * <p/>
+ * Entries are evicted in least-recently-used order when there are more than `maxEntries` of them or their summed
+ * weight exceeds `maxWeight`. Entries that were not accessed for `timeToLive` milliseconds are evicted as well. Only
+ * entries for which `isEvictable` holds are ever evicted, so e.g. running simulations are kept even if the repository
+ * is full.
+ * <p/>
+ * Evicted entries are passed to `onEviction` after they have been removed, outside of the repository’s lock.
+ *
+ * @param weigher Returns the weight of an entry, e.g. its approximate size in bytes. Evaluated when the entry is added;
+ *                the summed weight is kept up to date as entries are added and removed.
+ * @param isMutable Checks if the weight of an entry may still change, e.g. for a running simulation. These entries are
+ *                  weighed again whenever the repository is checked for eviction, and once more after they have become
+ *                  immutable.
+ * @param currentTime The clock used for the time to live, in milliseconds
+ */
+class EvictingRepository[T](val maxEntries: Int, val maxWeight: Long = Long.MaxValue, val timeToLive: Long = Long.MaxValue,
+                            weigher: T => Long = (_: T) => 0L, isMutable: T => Boolean = (_: T) => false,
+                            isEvictable: T => Boolean = (_: T) => true,
+                            onEviction: T => Unit = (_: T) => (),
+                            currentTime: () => Long = () => System.currentTimeMillis()) {
+
+	require(maxEntries > 0, "The repository must be able to hold at least one entry")
+
+	val log = LoggerFactory.getLogger(this.getClass)
+
+	private class Entry(val value: T, var lastAccess: Long, var weight: Long, var mutable: Boolean)
+
+	/** The entries in access order, least recently used first */
+	private val entries = new util.LinkedHashMap[String, Entry](16, 0.75f, true)
+
+	/** The entries whose weight may still change */
+	private val mutableEntries = new util.HashSet[Entry]()
+
+	/** The summed weight of all entries */
+	private var totalWeight = 0L
+
+	private val hits = new AtomicLong()
+	private val misses = new AtomicLong()
+	private val evictions = new AtomicLong()
+
+
+	def put(identifier: String, value: T): Unit = {
+		val evicted = synchronized {
+			// check this before weighing, so an entry that changes in between is weighed again
+			val entry = new Entry(value, currentTime(), 0L, isMutable(value))
+			entry.weight = weigher(value)
+			val previous = entries.put(identifier, entry)
+			if (previous != null) {
+				removed(previous)
+			}
+			added(entry)
+			val evicted = collectEvicted(checkLimits = true, keep = entry)
+			if (previous != null && previous.value.asInstanceOf[AnyRef] ne value.asInstanceOf[AnyRef]) {
+				evicted += previous.value
+			}
+			evicted
+		}
+		evict(evicted)
+	}
+
+	/**
+	 * Returns the entry with the given identifier and marks it as recently used.
+	 */
+	def get(identifier: String): Option[T] = {
+		var evicted: ListBuffer[T] = null
+		val result = synchronized {
+			// the limits can only be exceeded by adding entries, so only check for expired entries here
+			evicted = collectEvicted(checkLimits = false, keep = null)
+			Option(entries.get(identifier)).map(entry => {
+				entry.lastAccess = currentTime()
+				entry.value
+			})
+		}
+		evict(evicted)
+
+		if (result.isDefined) hits.incrementAndGet() else misses.incrementAndGet()
+		result
+	}
+
+	/**
+	 * Checks if there is an entry with the given identifier, without marking it as used. Note that the entry may be
+	 * evicted before it is fetched, so use [[get()]] if the entry is needed.
+	 */
+	def contains(identifier: String): Boolean = synchronized {
+		entries.containsKey(identifier)
+	}
+
+	def remove(identifier: String): Option[T] = synchronized {
+		Option(entries.remove(identifier)).map(entry => {
+			removed(entry)
+			entry.value
+		})
+	}
+
+	/**
+	 * Evicts all entries, regardless of whether they are evictable.
+	 */
+	def clear(): Unit = {
+		val evicted = synchronized {
+			val evicted = new ListBuffer[T]()
+			evicted ++= entries.values().asScala.map(_.value)
+			entries.clear()
+			mutableEntries.clear()
+			totalWeight = 0L
+			evicted
+		}
+		evict(evicted)
+	}
+
+	def size: Int = synchronized {
+		entries.size()
+	}
+
+	/**
+	 * Returns all entries, without marking them as used.
+	 */
+	def values: List[T] = synchronized {
+		entries.values().asScala.map(_.value).toList
+	}
+
+	def statistics: RepositoryStatistics = {
+		val (size, weight) = synchronized {
+			updateWeights()
+			(entries.size(), totalWeight)
+		}
+		RepositoryStatistics(size, weight, hits.get(), misses.get(), evictions.get())
+	}
+
+	/**
+	 * Removes all entries that have expired and—if checkLimits is set—the entries that exceed the limits, and returns
+	 * them.
+	 * <p/>
+	 * Must be called with the lock held.
+	 *
+	 * @param keep An entry that must not be evicted, e.g. because it was just added
+	 */
+	private def collectEvicted(checkLimits: Boolean, keep: Entry): ListBuffer[T] = {
+		val evicted = new ListBuffer[T]()
+		val now = currentTime()
+		var count = if (checkLimits) entries.size() else 0
+		if (checkLimits) {
+			updateWeights()
+		}
+		var weight = if (checkLimits) totalWeight else 0L
+
+		val iterator = entries.values().iterator()
+		while (iterator.hasNext && (count > maxEntries || weight > maxWeight || timeToLive != Long.MaxValue)) {
+			val entry = iterator.next()
+			val expired = timeToLive != Long.MaxValue && now - entry.lastAccess > timeToLive
+			if ((count > maxEntries || weight > maxWeight || expired) && (entry ne keep) && isEvictable(entry.value)) {
+				iterator.remove()
+				removed(entry)
+				evicted += entry.value
+				count -= 1
+				if (checkLimits) {
+					weight -= entry.weight
+				}
+			}
+		}
+		evicted
+	}
+
+	/** Must be called with the lock held */
+	private def added(entry: Entry): Unit = {
+		totalWeight += entry.weight
+		if (entry.mutable) {
+			mutableEntries.add(entry)
+		}
+	}
+
+	/** Must be called with the lock held */
+	private def removed(entry: Entry): Unit = {
+		totalWeight -= entry.weight
+		if (entry.mutable) {
+			mutableEntries.remove(entry)
+		}
+	}
+
+	/**
+	 * Weighs the mutable entries again. Must be called with the lock held.
+	 */
+	private def updateWeights(): Unit = {
+		val iterator = mutableEntries.iterator()
+		while (iterator.hasNext) {
+			val entry = iterator.next()
+			val stillMutable = isMutable(entry.value)
+			totalWeight -= entry.weight
+			entry.weight = weigher(entry.value)
+			totalWeight += entry.weight
+			if (!stillMutable) {
+				entry.mutable = false
+				iterator.remove()
+			}
+		}
+	}
+
+	private def evict(evicted: ListBuffer[T]): Unit = {
+		evicted.foreach(value => {
+			evictions.incrementAndGet()
+			try {
+				onEviction(value)
+			} catch {
+				case e: Exception => log.error("Could not release evicted entry", e)
+			}
+		})
+		if (evicted.nonEmpty) {
+			log.debug(s"Evicted ${evicted.size} entries")
+		}
+	}
+
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2015 Andreas Wolf
+ *
+ * See te LICENSE file in the project root for further copyright information.
+ */
+
+package info.andreaswolf.roadhopper.road
+
+import java.io.File
+import java.util
+
+import com.graphhopper.reader.dem.{ElevationProvider, HighPrecisionSRTMProvider, SRTMProvider}
+import com.graphhopper.storage.DAType
+import com.graphhopper.util.shapes.GHPoint
+import org.slf4j.LoggerFactory
+
+
+object ElevationTileCache {
+
+	/** The key of the 1°×1° SRTM tile the given point lies in */
+	def tileKey(lat: Double, lon: Double): Int = (Math.floor(lat).toInt + 90) * 360 + (Math.floor(lon).toInt + 180)
+
+	/**
+	 * Creates the provider for a single SRTM tile.
+	 *
+	 * @param cacheDir The directory the tiles are downloaded to and read from, see the GraphHopper setting
+	 *                 "graph.elevation.cachedir"; if empty, GraphHopper’s default directory is used
+	 */
+	def createSRTMProvider(cacheDir: String = "", daType: DAType = DAType.MMAP): SRTMProvider = {
+		val provider = new HighPrecisionSRTMProvider
+		if (cacheDir.nonEmpty) {
+			provider.setCacheDir(new File(cacheDir))
+		}
+		provider.setDAType(daType)
+		provider
+	}
+
+	/**
+	 * Creates a cache whose tiles are stored in the given directory; see [[createSRTMProvider()]].
+	 */
+	def forSRTM(cacheDir: String, daType: DAType): ElevationTileCache =
+		new ElevationTileCache(createProvider = () => createSRTMProvider(cacheDir, daType))
+
+}
+
+/**
+ * Looks up elevations from SRTM tiles, keeping at most `maxTiles` tiles in memory.
+ * <p/>
+ * Each tile is loaded by its own elevation provider, which maps the tile file into memory. The providers are kept in
+ * least-recently-used order; when there are too many, the oldest one is released. Lookups in different tiles can run
+ * in parallel, lookups in the same tile are serialized, as the providers are not thread-safe.
+ *
+ * @param createProvider Creates the provider for a single tile
+ */
+class ElevationTileCache(val maxTiles: Int = 16,
+                         createProvider: () => ElevationProvider = () => ElevationTileCache.createSRTMProvider()) {
+
+	val log = LoggerFactory.getLogger(this.getClass)
+
+	private class Tile(val provider: ElevationProvider) {
+		/** Set when the tile was evicted; must only be accessed with the tile’s lock held */
+		var released = false
+	}
+
+	/** The tiles in access order, least recently used first */
+	private val tiles = new util.LinkedHashMap[Int, Tile](16, 0.75f, true)
+
+
+	def getEle(lat: Double, lon: Double): Double = {
+		var result: Option[Double] = None
+		while (result.isEmpty) {
+			val tile = tileFor(ElevationTileCache.tileKey(lat, lon))
+			result = tile.synchronized {
+				// the tile might have been evicted since we fetched it; fetch it again in that case
+				if (tile.released) None else Some(tile.provider.getEle(lat, lon))
+			}
+		}
+		result.get
+	}
+
+	/**
+	 * Looks up the elevations of several points at once. The points are grouped by tile, so each tile is only fetched
+	 * and locked once.
+	 *
+	 * @return The elevations, in the order of the points
+	 */
+	def getEle(points: Seq[GHPoint]): Array[Double] = {
+		val elevations = new Array[Double](points.size)
+		val indexedPoints = points.zipWithIndex
+		indexedPoints.groupBy({ case (point, _) => ElevationTileCache.tileKey(point.lat, point.lon) }).foreach({
+			case (key, pointsInTile) =>
+				var done = false
+				while (!done) {
+					val tile = tileFor(key)
+					tile.synchronized {
+						if (!tile.released) {
+							pointsInTile.foreach({ case (point, index) => elevations(index) = tile.provider.getEle(point.lat, point.lon) })
+							done = true
+						}
+					}
+				}
+		})
+		elevations
+	}
+
+	/** The number of tiles currently kept */
+	def size: Int = synchronized {
+		tiles.size()
+	}
+
+	private def tileFor(key: Int): Tile = {
+		var evicted: Tile = null
+		val tile = synchronized {
+			var tile = tiles.get(key)
+			if (tile == null) {
+				tile = new Tile(createProvider())
+				tiles.put(key, tile)
+				if (tiles.size() > maxTiles) {
+					val eldest = tiles.entrySet().iterator()
+					evicted = eldest.next().getValue
+					eldest.remove()
+				}
+			}
+			tile
+		}
+		if (evicted != null) {
+			release(evicted)
+		}
+		tile
+	}
+
+	private def release(tile: Tile): Unit = tile.synchronized {
+		tile.released = true
+		tile.provider.release()
+		log.debug("Released elevation tile")
+	}
+
+}
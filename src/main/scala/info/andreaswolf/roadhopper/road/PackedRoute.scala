@@ -0,0 +1,300 @@
+/*
+ * Copyright (c) 2015 Andreas Wolf
+ *
+ * See te LICENSE file in the project root for further copyright information.
+ */
+
+package info.andreaswolf.roadhopper.road
+
+import com.graphhopper.util.shapes.GHPoint3D
+
+import scala.collection.mutable
+import scala.collection.mutable.{ArrayBuffer, ArrayBuilder}
+
+
+object PackedRoute {
+
+	/**
+	 * Packs the given segments while they are read, so they do not have to be kept in memory at the same time.
+	 */
+	def fromSegments(segments: Iterator[RoadSegment]): PackedRoute = {
+		val builder = new Builder
+		segments.foreach(builder.add)
+		builder.result()
+	}
+
+	/**
+	 * Collects road segments into a [[PackedRoute]].
+	 */
+	class Builder {
+
+		private val latitudes = new ArrayBuilder.ofDouble
+		private val longitudes = new ArrayBuilder.ofDouble
+		private val elevations = new ArrayBuilder.ofDouble
+
+		private val lengths = new ArrayBuilder.ofDouble
+		private val orientations = new ArrayBuilder.ofDouble
+		private val grades = new ArrayBuilder.ofDouble
+		private val speedLimits = new ArrayBuilder.ofDouble
+		private val offsets = new ArrayBuilder.ofDouble
+
+		private val names = new ArrayBuffer[String]
+		private val nameIndex = new mutable.HashMap[String, Int]
+		private val nameIndexes = new ArrayBuilder.ofInt
+
+		private val signIndexes = new ArrayBuilder.ofInt
+		private val signs = new ArrayBuffer[RoadSign]
+
+		private val gapIndexes = new ArrayBuilder.ofInt
+		private val gapStarts = new ArrayBuffer[GHPoint3D]
+
+		private var count = 0
+		private var length = 0.0
+		private var previousEnd: GHPoint3D = null
+
+		offsets += 0.0
+
+		def add(segment: RoadSegment): Unit = {
+			if (previousEnd == null) {
+				addPoint(segment.start)
+			} else if (segment.start != previousEnd) {
+				gapIndexes += count
+				gapStarts append segment.start
+			}
+			addPoint(segment.end)
+			previousEnd = segment.end
+
+			lengths += segment.length
+			orientations += segment.orientation
+			grades += segment.grade
+			speedLimits += segment.speedLimit
+			length += segment.length
+			offsets += length
+
+			nameIndexes += segment.roadName.map(name => nameIndex.getOrElseUpdate(name, {
+				names append name
+				names.size - 1
+			})).getOrElse(-1)
+
+			segment.roadSign.foreach(sign => {
+				signIndexes += count
+				signs append sign
+			})
+
+			count += 1
+		}
+
+		private def addPoint(point: GHPoint3D): Unit = {
+			latitudes += point.lat
+			longitudes += point.lon
+			elevations += point.ele
+		}
+
+		def result(): PackedRoute = new PackedRoute(count, latitudes.result(), longitudes.result(), elevations.result(),
+			lengths.result(), orientations.result(), grades.result(), speedLimits.result(), offsets.result(), names.toArray,
+			nameIndexes.result(), signIndexes.result(), signs.toArray, gapIndexes.result(), gapStarts.toArray)
+
+	}
+
+}
+
+
+/**
+ * The road segments of a [[Route]] in a compact, read-only form, so even very long routes take little memory.
+ * <p/>
+ * The segment attributes are stored column-wise in primitive arrays. The route is stored as a sequence of points, the
+ * end of each segment being the start of the next one; the few segments that do not start at the end of their
+ * predecessor are kept in a separate table. Road names are stored once in a dictionary, road signs in a sparse table
+ * ordered by segment index.
+ * <p/>
+ * Use [[segment()]] to get a [[SegmentView]] of one segment, or the accessors that take the segment index to read
+ * single attributes without creating any objects. [[toRoadSegment()]] creates a full [[RoadSegment]] where one is
+ * needed.
+ *
+ * @param size The number of segments
+ * @param latitudes The latitude of each point; point i is the start of segment i, point i + 1 its end
+ * @param offsets The distance from the start of the route to the start of each segment; the last entry is the length
+ *                of the route
+ * @param roadNames The distinct road names on the route, referenced by the name indexes
+ * @param nameIndexes The index of each segment’s name in the road names, or -1 if the segment has no name
+ * @param signIndexes The (ascending) indexes of the segments with a road sign at their end
+ * @param gapIndexes The (ascending) indexes of the segments that do not start at the end of their predecessor
+ */
+class PackedRoute private(val size: Int,
+                          latitudes: Array[Double], longitudes: Array[Double], elevations: Array[Double],
+                          lengths: Array[Double], orientations: Array[Double], grades: Array[Double],
+                          speedLimits: Array[Double], val offsets: Array[Double],
+                          val roadNames: Array[String], nameIndexes: Array[Int],
+                          signIndexes: Array[Int], signs: Array[RoadSign],
+                          gapIndexes: Array[Int], gapStarts: Array[GHPoint3D]) {
+
+	/** The road names as options, so looking up a segment’s name does not create an object */
+	private val roadNameOptions: Array[Option[String]] = roadNames.map(Some(_))
+
+	/**
+	 * The length of the route in meters.
+	 */
+	def length: Double = offsets(size)
+
+	def segment(index: Int): SegmentView = new SegmentView(this, index)
+
+	/**
+	 * The views of all segments, created while iterating.
+	 */
+	def segments: Iterator[SegmentView] = Iterator.range(0, size).map(segment)
+
+	/**
+	 * Creates full road segments while iterating, e.g. for code that is not (yet) able to work on segment views.
+	 */
+	def roadSegments: Iterator[RoadSegment] = Iterator.range(0, size).map(toRoadSegment)
+
+	def startLatitude(index: Int): Double = {
+		val gap = gapIndex(index)
+		if (gap < 0) latitudes(index) else gapStarts(gap).lat
+	}
+
+	def startLongitude(index: Int): Double = {
+		val gap = gapIndex(index)
+		if (gap < 0) longitudes(index) else gapStarts(gap).lon
+	}
+
+	def startElevation(index: Int): Double = {
+		val gap = gapIndex(index)
+		if (gap < 0) elevations(index) else gapStarts(gap).ele
+	}
+
+	def endLatitude(index: Int): Double = latitudes(index + 1)
+
+	def endLongitude(index: Int): Double = longitudes(index + 1)
+
+	def endElevation(index: Int): Double = elevations(index + 1)
+
+	def length(index: Int): Double = lengths(index)
+
+	def orientation(index: Int): Double = orientations(index)
+
+	def grade(index: Int): Double = grades(index)
+
+	def speedLimit(index: Int): Double = speedLimits(index)
+
+	/**
+	 * The index of the segment’s road name in [[roadNames]], or -1 if the segment has no name.
+	 */
+	def roadNameIndex(index: Int): Int = nameIndexes(index)
+
+	def roadName(index: Int): Option[String] = {
+		val nameIndex = nameIndexes(index)
+		if (nameIndex < 0) None else roadNameOptions(nameIndex)
+	}
+
+	def roadSign(index: Int): Option[RoadSign] = {
+		val signIndex = java.util.Arrays.binarySearch(signIndexes, index)
+		if (signIndex < 0) None else Some(signs(signIndex))
+	}
+
+	/**
+	 * The index of the first segment at or after the given one that has a road sign of the given type, or -1 if there is
+	 * none.
+	 */
+	def nextSignIndex(from: Int, sign: Class[_ <: RoadSign]): Int = {
+		val start = java.util.Arrays.binarySearch(signIndexes, from)
+		var i = if (start < 0) -start - 1 else start
+		while (i < signIndexes.length) {
+			if (signs(i).getClass == sign) {
+				return signIndexes(i)
+			}
+			i += 1
+		}
+		-1
+	}
+
+	/**
+	 * Finds the segment the given position lies on. A position exactly at the end of a segment belongs to that segment.
+	 *
+	 * @param position The distance from the start of the route in meters
+	 */
+	def segmentIndexAt(position: Double): Int = {
+		if (position > length) {
+			throw new IllegalArgumentException("Position " + position + " is after end of road")
+		}
+		// the first segment whose end is at or after the position
+		var low = 1
+		var high = offsets.length
+		while (low < high) {
+			val middle = (low + high) >>> 1
+			if (offsets(middle) < position) low = middle + 1 else high = middle
+		}
+		Math.min(low - 1, size - 1)
+	}
+
+	def toRoadSegment(index: Int): RoadSegment = {
+		val segment = new RoadSegment(
+			new GHPoint3D(startLatitude(index), startLongitude(index), startElevation(index)),
+			new GHPoint3D(endLatitude(index), endLongitude(index), endElevation(index)),
+			speedLimits(index)
+		)
+		segment.setRoadName(roadName(index))
+		segment.setRoadSign(roadSign(index))
+		segment
+	}
+
+	/**
+	 * The index of the segment in the gap table, or a negative value if it starts at the end of its predecessor.
+	 */
+	private def gapIndex(index: Int): Int = {
+		if (gapIndexes.length == 0) -1 else java.util.Arrays.binarySearch(gapIndexes, index)
+	}
+
+}
+
+
+/**
+ * One segment of a [[PackedRoute]]. The attributes are read from the route on each access; apart from [[start]],
+ * [[end]] and [[toRoadSegment]], no objects are created.
+ */
+class SegmentView(val route: PackedRoute, val index: Int) {
+
+	def start: GHPoint3D = new GHPoint3D(route.startLatitude(index), route.startLongitude(index),
+		route.startElevation(index))
+
+	def end: GHPoint3D = new GHPoint3D(route.endLatitude(index), route.endLongitude(index), route.endElevation(index))
+
+	def length: Double = route.length(index)
+
+	def orientation: Double = route.orientation(index)
+
+	def grade: Double = route.grade(index)
+
+	def speedLimit: Double = route.speedLimit(index)
+
+	def roadName: Option[String] = route.roadName(index)
+
+	def roadSign: Option[RoadSign] = route.roadSign(index)
+
+	/**
+	 * The distance from the start of the route to the start of this segment.
+	 */
+	def offset: Double = route.offsets(index)
+
+	/**
+	 * Checks if the given segment belongs to the same road as this one, see [[RoadSegment.isOnSameRoadAs()]].
+	 */
+	def isOnSameRoadAs(other: SegmentView): Boolean = {
+		val name = route.roadNameIndex(index)
+		val otherName = other.route.roadNameIndex(other.index)
+		name >= 0 && otherName >= 0 && route.roadNames(name) == other.route.roadNames(otherName)
+	}
+
+	/**
+	 * Returns the angle necessary to get from this segment to the given segment, see
+	 * [[RoadSegment.calculateNecessaryTurn()]].
+	 */
+	def calculateNecessaryTurn(nextSegment: SegmentView): Double = {
+		RoadSegment.turnAngle(orientation, nextSegment.orientation)
+	}
+
+	def toRoadSegment: RoadSegment = route.toRoadSegment(index)
+
+	override def toString = f"SegmentView($index: $length%.2f, ${orientation.toDegrees}%.2f°)"
+
+}
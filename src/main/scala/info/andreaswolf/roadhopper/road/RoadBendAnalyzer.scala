@@ -18,20 +18,20 @@ class RoadBendAnalyzer {
 	 *
 	 * @return
 	 */
-	def markTurns(roadSegments: List[RoadSegment]): List[RoadSegment] = {
-		val processedSegments = new ListBuffer[RoadSegment]
+	def markTurns(roadSegments: List[RoadSegment]): List[RoadSegment] = markTurns(roadSegments.iterator).toList
 
-		roadSegments.sliding(2).foreach(segments => {
-			val List(segA, segB) = segments
-
-			if (!isTurn(segA, segB)) {
-				processedSegments += segA
+	/**
+	 * Marks the turns like [[markTurns()]], while the segments are read; only one segment is looked ahead.
+	 */
+	def markTurns(roadSegments: Iterator[RoadSegment]): Iterator[RoadSegment] = {
+		val segments = roadSegments.buffered
+		segments.flatMap(segA => {
+			if (segments.hasNext && isTurn(segA, segments.head)) {
+				Turn.splitSegmentBeforeTurn(segA, segments.head)
 			} else {
-				processedSegments ++= Turn.splitSegmentBeforeTurn(segA, segB)
+				List(segA)
 			}
 		})
-		processedSegments += roadSegments.reverse.head
-		processedSegments.toList
 	}
 
 	/**
@@ -56,14 +56,49 @@ class RoadBendAnalyzer {
 	}
 
 	def findBends(roadSegments: List[RoadSegment]): List[RoadBend] = {
-		var turnSum = 0.0
+		val detector = new BendDetector
+		roadSegments.foreach(detector.add)
+		detector.bends
+	}
+
+	/**
+	 * Finds the bends in a packed route. The road segments are only created while they are analyzed; only those of the
+	 * bends are kept.
+	 */
+	def findBends(route: PackedRoute): List[RoadBend] = {
+		val detector = new BendDetector
+		route.roadSegments.foreach(detector.add)
+		detector.bends
+	}
 
-		val bends = new ListBuffer[RoadBend]
-		val currentBend = new ListBuffer[RoadSegment]
+	/**
+	 * Finds the bends in a sequence of road segments that is passed one segment at a time, e.g. while a route is built.
+	 * Only the segments of the current bend are kept.
+	 */
+	class BendDetector {
 
-		roadSegments.sliding(2).foreach(segments => {
-			val List(segA, segB) = segments
+		private var turnSum = 0.0
 
+		private val foundBends = new ListBuffer[RoadBend]
+		private val currentBend = new ListBuffer[RoadSegment]
+
+		private var previousSegment: RoadSegment = null
+
+		/** The number of segments added so far */
+		private var count = 0
+
+		/** The index of the first segment of the current bend */
+		private var currentBendStart = 0
+
+		def add(segment: RoadSegment): Unit = {
+			if (previousSegment != null) {
+				addPair(previousSegment, segment)
+			}
+			previousSegment = segment
+			count += 1
+		}
+
+		private def addPair(segA: RoadSegment, segB: RoadSegment): Unit = {
 			val angle: Double = segA.calculateNecessaryTurn(segB)
 
 			log.debug("turn: " + angle.formatted("%.2f"))
@@ -76,26 +111,34 @@ class RoadBendAnalyzer {
 					// ignore small angles
 					if (Math.abs(turnSum) > (10.0 * Math.PI / 180)) {
 						// turn ended; create RoadBend instance
-						bends append createRoadBend(currentBend)
+						foundBends append createRoadBend(currentBend, currentBendStart)
 					}
 
 					currentBend.clear()
 					currentBend append segA
+					currentBendStart = count - 1
 					turnSum = 0.0
 				}
 				currentBend append segB
 				turnSum += angle
 			}
-		})
-		if (Math.abs(turnSum) > (10.0 * Math.PI / 180)) {
-			// turn ended; create RoadBend instance
-			bends append createRoadBend(currentBend)
 		}
 
-		bends.toList
+		/**
+		 * All bends found in the segments added so far, including a bend that lasts until the last segment.
+		 */
+		def bends: List[RoadBend] = {
+			if (Math.abs(turnSum) > (10.0 * Math.PI / 180)) {
+				// turn ended; create RoadBend instance
+				(foundBends :+ createRoadBend(currentBend, currentBendStart)).toList
+			} else {
+				foundBends.toList
+			}
+		}
+
 	}
 
-	protected def createRoadBend(bend: ListBuffer[RoadSegment]): RoadBend = {
+	protected def createRoadBend(bend: ListBuffer[RoadSegment], firstIndex: Int): RoadBend = {
 		val segmentCount = bend.length
 		var currentSegment = bend.head
 		var angle = 0.0
@@ -137,7 +180,7 @@ class RoadBendAnalyzer {
 			case x if x > 0.0 => TurnDirection.RIGHT
 		}
 
-		new RoadBend(length, direction, angle, segmentCount, bend.head)
+		new RoadBend(length, direction, angle, segmentCount, bend.head, firstIndex)
 	}
 }
 
@@ -146,9 +189,10 @@ class RoadBendAnalyzer {
  *
  * @param length The length of the arc
  * @param angle The turn angle in radians
+ * @param firstIndex The index of the first segment of the bend in its route
  */
 class RoadBend(val length: Double, val direction: TurnDirection.Value, val angle: Double, val segmentCount: Int,
-               val firstSegment: RoadSegment) {
+               val firstSegment: RoadSegment, val firstIndex: Int) {
 
 	lazy val radius = Math.abs(length / angle)
 
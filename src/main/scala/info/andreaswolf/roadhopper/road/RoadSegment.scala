@@ -1,6 +1,5 @@
 package info.andreaswolf.roadhopper.road
 
-import com.graphhopper.reader.dem.{HighPrecisionSRTMProvider, ElevationProvider}
 import com.graphhopper.util.shapes.GHPoint3D
 
 object RoadSegment {
@@ -10,7 +9,21 @@ object RoadSegment {
 	 */
 	val R = 6371000
 
-	var eleProvider: ElevationProvider = new HighPrecisionSRTMProvider
+	/**
+	 * The elevation data shared by all road segments. Simulations using the same route might run in parallel (see the
+	 * parameter sweep), so this must be thread-safe.
+	 */
+	var elevationCache = new ElevationTileCache()
+
+	/**
+	 * Replaces the elevation data shared by all road segments, e.g. to use the configured SRTM cache directory.
+	 */
+	def setElevationCache(cache: ElevationTileCache): Unit = elevationCache = cache
+
+	/**
+	 * Looks up the elevation of a point in the elevation model.
+	 */
+	def getElevation(lat: Double, lon: Double): Double = elevationCache.getEle(lat, lon)
 
 	/**
 	 *
@@ -22,8 +35,8 @@ object RoadSegment {
 	 */
 	def fromCoordinates(lat1: Double, lon1: Double, lat2: Double, lon2: Double): RoadSegment = {
 		new RoadSegment(
-			new GHPoint3D(lat1, lon1, eleProvider.getEle(lat1, lon1)),
-			new GHPoint3D(lat2, lon2, eleProvider.getEle(lat2, lon2))
+			new GHPoint3D(lat1, lon1, getElevation(lat1, lon1)),
+			new GHPoint3D(lat2, lon2, getElevation(lat2, lon2))
 		)
 	}
 
@@ -47,14 +60,14 @@ object RoadSegment {
 		val newLon = startLon + Math.atan2(Math.sin(orientation) * Math.sin(length / R) * Math.cos(startLat),
 			Math.cos(length / R) - Math.sin(startLat) * Math.sin(newLat))
 
-		val end = new GHPoint3D(newLat.toDegrees, newLon.toDegrees, eleProvider.getEle(newLat.toDegrees, newLon.toDegrees))
+		val end = new GHPoint3D(newLat.toDegrees, newLon.toDegrees, getElevation(newLat.toDegrees, newLon.toDegrees))
 
 		new RoadSegment(start, end)
 	}
 
 	/**
 	 * Constructs a road segment from another segment with the given offset from the start. The end point will be the same
-	 * as for the base segment
+	 * as for the base segment. The elevation of the new start point is interpolated, so this does not need to look it up.
 	 *
 	 * @param offset The offset from the start in meters
 	 * @param base The road segment to use as base
@@ -74,15 +87,12 @@ object RoadSegment {
 		val newLon = oldLon + Math.atan2(Math.sin(base.orientation) * Math.sin(offset / R) * Math.cos(oldLat),
 			Math.cos(offset / R) - Math.sin(oldLat) * Math.sin(newLat))
 
-		new RoadSegment(
-			new GHPoint3D(newLat.toDegrees, newLon.toDegrees, eleProvider.getEle(newLat.toDegrees, newLon.toDegrees)),
-			base
-		)
+		new RoadSegment(new GHPoint3D(newLat.toDegrees, newLon.toDegrees, base.elevationAt(offset)), base)
 	}
 
 	/**
 	 * Constructs a road segment from another segment with the given offset from the end. The start point will be the same
-	 * as for the base segment
+	 * as for the base segment. The elevation of the new end point is interpolated.
 	 *
 	 * @param base The road segment to use as base
 	 * @param offset The offset from the end in meters
@@ -102,9 +112,21 @@ object RoadSegment {
 		val newLon = oldLon - Math.atan2(Math.sin(base.orientation) * Math.sin(offset / R) * Math.cos(oldLat),
 			Math.cos(offset / R) - Math.sin(oldLat) * Math.sin(newLat))
 
-		new RoadSegment(base,
-			new GHPoint3D(newLat.toDegrees, newLon.toDegrees, eleProvider.getEle(newLat.toDegrees, newLon.toDegrees))
-		)
+		new RoadSegment(base, new GHPoint3D(newLat.toDegrees, newLon.toDegrees, base.elevationAt(base.length - offset)))
+	}
+
+	/**
+	 * Returns the angle necessary to turn from the first orientation to the second one, confined to [-pi..pi).
+	 */
+	def turnAngle(fromOrientation: Double, toOrientation: Double): Double = {
+		toOrientation - fromOrientation match {
+			case x if x >= Math.PI * 2 => x % Math.PI
+				// TODO this will not suffice if the value is greater than 3 pi/smaller than -3pi
+				// a formula to fix this could look like this: (x + ((Math.abs(x) / (Math.PI * 2)).floor * Math.PI * 2))
+			case x if x >= Math.PI => x - Math.PI * 2
+			case x if x < -Math.PI => x + Math.PI * 2
+			case x => x
+		}
 	}
 
 	/**
@@ -172,6 +194,14 @@ class RoadSegment(val start: GHPoint3D, val end: GHPoint3D, val speedLimit: Doub
 	})
 
 
+	/**
+	 * The elevation at the given distance from the start, interpolated linearly between start and end.
+	 */
+	def elevationAt(offset: Double): Double = {
+		if (length == 0.0) start.ele else start.ele + (end.ele - start.ele) * offset / length
+	}
+
+
 	var roadSign: Option[RoadSign] = None
 
 	def setRoadSign(sign: RoadSign): Unit = roadSign = Some(sign)
@@ -207,14 +237,7 @@ class RoadSegment(val start: GHPoint3D, val end: GHPoint3D, val speedLimit: Doub
 	 * [-pi..pi)) and not relative to the start of the journey.
 	 */
 	def calculateNecessaryTurn(nextSegment: RoadSegment): Double = {
-		nextSegment.orientation - orientation match {
-			case x if x >= Math.PI * 2 => x % Math.PI
-				// TODO this will not suffice if the value is greater than 3 pi/smaller than -3pi
-				// a formula to fix this could look like this: (x + ((Math.abs(x) / (Math.PI * 2)).floor * Math.PI * 2))
-			case x if x >= Math.PI => x - Math.PI * 2
-			case x if x < -Math.PI => x + Math.PI * 2
-			case x => x
-		}
+		RoadSegment.turnAngle(orientation, nextSegment.orientation)
 	}
 
 	override def toString = f"RoadSegment($length%.2f, ${orientation.toDegrees}%.2f°)"
@@ -6,7 +6,6 @@
 
 package info.andreaswolf.roadhopper.road
 
-import com.graphhopper.reader.dem.{ElevationProvider, HighPrecisionSRTMProvider}
 import com.graphhopper.util.shapes.GHPoint3D
 
 /**
@@ -19,9 +18,6 @@ class RoadSegmentBuilder {
 	 */
 	val R = 6371000
 
-	var eleProvider: ElevationProvider = new HighPrecisionSRTMProvider
-
-
 
 	private var _start: Option[GHPoint3D] = None
 	private var _end: Option[GHPoint3D] = None
@@ -69,7 +65,7 @@ class RoadSegmentBuilder {
 		val newLon = startLon + Math.atan2(Math.sin(orientation) * Math.sin(length.toDouble / R) * Math.cos(startLat),
 			Math.cos(length.toDouble / R) - Math.sin(startLat) * Math.sin(newLat))
 
-		this.end = new GHPoint3D(newLat.toDegrees, newLon.toDegrees, eleProvider.getEle(newLat.toDegrees, newLon.toDegrees))
+		this.end = new GHPoint3D(newLat.toDegrees, newLon.toDegrees, RoadSegment.getElevation(newLat.toDegrees, newLon.toDegrees))
 
 		this
 	}
@@ -8,16 +8,23 @@ package info.andreaswolf.roadhopper.road
 
 object RoadSignAnalyzer {
 
+	/**
+	 * Returns the distance until the end of the first segment with a sign of the given type, or 0 if there is none.
+	 * <p/>
+	 * For a complete route, use [[Route.distanceToNextSign()]] instead, which does not need to look at every segment.
+	 */
 	def getDistanceUntilFirstSign(segments: List[RoadSegment], sign: Class[_ <: RoadSign]): Double = {
-		val signs = segments.flatMap(_.roadSign)
-		if (signs.exists(_.getClass == sign)) {
-			val signIndex = segments.indexWhere(p => p.roadSign.isDefined && p.roadSign.get.getClass == sign)
-
-			// +1 to also include the segment with the sign
-			segments.take(signIndex + 1).map(_.length).sum
-		} else {
-			0.0
+		var distance = 0.0
+		var remaining = segments
+		while (remaining.nonEmpty) {
+			val segment = remaining.head
+			distance += segment.length
+			if (segment.roadSign.exists(_.getClass == sign)) {
+				return distance
+			}
+			remaining = remaining.tail
 		}
+		0.0
 	}
 
 }
@@ -4,10 +4,20 @@ import com.graphhopper.util.PointList
 
 /**
  * A route used as the basis for a simulation.
+ * <p/>
+ * The segments are only stored in their packed form (see [[PackedRoute]]); all lookups are done on it. Road segment
+ * objects are created on demand, so changing them does not change the route; road signs and names must be set before
+ * the route is created.
  *
- * @param parts The road segments this route consists of. Strictly ordered.
+ * @param packed The road segments this route consists of. Strictly ordered.
+ * @param knownBends The bends of the route, if they were already found while building it (see [[RouteFactory]])
  */
-class Route(val parts: List[RoadSegment]) {
+class Route(val packed: PackedRoute, knownBends: Option[List[RoadBend]]) {
+
+	def this(parts: List[RoadSegment], knownBends: Option[List[RoadBend]]) =
+		this(PackedRoute.fromSegments(parts.iterator), knownBends)
+
+	def this(parts: List[RoadSegment]) = this(parts, None)
 
 	/**
 	 * The identifier for this route, used to track it across requests.
@@ -17,53 +27,104 @@ class Route(val parts: List[RoadSegment]) {
 	 */
 	val identifier: String = java.lang.Long.toHexString(new java.util.Date().getTime)
 
+	/**
+	 * The distance from the start of the route to the start of each segment; the last entry is the length of the route.
+	 */
+	def offsets: Array[Double] = packed.offsets
+
+	/**
+	 * The allowed velocities along this route; built on first access, so routes shared by several simulations only
+	 * build it once.
+	 */
+	lazy val velocityProfile = new VelocityProfile(this)
+
+	/**
+	 * The bends along this route, see [[RoadBendAnalyzer.findBends()]].
+	 */
+	lazy val bends: List[RoadBend] = knownBends.getOrElse(new RoadBendAnalyzer().findBends(packed))
+
 	/**
 	 * The length of the road
 	 *
 	 * @return
 	 */
-	def length: Double = getRoadSegments.map(_.length).sum
+	def length: Double = packed.length
+
+	/**
+	 * Creates the road segments of this route. This builds all segments anew on each call, so only use it where the
+	 * whole list is needed once; lookups should be done on [[packed]].
+	 */
+	def parts: List[RoadSegment] = packed.roadSegments.toList
+
+	/**
+	 * @return All parts of the route that are road segments; see [[parts]]
+	 */
+	def getRoadSegments: List[RoadSegment] = parts
+
+	/**
+	 * Finds the segment the given position lies on. A position exactly at the end of a segment belongs to that segment.
+	 *
+	 * @param position The distance from the start of the route in meters
+	 * @return The index of the segment in [[packed]]
+	 */
+	def segmentIndexAt(position: Double): Int = packed.segmentIndexAt(position)
+
+	def getSegmentForPosition(position: Double): RoadSegment = packed.toRoadSegment(segmentIndexAt(position))
 
 	/**
-	 * @return All parts of the route that are road segments
+	 * Finds the segments following the given segment that start before the given distance from the start of the route.
+	 *
+	 * @param afterIndex The index of the segment after which to start
+	 * @param until The distance from the start of the route
+	 * @return The index after the last of these segments; afterIndex + 1 if there is none
 	 */
-	def getRoadSegments: List[RoadSegment] = {
-		parts.collect { case b:RoadSegment => b }
+	def endOfSegmentsStartingBefore(afterIndex: Int, until: Double): Int = {
+		Math.max(afterIndex + 1, Math.min(firstOffsetAtOrAfter(until, afterIndex + 1), packed.size))
 	}
 
-	def getSegmentForPosition(position: Double): RoadSegment = {
-		if (position > length) {
-			throw new IllegalArgumentException("Position " + position + " is after end of road")
-		}
+	/**
+	 * Returns the distance from the given position to the end of the next segment with a road sign of the given type
+	 * (road signs are always placed at the end of a segment).
+	 *
+	 * @return The distance in meters, or None if there is no such sign after the position
+	 */
+	def distanceToNextSign(position: Double, sign: Class[_ <: RoadSign]): Option[Double] = {
+		val signIndex = packed.nextSignIndex(segmentIndexAt(position), sign)
+		if (signIndex < 0) None else Some(offsets(signIndex + 1) - position)
+	}
 
-		var iterationPosition = 0.0
-		for (segment <- getRoadSegments) {
-			iterationPosition += segment.length
-			if (iterationPosition >= position) {
-				return segment
-			}
+	/**
+	 * Finds the first index in [[offsets]], starting at the given index, whose offset is at or after the position.
+	 */
+	private def firstOffsetAtOrAfter(position: Double, from: Int): Int = {
+		val offsets = packed.offsets
+		var low = from
+		var high = offsets.length
+		while (low < high) {
+			val middle = (low + high) >>> 1
+			if (offsets(middle) < position) low = middle + 1 else high = middle
 		}
-		getRoadSegments.reverse.head // TODO can this be done in a simpler fashion?
+		low
 	}
 
 	/**
 	 * Returns a list of (x, y) pairs for the road segment points.
 	 */
 	def roadSegmentCoordinates: List[(Double, Double)] = {
-		val coordinates = getRoadSegments map ((s: RoadSegment) => {
+		val coordinates = packed.segments.map(s => {
 			val angle = s.orientation
 			val x = Math.cos(angle) * s.length
 			val y = Math.sin(angle) * s.length
 			new Tuple2(x, y)
-		})
+		}).toList
 
 		new Tuple2(0.0, 0.0) :: coordinates
 	}
 
 	def getPointList: PointList = {
 		val list = new PointList()
-		list.add(parts.head.start)
-		parts.foreach(part => list.add(part.end))
+		list.add(packed.segment(0).start)
+		packed.segments.foreach(segment => list.add(segment.end))
 		list
 	}
 
@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2015 Andreas Wolf
+ *
+ * See te LICENSE file in the project root for further copyright information.
+ */
+
+package info.andreaswolf.roadhopper.road
+
+import java.util.function.Supplier
+
+import com.graphhopper.GHResponse
+import com.graphhopper.util.shapes.GHPoint
+import info.andreaswolf.roadhopper.RoadHopper
+import info.andreaswolf.roadhopper.persistence.{EvictingRepository, RepositoryStatistics}
+import org.slf4j.LoggerFactory
+
+
+/**
+ * The options that influence how a route is built from a list of points.
+ *
+ * @param simplify If consecutive segments with (almost) the same orientation should be merged
+ * @param markTurns If turns should be marked with [[RoadBendAnalyzer]]
+ */
+case class RouteOptions(vehicle: String = "car", weighting: String = "fastest", algorithm: String = "",
+                        simplify: Boolean = true, markTurns: Boolean = false)
+
+
+/**
+ * Caches the routes built for a list of points, so the same route is only calculated and processed once.
+ * <p/>
+ * The points are quantized to the given precision (in degrees; the default is roughly one meter), so points that
+ * were e.g. clicked at almost the same position share one route. The least recently used routes are evicted if there
+ * are more than `maxEntries` of them. All routes are dropped when GraphHopper loads a different graph.
+ * <p/>
+ * Note that the same route object is returned for all requests that hit the cache; routes must therefore not be
+ * modified after they have been built.
+ * <p/>
+ * Together with a route, GraphHopper’s response for it (with the instructions and the travel time) can be cached, see
+ * [[getRouteWithResponse()]].
+ */
+class RouteCache(val hopper: RoadHopper, val maxEntries: Int = 1000, val precision: Double = 1e-5) {
+
+	val log = LoggerFactory.getLogger(this.getClass)
+
+	private class CachedRoute(val route: Route) {
+		/** GraphHopper’s response for the route, with the key of the options it was calculated with */
+		@volatile var response: Option[(String, GHResponse)] = None
+	}
+
+	private val routes = new EvictingRepository[CachedRoute](maxEntries)
+
+	/** The graph storage the cached routes were built on */
+	@volatile
+	private var graph: AnyRef = null
+
+
+	/**
+	 * Returns the route for the given points, building it if it is not cached yet.
+	 */
+	def getRoute(points: List[GHPoint], options: RouteOptions): Route = {
+		checkGraph()
+
+		val key = cacheKey(points, options)
+		routes.get(key).getOrElse(buildRoute(key, points, options)).route
+	}
+
+	/**
+	 * Returns the route for the given points together with GraphHopper’s response for them. Both are only calculated if
+	 * they are not cached yet; the response is calculated again if it was cached for a different response key.
+	 * <p/>
+	 * If the response contains errors, it is not cached and no route is built.
+	 *
+	 * @param responseKey The options of the GraphHopper request that are not part of the route options, e.g. the locale
+	 */
+	def getRouteWithResponse(points: List[GHPoint], options: RouteOptions, responseKey: String,
+	                         calculateResponse: Supplier[GHResponse]): (Option[Route], GHResponse) = {
+		checkGraph()
+
+		val key = cacheKey(points, options)
+		routes.get(key) match {
+			case Some(cached) => cached.response match {
+				case Some((`responseKey`, response)) => (Some(cached.route), response)
+				case _ =>
+					val response = calculateResponse.get()
+					if (!response.hasErrors) {
+						cached.response = Some((responseKey, response))
+					}
+					(Some(cached.route), response)
+			}
+			case None =>
+				val response = calculateResponse.get()
+				if (response.hasErrors) {
+					return (None, response)
+				}
+				val cached = buildRoute(key, points, options)
+				cached.response = Some((responseKey, response))
+				(Some(cached.route), response)
+		}
+	}
+
+	private def buildRoute(key: String, points: List[GHPoint], options: RouteOptions): CachedRoute = {
+		// concurrent requests for the same route might both build it; this is cheaper than blocking all requests
+		val cached = new CachedRoute(new RouteFactory(hopper).getRoute(points, options))
+		routes.put(key, cached)
+		cached
+	}
+
+	def statistics: RepositoryStatistics = routes.statistics
+
+	def cacheKey(points: List[GHPoint], options: RouteOptions): String = {
+		val quantizedPoints = points.map(point => s"${quantize(point.lat)},${quantize(point.lon)}").mkString(";")
+		s"$quantizedPoints|${options.vehicle}|${options.weighting}|${options.algorithm}|${options.simplify}|${options.markTurns}"
+	}
+
+	private def quantize(coordinate: Double): Long = Math.round(coordinate / precision)
+
+	private def checkGraph(): Unit = {
+		val currentGraph = hopper.getGraphHopperStorage
+		if (currentGraph ne graph) {
+			synchronized {
+				if (currentGraph ne graph) {
+					if (graph != null) {
+						log.info("Graph was reloaded, dropping all cached routes")
+					}
+					routes.clear()
+					graph = currentGraph
+				}
+			}
+		}
+	}
+
+}
@@ -1,6 +1,6 @@
 package info.andreaswolf.roadhopper.road
 
-import com.graphhopper.routing.Path
+import com.graphhopper.routing.{Path, QueryGraph}
 import com.graphhopper.storage.NodeAccess
 import com.graphhopper.storage.extensions.RoadSignEncoder
 import com.graphhopper.util.shapes.{GHPoint, GHPoint3D}
@@ -15,34 +15,87 @@ import scala.collection.mutable.ListBuffer
 
 object RouteFactory {
 
-	def simplifyRoadSegments(parts: List[RoadSegment], delta: Double): ListBuffer[RoadSegment] = {
-		val segments = new ListBuffer[RoadSegment]
-		// as read access to the head of a list is more convenient, we always insert elements at the beginning -> the result
-		// will be inverted
-		segments prepend parts.head
-		for (currentSegment <- parts.tail) {
-			// TODO this code part is really ugly – check if we can improve this
-			val lastSegment: RoadSegment = segments.head
-			// make sure we have a small change in orientation and the last segment has no road sign at the end
-			if (lastSegment.roadSign.isEmpty && Math.abs(
-					(lastSegment.orientation - currentSegment.orientation).toDegrees
-				) < delta && lastSegment.speedLimit == currentSegment.speedLimit) {
-
-				val newSegment: RoadSegment = new RoadSegment(
-					lastSegment.start, currentSegment.end, currentSegment.speedLimit
-				)
-				newSegment.setRoadSign(currentSegment.roadSign)
-				newSegment.setRoadName(currentSegment.roadName)
-				segments update(0, newSegment)
-			} else {
-				segments prepend currentSegment
+	/**
+	 * Simplifies the segments and marks the turns as defined by the options, and reads the result into a route.
+	 */
+	def buildRoute(segments: Iterator[RoadSegment], options: RouteOptions): Route = {
+		var processedSegments = segments
+		if (options.simplify) {
+			processedSegments = simplifyRoadSegments(processedSegments, 2.0)
+		}
+		if (options.markTurns) {
+			processedSegments = new RoadBendAnalyzer().markTurns(processedSegments)
+		}
+		buildRoute(processedSegments)
+	}
+
+	/**
+	 * Packs the segments into a route while they are read, finding the bends along the way.
+	 */
+	def buildRoute(segments: Iterator[RoadSegment]): Route = {
+		val analyzer = new RoadBendAnalyzer
+		val bendDetector = new analyzer.BendDetector
+		val packed = new PackedRoute.Builder
+		segments.foreach(segment => {
+			bendDetector.add(segment)
+			packed.add(segment)
+		})
+		new Route(packed.result(), Some(bendDetector.bends))
+	}
+
+	/**
+	 * Merges consecutive segments with (almost) the same orientation and speed limit. Segments that end at a road sign
+	 * are not merged with the following segment.
+	 *
+	 * @param delta The maximum difference of the orientation in degrees
+	 */
+	def simplifyRoadSegments(parts: List[RoadSegment], delta: Double): List[RoadSegment] = {
+		simplifyRoadSegments(parts.iterator, delta).toList
+	}
+
+	/**
+	 * Merges the segments like [[simplifyRoadSegments()]], while they are read; only the next segment is looked ahead.
+	 */
+	def simplifyRoadSegments(parts: Iterator[RoadSegment], delta: Double): Iterator[RoadSegment] = {
+		val segments = parts.buffered
+		new Iterator[RoadSegment] {
+			override def hasNext: Boolean = segments.hasNext
+
+			override def next(): RoadSegment = {
+				var lastSegment = segments.next()
+				while (segments.hasNext && canMerge(lastSegment, segments.head, delta)) {
+					val currentSegment = segments.next()
+					val newSegment: RoadSegment = new RoadSegment(
+						lastSegment.start, currentSegment.end, currentSegment.speedLimit
+					)
+					newSegment.setRoadSign(currentSegment.roadSign)
+					newSegment.setRoadName(currentSegment.roadName)
+					lastSegment = newSegment
+				}
+				lastSegment
 			}
 		}
-		segments
+	}
+
+	/**
+	 * Checks for a small change in orientation and that the last segment has no road sign at the end.
+	 */
+	private def canMerge(lastSegment: RoadSegment, currentSegment: RoadSegment, delta: Double): Boolean = {
+		lastSegment.roadSign.isEmpty && Math.abs(
+			(lastSegment.orientation - currentSegment.orientation).toDegrees
+		) < delta && lastSegment.speedLimit == currentSegment.speedLimit
 	}
 
 }
 
+/**
+ * Builds routes from the paths calculated by GraphHopper.
+ * <p/>
+ * All processing steps (creating the segments from the way geometry, adding the elevation, simplifying, marking turns
+ * and finding bends) are chained as iterators, so the segments pass through all steps in one go. Each step only looks
+ * ahead by one segment (or one batch of segments for the elevation lookup); only the packed form of the final segments
+ * is stored.
+ */
 class RouteFactory(val hopper: RoadHopper) {
 
 	val log = LoggerFactory.getLogger("RouteFactory")
@@ -50,72 +103,124 @@ class RouteFactory(val hopper: RoadHopper) {
 	val calculator = new RouteCalculator(hopper)
 	calculator.setLocale("de")
 
+	/** The number of segments for which the elevation is looked up at once */
+	val elevationBatchSize = 1024
+
+	/**
+	 * Calculates the route between the given points and processes it as defined by the options.
+	 */
+	def getRoute(points: List[GHPoint], options: RouteOptions): Route = {
+		calculator.setWeighting(options.weighting).setAlgorithm(options.algorithm)
+		val paths = calculator.getRoute(options.vehicle, points.asJava)
+
+		RouteFactory.buildRoute(segmentsFromPaths(paths.getPaths.asScala.toList, paths.getQueryGraph, options.vehicle),
+			options)
+	}
+
 	def getRoute(points: List[GHPoint]): Route = {
-		val paths = calculator.getPaths("car", points.asJava)
+		val route = calculator.getRoute("car", points.asJava)
+
+		createRouteFromPaths(route.getPaths.asScala.toList, route.getQueryGraph)
+	}
 
-		createRouteFromPaths(paths.asScala.toList)
+	/**
+	 * Creates the road segments for the given paths.
+	 *
+	 * @param queryGraph The query graph the paths were calculated on; it contains the virtual edges at the start and end
+	 *                   of each path
+	 */
+	def createRouteFromPaths(paths: List[Path], queryGraph: QueryGraph): Route = {
+		RouteFactory.buildRoute(segmentsFromPaths(paths, queryGraph))
 	}
 
-	def createRouteFromPaths(paths: List[Path]): Route = {
+	/**
+	 * Creates the road segments for the given paths while they are read, including the elevation if the graph does not
+	 * contain it.
+	 *
+	 * @param vehicle The vehicle the paths were calculated for; the speed limits are read from its flag encoder
+	 */
+	def segmentsFromPaths(paths: List[Path], queryGraph: QueryGraph, vehicle: String = "car"): Iterator[RoadSegment] = {
 		import scala.collection.JavaConversions._
-		val segments = new ListBuffer[RoadSegment]
 		var lastPoint: Option[GHPoint3D] = None
+		// the last segment is held back until the next edge is read, as the road sign at the end of an edge is set on
+		// the last segment created so far
+		var lastSegment: Option[RoadSegment] = None
 
 		val signEncoder: RoadSignEncoder = new RoadSignEncoder(hopper.getGraphHopperStorage)
-		// TODO make the encoder name configurable
-		val flagEncoder = hopper.getGraphHopperStorage.getEncodingManager.getEncoder("car")
+		val flagEncoder = hopper.getGraphHopperStorage.getEncodingManager.getEncoder(vehicle)
 		val nodeAccess: NodeAccess = hopper.getGraphHopperStorage.getNodeAccess
 
-		for (i <- paths.indices) {
-			// NOTE the first and last edges might be incomplete, as we enter the road through it! -> conclusion: do not use
-			// the edges for any calculations, but instead rely on the points
-			for (edge <- paths.get(i).calcEdges()) {
-				val flags = hopper.getQueryGraph.getEdgeIteratorState(edge.getEdge, edge.getAdjNode).getFlags
-				val maximumSpeed = flagEncoder.getSpeed(flags) / 3.6 // speed is stored in km/h, but we need m/s
-				log.debug(f"Found edge properties for edge ${edge.getEdge} with max speed $maximumSpeed%.2f m/s")
-
-				// TODO move creating the road segments for one edge to a separate method
-				for (point <- edge.fetchWayGeometry(3)) {
-					breakable {
-						if (lastPoint.isDefined && point.equals(lastPoint.get)) {
-							break()
-						}
-
-						lastPoint.foreach(p => {
-							segments append new RoadSegmentBuilder()
-								.start(p.getLat, p.getLon, p.getEle)
-								.end(point.getLat, point.getLon, point.getEle)
-								.speedLimit(maximumSpeed)
-								.name(edge.getName)
-								.build
-						})
-						lastPoint = Some(point)
+		// NOTE the first and last edges might be incomplete, as we enter the road through it! -> conclusion: do not use
+		// the edges for any calculations, but instead rely on the points
+		val edgeSegments = paths.iterator.flatMap(_.calcEdges().asScala).flatMap(edge => {
+			val segments = new ListBuffer[RoadSegment]
+			lastSegment.foreach(segments.append(_))
+
+			val flags = queryGraph.getEdgeIteratorState(edge.getEdge, edge.getAdjNode).getFlags
+			val maximumSpeed = flagEncoder.getSpeed(flags) / 3.6 // speed is stored in km/h, but we need m/s
+			log.debug(f"Found edge properties for edge ${edge.getEdge} with max speed $maximumSpeed%.2f m/s")
+
+			// TODO move creating the road segments for one edge to a separate method
+			for (point <- edge.fetchWayGeometry(3)) {
+				breakable {
+					if (lastPoint.isDefined && point.equals(lastPoint.get)) {
+						break()
 					}
-				}
-				val endNodeId: Int = edge.getAdjNode
-				if (signEncoder.hasTrafficLight(endNodeId)) {
-					segments.last.setRoadSign(new TrafficLight(endNodeId,
-						new GHPoint3D(nodeAccess.getLat(endNodeId), nodeAccess.getLon(endNodeId), 0.0)
-					))
-				} else if (signEncoder.hasStopSign(endNodeId)) {
-					segments.last.setRoadSign(new StopSign(endNodeId,
-						new GHPoint3D(nodeAccess.getLat(endNodeId), nodeAccess.getLon(endNodeId), 0.0)
-					))
+
+					lastPoint.foreach(p => {
+						segments append new RoadSegmentBuilder()
+							.start(p.getLat, p.getLon, p.getEle)
+							.end(point.getLat, point.getLon, point.getEle)
+							.speedLimit(maximumSpeed)
+							.name(edge.getName)
+							.build
+					})
+					lastPoint = Some(point)
 				}
 			}
-		}
+			val endNodeId: Int = edge.getAdjNode
+			if (signEncoder.hasTrafficLight(endNodeId)) {
+				segments.lastOption.foreach(_.setRoadSign(new TrafficLight(endNodeId,
+					new GHPoint3D(nodeAccess.getLat(endNodeId), nodeAccess.getLon(endNodeId), 0.0)
+				)))
+			} else if (signEncoder.hasStopSign(endNodeId)) {
+				segments.lastOption.foreach(_.setRoadSign(new StopSign(endNodeId,
+					new GHPoint3D(nodeAccess.getLat(endNodeId), nodeAccess.getLon(endNodeId), 0.0)
+				)))
+			}
 
-		new Route(segments.result())
-	}
+			lastSegment = segments.lastOption
+			segments.dropRight(1)
+		}) ++ lastSegment
 
-	def simplify(parts: List[RoadSegment], delta: Double = 2.0): Route = {
-		if (parts.isEmpty) {
-			return new Route(List())
+		if (hopper.hasElevation) {
+			edgeSegments
+		} else {
+			edgeSegments.grouped(elevationBatchSize).flatMap(batch => withElevation(batch.toList))
 		}
+	}
 
-		val segments: ListBuffer[RoadSegment] = RouteFactory.simplifyRoadSegments(parts, delta)
+	/**
+	 * Adds the elevation to the start and end points of the given segments. This is only necessary if the graph was
+	 * imported without elevation data.
+	 */
+	def withElevation(segments: List[RoadSegment]): List[RoadSegment] = {
+		val elevations = RoadSegment.elevationCache.getEle(segments.flatMap(segment => List(segment.start, segment.end)))
+
+		segments.zipWithIndex.map({ case (segment, i) =>
+			val newSegment = new RoadSegment(
+				new GHPoint3D(segment.start.lat, segment.start.lon, elevations(2 * i)),
+				new GHPoint3D(segment.end.lat, segment.end.lon, elevations(2 * i + 1)),
+				segment.speedLimit
+			)
+			newSegment.setRoadSign(segment.roadSign)
+			newSegment.setRoadName(segment.roadName)
+			newSegment
+		})
+	}
 
-		new Route(segments.result().reverse)
+	def simplify(parts: List[RoadSegment], delta: Double = 2.0): Route = {
+		RouteFactory.buildRoute(RouteFactory.simplifyRoadSegments(parts.iterator, delta))
 	}
 
 }
@@ -6,21 +6,25 @@
 
 package info.andreaswolf.roadhopper.road
 
+import info.andreaswolf.roadhopper.persistence.{EvictingRepository, RepositoryStatistics}
 import org.slf4j.LoggerFactory
 
-import scala.collection.mutable
-
 
 /**
  * In-memory storage for routes. This is used to keep the routing results between calls to the different end points.
  *
- * Each route has an automatically assigned ID that can be used to
+ * Each route has an automatically assigned ID that can be used to fetch it again. The least recently used routes are
+ * evicted if there are more than `maxEntries` routes, if all routes together have more than `maxParts` road parts,
+ * or if a route was not requested for `timeToLive` milliseconds.
  */
-class RouteRepository {
+class RouteRepository(val maxEntries: Int = 1000, val maxParts: Long = 1000000L,
+                      val timeToLive: Long = 60 * 60 * 1000L) {
 
 	val log = LoggerFactory.getLogger(this.getClass)
 
-	private val routes = new mutable.HashMap[String, Route]()
+	private val routes = new EvictingRepository[Route](maxEntries, maxParts, timeToLive,
+		weigher = _.packed.size.toLong
+	)
 
 
 	def add(route: Route) = {
@@ -28,8 +32,10 @@ class RouteRepository {
 		log.debug(s"Added route with id ${route.identifier}")
 	}
 
-	def getByIdentifier(id: String) = routes.get(id)
+	def getByIdentifier(id: String): Option[Route] = routes.get(id)
 
 	def has(id: String) = routes.contains(id)
 
+	def statistics: RepositoryStatistics = routes.statistics
+
 }
@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2015 Andreas Wolf
+ *
+ * See te LICENSE file in the project root for further copyright information.
+ */
+
+package info.andreaswolf.roadhopper.road
+
+
+/**
+ * The highest velocity allowed on each segment of a route, prepared once for fast queries while simulating.
+ * <p/>
+ * The allowed velocity of a segment is its speed limit, lowered to the velocity that keeps the lateral acceleration
+ * below `maximumLateralAcceleration` if the segment is part of a bend (see [[RoadBendAnalyzer.findBends()]]). Segments
+ * without a speed limit do not restrict the velocity.
+ * <p/>
+ * The minimum within a look-ahead distance is found with a segment tree over the allowed velocities, so each query
+ * takes O(log n) for a route with n segments.
+ *
+ * @param maximumLateralAcceleration The lateral acceleration a driver accepts in bends, in m/s²
+ */
+class VelocityProfile(val route: Route, val maximumLateralAcceleration: Double = 2.5) {
+
+	/**
+	 * The lowest velocity allowed in a bend; the bend radius is only a rough estimate, which may be far too small. This
+	 * is the same as the lowest velocity for turns, see [[Turn]].
+	 */
+	val minimumCurveVelocity = 7 / 3.6
+
+	private val segmentCount = route.packed.size
+
+	/** The allowed velocity per segment, in m/s */
+	val allowedVelocities: Array[Double] = {
+		val velocities = Array.tabulate(segmentCount)(i => {
+			val speedLimit = route.packed.speedLimit(i)
+			if (speedLimit > 0) speedLimit else Double.PositiveInfinity
+		})
+
+		if (segmentCount > 1) {
+			route.bends.foreach(bend => {
+				val first = bend.firstIndex
+				val curveVelocity = Math.max(Math.sqrt(maximumLateralAcceleration * bend.radius), minimumCurveVelocity)
+				(first until Math.min(first + bend.segmentCount, segmentCount)).foreach(i => {
+					velocities(i) = Math.min(velocities(i), curveVelocity)
+				})
+			})
+		}
+		velocities
+	}
+
+	/** The leaves of the tree start at index treeSize; node i has the children 2i and 2i+1 */
+	private val treeSize = Math.max(segmentCount, 1)
+
+	private val tree: Array[Double] = {
+		val tree = Array.fill(2 * treeSize)(Double.PositiveInfinity)
+		System.arraycopy(allowedVelocities, 0, tree, treeSize, segmentCount)
+		var i = treeSize - 1
+		while (i > 0) {
+			tree(i) = Math.min(tree(2 * i), tree(2 * i + 1))
+			i -= 1
+		}
+		tree
+	}
+
+	/**
+	 * The lowest allowed velocity on the segments from..until (exclusive).
+	 */
+	def minimumVelocity(from: Int, until: Int): Double = {
+		var result = Double.PositiveInfinity
+		var low = from + treeSize
+		var high = until + treeSize
+		while (low < high) {
+			if ((low & 1) == 1) {
+				result = Math.min(result, tree(low))
+				low += 1
+			}
+			if ((high & 1) == 1) {
+				high -= 1
+				result = Math.min(result, tree(high))
+			}
+			low >>>= 1
+			high >>>= 1
+		}
+		result
+	}
+
+	/**
+	 * The lowest allowed velocity on the road ahead of the given position. This covers the current segment and all
+	 * following segments that start within the look-ahead distance from the position.
+	 *
+	 * @param position The distance from the start of the route
+	 * @param lookAheadDistance The distance to look ahead from the position
+	 * @return The velocity in m/s, or infinity if none of the segments has a speed limit
+	 */
+	def minimumVelocityAhead(position: Double, lookAheadDistance: Double): Double = {
+		val current = route.segmentIndexAt(position)
+		val endOfCurrent = route.offsets(current + 1)
+		val lookAheadAfterCurrent = Math.max(0.0, lookAheadDistance - (endOfCurrent - position))
+		minimumVelocity(current, route.endOfSegmentsStartingBefore(current, endOfCurrent + lookAheadAfterCurrent))
+	}
+
+	/**
+	 * The distance from the given position to the next stop sign, see [[Route.distanceToNextSign()]].
+	 */
+	def distanceToStopSign(position: Double): Option[Double] = route.distanceToNextSign(position, classOf[StopSign])
+
+}
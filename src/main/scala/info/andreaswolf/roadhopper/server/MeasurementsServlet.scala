@@ -6,25 +6,33 @@
 
 package info.andreaswolf.roadhopper.server
 
+import java.io.Writer
 import javax.servlet.http.{HttpServletRequest, HttpServletResponse}
 
 import com.google.inject.Inject
-import com.graphhopper.GraphHopper
-import com.graphhopper.matching.{EdgeMatch, LocationIndexMatch, MapMatching}
-import com.graphhopper.storage.NodeAccess
-import com.graphhopper.storage.index.LocationIndexTree
-import com.graphhopper.util.{CmdArgs, GPXEntry}
-import info.andreaswolf.roadhopper.measurements.{DataPoint, Measurement, MeasurementRepository}
+import com.graphhopper.util.CmdArgs
+import info.andreaswolf.roadhopper.measurements.{DataPoint, MatchedRoad, MeasurementMatcher, MeasurementRepository}
 import info.andreaswolf.roadhopper.persistence.Database
-import org.json.{JSONString, JSONArray, JSONObject, JSONStringer}
+import org.json.{JSONObject, JSONWriter}
 import org.slf4j.LoggerFactory
 
-import scala.StringBuilder
 import scala.collection.mutable
-import scala.collection.mutable.ListBuffer
+import scala.util.{Failure, Success, Try}
 
 /**
  * Servlet to convert data from the measurements done by HEV to a format usable for display in the map.
+ * <p/>
+ * The points of a measurement can be limited to a time range with the parameters "from" and "to" (in milliseconds of
+ * the day, inclusive). For packed measurements, only the points in this range are decoded, and all points are written
+ * to the response as they are decoded. The parameter "step" sets the minimum time between two returned points (in
+ * milliseconds), to fetch long measurements at a lower resolution.
+ * <p/>
+ * Responses are compressed with gzip if the client accepts it.
+ * <p/>
+ * The matched road always covers the whole measurement. It is computed once per measurement by the
+ * [[MeasurementMatcher]] and then served from the database. The request does not wait for the matching: while it is
+ * running, the points are returned with status 202 and without the road, and the client should request the
+ * measurement again later.
  */
 class MeasurementsServlet extends BaseServlet {
 
@@ -35,7 +43,7 @@ class MeasurementsServlet extends BaseServlet {
 
 	@Inject var measurementRepository: MeasurementRepository = null
 
-	@Inject var hopper: GraphHopper = null
+	@Inject var matcher: MeasurementMatcher = null
 
 	val measurements = new mutable.TreeSet[DataPoint]()
 
@@ -62,136 +70,145 @@ class MeasurementsServlet extends BaseServlet {
 		log.debug(s"Output format: $format")
 
 		if (measurement == null) {
-			val json = new JSONStringer
 			val groups = measurementRepository.findAllGroups
-			json.`object`().key("files").`object`()
-
-			groups.sortBy(_.name).foreach({ g =>
-				json.key(g.name).array()
-				g.measurements.foreach({ m => json.value(m) })
-				json.endArray()
+			resp.setStatus(200)
+			resp.setContentType("application/json")
+			withWriter(req, resp)(writer => {
+				val json = new JSONWriter(writer)
+				json.`object`().key("files").`object`()
+
+				groups.sortBy(_.name).foreach({ g =>
+					json.key(g.name).array()
+					g.measurements.foreach({ m => json.value(m) })
+					json.endArray()
+				})
+
+				json.endObject().endObject()
 			})
-
-			json.endObject().endObject()
-
-			resp.getWriter.append(json.toString)
 		} else {
-			val foundMeasurements: List[Measurement] = measurementRepository.findByName(measurement)
-			if (foundMeasurements.isEmpty) {
-				writeError(resp, 404, s"Measurement $measurement not found")
+			val (from, to, step) = try {
+				(
+					Option(req.getParameter("from")).map(_.toLong).getOrElse(Long.MinValue),
+					Option(req.getParameter("to")).map(_.toLong).getOrElse(Long.MaxValue),
+					Option(req.getParameter("step")).map(_.toLong).getOrElse(0L)
+				)
+			} catch {
+				case e: NumberFormatException =>
+					writeError(resp, 400, s"Invalid time: ${e.getMessage}")
+					return
 			}
-			val measurementObject = foundMeasurements.head
 
+			// returns the points within a time range
+			val slice: (Long, Long) => Iterator[DataPoint] = measurementRepository.findPackedByName(measurement).headOption match {
+				case Some(packed) =>
+					packed.packedPoints.slice
+
+				case None =>
+					measurementRepository.findByName(measurement).headOption match {
+						case Some(measurementObject) =>
+							(from, to) => measurementObject.points.iterator.filter(point => point.date >= from && point.date <= to)
+						case None =>
+							writeError(resp, 404, s"Measurement $measurement not found")
+							return
+					}
+			}
+			val points = () => withStep(slice(from, to), step)
+
+			// the road is only looked up before the response is started, so the status can reflect the matching
+			val matchedRoad = format match {
+				case "json" => matcher.getMatchedRoad(measurement, () => slice(Long.MinValue, Long.MaxValue)).value
+				case "csv" => None
+			}
 			val exporter = format match {
-				case "json" => new JsonExporter()
+				case "json" => new JsonExporter(matchedRoad)
 				case "csv" => new CsvExporter()
 			}
+			resp.setStatus(if (format == "json" && matchedRoad.isEmpty) 202 else 200)
 			resp.setContentType(format match {
 				case "json" => "application/json"
 				case "csv" => "text/csv"
 			})
 
-			resp.getWriter.append(exporter.exportMeasurement(measurementObject))
+			withWriter(req, resp)(writer => exporter.exportMeasurement(points, writer))
 		}
+	}
 
-		resp.setStatus(200)
-		resp.setCharacterEncoding("UTF-8")
+	/**
+	 * Skips all points less than the given step after the previous returned point.
+	 */
+	def withStep(points: Iterator[DataPoint], step: Long): Iterator[DataPoint] = {
+		if (step <= 0) {
+			return points
+		}
+		var nextTime = Long.MinValue
+		points.filter(point => {
+			val include = point.date >= nextTime
+			if (include) {
+				nextTime = point.date + step
+			}
+			include
+		})
 	}
 
 
 
 	trait MeasurementExporter {
-		def exportMeasurement(measurementObject: Measurement): String
+		/**
+		 * Writes the given points to the writer.
+		 *
+		 * @param points Returns a new iterator over the points; may be called more than once
+		 */
+		def exportMeasurement(points: () => Iterator[DataPoint], writer: Writer): Unit
 	}
 
 
 
-	class JsonExporter extends MeasurementExporter {
+	/**
+	 * @param matchedRoad The result of the matching, or None if the measurement is still being matched
+	 */
+	class JsonExporter(matchedRoad: Option[Try[MatchedRoad]]) extends MeasurementExporter {
 
-		class JSONMeasurement(val measurement: Measurement) extends JSONString {
-			/**
-			 * Converts the data points of a given measurement to a JSON object with the time as the key.
-			 */
-			def toJSONString: String = {
-				val json = new JSONStringer().`object`()
-
-				for (datum <- measurement.points) { // .seq.sortWith((a, b) => a.date < b.date)
-					json.key(datum.date.toString).value(datum: JSONObject)
-				}
-				json.endObject()
-				json.toString
-			}
-		}
-
-		def exportMeasurement(measurementObject: Measurement): String = {
-			val json = new JSONStringer
+		def exportMeasurement(points: () => Iterator[DataPoint], writer: Writer): Unit = {
+			val json = new JSONWriter(writer)
 
 			json.`object`()
 
 			//json.key("duration").value(measurementObject.duration)
 
-			json.key("measurements").value(new JSONMeasurement(measurementObject))
-
-			try {
-				implicit val nodes: NodeAccess = hopper.getGraphHopperStorage.getNodeAccess
-				val matchedCoordinates: JSONArray = matchCoordinates(measurementObject): JSONArray
-				json.key("matchedRoad").value(matchedCoordinates)
-			} catch {
-				case e: RuntimeException =>
-					json.key("matchedRoad").value("Matching error: " + e.getMessage)
+			// the data points with the time as the key
+			json.key("measurements").`object`()
+			points().foreach(datum => json.key(datum.date.toString).value(datum: JSONObject))
+			json.endObject()
+
+			json.key("matchedRoad")
+			matchedRoad match {
+				case Some(Success(road)) if road.isMatched =>
+					// a list of [lon,lat] pairs, fit for GeoJSON usage
+					json.array()
+					road.coordinateIterator.foreach({ case (lon, lat) => json.array().value(lon).value(lat).endArray() })
+					json.endArray()
+				case Some(Success(road)) =>
+					json.value("Matching error: " + road.error)
+				case Some(Failure(e)) =>
+					json.value("Matching error: " + e.getMessage)
+				case None =>
+					json.value("Matching error: the measurement is still being matched")
 			}
 
-			json.endObject().toString
-		}
-
-		/**
-		 * Converts a bunch of edges into a continuous list of coordinates fit for GeoJSON usage.
-		 *
-		 * @return A list of [lon,lat] pairs
-		 */
-		implicit def convertCoordinatesToJSON(edges: List[EdgeMatch])(implicit nodes: NodeAccess): JSONArray = {
-			val result = new JSONArray()
-			if (edges.isEmpty) {
-				return result
-			}
-
-			val node: Int = edges.head.getEdgeState.getBaseNode
-			result.put(new JSONArray().put(nodes.getLon(node)).put(nodes.getLat(node)))
-			edges.foreach(edge => {
-				// add the
-				val wayNodes = edge.getEdgeState.fetchWayGeometry(2)
-				for (i <- 0 to wayNodes.size() - 1) {
-					result.put(new JSONArray().put(wayNodes.getLon(i)).put(wayNodes.getLat(i)))
-				}
-			})
-
-			result
-		}
-
-		def matchCoordinates(measurement: Measurement): List[EdgeMatch] = {
-			val graph = hopper.getGraphHopperStorage
-			val locationIndex = new LocationIndexMatch(graph, hopper.getLocationIndex.asInstanceOf[LocationIndexTree])
-			val mapMatching = new MapMatching(graph, locationIndex, hopper.getEncodingManager.getEncoder("car"))
-
-			val gpxPointsBuffer = new ListBuffer[GPXEntry]()
-			measurement.points.foreach(dp => gpxPointsBuffer.append(new GPXEntry(dp.position, dp.date)))
-
-			import scala.collection.JavaConversions._
-			mapMatching.doWork(gpxPointsBuffer.toList).getEdgeMatches.toList
+			json.endObject()
 		}
 	}
 
 
 
 	class CsvExporter extends MeasurementExporter {
-		def exportMeasurement(measurementObject: Measurement): String = {
-			val output = new StringBuilder()
-
-			output.append("time,v\n")
-			val startTime = measurementObject.points.head.date
-			measurementObject.points.foreach(point => output.append(s"${point.date - startTime},${point.velocity}\n"))
-
-			output.toString()
+		def exportMeasurement(points: () => Iterator[DataPoint], writer: Writer): Unit = {
+			writer.write("time,v\n")
+			val iterator = points().buffered
+			if (iterator.hasNext) {
+				val startTime = iterator.head.date
+				iterator.foreach(point => writer.write(s"${point.date - startTime},${point.velocity}\n"))
+			}
 		}
 	}
 
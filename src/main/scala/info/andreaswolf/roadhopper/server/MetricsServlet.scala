@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2015 Andreas Wolf
+ *
+ * See te LICENSE file in the project root for further copyright information.
+ */
+
+package info.andreaswolf.roadhopper.server
+
+import javax.servlet.http.{HttpServletRequest, HttpServletResponse}
+
+import com.google.inject.Inject
+import info.andreaswolf.roadhopper.measurements.MeasurementMatcher
+import info.andreaswolf.roadhopper.metrics.{Histogram, Metrics}
+import info.andreaswolf.roadhopper.persistence.RepositoryStatistics
+import info.andreaswolf.roadhopper.road.{RouteCache, RouteRepository}
+import info.andreaswolf.roadhopper.simulation.{Simulation, SimulationRepository}
+import org.json.JSONWriter
+
+
+/**
+ * Reports the runtime metrics of the server as JSON:
+ * <p/>
+ * <ul>
+ * <li>"simulations": the number of stored and running simulations and live actor systems, and for each stored
+ * simulation its simulated time and speed (simulated time per wall-clock time)</li>
+ * <li>"repositories": the size, weight, hits, misses and evictions of the route and simulation repositories and the
+ * route cache, and the number of running map matchings</li>
+ * <li>"processes": the invocations and their mean and total duration (in microseconds) per process or component class,
+ * over all simulations</li>
+ * <li>"histograms": e.g. the delta cycles per time step ("simulation.deltaCyclesPerStep") and the request latency per
+ * endpoint in microseconds ("http./roadhopper/route" etc., see [[RequestMetricsFilter]])</li>
+ * <li>"counters": all other counters, e.g. the requests rejected by a [[RequestExecutor]]</li>
+ * <li>"gauges": current values, e.g. the number of queued requests per [[RequestExecutor]]</li>
+ * </ul>
+ * Percentiles of histograms are only accurate to a factor of two, see [[Histogram]].
+ */
+class MetricsServlet extends BaseServlet {
+
+	@Inject val simulationRepository: SimulationRepository = null
+
+	@Inject val routeRepository: RouteRepository = null
+
+	@Inject val routeCache: RouteCache = null
+
+	@Inject val measurementMatcher: MeasurementMatcher = null
+
+	override def doGet(req: HttpServletRequest, resp: HttpServletResponse): Unit = {
+		resp.setStatus(200)
+		resp.setContentType("application/json")
+		resp.setHeader("Cache-Control", "no-cache")
+
+		withWriter(req, resp)(writer => {
+			val json = new JSONWriter(writer)
+			json.`object`()
+
+			writeSimulations(json, simulationRepository.all)
+
+			json.key("repositories").`object`()
+			writeStatistics(json.key("routes"), routeRepository.statistics)
+			writeStatistics(json.key("simulations"), simulationRepository.statistics)
+			writeStatistics(json.key("routeCache"), routeCache.statistics)
+			json.key("runningMatchings").value(measurementMatcher.runningCount)
+			json.endObject()
+
+			json.key("processes").`object`()
+			Metrics.allTimers.toList.sortBy(_._1).foreach({ case (name, timer) =>
+				json.key(name.stripPrefix("process.")).`object`()
+					.key("invocations").value(timer.invocations)
+					.key("meanTime").value(timer.meanNanos / 1000)
+					.key("totalTime").value(timer.totalNanos / 1000)
+					.endObject()
+			})
+			json.endObject()
+
+			json.key("histograms").`object`()
+			Metrics.allHistograms.toList.sortBy(_._1).foreach({ case (name, histogram) =>
+				writeHistogram(json.key(name), histogram)
+			})
+			json.endObject()
+
+			json.key("counters").`object`()
+			Metrics.allCounters.toList.sortBy(_._1).foreach({ case (name, counter) => json.key(name).value(counter.get) })
+			json.endObject()
+
+			json.key("gauges").`object`()
+			Metrics.allGauges.toList.sortBy(_._1).foreach({ case (name, gauge) => json.key(name).value(gauge.get) })
+			json.endObject()
+
+			json.endObject()
+		})
+	}
+
+	def writeSimulations(json: JSONWriter, simulations: List[Simulation]): Unit = {
+		json.key("simulations").`object`()
+			.key("stored").value(simulations.size)
+			.key("running").value(simulations.count(simulation => simulation.startTime > 0 && !simulation.isFinished))
+			.key("liveActorSystems").value(Metrics.counter(Simulation.liveActorSystemsMetric).get)
+
+		json.key("list").array()
+		simulations.foreach(simulation => {
+			json.`object`()
+				.key("id").value(simulation.identifier)
+				.key("status").value(if (simulation.isFinished) "finished" else "running")
+				.key("simulatedTime").value(simulation.simulatedTime)
+				.key("speed").value(simulation.speed)
+				.endObject()
+		})
+		json.endArray()
+
+		json.endObject()
+	}
+
+	def writeStatistics(json: JSONWriter, statistics: RepositoryStatistics): Unit = {
+		json.`object`()
+			.key("size").value(statistics.size)
+			.key("weight").value(statistics.weight)
+			.key("hits").value(statistics.hits)
+			.key("misses").value(statistics.misses)
+			.key("hitRate").value(statistics.hitRate)
+			.key("evictions").value(statistics.evictions)
+			.endObject()
+	}
+
+	def writeHistogram(json: JSONWriter, histogram: Histogram): Unit = {
+		json.`object`()
+			.key("count").value(histogram.count)
+			.key("mean").value(histogram.mean)
+			.key("p50").value(histogram.percentile(0.5))
+			.key("p95").value(histogram.percentile(0.95))
+			.key("p99").value(histogram.percentile(0.99))
+			.key("max").value(histogram.maximum)
+			.endObject()
+	}
+
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright (c) 2015 Andreas Wolf
+ *
+ * See te LICENSE file in the project root for further copyright information.
+ */
+
+package info.andreaswolf.roadhopper.server
+
+import java.util.concurrent.TimeoutException
+import javax.servlet.http.{HttpServletRequest, HttpServletResponse}
+
+import com.google.inject.Inject
+import com.graphhopper.http.GraphHopperServlet
+import info.andreaswolf.roadhopper.road.{Route, RouteCache, RouteOptions, RouteRepository}
+import info.andreaswolf.roadhopper.simulation.distributed.DistributedSweep
+import info.andreaswolf.roadhopper.simulation.sweep.{ParameterGrid, ParameterSweep, SweepResult}
+import info.andreaswolf.roadhopper.simulation.vehicle.VehicleParameters
+import org.json.{JSONStringer, JSONWriter}
+
+import scala.collection.convert.decorateAll._
+import scala.concurrent.Await
+import scala.concurrent.duration._
+
+
+/**
+ * HTTP endpoint to run a simulation with many different parameter sets at once.
+ * <p/>
+ * The route is passed like for a single simulation (either by its id or as points). Each parameter of the grid can be
+ * given as a comma-separated list of values: gasPedalGain, brakePedalGain, proportionalGain, integratorGain,
+ * differentiatorGain and vehicle (one of "compact", "ampera"). All combinations of the values are simulated; the
+ * response contains a summary for each of them.
+ * <p/>
+ * With "forkAt" (a simulation time in milliseconds), the journey is first simulated with the default parameters up to
+ * this time, and all variants continue from there. This way, only the behaviour after this point is compared, and
+ * the common part is simulated only once.
+ * <p/>
+ * With "distributed=true", the variants are run on the worker JVMs connected to the [[DistributedSweep]] coordinator
+ * instead of the local threads; this cannot be combined with "forkAt".
+ * <p/>
+ * As a request waits until all variants are simulated, the requests are handled on their own bounded executor (see
+ * [[RequestExecutor]]), so long sweeps cannot take up the threads of the web server.
+ */
+class ParameterSweepServlet extends GraphHopperServlet {
+
+	@Inject val routeRepository: RouteRepository = null
+
+	@Inject val routeCache: RouteCache = null
+
+	@Inject val parameterSweep: ParameterSweep = null
+
+	@Inject val distributedSweep: DistributedSweep = null
+
+	@Inject val executors: RequestExecutors = null
+
+	/** The maximum number of variants for one request */
+	val maximumVariants = 1000
+
+	/** The maximum time to wait for all variants of a sweep */
+	val timeout = 10.minutes
+
+	val vehicles = Map(
+		"compact" -> VehicleParameters.CompactCar,
+		"ampera" -> VehicleParameters.Ampera
+	)
+
+	override def doGet(req: HttpServletRequest, res: HttpServletResponse): Unit = {
+		executors.sweep.execute(req, res, new RequestHandler {
+			override def handle(req: HttpServletRequest, resp: HttpServletResponse): Unit = runSweep(req, resp)
+		})
+	}
+
+	def runSweep(req: HttpServletRequest, res: HttpServletResponse): Unit = {
+		var route: Route = null
+		if (req.getParameter("route") != null) {
+			val routeId: String = req.getParameter("route")
+			route = routeRepository.getByIdentifier(routeId) match {
+				case Some(x) => x
+				case None =>
+					writeError(res, 404, s"Route with id $routeId not found.")
+					return
+			}
+		} else {
+			val points = getPoints(req, "point")
+			if (points.size() < 2) {
+				writeError(res, 400, "At least two points must be given for simulation")
+				return
+			}
+			route = routeCache.getRoute(points.asScala.toList, RouteOptions())
+		}
+
+		val defaults = new ParameterGrid()
+		val grid = try {
+			new ParameterGrid(
+				gasPedalGains = parseValues(req, "gasPedalGain", defaults.gasPedalGains),
+				brakePedalGains = parseValues(req, "brakePedalGain", defaults.brakePedalGains),
+				proportionalGains = parseValues(req, "proportionalGain", defaults.proportionalGains),
+				integratorGains = parseValues(req, "integratorGain", defaults.integratorGains),
+				differentiatorGains = parseValues(req, "differentiatorGain", defaults.differentiatorGains),
+				vehicles = Option(req.getParameter("vehicle")).map(_.split(",").map(_.trim).map(name =>
+					vehicles.getOrElse(name, throw new IllegalArgumentException(s"Unknown vehicle $name"))
+				).toList).getOrElse(defaults.vehicles)
+			)
+		} catch {
+			case e: IllegalArgumentException =>
+				writeError(res, 400, e.getMessage)
+				return
+		}
+		if (grid.size > maximumVariants) {
+			writeError(res, 400, s"Too many variants: ${grid.size}; at most $maximumVariants are allowed")
+			return
+		}
+
+		val forkTime = try {
+			Option(req.getParameter("forkAt")).map(_.trim.toInt)
+		} catch {
+			case e: NumberFormatException =>
+				writeError(res, 400, s"Invalid value for forkAt: ${req.getParameter("forkAt")}")
+				return
+		}
+		if (forkTime.exists(_ < 0)) {
+			writeError(res, 400, "forkAt must not be negative")
+			return
+		}
+
+		val distributed = Option(req.getParameter("distributed")).exists(_.trim.equalsIgnoreCase("true"))
+		if (distributed && !distributedSweep.enabled) {
+			writeError(res, 400, "Distributed sweeps are not enabled on this server")
+			return
+		}
+		if (distributed && forkTime.isDefined) {
+			writeError(res, 400, "forkAt is not supported for distributed sweeps")
+			return
+		}
+
+		val sweep = forkTime match {
+			case Some(time) => parameterSweep.runForked(defaults.variants(route).head, time, grid.variants(route))
+			case None if distributed => distributedSweep.run(grid.variants(route))
+			case None => parameterSweep.run(route, grid)
+		}
+		val results = try {
+			Await.result(sweep, timeout)
+		} catch {
+			case e: TimeoutException =>
+				writeError(res, 503, s"Parameter sweep did not finish within $timeout")
+				return
+			case e: IllegalStateException if distributed =>
+				// no worker is registered with the coordinator
+				writeError(res, 503, e.getMessage)
+				return
+		}
+
+		val json = new JSONStringer()
+		json.`object`()
+			.key("route").value(route.identifier)
+		forkTime.foreach(time => json.key("forkAt").value(time))
+		json.key("distributed").value(distributed)
+		json.key("variants").array()
+		results.foreach(result => serializeResult(json, result))
+		json.endArray().endObject()
+
+		res.setStatus(200)
+		res.setContentType("application/json")
+		res.setCharacterEncoding("UTF-8")
+		res.getWriter.append(json.toString)
+	}
+
+	/**
+	 * Parses a comma-separated list of numbers from the request.
+	 */
+	def parseValues(req: HttpServletRequest, name: String, default: List[Double]): List[Double] = {
+		Option(req.getParameter(name)) match {
+			case Some(values) =>
+				try {
+					values.split(",").map(_.trim.toDouble).toList
+				} catch {
+					case e: NumberFormatException => throw new IllegalArgumentException(s"Invalid value for $name: $values")
+				}
+			case None => default
+		}
+	}
+
+	def serializeResult(json: JSONWriter, result: SweepResult): Unit = {
+		val parameters = result.parameters
+		json.`object`()
+			.key("index").value(result.index)
+			.key("parameters").`object`()
+			.key("gasPedalGain").value(parameters.pedal.gasPedalGain)
+			.key("brakePedalGain").value(parameters.pedal.brakePedalGain)
+			.key("proportionalGain").value(parameters.velocityController.proportionalGain)
+			.key("integratorGain").value(parameters.velocityController.integratorGain)
+			.key("differentiatorGain").value(parameters.velocityController.differentiatorGain)
+			.key("vehicle").value(vehicles.find(_._2 eq parameters.vehicle).map(_._1).getOrElse("custom"))
+			.endObject()
+
+		result.summary.foreach(summary => json.key("summary").`object`()
+			.key("finished").value(summary.finished)
+			.key("duration").value(summary.duration)
+			.key("distance").value(summary.distance)
+			.key("averageVelocity").value(summary.averageVelocity)
+			.key("maximumVelocity").value(summary.maximumVelocity)
+			.key("maximumAcceleration").value(summary.maximumAcceleration)
+			.key("maximumDeceleration").value(summary.maximumDeceleration)
+			.key("timeOverSpeedLimit").value(summary.timeOverSpeedLimit)
+			.key("computationTime").value(summary.computationTime)
+			.endObject()
+		)
+		result.error.foreach(error => json.key("error").value(error))
+		json.endObject()
+	}
+
+}
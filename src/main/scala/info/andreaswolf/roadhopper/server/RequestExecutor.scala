@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2015 Andreas Wolf
+ *
+ * See te LICENSE file in the project root for further copyright information.
+ */
+
+package info.andreaswolf.roadhopper.server
+
+import java.util.concurrent.atomic.{AtomicBoolean, AtomicInteger}
+import java.util.concurrent._
+import javax.servlet.AsyncContext
+import javax.servlet.http.{HttpServletRequest, HttpServletResponse}
+
+import info.andreaswolf.roadhopper.metrics.Metrics
+import org.slf4j.LoggerFactory
+
+
+/**
+ * The work done for one request on a [[RequestExecutor]].
+ */
+trait RequestHandler {
+
+	@throws(classOf[Exception])
+	def handle(req: HttpServletRequest, resp: HttpServletResponse): Unit
+
+}
+
+
+/**
+ * Runs expensive requests (e.g. routing or starting a simulation) asynchronously on a bounded pool of threads, so
+ * they do not block the threads of the web server.
+ * <p/>
+ * The request is put into async mode (Servlet 3) and queued; if the queue is full, it is rejected right away with
+ * status 429 ("Too Many Requests") and a Retry-After header, instead of waiting until all clients time out. If the
+ * container does not support async processing for the request, it is handled directly on the calling thread.
+ * <p/>
+ * A request that is still queued after the timeout is removed from the queue and answered with status 503. Once its
+ * handler has started, a request is never interrupted; the handler always writes and completes the response itself.
+ * <p/>
+ * The executor reports these metrics, prefixed with "executor.&lt;name&gt;.": the number of queued and active
+ * requests ("queued", "active"), the number of rejected requests ("rejected") and the time a request waited in the
+ * queue in microseconds ("waitTime").
+ *
+ * @param name The name of the executor, used for the thread names and metrics
+ * @param threads The number of requests that are handled at the same time
+ * @param queueSize The number of requests that can wait for a thread; at least 1
+ * @param timeout The time (in milliseconds) after which a request that is still queued is answered with status 503
+ */
+class RequestExecutor(val name: String, val threads: Int, val queueSize: Int, val timeout: Long = 120 * 1000L) {
+
+	val log = LoggerFactory.getLogger(this.getClass)
+
+	require(threads > 0 && queueSize > 0, "The number of threads and the queue size must be positive")
+
+	/** The time (in seconds) a rejected client is asked to wait before retrying */
+	val retryAfter = 5
+
+	private val threadCounter = new AtomicInteger()
+
+	private val threadFactory = new ThreadFactory {
+		override def newThread(r: Runnable): Thread = {
+			val thread = new Thread(r, s"request-$name-${threadCounter.incrementAndGet()}")
+			thread.setDaemon(true)
+			thread
+		}
+	}
+
+	private val executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+		new ArrayBlockingQueue[Runnable](queueSize), threadFactory)
+
+	/** Answers the requests that are still queued after the timeout */
+	private val timer = new ScheduledThreadPoolExecutor(1, threadFactory)
+	timer.setRemoveOnCancelPolicy(true)
+
+	private val rejected = Metrics.counter(s"executor.$name.rejected")
+
+	private val waitTime = Metrics.histogram(s"executor.$name.waitTime")
+
+	Metrics.gauge(s"executor.$name.queued", () => executor.getQueue.size())
+	Metrics.gauge(s"executor.$name.active", () => executor.getActiveCount)
+
+
+	/**
+	 * Handles the request on this executor. The response is completed once the handler returns.
+	 */
+	def execute(req: HttpServletRequest, resp: HttpServletResponse, handler: RequestHandler): Unit = {
+		if (!req.isAsyncSupported) {
+			handler.handle(req, resp)
+			return
+		}
+
+		val context = req.startAsync(req, resp)
+		// the container must not time out a request while its handler is running, so the timeout is done by the timer
+		context.setTimeout(0)
+
+		val request = new QueuedRequest(req, resp, handler, context)
+		// the check is scheduled first, so the request can always cancel it once it starts
+		request.timeoutCheck = Some(timer.schedule(new Runnable {
+			override def run(): Unit = request.timeOut()
+		}, timeout, TimeUnit.MILLISECONDS))
+		try {
+			executor.execute(request)
+		} catch {
+			case e: RejectedExecutionException =>
+				request.timeoutCheck.foreach(_.cancel(false))
+				rejected.increment()
+				request.reject()
+		}
+	}
+
+	/**
+	 * A request that waits for a thread or is being handled.
+	 * <p/>
+	 * The response belongs to whoever first sets [[started]]: the handler, the timeout or the rejection. Only this one
+	 * writes to the response and completes it.
+	 */
+	private class QueuedRequest(req: HttpServletRequest, resp: HttpServletResponse, handler: RequestHandler,
+	                            context: AsyncContext) extends Runnable {
+
+		val queuedAt = System.nanoTime()
+
+		val started = new AtomicBoolean(false)
+
+		@volatile var timeoutCheck: Option[ScheduledFuture[_]] = None
+
+		override def run(): Unit = {
+			if (!started.compareAndSet(false, true)) {
+				// the request timed out while it was queued and has already been answered
+				return
+			}
+			timeoutCheck.foreach(_.cancel(false))
+			waitTime.record((System.nanoTime() - queuedAt) / 1000)
+			try {
+				handler.handle(req, resp)
+			} catch {
+				case e: Exception =>
+					log.error(s"Error while handling request ${req.getRequestURI}?${req.getQueryString}", e)
+					if (!resp.isCommitted) {
+						BaseServlet.writeError(resp, 500, s"Problem occurred: ${e.getMessage}")
+					}
+			} finally {
+				context.complete()
+			}
+		}
+
+		/**
+		 * Answers the request with status 503 if it is still queued; a running handler is left alone.
+		 */
+		def timeOut(): Unit = {
+			if (started.compareAndSet(false, true)) {
+				executor.remove(this)
+				log.warn(s"Request ${req.getRequestURI} was not started within $timeout ms")
+				BaseServlet.writeError(resp, 503, s"Request was not started within ${timeout / 1000} seconds")
+				context.complete()
+			}
+		}
+
+		def reject(): Unit = {
+			if (started.compareAndSet(false, true)) {
+				resp.setHeader("Retry-After", retryAfter.toString)
+				BaseServlet.writeError(resp, 429, s"Too many requests; please retry in $retryAfter seconds")
+				context.complete()
+			}
+		}
+	}
+
+	/**
+	 * Stops the thread pool. Requests that are already queued are still handled.
+	 */
+	def shutdown(): Unit = {
+		executor.shutdown()
+		timer.shutdown()
+	}
+
+}
+
+
+/**
+ * The executors for the expensive endpoints.
+ *
+ * @param routing For calculating routes
+ * @param simulation For setting up simulations; the simulations themselves run on their own threads
+ * @param sweep For parameter sweeps; each request waits on its thread until all variants are simulated
+ */
+class RequestExecutors(val routing: RequestExecutor, val simulation: RequestExecutor, val sweep: RequestExecutor) {
+
+}
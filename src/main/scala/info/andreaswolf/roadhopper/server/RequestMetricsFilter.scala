@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2015 Andreas Wolf
+ *
+ * See te LICENSE file in the project root for further copyright information.
+ */
+
+package info.andreaswolf.roadhopper.server
+
+import java.util.concurrent.ConcurrentHashMap
+import javax.servlet._
+import javax.servlet.http.HttpServletRequest
+
+import info.andreaswolf.roadhopper.metrics.{Histogram, Metrics}
+
+
+/**
+ * Records the latency of all requests, in microseconds, in one histogram per path (e.g. "http./roadhopper/route").
+ * <p/>
+ * To keep the number of histograms bounded if clients request arbitrary paths, only the first [[maxPaths]] paths get
+ * their own histogram; all further paths are recorded as "http.other".
+ * <p/>
+ * For requests that are handled asynchronously (see [[RequestExecutor]]), the latency is recorded once the response is
+ * completed.
+ */
+class RequestMetricsFilter extends Filter {
+
+	val maxPaths = 50
+
+	private val histograms = new ConcurrentHashMap[String, Histogram]()
+
+	private val otherRequests = Metrics.histogram("http.other")
+
+	override def init(filterConfig: FilterConfig): Unit = {}
+
+	override def doFilter(request: ServletRequest, response: ServletResponse, chain: FilterChain): Unit = {
+		val start = System.nanoTime()
+		try {
+			chain.doFilter(request, response)
+		} finally {
+			// if the request was already completed on another thread, the completion only takes effect after this dispatch
+			// returns, and isAsyncStarted() is false; the latency is then recorded directly
+			if (request.isAsyncStarted) {
+				request.getAsyncContext.addListener(new AsyncListener {
+					override def onComplete(event: AsyncEvent): Unit = record(request, start)
+
+					override def onTimeout(event: AsyncEvent): Unit = {}
+
+					override def onError(event: AsyncEvent): Unit = {}
+
+					override def onStartAsync(event: AsyncEvent): Unit = {}
+				})
+			} else {
+				record(request, start)
+			}
+		}
+	}
+
+	private def record(request: ServletRequest, start: Long): Unit = {
+		histogramFor(request).record((System.nanoTime() - start) / 1000)
+	}
+
+	private def histogramFor(request: ServletRequest): Histogram = request match {
+		case httpRequest: HttpServletRequest =>
+			val path = httpRequest.getRequestURI.stripPrefix(httpRequest.getContextPath)
+			val histogram = histograms.get(path)
+			if (histogram != null) {
+				histogram
+			} else if (histograms.size() < maxPaths) {
+				val created = Metrics.histogram("http." + path)
+				histograms.putIfAbsent(path, created)
+				created
+			} else {
+				otherRequests
+			}
+
+		case _ => otherRequests
+	}
+
+	override def destroy(): Unit = {}
+
+}
@@ -7,8 +7,7 @@ import akka.actor.Props
 import com.google.inject.Inject
 import com.graphhopper.http.GraphHopperServlet
 import com.graphhopper.util.StopWatch
-import info.andreaswolf.roadhopper.RoadHopper
-import info.andreaswolf.roadhopper.road.{Route, RouteFactory, RouteRepository}
+import info.andreaswolf.roadhopper.road.{Route, RouteCache, RouteOptions, RouteRepository}
 import info.andreaswolf.roadhopper.simulation.SimulationParameters.PedalParameters
 import info.andreaswolf.roadhopper.simulation._
 import info.andreaswolf.roadhopper.simulation.vehicle.VehicleParameters
@@ -20,33 +19,43 @@ import scala.collection.{JavaConversions, mutable}
 
 /**
  * HTTP endpoint to start a simulation.
+ * <p/>
+ * Setting up a simulation (especially the actor system of the actor-based simulation) is done on a separate executor,
+ * so bursts of requests cannot block all threads of the web server; see [[RequestExecutor]].
  */
 class SimulationServlet extends GraphHopperServlet {
 
-	@Inject var roadHopper: RoadHopper = null
-
 	@Inject val routeRepository: RouteRepository = null
 
+	@Inject val routeCache: RouteCache = null
+
 	@Inject val simulationRepository: SimulationRepository = null
 
+	@Inject val executors: RequestExecutors = null
+
 	override def doGet(req: HttpServletRequest, res: HttpServletResponse): Unit = {
+		executors.simulation.execute(req, res, new RequestHandler {
+			override def handle(req: HttpServletRequest, resp: HttpServletResponse): Unit = startSimulation(req, resp)
+		})
+	}
+
+	def startSimulation(req: HttpServletRequest, res: HttpServletResponse): Unit = {
 		var route: Route = null
 		if (req.getParameter("route") != null) {
 			val routeId: String = req.getParameter("route")
-			if (!routeRepository.has(routeId)) {
-				writeError(res, 404, s"Route with id $routeId not found.")
-				return
+			route = routeRepository.getByIdentifier(routeId) match {
+				case Some(x) => x
+				case None =>
+					writeError(res, 404, s"Route with id $routeId not found.")
+					return
 			}
-
-			route = routeRepository.getByIdentifier(routeId).get
 		} else {
 			val points = getPoints(req, "point")
 			if (points.size() < 2) {
 				writeError(res, 400, "At least two points must be given for simulation")
 				return
 			}
-			val routeFactory = new RouteFactory(roadHopper)
-			route = routeFactory.simplify(routeFactory.getRoute(points.asScala.toList).parts, 2.0)
+			route = routeCache.getRoute(points.asScala.toList, RouteOptions())
 		}
 
 		val simulationParameters = new SimulationParameters(
@@ -56,14 +65,48 @@ class SimulationServlet extends GraphHopperServlet {
 		)
 
 		val result = new SimulationResult()
-		val simulation = new SignalBasedSimulation(simulationParameters, result)
+		val simulation: Simulation = req.getParameter("mode") match {
+			case "compiled" =>
+				val maximumStepSize = try {
+					Option(req.getParameter("maxStep")).map(_.toInt).getOrElse(10)
+				} catch {
+					case e: NumberFormatException =>
+						writeError(res, 400, s"Invalid maximum step size: ${e.getMessage}")
+						return
+				}
+				if (maximumStepSize < 10 || maximumStepSize % 10 != 0) {
+					writeError(res, 400, "The maximum step size must be a multiple of 10")
+					return
+				}
+				// the steps never go beyond the next logged time, so the log interval must be raised for larger steps
+				val logInterval = try {
+					Option(req.getParameter("logInterval")).map(_.toInt).getOrElse(50)
+				} catch {
+					case e: NumberFormatException =>
+						writeError(res, 400, s"Invalid log interval: ${e.getMessage}")
+						return
+				}
+				if (logInterval < 10 || logInterval % 10 != 0) {
+					writeError(res, 400, "The log interval must be a multiple of 10")
+					return
+				}
+				val resultLogInterval = Math.max(250, logInterval)
+				val compiledSimulation = new CompiledSignalBasedSimulation(simulationParameters, result,
+					signalLogInterval = logInterval, maximumStepSize = maximumStepSize)
+				compiledSimulation.addComponent(new SignalsBasedResultLoggerComponent(result, resultLogInterval),
+					List("time"), sampleInterval = resultLogInterval)
+				compiledSimulation
+
+			case _ =>
+				val actorSimulation = new SignalBasedSimulation(simulationParameters, result)
+				val resultLogger = actorSimulation.actorSystem.actorOf(
+					Props(new SignalsBasedResultLogger(result, actorSimulation.signalBus, 250)), "resultWriter"
+				)
+				actorSimulation.subscribeToSignal("time", resultLogger, sampleInterval = 250)
+				actorSimulation
+		}
 		simulationRepository.add(simulation)
 
-		val resultLogger = simulation.actorSystem.actorOf(
-			Props(new SignalsBasedResultLogger(result, simulation.signalBus, 250)), "resultWriter"
-		)
-		simulation.subscribeToSignal("time", resultLogger)
-
 		val sw = new StopWatch().start()
 
 		simulation.start()
@@ -74,7 +117,7 @@ class SimulationServlet extends GraphHopperServlet {
 		val encodedRoute: util.List[AnyRef] = new GeoJsonEncoder().encodeRoute(route)
 		jsonContents.put("points", encodedRoute)
 		jsonContents.put("simulation", simulation.identifier)
-		jsonContents.put("route", simulation.route.identifier)
+		jsonContents.put("route", route.identifier)
 		jsonContents.put("info", new util.HashMap[String, Object]())
 		jsonContents.put("status", if (simulation.isFinished) "finished" else "running")
 
@@ -17,6 +17,8 @@ import scala.collection.{JavaConversions, mutable}
 
 /**
  * Reports the status of a simulation. Also returns the results if the simulation is finished.
+ * <p/>
+ * To follow a running simulation, use the [[SimulationStreamServlet]] instead of polling this endpoint.
  */
 class SimulationStatusServlet extends BaseServlet {
 
@@ -29,13 +31,13 @@ class SimulationStatusServlet extends BaseServlet {
 			writeError(resp, 400, s"No simulation id given")
 			return
 		}
-		if (!simulationRepository.has(simulationId)) {
-			writeError(resp, 404, s"Simulation with id $simulationId not found")
-			return
+		val simulation = simulationRepository.getByIdentifier(simulationId) match {
+			case Some(x) => x
+			case None =>
+				writeError(resp, 404, s"Simulation with id $simulationId not found")
+				return
 		}
 
-		val simulation = simulationRepository.getByIdentifier(simulationId)
-
 		val status: JSONWriter = new JSONStringer().`object`()
 			.key("simulation").value(simulationId)
 			.key("status").value(if (simulation.isFinished) "finished" else "running")
@@ -43,7 +45,7 @@ class SimulationStatusServlet extends BaseServlet {
 		if (simulation.isFinished) {
 			status.key("result").value(serializeSimulationResult(simulation.result))
 		}
-		status.key("time").value(simulation.result.map.keySet.max)
+		status.key("time").value(simulation.result.lastTime)
 
 		resp.setContentType("application/json")
 		resp.setCharacterEncoding("UTF-8")
@@ -0,0 +1,284 @@
+/*
+ * Copyright (c) 2015 Andreas Wolf
+ *
+ * See te LICENSE file in the project root for further copyright information.
+ */
+
+package info.andreaswolf.roadhopper.server
+
+import java.io.PrintWriter
+import java.util.concurrent.atomic.{AtomicBoolean, AtomicInteger}
+import java.util.concurrent.{Executors, ScheduledFuture, ThreadFactory, TimeUnit}
+import javax.servlet.http.{HttpServletRequest, HttpServletResponse}
+import javax.servlet.{AsyncContext, AsyncEvent, AsyncListener}
+
+import com.google.inject.Inject
+import info.andreaswolf.roadhopper.simulation.storage.ColumnarSignalStore
+import info.andreaswolf.roadhopper.simulation.storage.ColumnarSignalStore.RowListener
+import info.andreaswolf.roadhopper.simulation.{Simulation, SimulationRepository}
+import org.json.JSONStringer
+import org.slf4j.LoggerFactory
+
+
+/**
+ * Streams the signal values of a simulation to the client as server-sent events, while they are being logged.
+ * <p/>
+ * Each logged state is sent as one event with the row number as its id and the time and the requested signals
+ * (parameter "signal", defaults to v and a) as JSON data. Once the simulation has finished, a "finished" event is
+ * sent and the stream is closed.
+ * <p/>
+ * Each client has its own cursor into the logged rows, so only new values are sent. A client can resume a stream
+ * with the Last-Event-ID header (set automatically by EventSource) or start at a given row with the parameter
+ * "cursor". The parameter "step" sets the minimum time (in milliseconds) between two sent rows.
+ * <p/>
+ * The streams do not occupy a thread of the web server while they wait for new rows: the requests are put into async
+ * mode, and the result of the simulation notifies each stream of new rows. The rows are then written on a small
+ * shared pool of [[writerThreads]] threads, at most [[batchSize]] rows at a time before the output is flushed; the
+ * rows not sent yet stay in the result, so a slow client does not cause any rows to be buffered.
+ */
+class SimulationStreamServlet extends BaseServlet {
+
+	val log = LoggerFactory.getLogger(this.getClass)
+
+	@Inject val simulationRepository: SimulationRepository = null
+
+	/** The maximum number of rows written before flushing the output */
+	val batchSize = 500
+
+	/** The time after which a comment is sent if there were no new rows, to detect closed connections */
+	val heartbeatInterval = 15000L
+
+	/** The interval in which the streams check if their simulation has finished or a heartbeat is due */
+	val checkInterval = 1000L
+
+	/** The number of threads that write to the streams */
+	val writerThreads = 2
+
+	private val threadCounter = new AtomicInteger()
+
+	private val threadFactory = new ThreadFactory {
+		override def newThread(r: Runnable): Thread = {
+			val thread = new Thread(r, s"simulation-stream-${threadCounter.incrementAndGet()}")
+			thread.setDaemon(true)
+			thread
+		}
+	}
+
+	private val writers = Executors.newFixedThreadPool(writerThreads, threadFactory)
+
+	private val checker = Executors.newSingleThreadScheduledExecutor(threadFactory)
+
+	override def doGet(req: HttpServletRequest, resp: HttpServletResponse): Unit = {
+		val simulationId = req.getParameter("id")
+		if (simulationId == null) {
+			writeError(resp, 400, s"No simulation id given")
+			return
+		}
+		val simulation = simulationRepository.getByIdentifier(simulationId) match {
+			case Some(x) => x
+			case None =>
+				writeError(resp, 404, s"Simulation with id $simulationId not found")
+				return
+		}
+
+		val signals: List[String] = req.getParameterValues("signal") match {
+			case x if x == null => List("v", "a")
+			case x if x.isEmpty => List("v", "a")
+			case x => x.toList
+		}
+
+		val (cursor, step) = try {
+			(
+				Option(req.getHeader("Last-Event-ID")).map(_.toInt + 1)
+					.orElse(Option(req.getParameter("cursor")).map(_.toInt))
+					.getOrElse(0),
+				Option(req.getParameter("step")).map(_.toInt).getOrElse(0)
+			)
+		} catch {
+			case e: NumberFormatException =>
+				writeError(resp, 400, s"Invalid number: ${e.getMessage}")
+				return
+		}
+
+		if (!req.isAsyncSupported) {
+			writeError(resp, 500, "Streaming requires asynchronous request processing")
+			return
+		}
+
+		resp.setStatus(200)
+		resp.setContentType("text/event-stream")
+		resp.setCharacterEncoding("UTF-8")
+		resp.setHeader("Cache-Control", "no-cache")
+
+		val context = req.startAsync(req, resp)
+		// the stream is open as long as the simulation runs; closed connections are detected by the heartbeats
+		context.setTimeout(0)
+		new EventStream(simulation, signals, Math.max(cursor, 0), step, context).open()
+	}
+
+	/**
+	 * The stream of one client. It writes all rows starting at the cursor, and then the new rows whenever the store
+	 * notifies it, until the simulation has finished or the client has closed the connection.
+	 * <p/>
+	 * Only one write is scheduled at a time; as the rows are read from the store, any number of notifications while a
+	 * write is running are covered by the next write.
+	 */
+	class EventStream(simulation: Simulation, signals: List[String], start: Int, step: Int, context: AsyncContext)
+		extends RowListener with Runnable {
+
+		private val store = simulation.result.signals
+
+		private val writer = context.getResponse.getWriter
+
+		private var cursor = start
+
+		/** The earliest time of the next row to send */
+		private var nextTime = Int.MinValue
+
+		@volatile
+		private var lastWrite = System.currentTimeMillis()
+
+		/** Set while a write is scheduled or running */
+		private val scheduled = new AtomicBoolean(false)
+
+		private val closed = new AtomicBoolean(false)
+
+		@volatile
+		private var check: ScheduledFuture[_] = null
+
+		def open(): Unit = {
+			context.addListener(new AsyncListener {
+				override def onTimeout(event: AsyncEvent): Unit = close()
+
+				override def onError(event: AsyncEvent): Unit = close()
+
+				override def onStartAsync(event: AsyncEvent): Unit = {}
+
+				override def onComplete(event: AsyncEvent): Unit = close(complete = false)
+			})
+			store.addListener(this)
+			check = checker.scheduleWithFixedDelay(new Runnable {
+				override def run(): Unit = {
+					if (simulation.isFinished || System.currentTimeMillis() - lastWrite >= heartbeatInterval) {
+						schedule()
+					}
+				}
+			}, checkInterval, checkInterval, TimeUnit.MILLISECONDS)
+			if (closed.get()) {
+				check.cancel(false)
+			}
+			// send the rows that were logged before
+			schedule()
+		}
+
+		override def rowAppended(rowCount: Int): Unit = schedule()
+
+		private def schedule(): Unit = {
+			if (!closed.get() && scheduled.compareAndSet(false, true)) {
+				writers.execute(this)
+			}
+		}
+
+		override def run(): Unit = {
+			try {
+				write()
+			} catch {
+				case e: Exception =>
+					log.warn(s"Could not write stream for simulation ${simulation.identifier}", e)
+					close()
+			}
+			val sentRows = cursor
+			scheduled.set(false)
+			// rows that were appended while writing did not schedule another write
+			if (sentRows < store.rowCount) {
+				schedule()
+			}
+		}
+
+		/**
+		 * Writes at most [[batchSize]] rows and flushes them; if the simulation has finished and all rows have been sent,
+		 * the stream is closed.
+		 */
+		private def write(): Unit = {
+			if (closed.get()) {
+				return
+			}
+			// check this first: if the simulation is finished now, all rows have been logged already
+			val finished = simulation.isFinished
+			val rowCount = store.rowCount
+
+			var written = 0
+			while (cursor < rowCount && written < batchSize) {
+				if (step > 0) {
+					cursor = Math.max(cursor, store.rowAt(nextTime, rowCount))
+				}
+				if (cursor < rowCount) {
+					writeRow(writer, store, signals, cursor)
+					if (step > 0) {
+						nextTime = store.time(cursor) + step
+					}
+					cursor += 1
+					written += 1
+				}
+			}
+
+			if (finished && cursor >= rowCount) {
+				writer.write("event: finished\ndata: ")
+				writer.write(new JSONStringer().`object`().key("time").value(simulation.result.lastTime).endObject().toString)
+				writer.write("\n\n")
+				writer.flush()
+				close()
+				return
+			}
+
+			if (written == 0) {
+				if (System.currentTimeMillis() - lastWrite < heartbeatInterval) {
+					return
+				}
+				writer.write(": keepalive\n\n")
+			}
+			writer.flush()
+			lastWrite = System.currentTimeMillis()
+			if (writer.checkError()) {
+				log.debug(s"Client closed stream for simulation ${simulation.identifier}")
+				close()
+			}
+		}
+
+		/**
+		 * @param complete False if the request has already been completed by the container
+		 */
+		private def close(complete: Boolean = true): Unit = {
+			if (closed.compareAndSet(false, true)) {
+				store.removeListener(this)
+				if (check != null) {
+					check.cancel(false)
+				}
+				if (complete) {
+					context.complete()
+				}
+			}
+		}
+
+	}
+
+	def writeRow(writer: PrintWriter, store: ColumnarSignalStore, signals: List[String], row: Int): Unit = {
+		val json = new JSONStringer()
+		json.`object`().key("time").value(store.time(row))
+		signals.foreach(name => store.column(name).foreach(column => {
+			val value = column(row)
+			// JSON cannot represent NaN, which marks a missing value
+			if (!value.isNaN) {
+				json.key(name).value(value)
+			}
+		}))
+		json.endObject()
+
+		writer.write("id: ")
+		writer.write(row.toString)
+		writer.write("\ndata: ")
+		writer.write(json.toString)
+		writer.write("\n\n")
+	}
+
+}
@@ -6,20 +6,31 @@
 
 package info.andreaswolf.roadhopper.server.export
 
+import java.io.{DataOutputStream, OutputStream, OutputStreamWriter}
+import java.nio.charset.StandardCharsets
 import javax.servlet.http.{HttpServletRequest, HttpServletResponse}
 
 import com.google.inject.Inject
 import info.andreaswolf.roadhopper.server.BaseServlet
 import info.andreaswolf.roadhopper.simulation.SimulationRepository
-import info.andreaswolf.roadhopper.simulation.signals.SignalState
-import org.json.JSONObject
+import info.andreaswolf.roadhopper.simulation.storage.ColumnarSignalStore
 import org.slf4j.LoggerFactory
 
-import scala.collection.{mutable, JavaConversions}
-
 
 /**
  * Fetches signal values for a given simulation and returns them to the client.
+ * <p/>
+ * The values are streamed directly from the signal columns of the simulation result. The optional parameters "from"
+ * and "to" limit the time range (in milliseconds), "step" sets the minimum time between two returned rows.
+ * <p/>
+ * Only numeric signals are stored in the columns; requesting any other signal (e.g. "road" or "pos") or a signal that
+ * was not logged (yet) is rejected.
+ * <p/>
+ * With "format=binary", the columns are returned as raw big-endian values: the number of rows and signals (int32
+ * each), followed by the time column (int32) and one column per signal (float64, NaN for missing values).
+ * <p/>
+ * All formats are written row by row (or column by column) to the response, which is compressed with gzip if the
+ * client accepts it; no export is built in memory first.
  */
 class SimulationExportServlet extends BaseServlet {
 
@@ -34,11 +45,12 @@ class SimulationExportServlet extends BaseServlet {
 		}
 
 		val simulationId = req.getParameter("simulation")
-		if (!simulationRepository.has(simulationId)) {
-			writeError(resp, 404, s"Simulation with id $simulationId not found.")
-			return
+		val simulation = simulationRepository.getByIdentifier(simulationId) match {
+			case Some(x) => x
+			case None =>
+				writeError(resp, 404, s"Simulation with id $simulationId not found.")
+				return
 		}
-		val simulation = simulationRepository.getByIdentifier(simulationId)
 
 		val signals: List[String] = req.getParameterValues("signal") match {
 			case x if x == null => List("v", "a")
@@ -46,38 +58,107 @@ class SimulationExportServlet extends BaseServlet {
 			case x => x.toList
 		}
 
-		val serializer = new CsvSignalSerializer(signals)
-		val output = new StringBuilder
-		output.append("time," + signals.mkString(",") + "\n")
-		simulation.result.signals.toSeq.sortBy(_._1).foreach { case (time, signalValues) =>
-			output.append(time.toString + "," + serializer.serializeState(signalValues) + "\n")
+		val (from, to, step) = try {
+			(intParameter(req, "from", 0), intParameter(req, "to", Int.MaxValue), intParameter(req, "step", 0))
+		} catch {
+			case e: NumberFormatException =>
+				writeError(resp, 400, s"Invalid number: ${e.getMessage}")
+				return
 		}
 
-		resp.getWriter.append(output.toString())
-	}
+		val store = simulation.result.signals
+		signals.find(store.column(_).isEmpty) match {
+			case Some(signal) =>
+				writeError(resp, 400, s"Signal $signal is not numeric or was not logged")
+				return
+			case None =>
+		}
 
-	implicit def mapToJson(map: scala.collection.Map[String, Any]): JSONObject = {
-		val target = new JSONObject()
-		map.foreach { case (k: String, v: Any) => target.put(k, v) }
-		target
+		resp.setStatus(200)
+		req.getParameter("format") match {
+			case "binary" if step <= 0 =>
+				// the selected rows are contiguous, so they can be written without iterating them several times
+				val (start, end) = store.selectRange(from, to)
+				resp.setContentType("application/octet-stream")
+				withOutputStream(req, resp)(new BinarySignalSerializer(store, signals).writeRange(start, end, _))
+
+			case "binary" =>
+				resp.setContentType("application/octet-stream")
+				withOutputStream(req, resp)(
+					new BinarySignalSerializer(store, signals).writeRows(() => store.selectRows(from, to, step), _)
+				)
+
+			case _ =>
+				resp.setContentType("text/csv")
+				resp.setCharacterEncoding("UTF-8")
+				withOutputStream(req, resp)(new CsvSignalSerializer(store, signals).write(store.selectRows(from, to, step), _))
+		}
 	}
 
-	class JsonSignalValueSerializer(val signals: List[String]) {
-		def serializeState(signalState: SignalState): JSONObject = {
-			val interestingValues = signalState.values.filterKeys(name => signals.contains(name))
+	def intParameter(req: HttpServletRequest, name: String, default: Int): Int = {
+		Option(req.getParameter(name)).map(_.toInt).getOrElse(default)
+	}
 
-			new JSONObject(JavaConversions.mapAsJavaMap(interestingValues))
+	class CsvSignalSerializer(val store: ColumnarSignalStore, val signals: List[String]) {
+		val columns = signals.map(store.column(_).get).toArray
+
+		def write(rows: Iterator[Int], outputStream: OutputStream): Unit = {
+			val writer = new OutputStreamWriter(outputStream, StandardCharsets.UTF_8)
+			writer.write("time," + signals.mkString(",") + "\n")
+			rows.foreach(row => {
+				writer.write(store.time(row).toString)
+				columns.foreach(column => {
+					writer.write(',')
+					// missing values have always been exported as zero
+					val value = column(row)
+					writer.write(if (value.isNaN) "0.0" else value.toString)
+				})
+				writer.write('\n')
+			})
+			writer.flush()
 		}
 	}
 
-	class CsvSignalSerializer(val signals: List[String]) {
-		def serializeState(signalState: SignalState): String = {
-			val interestingValues = signals.foldLeft(new mutable.MapBuilder[String, Any, Map[String, Any]](Map())){
-				(map: mutable.MapBuilder[String, Any, Map[String, Any]], key: String) =>
-					map += Tuple2(key, signalState.values.getOrElse(key, 0.0))
-			}.result().toSeq.sortWith((l, r) => signals.indexOf(l._1) < signals.indexOf(r._1))
+	class BinarySignalSerializer(val store: ColumnarSignalStore, val signals: List[String]) {
+		val columns = signals.map(store.column(_).get)
+
+		/**
+		 * Writes all rows in the given range; unlike [[writeRows()]], the rows need not be counted first.
+		 */
+		def writeRange(start: Int, end: Int, outputStream: OutputStream): Unit = {
+			val output = new DataOutputStream(outputStream)
+			output.writeInt(end - start)
+			output.writeInt(signals.size)
+			var row = start
+			while (row < end) {
+				output.writeInt(store.time(row))
+				row += 1
+			}
+			columns.foreach(column => {
+				row = start
+				while (row < end) {
+					output.writeDouble(column(row))
+					row += 1
+				}
+			})
+			output.flush()
+		}
 
-			interestingValues.map { case (k: String, v: Any) => v }.mkString(",")
+		/**
+		 * Writes the given rows value by value.
+		 *
+		 * @param rows Returns a new iterator over the rows; called once for counting them and once per column, so the
+		 *             row numbers need not be kept in memory
+		 */
+		def writeRows(rows: () => Iterator[Int], outputStream: OutputStream): Unit = {
+			val output = new DataOutputStream(outputStream)
+			// rows might be added while we write, so all columns are limited to the rows counted here
+			val rowCount = rows().size
+			output.writeInt(rowCount)
+			output.writeInt(signals.size)
+			rows().take(rowCount).foreach(row => output.writeInt(store.time(row)))
+			columns.foreach(column => rows().take(rowCount).foreach(row => output.writeDouble(column(row))))
+			output.flush()
 		}
 	}
 
@@ -34,6 +34,7 @@ object ActorBasedSimulation extends App {
 class ActorBasedSimulation(val route: Route, override val result: SimulationResult) extends Simulation(result) {
 
 	val actorSystem = ActorSystem.create("roadhopper")
+	trackActorSystem(actorSystem)
 
 	implicit val timeout = Timeout(10 seconds)
 
@@ -42,16 +43,19 @@ class ActorBasedSimulation(val route: Route, override val result: SimulationResu
 	val actorBuffer = new ListBuffer[ActorRef]()
 
 	val vehicle = registerActor(Props(
-		new TwoStepVehicleActor(timer, route.getRoadSegments.head.orientation, Some(route.getRoadSegments.head.start))
+		new TwoStepVehicleActor(timer, route.packed.orientation(0), Some(route.packed.segment(0).start))
 	), "vehicle")
 	val journey = registerActor(Props(new TwoStepJourneyActor(timer, vehicle, route)), "journey")
 	val driver = registerActor(Props(new TwoStepDriverActor(timer, vehicle, journey)), "driver")
 	val monitor = registerActor(Props(new VehicleStatusMonitor(timer, 2000, vehicle)), "monitor")
 
 
-	def start() = timer ! StartSimulation()
+	def start() = {
+		startTime = System.currentTimeMillis()
+		timer ! StartSimulation()
+	}
 
-	def shutdown() = actorSystem.shutdown()
+	override def shutdown() = actorSystem.shutdown()
 
 	def isFinished = actorSystem.isTerminated
 
@@ -0,0 +1,232 @@
+/*
+ * Copyright (c) 2015 Andreas Wolf
+ *
+ * See te LICENSE file in the project root for further copyright information.
+ */
+
+package info.andreaswolf.roadhopper.simulation
+
+import info.andreaswolf.roadhopper.road.Route
+import info.andreaswolf.roadhopper.simulation.control.{DeadTimeComponent, IControllerComponent, PIDControllerComponent, PT1Component}
+import info.andreaswolf.roadhopper.simulation.driver.{VelocityControllerComponent, VelocityProfileEstimatorComponent}
+import info.andreaswolf.roadhopper.simulation.signals.{SignalBusCheckpoint, SignalComponent, SignalHandle, SynchronousSignalBus}
+import info.andreaswolf.roadhopper.simulation.vehicle.{BrakeComponent, EngineComponent, WheelsComponent}
+import org.slf4j.LoggerFactory
+
+
+/**
+ * The state of a [[CompiledSignalBasedSimulation]] at a point in time, from which other simulations on the same route
+ * can continue.
+ */
+class SimulationCheckpoint(val route: Route, val bus: SignalBusCheckpoint) {
+
+	/** The simulation time of the checkpoint in milliseconds */
+	def time: Int = bus.time
+
+}
+
+
+/**
+ * A signal-based simulation that runs all components on a single thread, without any actors.
+ * <p/>
+ * The component graph is the same as in [[SignalBasedSimulation]] (including the parts created by
+ * [[info.andreaswolf.roadhopper.simulation.vehicle.VehicleFactory]]), but the components are invoked directly by a
+ * [[SynchronousSignalBus]]. As the semantics of the delta cycles are kept, the results match those of the actor-based
+ * simulation.
+ * <p/>
+ * If `maximumStepSize` is larger than [[stepSize]], the simulation takes larger steps while the vehicle cruises at its
+ * target velocity, up to the next time a scheduled update or a sampled component (e.g. the logger) is due. This trades
+ * some accuracy for speed, e.g. on long highway routes; it is disabled by default.
+ * <p/>
+ * A simulation can be forked: run it up to some time (see [[run()]]), then create continuations with different
+ * parameters from its current state (see [[fork()]]). The common part of the journey is only simulated once; this is
+ * used e.g. to compare how different controller gains handle a specific part of a route.
+ *
+ * @param simulationParameters The parameters to apply (brake/gas pedal gains, vehicle etc.)
+ * @param result Where the simulation results should be stored
+ * @param signalLogInterval The interval in which the complete signal state is written to the result; 0 disables
+ *                          logging, e.g. for parameter sweeps where only a summary is needed.
+ * @param maximumStepSize The largest step (in milliseconds) taken in steady state; must be a multiple of [[stepSize]]
+ */
+class CompiledSignalBasedSimulation(val simulationParameters: SimulationParameters,
+                                    override val result: SimulationResult,
+                                    val signalLogInterval: Int = 50,
+                                    val maximumStepSize: Int = 10) extends Simulation(result) {
+
+	val log = LoggerFactory.getLogger(this.getClass)
+
+	/** The route that is travelled during the simulation */
+	val route = simulationParameters.route
+
+	/** The length of one time step in milliseconds; this is the same as in the actor-based signal bus. */
+	val stepSize = 10
+
+	require(maximumStepSize >= stepSize && maximumStepSize % stepSize == 0,
+		s"The maximum step size must be a multiple of $stepSize")
+
+	/** The largest acceleration (in m/s²) and velocity difference (in m/s) that count as steady state */
+	val steadyStateAcceleration = 0.05
+	val steadyStateVelocityDifference = 0.1
+
+	private val acceleration = new SignalHandle("a")
+	private val velocityDifference = new SignalHandle("v_diff")
+
+	val bus = new SynchronousSignalBus
+
+	@volatile
+	private var finished = false
+
+	@volatile
+	private var aborted = false
+
+	///////////////////////////////////////////////////////////////////////////
+	// The vehicle; see VehicleFactory and MotorizedVehicle
+	///////////////////////////////////////////////////////////////////////////
+	addComponent(new DeadTimeComponent("alpha", 50, "alpha*"), List("alpha"))
+	addComponent(new EngineComponent(simulationParameters.vehicle), List("alpha*", "time"), List("M"))
+	// The delay of the torque from the motor to the wheels
+	addComponent(new PT1Component("M", "M*", timeConstant = 100, amplification = simulationParameters.vehicle.transmissionRatio),
+		List("M", "time"), List("M*"))
+	addComponent(new WheelsComponent(simulationParameters.vehicle), List("M*", "time"), List("a"))
+	addComponent(new IControllerComponent("a", "v"), List("time"), List("v"))
+	addComponent(new IControllerComponent("v", "s"), List("time"), List("s"))
+
+	// the journey is registered before the velocity estimator, which both listen to "s", so they are invoked in the
+	// same order in each time step
+	val journey = new SignalsJourneyComponent(route)
+	addComponent(journey, List("s"), List("pos", "road", "seg", "heading", "grade", "v_limit"))
+
+	///////////////////////////////////////////////////////////////////////////
+	// Components of the driver model
+	///////////////////////////////////////////////////////////////////////////
+	addComponent(new VelocityProfileEstimatorComponent(route.velocityProfile),
+		List("s"), List("v_target"))
+	addComponent(new VelocityControllerComponent, List("v", "v_target", "v_follow"), List("v_diff"),
+		sampleInterval = VelocityControllerComponent.sampleInterval)
+	addComponent(new PIDControllerComponent("v_diff", "alpha_in",
+		simulationParameters.velocityController.proportionalGain, simulationParameters.velocityController.integratorGain,
+		simulationParameters.velocityController.differentiatorGain), List("time", "v_diff"), List("alpha_in"))
+
+	///////////////////////////////////////////////////////////////////////////
+	// Pedals and brake system
+	///////////////////////////////////////////////////////////////////////////
+	addComponent(new PT1Component("alpha_in", "alpha", 100, simulationParameters.pedal.gasPedalGain, 0.0),
+		List("alpha_in"), List("alpha"))
+	addComponent(new PT1Component("alpha_in", "beta", 100, simulationParameters.pedal.brakePedalGain, 0.0),
+		List("alpha_in"), List("beta"))
+	addComponent(new BrakeComponent("beta", "beta*", 100), List("beta"), List("beta*"))
+
+	// The result logger for the simulation run.
+	if (signalLogInterval > 0) {
+		addComponent(new SignalLoggerComponent(result, signalLogInterval), List("time"), sampleInterval = signalLogInterval)
+	}
+
+
+	/**
+	 * Adds a component to the simulation. This must be done before the simulation is started.
+	 *
+	 * @param inputs The signals the component is subscribed to
+	 * @param outputs The signals the component updates in the current time step
+	 * @param sampleInterval The interval of the time steps in which the component is invoked; 0 for every step
+	 */
+	def addComponent(component: SignalComponent, inputs: List[String], outputs: List[String] = List(),
+	                 sampleInterval: Int = 0): Unit = {
+		bus.register(component, inputs, outputs, sampleInterval)
+	}
+
+	/**
+	 * The size of the next step: [[stepSize]], or—if the vehicle is in steady state—as much as possible until the next
+	 * event on the bus, at most `maximumStepSize`.
+	 */
+	def nextStepSize: Int = {
+		if (maximumStepSize == stepSize || bus.time == 0) {
+			return stepSize
+		}
+		val signals = bus.signals
+		if (Math.abs(signals.doubleValue(acceleration, 0.0)) > steadyStateAcceleration
+			|| Math.abs(signals.doubleValue(velocityDifference, 0.0)) > steadyStateVelocityDifference) {
+			return stepSize
+		}
+		val untilNextEvent = bus.nextEventTime(bus.time + maximumStepSize) - bus.time
+		Math.max(stepSize, untilNextEvent - untilNextEvent % stepSize)
+	}
+
+	/**
+	 * Runs the simulation on the current thread until the journey has ended.
+	 *
+	 * @param maximumTime The simulation time (in milliseconds) after which the simulation is aborted, even if the journey
+	 *                    has not ended yet
+	 * @return True if the journey has ended, false if the simulation was aborted
+	 */
+	def run(maximumTime: Int = Int.MaxValue): Boolean = {
+		if (startTime == 0) {
+			startTime = System.currentTimeMillis()
+		}
+		try {
+			var time = bus.time
+			while (!bus.stopRequested && !aborted && time + stepSize <= maximumTime) {
+				time += Math.min(nextStepSize, (maximumTime - time) / stepSize * stepSize)
+				bus.step(time)
+			}
+			if (bus.stopRequested) {
+				log.info(s"Simulation $identifier finished at ${bus.time}")
+			} else {
+				log.info(s"Simulation $identifier aborted at ${bus.time}")
+			}
+			bus.stopRequested
+		} finally {
+			bus.publishMetrics()
+			endTime = System.currentTimeMillis()
+			finished = true
+		}
+	}
+
+	/** Starts the simulation on a separate thread */
+	def start(): Unit = {
+		val thread = new Thread(new Runnable {
+			override def run(): Unit = try {
+				CompiledSignalBasedSimulation.this.run()
+			} catch {
+				case e: Exception =>
+					log.error(s"Simulation $identifier failed at ${bus.time}", e)
+			}
+		}, s"simulation-$identifier")
+		thread.setDaemon(true)
+		thread.start()
+	}
+
+	/**
+	 * Captures the current state of this simulation. Must only be called while the simulation is not running, e.g. after
+	 * [[run()]] returned at the given maximum time.
+	 */
+	def checkpoint(): SimulationCheckpoint = new SimulationCheckpoint(route, bus.checkpoint())
+
+	/**
+	 * Continues from the checkpoint of another simulation instead of starting at time 0. The checkpoint must have been
+	 * taken on the same route, and the same components must have been added to both simulations (see
+	 * [[addComponent()]]). Only the signals logged after the checkpoint are written to the result of this simulation.
+	 */
+	def restore(checkpoint: SimulationCheckpoint): Unit = {
+		require(checkpoint.route eq route, "The checkpoint was taken on a different route")
+		bus.restore(checkpoint.bus)
+	}
+
+	/**
+	 * Creates a simulation that continues from the current state of this simulation with different parameters. The
+	 * parameters must use the same route object; this simulation must not have any additional components.
+	 */
+	def fork(parameters: SimulationParameters,
+	         result: SimulationResult = new SimulationResult()): CompiledSignalBasedSimulation = {
+		val forked = new CompiledSignalBasedSimulation(parameters, result, signalLogInterval, maximumStepSize)
+		forked.restore(checkpoint())
+		forked
+	}
+
+	def isFinished = finished
+
+	override def simulatedTime: Int = bus.time
+
+	/** Aborts a running simulation after the current time step */
+	override def shutdown(): Unit = aborted = true
+
+}
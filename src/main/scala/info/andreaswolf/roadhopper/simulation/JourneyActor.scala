@@ -18,10 +18,12 @@ case class RoadAhead(time: Int, roadParts: List[RoadSegment], isEnding: Boolean
 class TwoStepJourneyActor(val timer: ActorRef, val vehicle: ActorRef, val route: Route)
 	extends SimulationActor with ActorLogging {
 
-	val length = route.parts.map(_.length).sum
+	val length = route.length
 
-	var remainingSegments = route.parts.tail
-	var currentSegment = route.parts.head
+	// the segments are created from the packed route once, as they are consumed one by one
+	private val parts = route.parts
+	var remainingSegments = parts.tail
+	var currentSegment = parts.head
 	var travelledUntilCurrentSegment = 0.0
 
 	var currentTime = 0
@@ -15,7 +15,7 @@ import info.andreaswolf.roadhopper.RoadHopper
 import info.andreaswolf.roadhopper.road.{Route, RouteFactory}
 import info.andreaswolf.roadhopper.simulation.SimulationParameters.PedalParameters
 import info.andreaswolf.roadhopper.simulation.control.{PIDController, PT1}
-import info.andreaswolf.roadhopper.simulation.driver.{TargetVelocityEstimator, VelocityController}
+import info.andreaswolf.roadhopper.simulation.driver.{TargetVelocityEstimator, VelocityController, VelocityProfileEstimatorComponent}
 import info.andreaswolf.roadhopper.simulation.signals.SignalBus.SubscribeToSignal
 import info.andreaswolf.roadhopper.simulation.signals.{SignalBus, SignalState}
 import info.andreaswolf.roadhopper.simulation.vehicle.{Brake, VehicleFactory, VehicleParameters}
@@ -74,6 +74,7 @@ class SignalBasedSimulation(val simulationParameters: SimulationParameters, over
 	val route = simulationParameters.route
 
 	val actorSystem = ActorSystem.create("signals")
+	trackActorSystem(actorSystem)
 
 	import actorSystem.dispatcher
 	implicit val timeout = Timeout(10 seconds)
@@ -92,7 +93,9 @@ class SignalBasedSimulation(val simulationParameters: SimulationParameters, over
 	///////////////////////////////////////////////////////////////////////////
 	// Components of the driver model
 	///////////////////////////////////////////////////////////////////////////
-	val velocityEstimator = actorSystem.actorOf(Props(new TargetVelocityEstimator(signalBus, journey)))
+	val velocityEstimator = actorSystem.actorOf(Props(new TargetVelocityEstimator(signalBus,
+		new VelocityProfileEstimatorComponent(simulationParameters.route.velocityProfile)
+	)))
 	val targetVelocityCalculator = actorSystem.actorOf(Props(new VelocityController(signalBus)))
 	val velocityController = actorSystem.actorOf(Props(
 		new PIDController("v_diff", "alpha_in",
@@ -110,17 +113,21 @@ class SignalBasedSimulation(val simulationParameters: SimulationParameters, over
 	val brakePedal = actorSystem.actorOf(Props(new PT1("alpha_in", "beta", 100, simulationParameters.pedal.brakePedalGain, 0.0, signalBus)))
 	val brake = actorSystem.actorOf(Props(new Brake("beta", "beta*", 100, signalBus)))
 
+	/** The interval in which the complete signal state is logged */
+	val signalLogInterval = 50
+
 	/** The result logger for the simulation run. */
-	val signalLogger = actorSystem.actorOf(Props(new SignalLogger(signalBus, result, 50)))
+	val signalLogger = actorSystem.actorOf(Props(new SignalLogger(signalBus, result, signalLogInterval)))
 
 	/** Invoked to start the simulation by sending the required signal to the timer */
 	def start() = {
+		startTime = System.currentTimeMillis()
 		Future.sequence(List(
 			timer ? RegisterActor(signalBus),
 			timer ? RegisterActor(vehicle),
 			// subscribe all components above to their respective signals; some components also do this on their own
 			// TODO clean up once signal registration and subscription have been streamlined
-			signalBus ? SubscribeToSignal("time", signalLogger),
+			signalBus ? SubscribeToSignal("time", signalLogger, signalLogInterval),
 			signalBus ? SubscribeToSignal("s", journey),
 			signalBus ? SubscribeToSignal("s", velocityEstimator),
 			signalBus ? SubscribeToSignal("time", velocityController),
@@ -135,7 +142,7 @@ class SignalBasedSimulation(val simulationParameters: SimulationParameters, over
 		}
 	}
 
-	def shutdown() = actorSystem.shutdown()
+	override def shutdown() = actorSystem.shutdown()
 
 	def isFinished = actorSystem.isTerminated
 
@@ -148,8 +155,11 @@ class SignalBasedSimulation(val simulationParameters: SimulationParameters, over
 		actorRef
 	}
 
-	def subscribeToSignal(signalName: String, actor: ActorRef) = {
+	/**
+	 * Subscribes an actor to a signal; see [[SubscribeToSignal]] for the sample interval.
+	 */
+	def subscribeToSignal(signalName: String, actor: ActorRef, sampleInterval: Int = 0) = {
 		implicit val timeout = Timeout(1 day)
-		Await.result(signalBus ? SubscribeToSignal(signalName, actor), 1 second)
+		Await.result(signalBus ? SubscribeToSignal(signalName, actor, sampleInterval), 1 second)
 	}
 }
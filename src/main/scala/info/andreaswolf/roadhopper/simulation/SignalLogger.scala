@@ -7,20 +7,29 @@
 package info.andreaswolf.roadhopper.simulation
 
 import akka.actor.ActorRef
-import info.andreaswolf.roadhopper.simulation.signals.{SignalState, Process}
+import info.andreaswolf.roadhopper.simulation.signals.{ComponentProcess, SignalComponent, SignalSink, SignalState}
+import org.slf4j.LoggerFactory
 
-import scala.collection.mutable
-import scala.concurrent.Future
 
+class SignalLogger(signalBus: ActorRef, val result: SimulationResult, val interval: Int = 250)
+	extends ComponentProcess(new SignalLoggerComponent(result, interval), signalBus) {
 
-class SignalLogger(signalBus: ActorRef, val result: SimulationResult, val interval: Int = 250) extends Process(signalBus) {
+}
+
+/**
+ * Writes the complete signal state to the result every `interval` milliseconds. Must be subscribed to "time", ideally
+ * with the interval as sample interval so it is not invoked in the other time steps.
+ * <p/>
+ * As signal states are immutable, the state is stored as is, without copying it.
+ */
+class SignalLoggerComponent(val result: SimulationResult, val interval: Int = 250) extends SignalComponent {
 
-	import context.dispatcher
+	val log = LoggerFactory.getLogger(this.getClass)
 
-	override def invoke(signals: SignalState): Future[Any] = Future {
+	override def invoke(signals: SignalState, bus: SignalSink): Unit = {
 		if (time % interval == 0) {
 			result.setSignals(time, signals)
-			println(s"Logged ${signals.values.size} signal values at $time")
+			log.debug(s"Logged ${signals.size} signal values at $time")
 		}
 	}
 
@@ -1,34 +1,42 @@
 package info.andreaswolf.roadhopper.simulation
 
-import akka.actor.{ActorRef, ActorLogging}
-import akka.pattern.ask
-import com.graphhopper.util.shapes.{GHPoint, GHPoint3D}
-import info.andreaswolf.roadhopper.simulation.signals.{SignalState, Process}
-
-import scala.concurrent.{Future, ExecutionContext}
-import scala.util.Success
+import akka.actor.ActorRef
+import com.graphhopper.util.shapes.GHPoint3D
+import info.andreaswolf.roadhopper.simulation.signals.{ComponentProcess, SignalComponent, SignalHandle, SignalSink, SignalState}
 
 /**
  * Watches the vehicle status and adds them to the passed result object.
  */
 class SignalsBasedResultLogger(val result: SimulationResult, val signalBus: ActorRef, val interval: Int = 250)
-	extends Process(signalBus) with ActorLogging {
+	extends ComponentProcess(new SignalsBasedResultLoggerComponent(result, interval), signalBus) {
+
+}
 
-	import context.dispatcher
+/**
+ * The logic of the [[SignalsBasedResultLogger]]. Must be subscribed to "time", ideally with the interval as sample
+ * interval.
+ */
+class SignalsBasedResultLoggerComponent(val result: SimulationResult, val interval: Int = 250)
+	extends SignalComponent {
 
 	val defaultPosition = new GHPoint3D(0.0, 0.0, 0.0)
 
+	private val a = new SignalHandle("a")
+	private val v = new SignalHandle("v")
+	private val heading = new SignalHandle("heading")
+	private val pos = new SignalHandle("pos")
+
 
 	/**
 	 * The central routine of a process. This is invoked whenever a subscribed signal’s value changes.
 	 */
-	override def invoke(signals: SignalState): Future[Any] = Future {
+	override def invoke(signals: SignalState, bus: SignalSink): Unit = {
 		if (time % interval == 0) {
 			val state = new VehicleState(
-				signals.signalValue[Double]("a", 0.0),
-				signals.signalValue[Double]("v", 0.0),
-				signals.signalValue[Double]("heading", 0.0), // TODO implement heading!
-				Some(signals.signalValue[GHPoint3D]("pos", defaultPosition))
+				signals.doubleValue(a, 0.0),
+				signals.doubleValue(v, 0.0),
+				signals.doubleValue(heading, 0.0), // TODO implement heading!
+				Some(signals.signalValue(pos).getOrElse(defaultPosition).asInstanceOf[GHPoint3D])
 			)
 			result.setStatus(time, state)
 		}
@@ -1,19 +1,9 @@
 package info.andreaswolf.roadhopper.simulation
 
-import akka.actor.{ActorLogging, ActorRef}
-import akka.pattern.ask
-import info.andreaswolf.roadhopper.road.{RoadSegment, Route}
-import info.andreaswolf.roadhopper.simulation.signals.SignalBus.UpdateSignalValue
-import info.andreaswolf.roadhopper.simulation.signals.{Process, SignalState}
-
-import scala.collection.mutable.ListBuffer
-import scala.concurrent.Future
-
-
-case class GetRoadAhead(length: Int)
-
-// TODO rename this class once we got rid of RoadAhead in JourneyActor
-case class ReturnRoadAhead(road: List[RoadSegment])
+import akka.actor.ActorRef
+import info.andreaswolf.roadhopper.road.{RoadSegment, RoadSign, Route}
+import info.andreaswolf.roadhopper.simulation.signals.{ComponentProcess, SignalComponent, SignalSink, SignalState}
+import org.slf4j.LoggerFactory
 
 
 /**
@@ -22,29 +12,41 @@ case class ReturnRoadAhead(road: List[RoadSegment])
  * It updates the position (signal "pos") and the current road segment ("seg") according to the travelled distance ("s").
  * It also tracks the remaining road segments and knows the vehicle’s orientation (according to the current road
  * segment).
- * <p/>
- * The actor can also be asked by other components to return a given length of the road ahead. See [[GetRoadAhead]] and
- * [[ReturnRoadAhead]] for more information.
  */
-class SignalsJourneyActor(val timer: ActorRef, val signalBus: ActorRef, val route: Route)
-	extends Process(signalBus) with ActorLogging {
+class SignalsJourneyActor(timer: ActorRef, signalBus: ActorRef, val route: Route,
+                          val journey: SignalsJourneyComponent)
+	extends ComponentProcess(journey, signalBus, Some(timer)) {
+
+	def this(timer: ActorRef, signalBus: ActorRef, route: Route) = this(timer, signalBus, route, new SignalsJourneyComponent(route))
+
+}
+
+
+/**
+ * The logic of the [[SignalsJourneyActor]]. Must be subscribed to the signal "s".
+ */
+class SignalsJourneyComponent(val route: Route) extends SignalComponent {
 
-	import context.dispatcher
+	val log = LoggerFactory.getLogger(this.getClass)
 
-	val length = route.parts.map(_.length).sum
+	val length = route.length
 
 	/**
-	 * The segments remaining after the current segment
+	 * The segments of the route; the attributes of the current segment are read from here
 	 */
-	var remainingSegments = route.parts.tail
+	private val packedRoute = route.packed
+	/**
+	 * The index of the current segment in the route
+	 */
+	var currentSegmentIndex = 0
 	/**
 	 * The full segment the vehicle is currently on
 	 */
-	var currentSegment = route.parts.head
+	var currentSegment = packedRoute.toRoadSegment(0)
 	/**
 	 * The remaining part of the segment the vehicle is currently on
 	 */
-	var currentSegmentRest = route.parts.head
+	var currentSegmentRest = currentSegment
 	/**
 	 * The distance that was travelled until the start of the current segment
 	 */
@@ -58,80 +60,55 @@ class SignalsJourneyActor(val timer: ActorRef, val signalBus: ActorRef, val rout
 	var active = true
 
 
-	registerReceiver({
-		case GetRoadAhead(requestedLength) =>
-			sender ! ReturnRoadAhead(getRoadAhead(requestedLength))
-	})
-
-	def updateRoad(): Future[Any] = {
+	def updateRoad(bus: SignalSink): Unit = {
 		if (journeyEnded) {
 			log.info("Journey ended after " + travelledUntilCurrentSegment + " (not accurate!)")
 			// the shutdown will only be executed when all existing messages have been processed; therefore, we only tell the
 			// timer to stop, but leave shutting down the system up to it
-			timer ! Stop()
-			return Future.successful()
+			bus.stopSimulation()
+			return
 		}
 		// TODO dynamically calculate the distance to get (e.g. based on speed) or get it passed with the request
 		// check if we have probably advanced past the current segment
-		val oldSegment = currentSegment
+		val oldSegmentIndex = currentSegmentIndex
 		val segmentChanged = checkCurrentSegment()
 		updateCurrentSegmentRest()
 
-		val futures = ListBuffer[Future[Any]]()
-		futures += signalBus ? UpdateSignalValue("pos", currentSegmentRest.start)
+		bus.updateSignalValue("pos", currentSegmentRest.start)
 
 		// Update the segment-related signals. We must also do this for the first step, to get the velocity limit etc. into
 		// the controller
 		if (!currentRoadSet || segmentChanged) {
 			currentRoadSet = true
 
-			if (!(oldSegment isOnSameRoadAs currentSegment)) {
-				log.info(s"Switched road from ${oldSegment.roadName.getOrElse("-unknown-")}" +
-					s" to ${currentSegment.roadName.getOrElse("-unknown-")}")
-				futures append signalBus ? UpdateSignalValue("road", currentSegment.roadName.getOrElse("-unknown-"))
+			// segments are on the same road if they have the same name, see RoadSegment.isOnSameRoadAs()
+			val roadName = packedRoute.roadNameIndex(currentSegmentIndex)
+			if (roadName < 0 || roadName != packedRoute.roadNameIndex(oldSegmentIndex)) {
+				log.info(s"Switched road from ${packedRoute.roadName(oldSegmentIndex).getOrElse("-unknown-")}" +
+					s" to ${packedRoute.roadName(currentSegmentIndex).getOrElse("-unknown-")}")
+				bus.updateSignalValue("road", packedRoute.roadName(currentSegmentIndex).getOrElse("-unknown-"))
 			}
 
-			futures append signalBus ? UpdateSignalValue("seg", currentSegment)
-			futures append signalBus ? UpdateSignalValue("heading", currentSegment.orientation)
-			futures append signalBus ? UpdateSignalValue("grade", currentSegment.grade)
-			futures append signalBus ? UpdateSignalValue("v_limit", currentSegment.speedLimit)
+			bus.updateSignalValue("seg", currentSegment)
+			bus.updateSignalValue("heading", packedRoute.orientation(currentSegmentIndex))
+			bus.updateSignalValue("grade", packedRoute.grade(currentSegmentIndex))
+			bus.updateSignalValue("v_limit", packedRoute.speedLimit(currentSegmentIndex))
 		}
-
-		Future.sequence(futures.toList)
 	}
 
-	def getRoadAhead(length: Double = 150.0): List[RoadSegment] = {
-		// if the length to get is 0, we will be on the current segment for all of the look-ahead distance
-		var lengthToGet = Math.max(0, length - currentSegmentRest.length)
-
-		val segmentsAhead = new ListBuffer[RoadSegment]
-		// rare edge case: we travelled exactly to the end of the segment => we must skip it here
-		if (currentSegmentRest.length > 0.0) {
-			segmentsAhead append currentSegmentRest
-		}
-		remainingSegments.foreach(segment => {
-			if (lengthToGet > 0) {
-				segmentsAhead append segment
-				lengthToGet -= segment.length
-			}
-		})
-		// if there are no more journey parts left after the current ones, this journey will end
-		//val journeyEndsAfterFilteredSegments: Boolean = remainingSegments.length == segmentsAhead.length - 1
-
-		//sender ! RoadAhead(currentTime, segmentsAhead.toList, journeyEndsAfterFilteredSegments)
-		log.debug(f"Travelled until here: $travelledDistance, LengthToGet: $lengthToGet%.2f;" +
-			f" got length: ${segmentsAhead.toList.map(_.length).sum}%.2f;" +
-			f" segments: ${segmentsAhead.length - 1}/${remainingSegments.length}")
-
-		segmentsAhead.toList
+	/**
+	 * Returns the distance from the current position to the next road sign of the given type.
+	 */
+	def distanceToNextSign(sign: Class[_ <: RoadSign]): Option[Double] = {
+		route.distanceToNextSign(Math.min(travelledDistance, length), sign)
 	}
 
 	/**
 	 * The central routine of a process. This is invoked whenever a subscribed signal’s value changes.
 	 */
-	override def invoke(signals: SignalState): Future[Any] = {
+	override def invoke(signals: SignalState, bus: SignalSink): Unit = {
 		if (!active) {
-			return Future.successful()
+			return
 		}
 
 		travelledDistance = signals.signalValue[Double]("s", 0.0)
@@ -139,9 +116,9 @@ class SignalsJourneyActor(val timer: ActorRef, val signalBus: ActorRef, val rout
 
 		if (currentSpeed == 0.0 && Math.abs(travelledDistance - length) < 1.5) {
 			active = false
-			timer ! Stop()
+			bus.stopSimulation()
 		}
-		updateRoad()
+		updateRoad(bus)
 	}
 
 	def updateCurrentSegmentRest() = {
@@ -158,20 +135,20 @@ class SignalsJourneyActor(val timer: ActorRef, val signalBus: ActorRef, val rout
 	 */
 	def checkCurrentSegment(): Boolean = {
 				// there are more segments ahead, so just continue with the next one
-		if (remainingOnCurrentSegment < 0.0 && remainingSegments.nonEmpty) {
-			travelledUntilCurrentSegment += currentSegment.length
-
-			val nextSegment = remainingSegments.head
+		if (remainingOnCurrentSegment < 0.0 && currentSegmentIndex < packedRoute.size - 1) {
+			travelledUntilCurrentSegment = packedRoute.offsets(currentSegmentIndex + 1)
 
 			// TODO implement this using signals
 			// instruct the vehicle to turn to the new segment
-			//vehicle ! Turn(currentSegment.calculateNecessaryTurn(nextSegment))
+			//vehicle ! Turn(packedRoute.segment(i).calculateNecessaryTurn(packedRoute.segment(i + 1)))
 
-			currentSegment = nextSegment
-			remainingSegments = remainingSegments.tail
+			currentSegmentIndex += 1
+			currentSegment = packedRoute.toRoadSegment(currentSegmentIndex)
 
-			log.debug("RoadSegment ended, new segment length: " + currentSegment.length.formatted("%.2f"))
-			log.debug("Remaining segments: " + remainingSegments.length)
+			if (log.isDebugEnabled) {
+				log.debug("RoadSegment ended, new segment length: " + currentSegment.length.formatted("%.2f"))
+				log.debug("Remaining segments: " + (packedRoute.size - currentSegmentIndex - 1))
+			}
 			true
 		} else {
 			false
@@ -185,13 +162,37 @@ class SignalsJourneyActor(val timer: ActorRef, val signalBus: ActorRef, val rout
 	 * b) if we travelled until after this segment’s end.
 	 */
 	def journeyEnded: Boolean = {
-		remainingSegments.isEmpty && remainingOnCurrentSegment < 0.0 || !active
+		currentSegmentIndex == packedRoute.size - 1 && remainingOnCurrentSegment < 0.0 || !active
 	}
 
 	/**
 	 * Returns the distance remaining on the current road segment, based on its length and the distance travelled
 	 */
 	def remainingOnCurrentSegment: Double = {
-		travelledUntilCurrentSegment + currentSegment.length - travelledDistance
+		travelledUntilCurrentSegment + packedRoute.length(currentSegmentIndex) - travelledDistance
+	}
+
+	override def saveState(): Any = SignalsJourneyComponent.State(currentSegmentIndex, currentSegment,
+		currentSegmentRest, travelledUntilCurrentSegment, currentRoadSet, travelledDistance, active)
+
+	override def restoreState(state: Any): Unit = state match {
+		case SignalsJourneyComponent.State(index, segment, segmentRest, travelledUntilSegment, roadSet, travelled,
+		isActive) =>
+			currentSegmentIndex = index
+			currentSegment = segment
+			currentSegmentRest = segmentRest
+			travelledUntilCurrentSegment = travelledUntilSegment
+			currentRoadSet = roadSet
+			travelledDistance = travelled
+			active = isActive
 	}
 }
+
+object SignalsJourneyComponent {
+
+	/** The position of the vehicle on the route; the segments must belong to the route of the restored component */
+	private case class State(currentSegmentIndex: Int, currentSegment: RoadSegment, currentSegmentRest: RoadSegment,
+	                         travelledUntilCurrentSegment: Double, currentRoadSet: Boolean, travelledDistance: Double,
+	                         active: Boolean)
+
+}
@@ -9,6 +9,16 @@ package info.andreaswolf.roadhopper.simulation
 import java.lang.Long
 import java.util.Date
 
+import akka.actor.ActorSystem
+import info.andreaswolf.roadhopper.metrics.Metrics
+
+
+object Simulation {
+
+	/** The name of the counter of actor systems that were created by simulations and have not terminated yet */
+	val liveActorSystemsMetric = "simulation.liveActorSystems"
+
+}
 
 /**
  * Base class for all simulations
@@ -17,9 +27,45 @@ abstract class Simulation(val result: SimulationResult) {
 
 	val identifier = Long.toHexString(new Date().getTime + ((Math.random() - 0.5) * 10e10).round)
 
+	/** The wall-clock times (in milliseconds) at which the simulation was started and finished; 0 if it has not */
+	@volatile var startTime = 0L
+	@volatile var endTime = 0L
+
+	/** The time up to which the simulation has run, in milliseconds */
+	def simulatedTime: Int = result.lastTime
+
+	/**
+	 * The simulated time per wall-clock time, i.e. how much faster than real time the simulation runs; 0 if it has not
+	 * been started.
+	 */
+	def speed: Double = {
+		if (startTime == 0) {
+			return 0.0
+		}
+		val wallClockTime = (if (endTime > 0) endTime else System.currentTimeMillis()) - startTime
+		simulatedTime.toDouble / Math.max(wallClockTime, 1)
+	}
+
+	/**
+	 * Counts the given actor system as live in the metrics until it terminates, and marks the simulation as finished
+	 * then.
+	 */
+	protected def trackActorSystem(actorSystem: ActorSystem): Unit = {
+		Metrics.counter(Simulation.liveActorSystemsMetric).increment()
+		actorSystem.registerOnTermination({
+			Metrics.counter(Simulation.liveActorSystemsMetric).decrement()
+			endTime = System.currentTimeMillis()
+		})
+	}
+
 
 	def start(): Unit
 
 	def isFinished: Boolean
 
+	/**
+	 * Stops the simulation and releases all resources it holds, except for the result.
+	 */
+	def shutdown(): Unit = {}
+
 }
@@ -6,18 +6,31 @@
 
 package info.andreaswolf.roadhopper.simulation
 
+import info.andreaswolf.roadhopper.persistence.{EvictingRepository, RepositoryStatistics}
 import org.slf4j.LoggerFactory
 
-import scala.collection.mutable
 
-
-class SimulationRepository {
+/**
+ * In-memory storage for simulations and their results.
+ * <p/>
+ * Finished simulations are evicted if there are more than `maxEntries` of them, if their logged signals take up more
+ * than `maxSignalBytes`, or if they were not requested for `timeToLive` milliseconds. Running simulations are never
+ * evicted. When a simulation is evicted, it is shut down and its result is closed.
+ */
+class SimulationRepository(val maxEntries: Int = 100, val maxSignalBytes: Long = 1024L * 1024 * 1024,
+                           val timeToLive: Long = 60 * 60 * 1000L) {
 
 	type T = Simulation
 
 	val log = LoggerFactory.getLogger(this.getClass)
 
-	private val simulations = new mutable.HashMap[String, T]()
+	private val simulations = new EvictingRepository[T](maxEntries, maxSignalBytes, timeToLive,
+		weigher = _.result.signals.sizeInBytes,
+		// the result of a running simulation grows
+		isMutable = !_.isFinished,
+		isEvictable = _.isFinished,
+		onEviction = release
+	)
 
 
 	def add(sim: T) = {
@@ -25,8 +38,19 @@ class SimulationRepository {
 		log.debug(s"Added simulation with id ${sim.identifier}")
 	}
 
-	def getByIdentifier[T](id: String) = simulations.get(id).get
+	def getByIdentifier(id: String): Option[T] = simulations.get(id)
 
 	def has(id: String) = simulations.contains(id)
 
+	def statistics: RepositoryStatistics = simulations.statistics
+
+	/** All stored simulations, running or finished; this does not count as a request for the time to live */
+	def all: List[T] = simulations.values
+
+	private def release(sim: T): Unit = {
+		log.debug(s"Evicting simulation with id ${sim.identifier}")
+		sim.shutdown()
+		sim.result.close()
+	}
+
 }
@@ -1,6 +1,7 @@
 package info.andreaswolf.roadhopper.simulation
 
 import info.andreaswolf.roadhopper.simulation.signals.SignalState
+import info.andreaswolf.roadhopper.simulation.storage.ColumnarSignalStore
 
 import scala.collection.mutable
 
@@ -16,15 +17,32 @@ class SimulationResult {
 	val map: mutable.Map[Int, VehicleState] = new mutable.LinkedHashMap[Int, VehicleState]()
 
 	/**
-	 * All signal states, indexed by the time. Using a LinkedHashMap to preserve insertion order.
+	 * The values of all numeric signals, stored column by column in the order they were logged.
 	 */
-	val signals: mutable.Map[Int, SignalState] = new mutable.LinkedHashMap[Int, SignalState]()
+	val signals = new ColumnarSignalStore()
+
+	/**
+	 * The latest time anything was logged for, in milliseconds.
+	 */
+	@volatile
+	var lastTime = 0
 
 	@deprecated
-	def setStatus(time: Int, status: VehicleState) = map.put(time, status)
+	def setStatus(time: Int, status: VehicleState) = {
+		map.put(time, status)
+		lastTime = Math.max(lastTime, time)
+	}
 
 	/** Adds signal values for the given time step. */
-	def setSignals(time: Int, signalState: SignalState) = signals.put(time, signalState)
+	def setSignals(time: Int, signalState: SignalState) = {
+		signals.append(time, signalState)
+		lastTime = Math.max(lastTime, time)
+	}
+
+	/**
+	 * Releases the storage of the logged signals. The result must not be used afterwards.
+	 */
+	def close(): Unit = signals.close()
 
 	@deprecated
 	def toJsonObject = {
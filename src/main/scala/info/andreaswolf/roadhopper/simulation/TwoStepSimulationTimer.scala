@@ -21,7 +21,12 @@ case class Stop()
 
 case class RegisterActor(actor: ActorRef)
 
-case class RegisterProcess(process: ActorRef)
+/**
+ * Registers a process that should be told the current time.
+ *
+ * @param sampleInterval The interval (in milliseconds) of the time steps the process is told about; 0 for every step
+ */
+case class RegisterProcess(process: ActorRef, sampleInterval: Int = 0)
 
 case class ScheduleStep(time: Int, actor: ActorRef)
 
@@ -55,6 +60,11 @@ class TwoStepSimulationTimer extends Actor with ActorLogging {
 	 */
 	val processes = new ListBuffer[ActorRef]()
 
+	/**
+	 * The sample intervals of all processes that are not told every time step.
+	 */
+	val sampleIntervals = new mutable.HashMap[ActorRef, Int]()
+
 	/**
 	 * All scheduled invocations of actors (not processes!), indexed by the time they should be called.
 	 */
@@ -111,7 +121,8 @@ class TwoStepSimulationTimer extends Actor with ActorLogging {
 			{
 				// tell time to actors and processes…
 				val actorFutures = new ListBuffer[Future[Any]]()
-				(actors ++ processes).foreach { actor => actorFutures.append(actor ? TellTime(currentTime)) }
+				val dueProcesses = processes.filter(process => sampleIntervals.get(process).forall(currentTime % _ == 0))
+				(actors ++ dueProcesses).foreach { actor => actorFutures.append(actor ? TellTime(currentTime)) }
 				// wait for the result of the StepUpdate messages ...
 				Future.sequence(actorFutures.toList)
 			} flatMap {
@@ -157,8 +168,15 @@ class TwoStepSimulationTimer extends Actor with ActorLogging {
 			actors append actor
 			sender() ! true
 
-		case RegisterProcess(process) =>
-			processes append process
+		case RegisterProcess(process, sampleInterval) =>
+			if (!processes.contains(process)) {
+				processes append process
+			}
+			if (sampleInterval > 0) {
+				sampleIntervals.put(process, sampleInterval)
+			} else {
+				sampleIntervals.remove(process)
+			}
 			sender() ! true
 
 		case StartSimulation() =>
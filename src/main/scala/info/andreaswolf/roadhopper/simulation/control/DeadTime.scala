@@ -7,11 +7,7 @@
 package info.andreaswolf.roadhopper.simulation.control
 
 import akka.actor.ActorRef
-import akka.pattern.ask
-import info.andreaswolf.roadhopper.simulation.signals.SignalBus.ScheduleSignalUpdate
-import info.andreaswolf.roadhopper.simulation.signals.{SignalState, Process}
-
-import scala.concurrent.Future
+import info.andreaswolf.roadhopper.simulation.signals.{ComponentProcess, SignalComponent, SignalSink, SignalState}
 
 
 /**
@@ -19,10 +15,18 @@ import scala.concurrent.Future
  *
  * @param delay The delay in milliseconds
  */
-class DeadTime(inputSignalName: String, delay: Int, outputSignalName: String, bus: ActorRef) extends Process(bus) {
+class DeadTime(inputSignalName: String, delay: Int, outputSignalName: String, bus: ActorRef)
+	extends ComponentProcess(new DeadTimeComponent(inputSignalName, delay, outputSignalName), bus) {
+
+}
+
+/**
+ * The logic of the [[DeadTime]] controller.
+ */
+class DeadTimeComponent(inputSignalName: String, delay: Int, outputSignalName: String) extends SignalComponent {
 
-	override def invoke(signals: SignalState): Future[Any] = {
-		bus ? ScheduleSignalUpdate(delay, outputSignalName, signals.signalValue(inputSignalName).getOrElse(0.0))
+	override def invoke(signals: SignalState, bus: SignalSink): Unit = {
+		bus.scheduleSignalUpdate(delay, outputSignalName, signals.signalValue(inputSignalName).getOrElse(0.0))
 	}
 
 }
@@ -6,7 +6,15 @@
 
 package info.andreaswolf.roadhopper.simulation.control
 
-import scala.concurrent.{ExecutionContext, Future}
+import info.andreaswolf.roadhopper.simulation.control.FirstOrderBlock.State
+
+
+object FirstOrderBlock {
+
+	/** The current and next state and the time of a block */
+	type State = (ControllerState[Double], ControllerState[Double], Int)
+
+}
 
 
 /**
@@ -27,7 +35,7 @@ abstract class FirstOrderBlock {
 	var time = 0
 
 
-	def timeAdvanced(oldTime: Int, newTime: Int)(implicit ec: ExecutionContext): Future[Unit] = Future {
+	def timeAdvanced(oldTime: Int, newTime: Int): Unit = {
 		time = newTime
 		if (nextState != null) {
 			currentState = nextState
@@ -56,6 +64,17 @@ abstract class FirstOrderBlock {
 	}
 
 
+	/** Returns the state of this block, to be saved as part of the state of the component that uses it */
+	def saveState(): State = (currentState, nextState, time)
+
+	/** Restores a state returned by [[saveState()]] */
+	def restoreState(state: State): Unit = {
+		currentState = state._1
+		nextState = state._2
+		time = state._3
+	}
+
+
 	/**
 	 * Computes a new output value based on the function this class should implement.
 	 *
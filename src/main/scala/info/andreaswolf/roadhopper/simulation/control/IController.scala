@@ -6,12 +6,8 @@
 
 package info.andreaswolf.roadhopper.simulation.control
 
-import akka.actor.{ActorLogging, ActorRef}
-import akka.pattern.ask
-import info.andreaswolf.roadhopper.simulation.signals.SignalBus.UpdateSignalValue
-import info.andreaswolf.roadhopper.simulation.signals.{Process, SignalState}
-
-import scala.concurrent.Future
+import akka.actor.ActorRef
+import info.andreaswolf.roadhopper.simulation.signals.{ComponentProcess, SignalComponent, SignalHandle, SignalSink, SignalState}
 
 
 /**
@@ -19,26 +15,38 @@ import scala.concurrent.Future
  *
  * TODO implement a proportionality factor
  */
-class IController(inputSignalName: String, outputSignalName: String, signalBus: ActorRef) extends Process(signalBus)
-with ActorLogging {
+class IController(inputSignalName: String, outputSignalName: String, signalBus: ActorRef)
+	extends ComponentProcess(new IControllerComponent(inputSignalName, outputSignalName), signalBus) {
+
+}
 
-	import context.dispatcher
+/**
+ * The logic of the [[IController]].
+ */
+class IControllerComponent(inputSignalName: String, outputSignalName: String) extends SignalComponent {
 
 	val _integrator = new Integrator()
 
-	override def timeAdvanced(oldTime: Int, newTime: Int): Future[Unit] = Future {
+	private val inputSignal = new SignalHandle(inputSignalName)
+	private val outputSignal = new SignalHandle(outputSignalName)
+
+	override def timeAdvanced(oldTime: Int, newTime: Int): Unit = {
 		_integrator.timeAdvanced(oldTime, newTime)
 	}
 
 	/**
 	 * The central routine of a process. This is invoked whenever a subscribed signal’s value changes.
 	 */
-	override def invoke(signals: SignalState): Future[Any] = {
-		val currentInput = signals.signalValue(inputSignalName, 0.0)
+	override def invoke(signals: SignalState, bus: SignalSink): Unit = {
+		val currentInput = signals.doubleValue(inputSignal, 0.0)
 		if (_integrator.update(currentInput)) {
-			signalBus ? UpdateSignalValue(outputSignalName, _integrator.nextState.currentOutput)
-		} else {
-			Future.successful()
+			bus.updateSignalValue(outputSignal, _integrator.nextState.currentOutput)
 		}
 	}
+
+	override def saveState(): Any = _integrator.saveState()
+
+	override def restoreState(state: Any): Unit = {
+		_integrator.restoreState(state.asInstanceOf[FirstOrderBlock.State])
+	}
 }
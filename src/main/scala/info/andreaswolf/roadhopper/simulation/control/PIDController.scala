@@ -6,12 +6,8 @@
 
 package info.andreaswolf.roadhopper.simulation.control
 
-import akka.actor.{ActorLogging, ActorRef}
-import akka.pattern.ask
-import info.andreaswolf.roadhopper.simulation.signals.SignalBus.UpdateSignalValue
-import info.andreaswolf.roadhopper.simulation.signals.{Process, SignalState}
-
-import scala.concurrent.Future
+import akka.actor.ActorRef
+import info.andreaswolf.roadhopper.simulation.signals.{ComponentProcess, SignalComponent, SignalHandle, SignalSink, SignalState}
 
 /**
  * A controller consisting of a parallel proportional, integral and differential part.
@@ -22,14 +18,26 @@ import scala.concurrent.Future
 class PIDController(val inputSignalName: String, val outputSignalName: String,
                     val proportionalGain: Double, val integratorGain: Double, val differentiatorGain: Double,
                     override val bus: ActorRef)
-	extends Process(bus) with ActorLogging {
+	extends ComponentProcess(
+		new PIDControllerComponent(inputSignalName, outputSignalName, proportionalGain, integratorGain, differentiatorGain),
+		bus
+	) {
 
-	import context.dispatcher
+}
 
+/**
+ * The logic of the [[PIDController]].
+ */
+class PIDControllerComponent(val inputSignalName: String, val outputSignalName: String,
+                             val proportionalGain: Double, val integratorGain: Double, val differentiatorGain: Double)
+	extends SignalComponent {
 
 	val integrator = new Integrator(integratorGain)
 	val differentiator = new Differentiator(differentiatorGain)
 
+	private val inputSignal = new SignalHandle(inputSignalName)
+	private val outputSignal = new SignalHandle(outputSignalName)
+
 
 	val initialState = new ControllerState[Double](0.0, 0.0, 0)
 
@@ -41,7 +49,7 @@ class PIDController(val inputSignalName: String, val outputSignalName: String,
 	var nextState: ControllerState[Double] = initialState
 
 
-	override def timeAdvanced(oldTime: Int, newTime: Int): Future[Unit] = Future {
+	override def timeAdvanced(oldTime: Int, newTime: Int): Unit = {
 		if (nextState != null) {
 			currentState = nextState
 			nextState = null
@@ -50,12 +58,12 @@ class PIDController(val inputSignalName: String, val outputSignalName: String,
 		differentiator.timeAdvanced(oldTime, newTime)
 	}
 
-	override def invoke(signals: SignalState): Future[Any] = {
+	override def invoke(signals: SignalState, bus: SignalSink): Unit = {
 		val deltaT = time - currentState.time
 		if (deltaT == 0) {
-			return Future.successful()
+			return
 		}
-		val currentInput = signals.signalValue(inputSignalName, 0.0)
+		val currentInput = signals.doubleValue(inputSignal, 0.0)
 
 		integrator.update(currentInput)
 		differentiator.update(currentInput)
@@ -70,7 +78,18 @@ class PIDController(val inputSignalName: String, val outputSignalName: String,
 		// this controller within the current time step. These would then use the new values already, which is wrong.
 		nextState = new ControllerState[Double](output, currentInput, currentState, time)
 
-		bus ? UpdateSignalValue(outputSignalName, output)
+		bus.updateSignalValue(outputSignal, output)
+	}
+
+	override def saveState(): Any = (currentState, nextState, integrator.saveState(), differentiator.saveState())
+
+	override def restoreState(state: Any): Unit = {
+		val (current, next, integratorState, differentiatorState) = state.asInstanceOf[(ControllerState[Double],
+			ControllerState[Double], FirstOrderBlock.State, FirstOrderBlock.State)]
+		currentState = current
+		nextState = next
+		integrator.restoreState(integratorState)
+		differentiator.restoreState(differentiatorState)
 	}
 
 }
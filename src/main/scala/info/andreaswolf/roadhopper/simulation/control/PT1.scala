@@ -6,12 +6,9 @@
 
 package info.andreaswolf.roadhopper.simulation.control
 
-import akka.actor.{ActorLogging, ActorRef}
-import akka.pattern.ask
-import info.andreaswolf.roadhopper.simulation.signals.SignalBus.UpdateSignalValue
-import info.andreaswolf.roadhopper.simulation.signals.{Process, SignalState}
-
-import scala.concurrent.Future
+import akka.actor.ActorRef
+import info.andreaswolf.roadhopper.simulation.signals.{ComponentProcess, SignalComponent, SignalHandle, SignalSink, SignalState}
+import org.slf4j.LoggerFactory
 
 /**
  * A PT1 proportional time-invariant controller.
@@ -22,9 +19,22 @@ import scala.concurrent.Future
  *                        of this controller to listen to the signal.
  */
 class PT1(inputSignalName: String, outputSignalName: String, timeConstant: Int, amplification: Double = 1.0,
-          initialValue: Double = 0.0, bus: ActorRef) extends Process(bus) with ActorLogging {
+          initialValue: Double = 0.0, bus: ActorRef)
+	extends ComponentProcess(new PT1Component(inputSignalName, outputSignalName, timeConstant, amplification, initialValue),
+		bus) {
+
+}
+
+/**
+ * The logic of the [[PT1]] controller.
+ */
+class PT1Component(inputSignalName: String, outputSignalName: String, timeConstant: Int, amplification: Double = 1.0,
+                   initialValue: Double = 0.0) extends SignalComponent {
+
+	val log = LoggerFactory.getLogger(this.getClass)
 
-	import context.dispatcher
+	private val inputSignal = new SignalHandle(inputSignalName)
+	private val outputSignal = new SignalHandle(outputSignalName)
 
 	/**
 	 * The last time this process was invoked *before* the current time. This value does not change during one time step,
@@ -44,28 +54,38 @@ class PT1(inputSignalName: String, outputSignalName: String, timeConstant: Int,
 	var lastOutput = 0.0
 
 
-	override def timeAdvanced(oldTime: Int, newTime: Int): Future[Unit] = Future {
+	override def timeAdvanced(oldTime: Int, newTime: Int): Unit = {
 		lastTimeStep = lastInvocationTime
 	}
 
 	/**
 	 * The central routine of a process. This is invoked whenever a subscribed signal’s value changes.
 	 */
-	override def invoke(signals: SignalState): Future[Any] = {
-		val currentInput = signals.signalValue(inputSignalName, initialValue)
+	override def invoke(signals: SignalState, bus: SignalSink): Unit = {
+		val currentInput = signals.doubleValue(inputSignal, initialValue)
 
 		val deltaT = time - lastTimeStep
 		if (deltaT == 0) {
 			log.error("No time passed since last invocation: Cannot update signal")
-			return Future.successful()
+			return
 		}
 
-		val timeFactor = 1.0 / (timeConstant / deltaT + 1.0)
+		// use floating point division: with variable time steps, deltaT need not divide the time constant
+		val timeFactor = 1.0 / (timeConstant.toDouble / deltaT + 1.0)
 		val newValue = timeFactor * (amplification * currentInput - lastOutput) + lastOutput
 		lastOutput = newValue
 		lastInvocationTime = time
 
-		bus ? UpdateSignalValue(outputSignalName, newValue)
+		bus.updateSignalValue(outputSignal, newValue)
+	}
+
+	override def saveState(): Any = (lastTimeStep, lastInvocationTime, lastOutput)
+
+	override def restoreState(state: Any): Unit = state match {
+		case (timeStep: Int, invocationTime: Int, output: Double) =>
+			lastTimeStep = timeStep
+			lastInvocationTime = invocationTime
+			lastOutput = output
 	}
 
 }
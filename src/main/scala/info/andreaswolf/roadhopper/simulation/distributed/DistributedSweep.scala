@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2015 Andreas Wolf
+ *
+ * See te LICENSE file in the project root for further copyright information.
+ */
+
+package info.andreaswolf.roadhopper.simulation.distributed
+
+import akka.actor.{ActorSystem, Address, ExtendedActorSystem, Props}
+import com.typesafe.config.{Config, ConfigFactory}
+import info.andreaswolf.roadhopper.simulation.SimulationParameters
+import info.andreaswolf.roadhopper.simulation.distributed.SimulationCoordinator.Submit
+import info.andreaswolf.roadhopper.simulation.sweep.SweepResult
+
+import scala.concurrent.{Future, Promise}
+
+
+object DistributedSweep {
+
+	/**
+	 * The configuration for an actor system that can be reached from other JVMs.
+	 *
+	 * @param port The port to listen on; 0 for a random port
+	 */
+	def remoteConfig(host: String, port: Int): Config = ConfigFactory.parseString(
+		s"""
+		   |akka.actor.provider = "akka.remote.RemoteActorRefProvider"
+		   |akka.remote.enabled-transports = ["akka.remote.netty.tcp"]
+		   |akka.remote.netty.tcp.hostname = "$host"
+		   |akka.remote.netty.tcp.port = $port
+		 """.stripMargin).withFallback(ConfigFactory.load())
+
+}
+
+
+/**
+ * Runs the variants of a parameter sweep on worker JVMs instead of the local
+ * [[info.andreaswolf.roadhopper.simulation.sweep.ParameterSweep]] threads, for sweeps that are too large for one
+ * machine.
+ * <p/>
+ * This starts a [[SimulationCoordinator]] that listens on the given address; the workers are started separately (see
+ * [[SimulationWorker.main()]]) and connect to it. Each variant is simulated like in
+ * [[info.andreaswolf.roadhopper.simulation.sweep.ParameterSweep.runVariant()]].
+ *
+ * @param port The port the coordinator listens on; 0 for a random port, or -1 to disable distributed sweeps
+ * @param jobTimeout The time (in milliseconds) a worker may take for one variant before it is run again, see
+ *                   [[SimulationCoordinator]]
+ */
+class DistributedSweep(val host: String, val port: Int, val jobTimeout: Long, config: Config) {
+
+	def this(host: String, port: Int, jobTimeout: Long) = this(host, port, jobTimeout, ConfigFactory.empty())
+
+	val enabled = port >= 0
+
+	private val system = if (enabled) {
+		Some(ActorSystem(SimulationCoordinator.systemName, config.withFallback(DistributedSweep.remoteConfig(host, port))))
+	} else {
+		None
+	}
+
+	private val coordinator = system.map(_.actorOf(Props(new SimulationCoordinator(jobTimeout)), SimulationCoordinator.name))
+
+	/**
+	 * The address the coordinator actually listens on, e.g. to find out the port if it was chosen randomly.
+	 */
+	def address: Option[Address] = system.map(_.asInstanceOf[ExtendedActorSystem].provider.getDefaultAddress)
+
+	/**
+	 * Runs the given variants on the workers. The results are in the same order as the variants. If no worker is
+	 * connected, the future fails with an IllegalStateException.
+	 */
+	def run(variants: List[SimulationParameters]): Future[List[SweepResult]] = {
+		coordinator match {
+			case Some(ref) =>
+				val results = Promise[List[SweepResult]]()
+				ref ! Submit(variants, results)
+				results.future
+
+			case None =>
+				throw new IllegalStateException("Distributed sweeps are disabled; set roadhopper.coordinator.port to enable them")
+		}
+	}
+
+	def shutdown(): Unit = system.foreach(_.shutdown())
+
+}
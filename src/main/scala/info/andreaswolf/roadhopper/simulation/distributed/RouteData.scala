@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2015 Andreas Wolf
+ *
+ * See te LICENSE file in the project root for further copyright information.
+ */
+
+package info.andreaswolf.roadhopper.simulation.distributed
+
+import com.graphhopper.util.shapes.{GHPoint, GHPoint3D}
+import info.andreaswolf.roadhopper.road._
+import info.andreaswolf.roadhopper.simulation.SimulationParameters
+import info.andreaswolf.roadhopper.simulation.SimulationParameters.{PedalParameters, VelocityControllerParameters}
+import info.andreaswolf.roadhopper.simulation.vehicle.VehicleParameters
+
+import scala.collection.mutable.ArrayBuffer
+
+
+object RouteData {
+
+	val stopSign = "stop"
+	val trafficLight = "trafficLight"
+
+	/**
+	 * Copies the segments of the route, see [[Route.packed]].
+	 *
+	 * @param key The key by which the jobs refer to the route; must be unique for the coordinator
+	 */
+	def fromRoute(key: Long, route: Route): RouteData = {
+		val packed = route.packed
+		val size = packed.size
+
+		val signIndexes = new ArrayBuffer[Int]
+		val signs = new ArrayBuffer[RoadSign]
+		(0 until size).foreach(i => packed.roadSign(i).foreach(sign => {
+			signIndexes append i
+			signs append sign
+		}))
+
+		new RouteData(key,
+			Array.tabulate(size)(packed.startLatitude), Array.tabulate(size)(packed.startLongitude),
+			Array.tabulate(size)(packed.startElevation),
+			Array.tabulate(size)(packed.endLatitude), Array.tabulate(size)(packed.endLongitude),
+			Array.tabulate(size)(packed.endElevation),
+			Array.tabulate(size)(packed.speedLimit), packed.roadNames, Array.tabulate(size)(packed.roadNameIndex),
+			signIndexes.toArray, signs.map({
+				case _: StopSign => stopSign
+				case _: TrafficLight => trafficLight
+				case sign => throw new IllegalArgumentException(s"Unknown road sign ${sign.typeInfo}")
+			}).toArray, signs.map(_.id).toArray, signs.map(_.coordinates.lat).toArray, signs.map(_.coordinates.lon).toArray
+		)
+	}
+
+}
+
+
+/**
+ * The segments of a [[Route]] in a form that can be sent to another JVM: the GraphHopper points are not serializable,
+ * so all attributes are stored column-wise in arrays, like in a [[PackedRoute]].
+ *
+ * @param nameIndexes The index of each segment’s name in the road names, or -1 if the segment has no name
+ * @param signIndexes The indexes of the segments with a road sign at their end
+ * @param signTypes The type of each road sign, see [[RouteData.stopSign]] and [[RouteData.trafficLight]]
+ */
+class RouteData(val key: Long,
+                startLatitudes: Array[Double], startLongitudes: Array[Double], startElevations: Array[Double],
+                endLatitudes: Array[Double], endLongitudes: Array[Double], endElevations: Array[Double],
+                speedLimits: Array[Double], roadNames: Array[String], nameIndexes: Array[Int],
+                signIndexes: Array[Int], signTypes: Array[String], signIds: Array[Int],
+                signLatitudes: Array[Double], signLongitudes: Array[Double]) extends Serializable {
+
+	def size: Int = speedLimits.length
+
+	/**
+	 * Creates the route from the copied segments.
+	 */
+	def toRoute: Route = {
+		val segments = Array.tabulate(size)(i => {
+			val segment = new RoadSegment(
+				new GHPoint3D(startLatitudes(i), startLongitudes(i), startElevations(i)),
+				new GHPoint3D(endLatitudes(i), endLongitudes(i), endElevations(i)),
+				speedLimits(i)
+			)
+			if (nameIndexes(i) >= 0) {
+				segment.setRoadName(roadNames(nameIndexes(i)))
+			}
+			segment
+		})
+		signIndexes.indices.foreach(i => {
+			val coordinates = new GHPoint(signLatitudes(i), signLongitudes(i))
+			segments(signIndexes(i)).setRoadSign(signTypes(i) match {
+				case RouteData.stopSign => new StopSign(signIds(i), coordinates)
+				case RouteData.trafficLight => new TrafficLight(signIds(i), coordinates)
+			})
+		})
+		new Route(segments.toList)
+	}
+
+}
+
+
+object SimulationParametersData {
+
+	def fromParameters(parameters: SimulationParameters, routeKey: Long): SimulationParametersData = {
+		val vehicle = parameters.vehicle
+		new SimulationParametersData(routeKey,
+			parameters.velocityController.proportionalGain, parameters.velocityController.integratorGain,
+			parameters.velocityController.differentiatorGain,
+			parameters.pedal.gasPedalGain, parameters.pedal.brakePedalGain,
+			vehicle.mass, vehicle.dragCoefficient, vehicle.dragReferenceArea, vehicle.wheelRadius,
+			vehicle.wheelDragCoefficient, vehicle.maximumEnginePower, vehicle.maximumEngineTorque, vehicle.maximumEngineRpm,
+			vehicle.engineEfficiencyFactor, vehicle.transmissionRatio, vehicle.maximumBrakingForce)
+	}
+
+}
+
+
+/**
+ * The [[SimulationParameters]] in a form that can be sent to another JVM; the route is referenced by its key (see
+ * [[RouteData]]), so it only needs to be sent once for all jobs on the route.
+ */
+class SimulationParametersData(val routeKey: Long,
+                               proportionalGain: Double, integratorGain: Double, differentiatorGain: Double,
+                               gasPedalGain: Double, brakePedalGain: Double,
+                               mass: Int, dragCoefficient: Double, dragReferenceArea: Double, wheelRadius: Int,
+                               wheelDragCoefficient: Double, maximumEnginePower: Int, maximumEngineTorque: Int,
+                               maximumEngineRpm: Int, engineEfficiencyFactor: Int, transmissionRatio: Double,
+                               maximumBrakingForce: Int) extends Serializable {
+
+	def toParameters(route: Route): SimulationParameters = new SimulationParameters(
+		new VelocityControllerParameters(proportionalGain, integratorGain, differentiatorGain),
+		new PedalParameters(gasPedalGain, brakePedalGain),
+		new VehicleParameters(mass, dragCoefficient, dragReferenceArea, wheelRadius, wheelDragCoefficient,
+			maximumEnginePower, maximumEngineTorque, maximumEngineRpm, engineEfficiencyFactor, transmissionRatio,
+			maximumBrakingForce),
+		route
+	)
+
+}
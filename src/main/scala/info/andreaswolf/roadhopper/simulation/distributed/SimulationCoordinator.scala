@@ -0,0 +1,253 @@
+/*
+ * Copyright (c) 2015 Andreas Wolf
+ *
+ * See te LICENSE file in the project root for further copyright information.
+ */
+
+package info.andreaswolf.roadhopper.simulation.distributed
+
+import java.util
+
+import akka.actor.{Actor, ActorRef, Terminated}
+import info.andreaswolf.roadhopper.metrics.Metrics
+import info.andreaswolf.roadhopper.road.Route
+import info.andreaswolf.roadhopper.simulation.SimulationParameters
+import info.andreaswolf.roadhopper.simulation.sweep.{SimulationSummary, SweepResult}
+import org.slf4j.LoggerFactory
+
+import scala.collection.mutable
+import scala.concurrent.Promise
+import scala.concurrent.duration._
+
+
+object SimulationCoordinator {
+
+	/** The name of the actor system of the coordinator */
+	val systemName = "roadhopper-coordinator"
+
+	/** The name of the coordinator actor */
+	val name = "coordinator"
+
+	/** Sent by a worker to offer running the given number of jobs at the same time */
+	case class RegisterWorker(capacity: Int)
+
+	/**
+	 * Sent to a worker to run an attempt of a job; the route is only included if it was not sent to this worker before
+	 */
+	case class RunJob(jobId: Long, attempt: Int, parameters: SimulationParametersData, route: Option[RouteData])
+
+	/** Sent by a worker once an attempt of a job has finished */
+	case class JobFinished(jobId: Long, attempt: Int, summary: Option[SimulationSummary], error: Option[String])
+
+	/** Runs the variants on the workers and completes the promise with their results; only sent locally */
+	case class Submit(variants: List[SimulationParameters], results: Promise[List[SweepResult]])
+
+	/** Sent to the coordinator itself when the deadline of a job’s attempt has passed */
+	private case class CheckDeadline(jobId: Long, attempt: Int)
+
+}
+
+
+/**
+ * Distributes simulation jobs to workers in other JVMs (see [[SimulationWorker]]), which connect to it via Akka
+ * remoting.
+ * <p/>
+ * Each worker tells how many jobs it can run at the same time; the jobs are queued and always sent to the worker with
+ * the most free slots. The route of a job is only sent once to each worker. If a worker is lost (i.e. the remote
+ * death watch reports it as terminated), its running jobs are queued again and run on the other workers. A job that
+ * did not finish within the job timeout is queued again as well; its slot stays taken until the worker reports the job
+ * as finished, so a hung worker gets no new jobs. A job that was lost or timed out [[maximumAttempts]] times fails.
+ * <p/>
+ * Jobs are only queued while at least one worker is registered: a batch submitted without any worker fails right away,
+ * and the queued jobs fail when the last worker is lost.
+ * <p/>
+ * The coordinator reports the number of workers ("coordinator.workers") and of queued jobs ("coordinator.queued") as
+ * gauges, and counts the jobs that were queued again after losing a worker or timing out ("coordinator.requeued").
+ *
+ * @param jobTimeout The time (in milliseconds) a worker may take for one job
+ */
+class SimulationCoordinator(val jobTimeout: Long) extends Actor {
+
+	import SimulationCoordinator._
+
+	val log = LoggerFactory.getLogger(this.getClass)
+
+	/** The number of times a job is started before it fails */
+	val maximumAttempts = 3
+
+	private class Batch(val variants: Array[SimulationParameters], val promise: Promise[List[SweepResult]]) {
+
+		private val results = new Array[SweepResult](variants.length)
+
+		private var remaining = variants.length
+
+		def complete(index: Int, summary: Option[SimulationSummary], error: Option[String]): Unit = {
+			if (results(index) == null) {
+				results(index) = new SweepResult(index, variants(index), summary, error)
+				remaining -= 1
+				if (remaining == 0) {
+					promise.success(results.toList)
+				}
+			}
+		}
+
+	}
+
+	private class Job(val id: Long, val batch: Batch, val index: Int, val parameters: SimulationParametersData,
+	                  val route: RouteData) {
+
+		var attempts = 0
+
+		def fail(error: String): Unit = batch.complete(index, None, Some(error))
+
+	}
+
+	private class Worker(val ref: ActorRef, val capacity: Int) {
+
+		/** The running jobs by their id and attempt; a job can be run again on the same worker after it timed out */
+		val running = new mutable.HashMap[(Long, Int), Job]()
+
+		/** The attempts that timed out on this worker, but were not reported as finished yet; they still take a slot */
+		val timedOut = new mutable.HashMap[(Long, Int), Job]()
+
+		/** The keys of the routes sent to this worker */
+		val routes = new mutable.HashSet[Long]()
+
+		def freeSlots: Int = capacity - running.size - timedOut.size
+
+	}
+
+	private val pending = new util.ArrayDeque[Job]()
+
+	private val workers = new mutable.LinkedHashMap[ActorRef, Worker]()
+
+	private var nextJobId = 0L
+
+	private var nextRouteKey = 0L
+
+	private val requeued = Metrics.counter("coordinator.requeued")
+
+	@volatile
+	private var workerCount = 0
+
+	@volatile
+	private var queuedCount = 0
+
+	Metrics.gauge("coordinator.workers", () => workerCount)
+	Metrics.gauge("coordinator.queued", () => queuedCount)
+
+
+	override def receive: Receive = {
+		case RegisterWorker(capacity) =>
+			if (!workers.contains(sender())) {
+				log.info(s"Worker ${sender().path.address} registered with $capacity slots")
+				context.watch(sender())
+				workers.put(sender(), new Worker(sender(), capacity))
+			}
+			dispatch()
+
+		case Submit(variants, results) =>
+			submit(variants, results)
+			dispatch()
+
+		case JobFinished(jobId, attempt, summary, error) =>
+			workers.get(sender()).foreach(worker => {
+				// the result of an attempt that timed out is still taken if it arrives late; the result of the next attempt
+				// is then ignored
+				val key = (jobId, attempt)
+				worker.running.remove(key).orElse(worker.timedOut.remove(key)).foreach(job => {
+					job.batch.complete(job.index, summary, error)
+				})
+			})
+			dispatch()
+
+		case CheckDeadline(jobId, attempt) =>
+			val key = (jobId, attempt)
+			workers.values.find(_.running.contains(key)).foreach(worker => {
+				val job = worker.running.remove(key).get
+				log.warn(s"Job $jobId did not finish on worker ${worker.ref.path.address} within $jobTimeout ms")
+				worker.timedOut.put(key, job)
+				retry(List(job), s"Job did not finish within $jobTimeout ms on $maximumAttempts workers")
+			})
+			dispatch()
+
+		case Terminated(ref) =>
+			workers.remove(ref).foreach(worker => {
+				log.warn(s"Lost worker ${ref.path.address} with ${worker.running.size} running jobs")
+				retry(worker.running.values.toList, s"Job was lost on $maximumAttempts workers")
+			})
+			if (workers.isEmpty && !pending.isEmpty) {
+				log.warn(s"Lost the last worker; failing ${pending.size()} queued jobs")
+				while (!pending.isEmpty) {
+					pending.poll().fail("All workers were lost")
+				}
+			}
+			dispatch()
+	}
+
+	/**
+	 * Puts the jobs back at the front of the queue, in their original order, or fails those that were already tried
+	 * [[maximumAttempts]] times.
+	 */
+	private def retry(jobs: List[Job], error: String): Unit = {
+		jobs.sortBy(-_.id).foreach(job => {
+			job.attempts += 1
+			if (job.attempts >= maximumAttempts) {
+				job.fail(error)
+			} else {
+				requeued.increment()
+				pending.addFirst(job)
+			}
+		})
+	}
+
+	private def submit(variants: List[SimulationParameters], results: Promise[List[SweepResult]]): Unit = {
+		if (variants.isEmpty) {
+			results.success(List())
+			return
+		}
+		if (workers.isEmpty) {
+			log.warn(s"Rejecting ${variants.size} jobs, as no worker is registered")
+			results.failure(new IllegalStateException("No worker is registered with the coordinator"))
+			return
+		}
+		log.info(s"Queueing ${variants.size} jobs for ${workers.size} workers")
+		val batch = new Batch(variants.toArray, results)
+		// the variants of a sweep usually share the same route object
+		val routes = new util.IdentityHashMap[Route, RouteData]()
+		variants.zipWithIndex.foreach({ case (parameters, index) =>
+			var route = routes.get(parameters.route)
+			if (route == null) {
+				nextRouteKey += 1
+				route = RouteData.fromRoute(nextRouteKey, parameters.route)
+				routes.put(parameters.route, route)
+			}
+			nextJobId += 1
+			pending.addLast(new Job(nextJobId, batch, index, SimulationParametersData.fromParameters(parameters, route.key),
+				route))
+		})
+	}
+
+	/**
+	 * Sends queued jobs to the workers as long as any of them has a free slot.
+	 */
+	private def dispatch(): Unit = {
+		var dispatching = true
+		while (dispatching && !pending.isEmpty && workers.nonEmpty) {
+			val worker = workers.values.maxBy(_.freeSlots)
+			if (worker.freeSlots > 0) {
+				val job = pending.poll()
+				worker.running.put((job.id, job.attempts), job)
+				val route = if (worker.routes.add(job.route.key)) Some(job.route) else None
+				worker.ref ! RunJob(job.id, job.attempts, job.parameters, route)
+				context.system.scheduler.scheduleOnce(jobTimeout.millis, self, CheckDeadline(job.id, job.attempts))(
+					context.dispatcher)
+			} else {
+				dispatching = false
+			}
+		}
+		workerCount = workers.size
+		queuedCount = pending.size()
+	}
+
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2015 Andreas Wolf
+ *
+ * See te LICENSE file in the project root for further copyright information.
+ */
+
+package info.andreaswolf.roadhopper.simulation.distributed
+
+import akka.actor.{Actor, ActorIdentity, ActorRef, ActorSystem, Identify, Props, Terminated}
+import com.graphhopper.util.CmdArgs
+import com.typesafe.config.{Config, ConfigFactory}
+import info.andreaswolf.roadhopper.road.Route
+import info.andreaswolf.roadhopper.simulation.SimulationParameters
+import info.andreaswolf.roadhopper.simulation.distributed.SimulationCoordinator.{JobFinished, RegisterWorker, RunJob}
+import info.andreaswolf.roadhopper.simulation.sweep.{ParameterSweep, SweepResult}
+import org.slf4j.LoggerFactory
+
+import scala.collection.mutable
+import scala.concurrent.Future
+import scala.concurrent.duration._
+import scala.util.{Failure, Success}
+
+
+object SimulationWorker {
+
+	/** The name of the actor system of a worker */
+	val systemName = "roadhopper-worker"
+
+	private case object RetryIdentify
+
+	/**
+	 * Starts a worker JVM that runs simulations for a coordinator (see [[DistributedSweep]]). It does not need the road
+	 * graph, as the routes are sent by the coordinator.
+	 * <p/>
+	 * Arguments: "roadhopper.worker.coordinator" (host:port of the coordinator, required), "roadhopper.worker.host" and
+	 * "roadhopper.worker.port" (the address of this worker; default 127.0.0.1 and a random port) and
+	 * "roadhopper.worker.threads" (the number of simulations run at the same time; default one per CPU core).
+	 */
+	def main(args: Array[String]): Unit = {
+		val cmdArgs = CmdArgs.read(args)
+		val coordinator = cmdArgs.get("roadhopper.worker.coordinator", "")
+		if (coordinator.isEmpty) {
+			throw new IllegalArgumentException("The address of the coordinator must be given as roadhopper.worker.coordinator")
+		}
+		start(cmdArgs.get("roadhopper.worker.host", "127.0.0.1"), cmdArgs.getInt("roadhopper.worker.port", 0), coordinator,
+			cmdArgs.getInt("roadhopper.worker.threads", Runtime.getRuntime.availableProcessors()))
+	}
+
+	/**
+	 * Starts a worker that runs the simulations on a [[ParameterSweep]] with the given number of threads.
+	 *
+	 * @param coordinator The host and port of the coordinator, e.g. "127.0.0.1:2552"
+	 */
+	def start(host: String, port: Int, coordinator: String, threads: Int,
+	          config: Config = ConfigFactory.empty()): ActorSystem = {
+		val sweep = new ParameterSweep(threads)
+		val system = start(host, port, coordinator, threads, (parameters: SimulationParameters) => {
+			sweep.run(List(parameters)).map(_.head)(sweep.executionContext)
+		}, config)
+		system.registerOnTermination(sweep.shutdown())
+		system
+	}
+
+	/**
+	 * Starts a worker that runs the simulations with the given function.
+	 */
+	def start(host: String, port: Int, coordinator: String, capacity: Int,
+	          runSimulation: SimulationParameters => Future[SweepResult], config: Config): ActorSystem = {
+		val system = ActorSystem(systemName, config.withFallback(DistributedSweep.remoteConfig(host, port)))
+		val coordinatorPath = s"akka.tcp://${SimulationCoordinator.systemName}@$coordinator/user/${SimulationCoordinator.name}"
+		system.actorOf(Props(new SimulationWorker(coordinatorPath, capacity, runSimulation)), "worker")
+		system
+	}
+
+}
+
+
+/**
+ * Runs the jobs of a [[SimulationCoordinator]] in another JVM and sends back a summary of each simulation as soon as
+ * it has finished.
+ * <p/>
+ * The worker looks up the coordinator until it is reachable and then registers with it. If the coordinator is lost,
+ * the worker looks it up again, so coordinator and workers can be started in any order.
+ *
+ * @param capacity The number of jobs this worker runs at the same time
+ * @param runSimulation Runs a simulation; called once per job
+ */
+class SimulationWorker(coordinatorPath: String, capacity: Int,
+                       runSimulation: SimulationParameters => Future[SweepResult]) extends Actor {
+
+	import SimulationWorker.RetryIdentify
+	import context.dispatcher
+
+	val log = LoggerFactory.getLogger(this.getClass)
+
+	/** The time between two attempts to reach the coordinator */
+	val identifyInterval = 2.seconds
+
+	private var coordinator: ActorRef = null
+
+	/** The routes sent by the current coordinator, by their key */
+	private val routes = new mutable.HashMap[Long, Route]()
+
+	override def preStart(): Unit = identify()
+
+	private def identify(): Unit = {
+		context.actorSelection(coordinatorPath) ! Identify(coordinatorPath)
+		context.system.scheduler.scheduleOnce(identifyInterval, self, RetryIdentify)
+	}
+
+	override def receive: Receive = {
+		case ActorIdentity(_, Some(ref)) if coordinator == null =>
+			log.info(s"Registering with coordinator at ${ref.path.address}")
+			coordinator = ref
+			context.watch(ref)
+			ref ! RegisterWorker(capacity)
+
+		case ActorIdentity(_, _) =>
+
+		case RetryIdentify =>
+			if (coordinator == null) {
+				identify()
+			}
+
+		case Terminated(ref) if ref == coordinator =>
+			log.warn("Lost the coordinator; trying to reconnect")
+			coordinator = null
+			// the route keys are only unique for one coordinator
+			routes.clear()
+			identify()
+
+		case RunJob(jobId, attempt, parameters, route) =>
+			route.foreach(data => routes.put(data.key, data.toRoute))
+			val replyTo = sender()
+			routes.get(parameters.routeKey) match {
+				case Some(r) =>
+					runSimulation(parameters.toParameters(r)).onComplete({
+						case Success(result) => replyTo ! JobFinished(jobId, attempt, result.summary, result.error)
+						case Failure(e) => replyTo ! JobFinished(jobId, attempt, None, Some(e.getMessage))
+					})
+				case None =>
+					replyTo ! JobFinished(jobId, attempt, None, Some(s"Unknown route ${parameters.routeKey}"))
+			}
+	}
+
+}
@@ -6,15 +6,10 @@
 
 package info.andreaswolf.roadhopper.simulation.driver
 
-import akka.actor.{ActorLogging, ActorRef}
-import akka.pattern.ask
-import info.andreaswolf.roadhopper.road.{RoadSignAnalyzer, StopSign, RoadSign}
-import info.andreaswolf.roadhopper.simulation.signals.Process.Invoke
-import info.andreaswolf.roadhopper.simulation.{TellTime, ReturnRoadAhead, GetRoadAhead}
-import info.andreaswolf.roadhopper.simulation.signals.SignalBus.UpdateSignalValue
-import info.andreaswolf.roadhopper.simulation.signals.{SignalState, Process}
-
-import scala.concurrent.Future
+import akka.actor.ActorRef
+import info.andreaswolf.roadhopper.road.VelocityProfile
+import info.andreaswolf.roadhopper.simulation.signals.{ComponentProcess, SignalComponent, SignalSink, SignalState}
+import org.slf4j.LoggerFactory
 
 
 /**
@@ -28,10 +23,27 @@ import scala.concurrent.Future
  * If a stop sign is encountered within the lookahead distance, the current mode switches to "stop sign", where the
  * target velocity is reduced to zero. After the vehicle has stopped and a short time has passed, the vehicle is
  * speeded up again.
+ * <p/>
+ * See [[TargetVelocityEstimatorComponent]] for the actual logic.
+ */
+class TargetVelocityEstimator(bus: ActorRef, val estimator: TargetVelocityEstimatorComponent)
+	extends ComponentProcess(estimator, bus) {
+
+}
+
+/**
+ * The logic of the [[TargetVelocityEstimator]]; see [[VelocityProfileEstimatorComponent]] for how the road ahead is
+ * evaluated.
  */
-class TargetVelocityEstimator(bus: ActorRef, journey: ActorRef) extends Process(bus) with ActorLogging {
+abstract class TargetVelocityEstimatorComponent extends SignalComponent {
 
-	import context.dispatcher
+	val log = LoggerFactory.getLogger(this.getClass)
+
+	/** The interval in which the target velocity is updated, in milliseconds */
+	val updateInterval = 500
+
+	/** The time of the previous time step */
+	private var previousTime = 0
 
 	var farthestLookaheadPosition = 0
 	/**
@@ -43,9 +55,38 @@ class TargetVelocityEstimator(bus: ActorRef, journey: ActorRef) extends Process(
 	 */
 	var velocityBeforeStop = 0.0
 
-	override def invoke(signals: SignalState): Future[Any] = {
-		if (time % 500 > 0) {
-			return Future.successful()
+	/**
+	 * Set while the vehicle approaches (or waits at) a stop sign.
+	 */
+	var approachingStopSign = false
+
+	override def timeAdvanced(oldTime: Int, newTime: Int): Unit = previousTime = oldTime
+
+	override def invoke(signals: SignalState, bus: SignalSink): Unit = {
+		if (approachingStopSign) {
+			invokeForStopSignal(signals, bus)
+		} else {
+			requiredLookAhead(signals).foreach(distance => updateTargetVelocity(signals, distance, bus))
+		}
+	}
+
+	/**
+	 * Derives the target velocity from the road within the look ahead distance from the current position, and switches
+	 * to the stop sign mode if necessary.
+	 */
+	def updateTargetVelocity(signals: SignalState, lookAheadDistance: Int, bus: SignalSink): Unit
+
+	/**
+	 * Checks if the target velocity must be updated at the current time and calculates the distance to look ahead.
+	 * <p/>
+	 * The update is done in the first time step at or after each multiple of [[updateInterval]], so none is missed if the
+	 * simulation takes larger steps.
+	 *
+	 * @return The look ahead distance in meters, or None if no update is necessary
+	 */
+	def requiredLookAhead(signals: SignalState): Option[Int] = {
+		if (time / updateInterval == previousTime / updateInterval) {
+			return None
 		}
 
 		val currentPosition = signals.signalValue("s", 0.0)
@@ -63,51 +104,16 @@ class TargetVelocityEstimator(bus: ActorRef, journey: ActorRef) extends Process(
 				farthestLookaheadPosition = (currentPosition + x).ceil.toInt
 				x
 		}
-		journey ? GetRoadAhead(lookAheadDistance) flatMap {
-			case ReturnRoadAhead(roadSegments) => Future {
-				val minimumSpeedLimit = roadSegments.map(_.speedLimit).filter(_ > 0).min
-
-				// check if the look ahead distance contains any road signs which we must obey
-				val roadSignsAhead: List[RoadSign] = roadSegments.flatMap(_.roadSign)
-				if (roadSignsAhead.nonEmpty && roadSignsAhead.exists(_.isInstanceOf[StopSign])) {
-					val distance = RoadSignAnalyzer.getDistanceUntilFirstSign(roadSegments, classOf[StopSign])
-
-					// the 5m are used to ignore a stop sign we already stopped for and are now speeding away from
-					// the sign might be behind the current look-ahead distance, as the segment it is on might be longer
-					if (distance > 5.0 && distance < lookAheadDistance) {
-						// TODO improve the stopping process to stop nearer than 5m. This requires more closely watching the current
-						// speed and distance, or reducing the braking power; it is unclear if it is possible at all with the
-						// current braking model to achieve such lower distances.
-						log.info("Approaching a stop sign")
-						context.become(approachingStopSign, discardOld = false)
-					}
-				}
-
-				log.debug(f"Setting speed limit to $minimumSpeedLimit%.2f; looked ${lookAheadDistance}m ahead")
-				bus ? UpdateSignalValue("v_target", minimumSpeedLimit)
-			}
-		}
-	}
-
-	def approachingStopSign: Receive = {
-		case TellTime(_time) =>
-			_advanceTime(_time)
-
-		case Invoke(signalState) =>
-			val originalSender = sender()
-			invokeForStopSignal(signalState) andThen {
-				case x =>
-					originalSender ! true
-			}
+		Some(lookAheadDistance)
 	}
 
-	def invokeForStopSignal(signals: SignalState): Future[Any] = {
+	def invokeForStopSignal(signals: SignalState, bus: SignalSink): Unit = {
 		if (timeAfterStop > 0 && time > timeAfterStop) {
 			timeAfterStop = 0
-			context unbecome()
+			approachingStopSign = false
 
 			// just let the next cycle handle the future target speed
-			bus ? UpdateSignalValue("v_target", velocityBeforeStop)
+			bus.updateSignalValue("v_target", velocityBeforeStop)
 		} else if (timeAfterStop == 0) {
 			velocityBeforeStop = signals.signalValue("v_target", 0.0)
 			val currentVelocity = signals.signalValue("v", 0.0)
@@ -116,10 +122,54 @@ class TargetVelocityEstimator(bus: ActorRef, journey: ActorRef) extends Process(
 				timeAfterStop = time + 1000
 			}
 
-			bus ? UpdateSignalValue("v_target", 0.0)
-		} else {
-			Future.successful()
+			bus.updateSignalValue("v_target", 0.0)
+		}
+	}
+
+	override def saveState(): Any = (previousTime, farthestLookaheadPosition, timeAfterStop, velocityBeforeStop,
+		approachingStopSign)
+
+	override def restoreState(state: Any): Unit = state match {
+		case (previous: Int, lookaheadPosition: Int, afterStop: Int, beforeStop: Double, approaching: Boolean) =>
+			previousTime = previous
+			farthestLookaheadPosition = lookaheadPosition
+			timeAfterStop = afterStop
+			velocityBeforeStop = beforeStop
+			approachingStopSign = approaching
+	}
+
+}
+
+
+/**
+ * Estimates the target velocity from the precomputed velocity profile of the route, without collecting the segments
+ * ahead of the position.
+ */
+class VelocityProfileEstimatorComponent(val profile: VelocityProfile) extends TargetVelocityEstimatorComponent {
+
+	override def updateTargetVelocity(signals: SignalState, lookAheadDistance: Int, bus: SignalSink): Unit = {
+		// the vehicle might stop slightly after the end of the route
+		val positionOnRoute = Math.min(signals.signalValue("s", 0.0), profile.route.length)
+		val minimumVelocity = profile.minimumVelocityAhead(positionOnRoute, lookAheadDistance)
+
+		profile.distanceToStopSign(positionOnRoute).foreach(distance => {
+			// the 5m are used to ignore a stop sign we already stopped for and are now speeding away from
+			// the sign might be behind the current look-ahead distance, as the segment it is on might be longer
+			if (distance > 5.0 && distance < lookAheadDistance) {
+				// TODO improve the stopping process to stop nearer than 5m. This requires more closely watching the current
+				// speed and distance, or reducing the braking power; it is unclear if it is possible at all with the
+				// current braking model to achieve such lower distances.
+				log.info("Approaching a stop sign")
+				approachingStopSign = true
+			}
+		})
+
+		if (minimumVelocity.isInfinite) {
+			log.debug(s"No speed limit within ${lookAheadDistance}m")
+			return
 		}
+		log.debug(f"Setting speed limit to $minimumVelocity%.2f; looked ${lookAheadDistance}m ahead")
+		bus.updateSignalValue("v_target", minimumVelocity)
 	}
 
 }
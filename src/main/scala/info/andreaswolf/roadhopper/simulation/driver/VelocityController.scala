@@ -6,10 +6,11 @@
 
 package info.andreaswolf.roadhopper.simulation.driver
 
-import akka.actor.{ActorLogging, ActorRef}
+import akka.actor.ActorRef
 import akka.pattern.ask
-import info.andreaswolf.roadhopper.simulation.signals.SignalBus.{DefineSignal, SubscribeToSignal, UpdateSignalValue}
-import info.andreaswolf.roadhopper.simulation.signals.{Process, SignalState}
+import info.andreaswolf.roadhopper.simulation.signals.SignalBus.{DefineSignal, SubscribeToSignal}
+import info.andreaswolf.roadhopper.simulation.signals.{ComponentProcess, SignalComponent, SignalHandle, SignalSink, SignalState}
+import org.slf4j.LoggerFactory
 
 import scala.concurrent.{Await, Future}
 import scala.concurrent.duration._
@@ -18,28 +19,55 @@ import scala.concurrent.duration._
 /**
  * Component that calculates the velocity difference v_diff, e.g. as input for the PID controller modelling the driver.
  */
-class VelocityController(bus: ActorRef) extends Process(bus) with ActorLogging {
+class VelocityController(bus: ActorRef) extends ComponentProcess(new VelocityControllerComponent, bus) {
 
 	import context.dispatcher
 
 	Await.result(Future.sequence(List(
-		bus ? SubscribeToSignal("v", self),
-		bus ? SubscribeToSignal("v_target", self),
+		bus ? SubscribeToSignal("v", self, VelocityControllerComponent.sampleInterval),
+		bus ? SubscribeToSignal("v_target", self, VelocityControllerComponent.sampleInterval),
 		bus ? DefineSignal("v_diff")
 	)), 1 second)
 
-	override def invoke(signals: SignalState): Future[Any] = {
-		// only run the calculation every 500ms, to approximate human steering behaviour; 500ms was randomly chosen
-		if (time % 500 > 0) {
-			return Future.successful()
-		}
-		val actualVelocity: Double = signals.signalValue("v", 0.0)
-		val targetVelocity: Double = signals.signalValue("v_target", 0.0)
+}
+
+
+object VelocityControllerComponent {
+
+	/**
+	 * The interval (in milliseconds) in which the velocity difference is calculated, to approximate human steering
+	 * behaviour; 500ms was randomly chosen. The component must be subscribed with this sample interval.
+	 */
+	val sampleInterval = 500
+
+}
+
+
+/**
+ * The logic of the [[VelocityController]]. Must be subscribed to the signals "v" and "v_target" with the
+ * [[VelocityControllerComponent.sampleInterval]], so the simulation never steps over the time steps it runs in.
+ * <p/>
+ * If the signal "v_follow" is set, e.g. to keep the distance to the vehicle ahead in a
+ * [[info.andreaswolf.roadhopper.simulation.traffic.TrafficSimulation]], the lower of both velocities is used as target.
+ */
+class VelocityControllerComponent extends SignalComponent {
+
+	val log = LoggerFactory.getLogger(this.getClass)
+
+	private val v = new SignalHandle("v")
+	private val vTarget = new SignalHandle("v_target")
+	private val vFollow = new SignalHandle("v_follow")
+	private val vDiff = new SignalHandle("v_diff")
+
+	override def invoke(signals: SignalState, bus: SignalSink): Unit = {
+		val actualVelocity: Double = signals.doubleValue(v, 0.0)
+		val targetVelocity: Double = Math.min(signals.doubleValue(vTarget, 0.0),
+			signals.doubleValue(vFollow, Double.PositiveInfinity))
 		val velocityDifference = actualVelocity - targetVelocity
 
 		log.debug(f"Velocity difference: $velocityDifference%.2f ($actualVelocity%.2f - $targetVelocity%.2f)")
 
-		bus ? UpdateSignalValue("v_diff", velocityDifference)
+		bus.updateSignalValue(vDiff, velocityDifference)
 	}
 
 }
@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2015 Andreas Wolf
+ *
+ * See te LICENSE file in the project root for further copyright information.
+ */
+
+package info.andreaswolf.roadhopper.simulation.signals
+
+import akka.actor.ActorRef
+import akka.pattern.ask
+import info.andreaswolf.roadhopper.simulation.Stop
+import info.andreaswolf.roadhopper.simulation.signals.SignalBus.{ScheduleSignalUpdate, UpdateSignalValue}
+
+import scala.collection.mutable.ListBuffer
+import scala.concurrent.Future
+
+
+/**
+ * Runs a [[SignalComponent]] as a process on the actor-based [[SignalBus]].
+ * <p/>
+ * All signal updates emitted by the component during one invocation are sent to the bus; the invocation is finished
+ * once the bus has acknowledged all of them.
+ *
+ * @param timer The simulation timer; only required if the component may stop the simulation.
+ */
+class ComponentProcess(val component: SignalComponent, bus: ActorRef, val timer: Option[ActorRef] = None)
+	extends Process(bus) {
+
+	import context.dispatcher
+
+	/**
+	 * Collects the replies of the signal bus for all updates sent during one invocation.
+	 */
+	class BusMessageSink extends SignalSink {
+
+		val replies = new ListBuffer[Future[Any]]()
+
+		override def updateSignalValue(signalName: String, newValue: Any): Unit =
+			replies append bus ? UpdateSignalValue(signalName, newValue)
+
+		override def scheduleSignalUpdate(delta: Int, signalName: String, newValue: Any): Unit =
+			replies append bus ? ScheduleSignalUpdate(delta, signalName, newValue)
+
+		override def stopSimulation(): Unit = timer match {
+			case Some(t) => t ! Stop()
+			case None => throw new IllegalStateException("Cannot stop simulation: no timer was passed to the process")
+		}
+
+		def future: Future[Any] = Future.sequence(replies.toList)
+	}
+
+	/** The metrics are recorded per component class, like in the [[SynchronousSignalBus]] */
+	override def metricName: String = SignalComponent.metricName(component)
+
+	/**
+	 * The time is passed on synchronously, so it is guaranteed to be set before the next invocation arrives.
+	 */
+	override def timeAdvanced(oldTime: Int, newTime: Int): Future[Any] = {
+		component.advanceTime(newTime)
+		Future.successful()
+	}
+
+	override def invoke(signals: SignalState): Future[Any] = {
+		val sink = new BusMessageSink
+		component.invoke(signals, sink)
+		sink.future
+	}
+
+}
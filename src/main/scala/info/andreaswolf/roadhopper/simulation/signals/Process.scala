@@ -8,6 +8,7 @@ package info.andreaswolf.roadhopper.simulation.signals
 
 import akka.actor.{ActorRef, Actor}
 import akka.util.Timeout
+import info.andreaswolf.roadhopper.metrics.Metrics
 import info.andreaswolf.roadhopper.simulation.{ExtensibleReceiver, TellTime}
 import info.andreaswolf.roadhopper.simulation.signals.Process._
 
@@ -26,6 +27,9 @@ object Process {
  * The process must be subscribed to the signals it needs for its calculations and is notified by the signal bus
  * each time one of the signals changes. Additionally, it can update signal values. As these updates could happen
  * basically anywhere, make sure to properly document the relations between your processes and signals!
+ * <p>
+ * The invocations and their duration (until the returned Future is completed) are recorded in the
+ * [[info.andreaswolf.roadhopper.metrics.Metrics]], per class of process.
  *
  * @param bus The signal bus instance.
  */
@@ -36,6 +40,14 @@ abstract class Process(val bus: ActorRef) extends Actor with ExtensibleReceiver
 
 	var time: Int = 0
 
+	/** The name of this process in the metrics; all processes with the same name share their metrics */
+	def metricName: String = getClass.getSimpleName match {
+		case "" => getClass.getName
+		case name => name
+	}
+
+	private lazy val invocationTimer = Metrics.timer("process." + metricName)
+
 	/**
 	 * The list of message handlers.
 	 * <p/>
@@ -51,8 +63,10 @@ abstract class Process(val bus: ActorRef) extends Actor with ExtensibleReceiver
 
 		case Invoke(signalState) =>
 			val originalSender = sender()
+			val start = System.nanoTime()
 			invoke(signalState) andThen {
 				case x =>
+					invocationTimer.record(System.nanoTime() - start)
 					originalSender ! true
 			}
 
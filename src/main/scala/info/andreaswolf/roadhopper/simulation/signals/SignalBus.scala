@@ -2,6 +2,7 @@ package info.andreaswolf.roadhopper.simulation.signals
 
 import akka.actor.ActorRef
 import akka.pattern.ask
+import info.andreaswolf.roadhopper.metrics.Metrics
 import info.andreaswolf.roadhopper.simulation.{TellTime, ScheduleStep, SimulationActor}
 import info.andreaswolf.roadhopper.simulation.signals.Process.Invoke
 
@@ -13,8 +14,16 @@ import scala.util.Try
 
 object SignalBus {
 
-	/** Defines a signal with the given name in the signal bus. */
-	case class DefineSignal(signalName: String)
+	/** The name of the histogram of delta cycles per time step in the [[Metrics]] */
+	val deltaCyclesMetric = "simulation.deltaCyclesPerStep"
+
+	/**
+	 * Defines a signal with the given name in the signal bus. This assigns the signal a fixed slot in the
+	 * [[SignalRegistry]] of the bus.
+	 *
+	 * @param signalType The type of the values; numeric signals may only hold numbers, which are stored without boxing.
+	 */
+	case class DefineSignal(signalName: String, signalType: SignalType.Value = SignalType.Numeric)
 
 	/** Schedules an update of a signal value for a time step in the future.
 	 *
@@ -26,8 +35,21 @@ object SignalBus {
 	case class UpdateSignalValue(signalName: String, newValue: Any)
 
 	/** Subscribes a component to a signal by the signal’s name, letting the component be invoked whenever the signal
-	  * value changes. */
-	case class SubscribeToSignal(signalName: String, subscriber: ActorRef)
+	  * value changes.
+	  *
+	  * @param sampleInterval The interval (in milliseconds) of the time steps in which the subscriber is invoked for
+	  *                       changes of the signal; changes in other time steps are ignored. 0 invokes the subscriber in
+	  *                       every time step. Subscribing again replaces the interval.
+	  */
+	case class SubscribeToSignal(signalName: String, subscriber: ActorRef, sampleInterval: Int = 0)
+
+	/** The subscription of one process to a signal; see [[SubscribeToSignal]] */
+	case class Subscription(subscriber: ActorRef, sampleInterval: Int) {
+
+		/** Checks if the subscriber should be invoked in the given time step */
+		def isDue(time: Int): Boolean = sampleInterval <= 0 || time % sampleInterval == 0
+
+	}
 
 }
 
@@ -49,8 +71,13 @@ object SignalBus {
  * inertia etc., which let updates happen "far" in the future (as in "in a future timestep") and not "now" (as in "in
  * the next delta cycle").
  *
- * Signal values are not strongly typed, so you can basically write anything you like to them. However, when reading
- * back the value, you might need to apply typecasting, for which you will need to know the type.
+ * Signal values are only loosely typed: A signal is either numeric (storing Double values without boxing) or can hold
+ * any object. Signals that are not explicitly defined get their type from the first value written to them. When
+ * reading back a non-numeric value, you need to apply typecasting, for which you will need to know the type.
+ *
+ * Components that only need to act in some time steps (e.g. loggers) can subscribe with a sample interval. They are
+ * then only told the new time and invoked in the time steps that are a multiple of the interval, instead of being sent
+ * messages in every step.
  *
  * The time is the only signal pre-defined by the bus, and this is taken directly from the timer at the beginning of
  * each invocation. More signals can be defined by sending
@@ -63,22 +90,19 @@ class SignalBus(val timer: ActorRef) extends SimulationActor {
 	import context.dispatcher
 
 	/**
-	 * All signals that were defined.
+	 * All signals that were defined, with their slot and type.
 	 */
-	val definedSignals: mutable.MutableList[String] = mutable.MutableList(
-		"time"
-	)
+	val registry = new SignalRegistry()
+	registry.define("time", SignalType.Reference)
 
 	/**
 	 * The current signal state.
-	 *
-	 * TODO merge this with definedSignals
 	 */
-	var signals = new SignalState()
+	var signals = new SignalState(registry)
 
 	/** All components that are subscribed to any signal. The map is indexed by the signal name and contains a list of
-	 *  all subscribers as the value. */
-	val subscribers: mutable.HashMap[String, ListBuffer[ActorRef]] = new mutable.HashMap[String, ListBuffer[ActorRef]]()
+	 *  all subscriptions as the value. */
+	val subscribers: mutable.HashMap[String, ListBuffer[Subscription]] = new mutable.HashMap[String, ListBuffer[Subscription]]()
 
 	/** The updates that are scheduled for the next delta cycle. If this list is not empty, there will definitely be
 	 *  another delta cycle. */
@@ -89,23 +113,26 @@ class SignalBus(val timer: ActorRef) extends SimulationActor {
 
 	var currentTimeStepPromise: Promise[Any] = Promise.apply[Any]()
 
+	/** The number of delta cycles per time step, shared with the [[SynchronousSignalBus]] */
+	private val deltaCycles = Metrics.histogram(SignalBus.deltaCyclesMetric)
+
 
 	registerReceiver {
-		case DefineSignal(name) =>
-			if (!definedSignals.contains(name)) {
-				definedSignals += name
-				// TODO initialize signal in SignalState
+		case DefineSignal(name, signalType) =>
+			if (!registry.isDefined(name)) {
+				registry.define(name, signalType)
 
 				sender() ! true
 			} else {
 				sender() ! "Signal already registered"
 			}
 
-		case SubscribeToSignal(signal, subscriber) =>
-			val existingSubscriptions = subscribers.getOrElseUpdate(signal, new ListBuffer[ActorRef]())
+		case SubscribeToSignal(signal, subscriber, sampleInterval) =>
+			val existingSubscriptions = subscribers.getOrElseUpdate(signal, new ListBuffer[Subscription]())
 
-			if (!existingSubscriptions.contains(subscriber)) {
-				existingSubscriptions append subscriber
+			existingSubscriptions.indexWhere(_.subscriber == subscriber) match {
+				case -1 => existingSubscriptions append Subscription(subscriber, sampleInterval)
+				case i => existingSubscriptions.update(i, Subscription(subscriber, sampleInterval))
 			}
 			sender() ! true
 
@@ -124,9 +151,12 @@ class SignalBus(val timer: ActorRef) extends SimulationActor {
 	}
 
 
+	/**
+	 * Tells the new time to all subscribers that might be invoked in the new time step.
+	 */
 	override def timeAdvanced(oldTime: Int, newTime: Int): Future[Any] = {
-		val actorsToInform = subscribers.flatMap(subscription => subscription._2).toList.distinct
-		Future.sequence(actorsToInform.map(actor => actor ? TellTime(newTime)).toList)
+		val actorsToInform = subscribers.values.flatten.filter(_.isDue(newTime)).map(_.subscriber).toList.distinct
+		Future.sequence(actorsToInform.map(actor => actor ? TellTime(newTime)))
 	}
 
 	/**
@@ -159,7 +189,8 @@ class SignalBus(val timer: ActorRef) extends SimulationActor {
 	 */
 	protected def runDeltaCycle(cycle: Int = 1): Future[Any] = {
 		if (scheduledUpdates.isEmpty && cycle > 1) {
-			log.info(s"Finished time step $time after ${cycle - 1} delta cycles. ")
+			log.debug(s"Finished time step $time after ${cycle - 1} delta cycles. ")
+			deltaCycles.record(cycle - 1)
 			currentTimeStepPromise.complete(Try(true))
 			return Future.successful()
 		}
@@ -181,18 +212,19 @@ class SignalBus(val timer: ActorRef) extends SimulationActor {
 			signals = new SignalState(scheduledUpdates, signals)
 
 			val updatedSignals = scheduledUpdates.keys.toList
-			// get a list of all subscribers we must notify (by the signals that were updated) and then make sure that
-			// each is only called once (because they might be subscribed to multiple of the updated signals)
-			val subscriptionsForUpdatedSignals = subscribers.filter(subscription =>
-				updatedSignals.contains(subscription._1)
-			)
-			val subscribersToNotify = subscriptionsForUpdatedSignals.flatMap(e => e._2).toList.distinct
+			// get a list of all subscribers we must notify (by the signals that were updated and their sample intervals) and
+			// then make sure that each is only called once (because they might be subscribed to multiple of the updated
+			// signals)
+			val subscribersToNotify = updatedSignals.flatMap(signal => subscribers.getOrElse(signal, List()))
+				.filter(_.isDue(time)).map(_.subscriber).distinct
 
 			// notify all subscribers to any of the updated signals
 			// TODO this should probably include a list of all signals that were updated
 			val notificationFutures = subscribersToNotify.map(subscriber => subscriber ? Invoke(signals))
 
-			log.info(s"Informed ${subscribersToNotify.length} subscribers about a change of ${updatedSignals.length} signals ($updatedSignals)")
+			if (log.isDebugEnabled) {
+				log.debug(s"Informed ${subscribersToNotify.length} subscribers about a change of ${updatedSignals.length} signals ($updatedSignals)")
+			}
 
 			scheduledUpdates.clear()
 
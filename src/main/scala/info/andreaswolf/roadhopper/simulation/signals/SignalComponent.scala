@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2015 Andreas Wolf
+ *
+ * See te LICENSE file in the project root for further copyright information.
+ */
+
+package info.andreaswolf.roadhopper.simulation.signals
+
+
+/**
+ * The target for signal updates emitted by a [[SignalComponent]].
+ * <p/>
+ * The methods mirror the messages understood by [[SignalBus]]; this way, a component does not need to know if it is
+ * run inside an actor (see [[ComponentProcess]]) or directly by the [[SynchronousSignalBus]].
+ */
+trait SignalSink {
+
+	/** Updates a signal value. The update is held back until the next delta cycle. */
+	def updateSignalValue(signalName: String, newValue: Any): Unit
+
+	/**
+	 * Updates a numeric signal value. Sinks that store values by slot can override this to avoid the name lookup and
+	 * boxing of the value.
+	 */
+	def updateSignalValue(handle: SignalHandle, newValue: Double): Unit = updateSignalValue(handle.name, newValue)
+
+	/**
+	 * Schedules an update of a signal value for a time step in the future.
+	 *
+	 * @param delta The time (from now on) when the signal should be updated
+	 */
+	def scheduleSignalUpdate(delta: Int, signalName: String, newValue: Any): Unit
+
+	/** Requests the end of the simulation. The current time step is still finished. */
+	def stopSimulation(): Unit
+
+}
+
+
+object SignalComponent {
+
+	/** The name under which the invocations of a component are recorded in the metrics: its simple class name */
+	def metricName(component: SignalComponent): String = component.getClass.getSimpleName match {
+		case "" => component.getClass.getName
+		case name => name
+	}
+
+}
+
+
+/**
+ * The logic of a process, decoupled from the way it is invoked.
+ * <p/>
+ * A component reads its inputs from the passed signal state and writes its outputs to the given [[SignalSink]]. It
+ * must not block and must not use any asynchronous constructs, as it might be run on the same thread as all other
+ * components of a simulation.
+ */
+trait SignalComponent {
+
+	/** The current simulation time in milliseconds */
+	var time: Int = 0
+
+	/**
+	 * Stores the new time and calls [[timeAdvanced()]]. This is invoked once at the start of each time step, before the
+	 * first delta cycle.
+	 */
+	final def advanceTime(newTime: Int): Unit = {
+		val oldTime = time
+		time = newTime
+		timeAdvanced(oldTime, newTime)
+	}
+
+	/** Internal handler for a time update. Extend this to do updates before the first delta cycle. */
+	def timeAdvanced(oldTime: Int, newTime: Int): Unit = {}
+
+	/**
+	 * The central routine of a component. This is invoked whenever a subscribed signal’s value changes.
+	 */
+	def invoke(signals: SignalState, bus: SignalSink): Unit
+
+	/**
+	 * Returns the internal state of this component (besides the time), for a checkpoint of the simulation (see
+	 * [[SynchronousSignalBus.checkpoint()]]). The returned object must not change when this component is invoked again.
+	 * <p/>
+	 * Components that keep state between invocations must override this and [[restoreState()]].
+	 */
+	def saveState(): Any = null
+
+	/**
+	 * Restores a state returned by [[saveState()]] of another instance of the same component class.
+	 */
+	def restoreState(state: Any): Unit = {}
+
+}
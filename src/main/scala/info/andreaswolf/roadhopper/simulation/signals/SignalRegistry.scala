@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2015 Andreas Wolf
+ *
+ * See te LICENSE file in the project root for further copyright information.
+ */
+
+package info.andreaswolf.roadhopper.simulation.signals
+
+import java.util.concurrent.ConcurrentHashMap
+
+
+/**
+ * The types of values a signal can carry.
+ */
+object SignalType extends Enumeration {
+	/** Signals carrying only Double values; these are stored without boxing. */
+	val Numeric = Value
+	/** Signals carrying arbitrary objects, e.g. the current position or road segment. */
+	val Reference = Value
+
+	/**
+	 * Derives the type for a signal that was not explicitly defined from the first value written to it.
+	 */
+	def of(value: Any): SignalType.Value = value match {
+		case _: Double => Numeric
+		case _ => Reference
+	}
+}
+
+
+/**
+ * The storage slot a signal was assigned to in a [[SignalRegistry]].
+ *
+ * @param index The index of the signal’s value in a [[SignalState]]. Stable for the lifetime of the registry.
+ */
+class SignalSlot(val name: String, val index: Int, val signalType: SignalType.Value) {
+
+	val numeric = signalType == SignalType.Numeric
+
+	override def toString = s"SignalSlot($name, $index, $signalType)"
+}
+
+
+/**
+ * Assigns each signal of a signal bus a stable integer slot and a type.
+ * <p/>
+ * Slots are never removed, so the values of all states created for one registry can be stored in plain arrays that
+ * are indexed by the slot. A registry is shared between the bus and all signal states it creates; it is safe to read
+ * it from multiple threads.
+ */
+class SignalRegistry {
+
+	private val slots = new ConcurrentHashMap[String, SignalSlot]()
+
+	@volatile
+	private var slotsByIndex = Vector[SignalSlot]()
+
+	/**
+	 * Defines a signal, if it is not defined yet.
+	 *
+	 * @return The slot of the signal. If the signal was already defined, the existing slot (and its type) is returned.
+	 */
+	def define(name: String, signalType: SignalType.Value): SignalSlot = synchronized {
+		val existing = slots.get(name)
+		if (existing != null) {
+			return existing
+		}
+		val slot = new SignalSlot(name, slotsByIndex.size, signalType)
+		slots.put(name, slot)
+		slotsByIndex = slotsByIndex :+ slot
+		slot
+	}
+
+	/**
+	 * Returns the slot for the given signal, defining the signal on the fly if necessary (with the type derived from the
+	 * given value).
+	 */
+	def slotFor(name: String, value: Any): SignalSlot = {
+		val existing = slots.get(name)
+		if (existing != null) existing else define(name, SignalType.of(value))
+	}
+
+	/** The slot for the given signal, or null if the signal is not defined. */
+	private[signals] def lookup(name: String): SignalSlot = slots.get(name)
+
+	def slot(name: String): Option[SignalSlot] = Option(slots.get(name))
+
+	def slotAt(index: Int): SignalSlot = slotsByIndex(index)
+
+	def isDefined(name: String): Boolean = slots.containsKey(name)
+
+	/** The number of defined signals */
+	def size: Int = slotsByIndex.size
+
+	def names: Seq[String] = slotsByIndex.map(_.name)
+
+}
+
+
+/**
+ * A reference to a signal that resolves its slot only once.
+ * <p/>
+ * Components should create one handle per signal they read or write and use it instead of the signal name; this saves
+ * the name lookup on every access. The slot is cached for the registry it was last resolved against; if the handle is
+ * used with a state from a different registry, it is transparently resolved again.
+ * <p/>
+ * A handle is not thread-safe; it must only be used by one component.
+ */
+class SignalHandle(val name: String) {
+
+	private var registry: SignalRegistry = null
+
+	private var slot: SignalSlot = null
+
+	/**
+	 * @return The slot of the signal in the given registry, or null if it is not defined there (yet)
+	 */
+	def resolve(registry: SignalRegistry): SignalSlot = {
+		if (registry ne this.registry) {
+			val resolved = registry.lookup(name)
+			if (resolved != null) {
+				this.registry = registry
+				slot = resolved
+			}
+			return resolved
+		}
+		slot
+	}
+
+	override def toString = s"SignalHandle($name)"
+}
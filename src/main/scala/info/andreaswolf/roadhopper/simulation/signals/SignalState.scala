@@ -6,6 +6,8 @@
 
 package info.andreaswolf.roadhopper.simulation.signals
 
+import java.util
+
 import scala.collection.{Map => BaseMap}
 import scala.collection.immutable.{HashMap, Map => ImmutableMap}
 
@@ -13,25 +15,122 @@ object SignalState {
 
 	type Values = ImmutableMap[String, Any]
 
+	private def fromValues(registry: SignalRegistry, values: BaseMap[String, Any]): SignalUpdates = {
+		val updates = new SignalUpdates(registry)
+		values.foreach({ case (name, value) => updates.put(name, value) })
+		updates
+	}
+
+	private def withValues(values: BaseMap[String, Any]): SignalState = {
+		val empty = new SignalState()
+		empty.updatedWith(fromValues(empty.registry, values), markUpdated = false)
+	}
+
 }
 
 /**
  * A collection of signals and their values.
+ * <p/>
+ * The values are stored in arrays indexed by the slots of a [[SignalRegistry]]: Numeric signals in a primitive array,
+ * all other signals in an object array. A state is immutable; a new state is derived from an existing one with
+ * [[updatedWith()]]. The arrays of the base state are reused if no signal of the respective kind was updated, so a
+ * state is cheap to keep around, e.g. for logging.
+ * <p/>
+ * Signals can be read by their name or—faster—via a [[SignalHandle]].
  */
-class SignalState(val values: SignalState.Values, val updated: List[String] = List()) {
+class SignalState private(val registry: SignalRegistry, private val numbers: Array[Double],
+                          private val objects: Array[AnyRef], private val defined: util.BitSet,
+                          private val updated: util.BitSet) {
 
 	type Values = ImmutableMap[String, Any]
 
+	private def this(copy: SignalState) = this(copy.registry, copy.numbers, copy.objects, copy.defined, copy.updated)
+
+	def this(registry: SignalRegistry) = {
+		this(registry, new Array[Double](0), new Array[AnyRef](0), new util.BitSet(), new util.BitSet())
+	}
+
+	def this() = this(new SignalRegistry)
+
+	/**
+	 * Creates a state with the given values, none of which is marked as updated.
+	 */
+	def this(values: BaseMap[String, Any]) = this(SignalState.withValues(values))
+
 	def this(updatedValues: BaseMap[String, Any], base: SignalState) = {
-		this(base.values ++ updatedValues, updatedValues.keys.toList)
+		this(base.updatedWith(SignalState.fromValues(base.registry, updatedValues)))
 	}
 
-	def this() = this(new HashMap[String, Any]())
+	/**
+	 * Returns a new state with the given updates applied. The updated signals are marked as such in the new state.
+	 */
+	def updatedWith(updates: SignalUpdates): SignalState = updatedWith(updates, markUpdated = true)
+
+	private def updatedWith(updates: SignalUpdates, markUpdated: Boolean): SignalState = {
+		require(updates.registry eq registry, "Updates must be created for the registry of this state")
+		val size = registry.size
+		var newNumbers = numbers
+		var newObjects = objects
+		var newDefined = defined
+
+		var i = updates.slots.nextSetBit(0)
+		while (i >= 0) {
+			if (registry.slotAt(i).numeric) {
+				if (newNumbers eq numbers) {
+					newNumbers = util.Arrays.copyOf(numbers, size)
+				}
+				newNumbers(i) = updates.numbers(i)
+			} else {
+				if (newObjects eq objects) {
+					newObjects = util.Arrays.copyOf(objects, size)
+				}
+				newObjects(i) = updates.objects(i)
+			}
+			if (!defined.get(i)) {
+				if (newDefined eq defined) {
+					newDefined = defined.clone().asInstanceOf[util.BitSet]
+				}
+				newDefined.set(i)
+			}
+			i = updates.slots.nextSetBit(i + 1)
+		}
+		val newUpdated = if (markUpdated) updates.slots.clone().asInstanceOf[util.BitSet] else new util.BitSet()
+
+		new SignalState(registry, newNumbers, newObjects, newDefined, newUpdated)
+	}
+
+	/**
+	 * All signal values, indexed by name. This is built on first access; use [[signalValue()]] to read single values.
+	 */
+	lazy val values: Values = {
+		var result = new HashMap[String, Any]()
+		var i = defined.nextSetBit(0)
+		while (i >= 0) {
+			result += registry.slotAt(i).name -> valueAt(registry.slotAt(i))
+			i = defined.nextSetBit(i + 1)
+		}
+		result
+	}
+
+	/** The number of signals that have a value */
+	def size: Int = defined.cardinality()
+
+	private def valueAt(slot: SignalSlot): Any = if (slot.numeric) numbers(slot.index) else objects(slot.index)
+
+	private def hasValue(slot: SignalSlot) = slot != null && defined.get(slot.index)
 
 	/**
 	 * Returns the given signal’s value, if any.
 	 */
-	def signalValue(name: String): Option[Any] = values.get(name)
+	def signalValue(name: String): Option[Any] = {
+		val slot = registry.lookup(name)
+		if (hasValue(slot)) Some(valueAt(slot)) else None
+	}
+
+	def signalValue(handle: SignalHandle): Option[Any] = {
+		val slot = handle.resolve(registry)
+		if (hasValue(slot)) Some(valueAt(slot)) else None
+	}
 
 	/**
 	 * Returns the given signal’s value, or the default value if no value is set.
@@ -39,13 +138,42 @@ class SignalState(val values: SignalState.Values, val updated: List[String] = Li
 	 * @tparam T The type of the value to return. Note that this will cause an error if the value is not of the correct type.
 	 * @return
 	 */
-	def signalValue[T](name: String, default: T): T = values.getOrElse(name, default).asInstanceOf[T]
+	def signalValue[T](name: String, default: T): T = {
+		val slot = registry.lookup(name)
+		(if (hasValue(slot)) valueAt(slot) else default).asInstanceOf[T]
+	}
 
-	def isUpdated(name: String) = updated.contains(name)
+	/**
+	 * Returns the value of a numeric signal without boxing it, or the default value if no value is set.
+	 */
+	def doubleValue(handle: SignalHandle, default: Double): Double = doubleValue(handle.resolve(registry), default)
+
+	/**
+	 * Returns the value of a numeric signal by its slot in the registry of this state.
+	 */
+	def doubleValue(slot: SignalSlot, default: Double): Double = {
+		if (!hasValue(slot)) {
+			default
+		} else if (slot.numeric) {
+			numbers(slot.index)
+		} else {
+			SignalUpdates.toDouble(slot, objects(slot.index))
+		}
+	}
+
+	def isUpdated(name: String): Boolean = {
+		val slot = registry.lookup(name)
+		slot != null && updated.get(slot.index)
+	}
+
+	def isUpdated(handle: SignalHandle): Boolean = {
+		val slot = handle.resolve(registry)
+		slot != null && updated.get(slot.index)
+	}
 
 	/**
 	 * Returns a partial map with all signals that were updated for this state
 	 */
-	def getUpdated: Values = values.filterKeys(name => updated.contains(name))
+	def getUpdated: Values = values.filterKeys(name => isUpdated(name))
 
 }
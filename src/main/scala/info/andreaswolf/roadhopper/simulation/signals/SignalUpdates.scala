@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2015 Andreas Wolf
+ *
+ * See te LICENSE file in the project root for further copyright information.
+ */
+
+package info.andreaswolf.roadhopper.simulation.signals
+
+import java.util
+
+
+/**
+ * A reusable buffer for the signal updates of one delta cycle, indexed by the slots of a [[SignalRegistry]].
+ * <p/>
+ * Numeric values are stored without boxing. If a signal is updated more than once, the last update wins. The buffer
+ * is applied to a [[SignalState]] with [[SignalState.updatedWith()]] and can be cleared afterwards to be reused for the
+ * next cycle.
+ */
+class SignalUpdates(val registry: SignalRegistry) {
+
+	private[signals] var numbers = new Array[Double](16)
+
+	private[signals] var objects = new Array[AnyRef](16)
+
+	/** The slots that were updated */
+	private[signals] val slots = new util.BitSet()
+
+
+	def put(name: String, value: Any): Unit = put(registry.slotFor(name, value), value)
+
+	def put(slot: SignalSlot, value: Any): Unit = {
+		ensureCapacity(slot.index)
+		if (slot.numeric) {
+			numbers(slot.index) = SignalUpdates.toDouble(slot, value)
+		} else {
+			objects(slot.index) = value.asInstanceOf[AnyRef]
+		}
+		slots.set(slot.index)
+	}
+
+	def putDouble(slot: SignalSlot, value: Double): Unit = {
+		if (slot.numeric) {
+			ensureCapacity(slot.index)
+			numbers(slot.index) = value
+			slots.set(slot.index)
+		} else {
+			put(slot, value)
+		}
+	}
+
+	def isEmpty = slots.isEmpty
+
+	def nonEmpty = !isEmpty
+
+	/** The number of updated signals */
+	def size = slots.cardinality()
+
+	def isUpdated(index: Int) = slots.get(index)
+
+	/** Calls the given function with the name of each updated signal */
+	def foreachSignal(f: String => Unit): Unit = {
+		var i = slots.nextSetBit(0)
+		while (i >= 0) {
+			f(registry.slotAt(i).name)
+			i = slots.nextSetBit(i + 1)
+		}
+	}
+
+	def clear(): Unit = {
+		// drop the references so the objects can be collected
+		var i = slots.nextSetBit(0)
+		while (i >= 0) {
+			objects(i) = null
+			i = slots.nextSetBit(i + 1)
+		}
+		slots.clear()
+	}
+
+	private def ensureCapacity(index: Int): Unit = {
+		if (index >= numbers.length) {
+			val newLength = Math.max(numbers.length * 2, index + 1)
+			numbers = util.Arrays.copyOf(numbers, newLength)
+			objects = util.Arrays.copyOf(objects, newLength)
+		}
+	}
+
+}
+
+object SignalUpdates {
+
+	/**
+	 * Converts a value for a numeric signal. Other numbers (e.g. integers) are widened; everything else is rejected, as
+	 * it could not be read back as a Double.
+	 */
+	def toDouble(slot: SignalSlot, value: Any): Double = value match {
+		case d: Double => d
+		case n: java.lang.Number => n.doubleValue()
+		case _ => throw new IllegalArgumentException(s"Signal ${slot.name} is numeric and cannot store value $value")
+	}
+
+}
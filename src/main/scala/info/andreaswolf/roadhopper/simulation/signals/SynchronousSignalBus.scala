@@ -0,0 +1,401 @@
+/*
+ * Copyright (c) 2015 Andreas Wolf
+ *
+ * See te LICENSE file in the project root for further copyright information.
+ */
+
+package info.andreaswolf.roadhopper.simulation.signals
+
+import info.andreaswolf.roadhopper.metrics.{Metrics, Timer}
+import org.slf4j.LoggerFactory
+
+import scala.collection.mutable
+import scala.collection.mutable.ListBuffer
+
+
+/**
+ * The state of a [[SynchronousSignalBus]] and its components between two time steps; see
+ * [[SynchronousSignalBus.checkpoint()]].
+ *
+ * @param signals The values of all signals
+ * @param futureUpdates The updates scheduled for future time steps, e.g. by a dead time, indexed by their time
+ * @param componentStates The class and the saved state of each component, in registration order
+ */
+class SignalBusCheckpoint(val time: Int, val signals: Map[String, Any], val futureUpdates: Map[Int, Map[String, Any]],
+                          val componentStates: List[(Class[_], Any)], val stopRequested: Boolean) {
+
+}
+
+
+/**
+ * A single-threaded counterpart of the actor-based [[SignalBus]].
+ * <p/>
+ * The components are called directly instead of being sent messages, so no Futures or mailbox round trips are
+ * involved. The semantics of the actor-based bus are kept: all components subscribed to a signal that was updated in
+ * one delta cycle are invoked with the same signal state, and the updates they emit are only applied in the next delta
+ * cycle. A time step ends once a delta cycle does not emit any further updates.
+ * <p/>
+ * Before the first step, the signal graph is compiled: the components are sorted topologically by the signals they
+ * read and write (see [[register()]]), and each signal gets the list of its subscribers in this order. This makes the
+ * invocation order within a delta cycle deterministic and lets data flow "downstream" in the order it is produced.
+ * Updates that are only scheduled for a future time step (e.g. by a dead time) are not part of the graph, as they
+ * cannot influence the current time step.
+ * <p/>
+ * A component can be registered with a sample interval; it is then only told the time and invoked in the time steps
+ * that are a multiple of the interval. This saves the invocations of components that only act every now and then, like
+ * loggers. As the sample intervals and scheduled updates are known, the bus can also tell the time of the next step in
+ * which something besides the regular updates happens (see [[nextEventTime()]]), which allows for larger steps.
+ * <p/>
+ * The bus records the invocations of each component and the delta cycles per time step in the [[Metrics]], under the
+ * same names as the actor-based bus and processes. The counts are kept in plain arrays and only added to the shared
+ * metrics every [[metricsInterval]] steps; the duration of the invocations is only measured in every
+ * [[samplingInterval]]th step.
+ * <p/>
+ * As all components are run on one thread, the bus can take a consistent snapshot of the simulation between two time
+ * steps (see [[checkpoint()]]) and continue it on another bus, e.g. with different parameters (see [[restore()]]).
+ */
+class SynchronousSignalBus extends SignalSink {
+
+	val log = LoggerFactory.getLogger(this.getClass)
+
+	/**
+	 * The maximum number of delta cycles for one time step. If a step needs more cycles, the signal graph most likely
+	 * contains a loop without delay.
+	 */
+	var maximumDeltaCycles = 1000
+
+	var time = 0
+
+	/** The slots and types of all signals on this bus */
+	val registry = new SignalRegistry()
+
+	private val timeSlot = registry.define("time", SignalType.Reference)
+
+	/**
+	 * The current signal state.
+	 */
+	var signals = new SignalState(registry)
+
+	/** All registered components, in registration order */
+	private val components = new ListBuffer[SignalComponent]()
+
+	private val subscriptions = new mutable.HashMap[SignalComponent, List[String]]()
+
+	private val outputs = new mutable.HashMap[SignalComponent, List[String]]()
+
+	private val sampleIntervals = new mutable.HashMap[SignalComponent, Int]()
+
+	/**
+	 * The subscribers for each signal, sorted topologically. Only valid once the graph was compiled.
+	 */
+	private var subscribers: Map[String, Array[SignalComponent]] = Map()
+
+	/** All components in topological order. Only valid once the graph was compiled. */
+	private var order: Array[SignalComponent] = Array()
+
+	/** The sample intervals of the components in [[order]] */
+	private var orderIntervals: Array[Int] = Array()
+
+	/** Set for the components in [[order]] that are due in the current time step */
+	private var due: Array[Boolean] = Array()
+
+	private var compiled = false
+
+	/** Every this many time steps, the duration of the component invocations is measured */
+	val samplingInterval = 64
+
+	/** Every this many time steps, the locally collected counts are added to the [[Metrics]] */
+	val metricsInterval = 10000
+
+	private var stepCount = 0L
+
+	/** Set if the invocations are timed in the current step */
+	private var sampling = false
+
+	/** The timers and the locally collected counts of the components in [[order]] */
+	private var timers: Array[Timer] = Array()
+	private var invocations: Array[Long] = Array()
+	private var sampledInvocations: Array[Long] = Array()
+	private var sampledNanos: Array[Long] = Array()
+
+	/** The number of time steps by the number of delta cycles they took; longer steps are recorded directly */
+	private val deltaCycleCounts = new Array[Long](16)
+
+	private val deltaCycles = Metrics.histogram(SignalBus.deltaCyclesMetric)
+
+	/**
+	 * The updates emitted in the current delta cycle; they will be applied in the next cycle. The buffers are swapped
+	 * after each cycle and reused.
+	 */
+	private var scheduledUpdates = new SignalUpdates(registry)
+
+	private var appliedUpdates = new SignalUpdates(registry)
+
+	/** The components to invoke in the current delta cycle */
+	private val toInvoke = new mutable.HashSet[SignalComponent]()
+
+	/** Updates scheduled for a future time step. These will be executed in the first delta cycle of the time step. */
+	private val futureScheduledUpdates = new mutable.HashMap[Int, mutable.HashMap[String, Any]]()
+
+	/**
+	 * Set if a component requested the end of the simulation.
+	 */
+	var stopRequested = false
+
+
+	/**
+	 * Registers a component with the bus.
+	 *
+	 * @param inputs The signals the component is subscribed to, i.e. that lead to an invocation if they change
+	 * @param outputs The signals the component updates directly (via [[updateSignalValue()]]); used to sort the
+	 *                components. Signals that are only updated in a future time step must not be listed here.
+	 * @param sampleInterval The interval (in milliseconds) of the time steps in which the component is invoked; 0 for
+	 *                       every time step
+	 */
+	def register(component: SignalComponent, inputs: List[String], outputs: List[String] = List(),
+	             sampleInterval: Int = 0): Unit = {
+		if (components.contains(component)) {
+			throw new IllegalArgumentException(s"Component $component is already registered")
+		}
+		require(sampleInterval >= 0, "The sample interval must not be negative")
+		components append component
+		subscriptions.put(component, inputs.distinct)
+		this.outputs.put(component, outputs.distinct)
+		sampleIntervals.put(component, sampleInterval)
+		compiled = false
+	}
+
+	/**
+	 * Sorts the registered components topologically (using Kahn’s algorithm) and builds the subscriber lists.
+	 * <p/>
+	 * If the graph contains a loop, the components on the loop are appended in their registration order.
+	 *
+	 * @return The components in the order they will be invoked
+	 */
+	def compile(): List[SignalComponent] = {
+		val writers = new mutable.HashMap[String, ListBuffer[SignalComponent]]()
+		for (component <- components; signal <- outputs(component)) {
+			writers.getOrElseUpdate(signal, new ListBuffer[SignalComponent]()) append component
+		}
+
+		// the components this component depends on, i.e. that write one of its input signals
+		val dependencies = components.map(component => {
+			component -> subscriptions(component).flatMap(signal => writers.getOrElse(signal, List()))
+				.filter(_ != component).distinct
+		}).toMap
+
+		val sorted = new ListBuffer[SignalComponent]()
+		var remaining = components.toList
+		while (remaining.nonEmpty) {
+			val (ready, blocked) = remaining.partition(c => dependencies(c).forall(sorted.contains))
+			if (ready.isEmpty) {
+				log.warn(s"Signal graph contains a loop between ${blocked.length} components; using registration order")
+				sorted ++= blocked
+				remaining = List()
+			} else {
+				sorted ++= ready
+				remaining = blocked
+			}
+		}
+
+		subscribers = subscriptions.toList.flatMap({ case (component, signals) => signals.map(_ -> component) })
+			.groupBy(_._1)
+			.map({ case (signal, pairs) =>
+				val signalSubscribers = pairs.map(_._2).toSet
+				signal -> sorted.filter(signalSubscribers.contains).toArray
+			})
+		publishMetrics()
+		order = sorted.toArray
+		orderIntervals = order.map(sampleIntervals)
+		due = new Array[Boolean](order.length)
+		timers = order.map(component => Metrics.timer("process." + SignalComponent.metricName(component)))
+		invocations = new Array[Long](order.length)
+		sampledInvocations = new Array[Long](order.length)
+		sampledNanos = new Array[Long](order.length)
+		compiled = true
+
+		sorted.toList
+	}
+
+	/**
+	 * Runs a full time step: passes the new time to all components and then runs delta cycles until no further
+	 * updates are emitted.
+	 *
+	 * @return The number of delta cycles that were run
+	 */
+	def step(newTime: Int): Int = {
+		require(newTime > time, "Time must advance with each step")
+		if (!compiled) {
+			compile()
+		}
+
+		time = newTime
+		stepCount += 1
+		sampling = stepCount % samplingInterval == 0
+		var i = 0
+		while (i < order.length) {
+			due(i) = orderIntervals(i) == 0 || newTime % orderIntervals(i) == 0
+			if (due(i)) {
+				order(i).advanceTime(newTime)
+			}
+			i += 1
+		}
+
+		// updates made between two steps (see updateBeforeStep()) are already in the buffer for the first delta cycle
+		futureScheduledUpdates.remove(time).foreach(_.foreach({ case (name, value) => scheduledUpdates.put(name, value) }))
+		scheduledUpdates.put(timeSlot, time)
+
+		var cycle = 0
+		while (scheduledUpdates.nonEmpty) {
+			cycle += 1
+			if (cycle > maximumDeltaCycles) {
+				throw new IllegalStateException(s"Time step $time did not finish after $maximumDeltaCycles delta cycles")
+			}
+			runDeltaCycle()
+		}
+
+		if (cycle < deltaCycleCounts.length) {
+			deltaCycleCounts(cycle) += 1
+		} else {
+			deltaCycles.record(cycle)
+		}
+		if (stepCount % metricsInterval == 0) {
+			publishMetrics()
+		}
+		cycle
+	}
+
+	/**
+	 * Adds the counts collected since the last call to the [[Metrics]]. Call this when the simulation has finished.
+	 */
+	def publishMetrics(): Unit = {
+		var i = 0
+		while (i < invocations.length) {
+			if (invocations(i) > 0) {
+				timers(i).recordCount(invocations(i))
+				timers(i).recordSampled(sampledInvocations(i), sampledNanos(i))
+				invocations(i) = 0
+				sampledInvocations(i) = 0
+				sampledNanos(i) = 0
+			}
+			i += 1
+		}
+		i = 0
+		while (i < deltaCycleCounts.length) {
+			if (deltaCycleCounts(i) > 0) {
+				deltaCycles.record(i, deltaCycleCounts(i))
+				deltaCycleCounts(i) = 0
+			}
+			i += 1
+		}
+	}
+
+	/**
+	 * Applies the updates from the last cycle and invokes every component subscribed to any of the updated signals
+	 * once.
+	 */
+	protected def runDeltaCycle(): Unit = {
+		val updates = scheduledUpdates
+		scheduledUpdates = appliedUpdates
+		appliedUpdates = updates
+		signals = signals.updatedWith(updates)
+
+		toInvoke.clear()
+		updates.foreachSignal(signal => subscribers.get(signal).foreach(toInvoke ++= _))
+		updates.clear()
+
+		// keep the topological order even if the components were collected from different signals
+		var i = 0
+		while (i < order.length) {
+			if (due(i) && toInvoke.contains(order(i))) {
+				invocations(i) += 1
+				if (sampling) {
+					val start = System.nanoTime()
+					order(i).invoke(signals, this)
+					sampledNanos(i) += System.nanoTime() - start
+					sampledInvocations(i) += 1
+				} else {
+					order(i).invoke(signals, this)
+				}
+			}
+			i += 1
+		}
+	}
+
+	/**
+	 * Returns the earliest time after the current time at which an update scheduled for the future is applied or a
+	 * component with a sample interval is due. Steps up to this time only run the components that are invoked in
+	 * every step.
+	 *
+	 * @param until The latest time to return
+	 */
+	def nextEventTime(until: Int): Int = {
+		var result = until
+		futureScheduledUpdates.keys.foreach(scheduled => if (scheduled > time && scheduled < result) result = scheduled)
+		sampleIntervals.values.foreach(interval => if (interval > 0) {
+			result = Math.min(result, (time / interval + 1) * interval)
+		})
+		result
+	}
+
+	/**
+	 * Captures the state of the bus and all components after the current time step, to continue the simulation from
+	 * this point on another bus (see [[restore()]]). Must not be called while a time step is running.
+	 */
+	def checkpoint(): SignalBusCheckpoint = {
+		new SignalBusCheckpoint(time, signals.values,
+			futureScheduledUpdates.map({ case (updateTime, updates) => updateTime -> updates.toMap }).toMap,
+			components.map(component => (component.getClass, component.saveState())).toList,
+			stopRequested)
+	}
+
+	/**
+	 * Continues from a checkpoint taken on another bus. The same component classes must be registered with this bus in
+	 * the same order as with the other bus, but they may have different parameters. Must be called before the first
+	 * time step.
+	 */
+	def restore(checkpoint: SignalBusCheckpoint): Unit = {
+		require(time == 0, "A checkpoint can only be restored before the first time step")
+		if (components.map(_.getClass) != checkpoint.componentStates.map(_._1)) {
+			throw new IllegalArgumentException("The registered components do not match the components of the checkpoint")
+		}
+
+		time = checkpoint.time
+		signals = new SignalState(checkpoint.signals, new SignalState(registry))
+		futureScheduledUpdates.clear()
+		checkpoint.futureUpdates.foreach({ case (updateTime, updates) =>
+			futureScheduledUpdates.put(updateTime, mutable.HashMap(updates.toSeq: _*))
+		})
+		components.zip(checkpoint.componentStates).foreach({ case (component, (_, state)) =>
+			component.time = checkpoint.time
+			component.restoreState(state)
+		})
+		stopRequested = checkpoint.stopRequested
+	}
+
+	override def updateSignalValue(signalName: String, newValue: Any): Unit = scheduledUpdates.put(signalName, newValue)
+
+	override def updateSignalValue(handle: SignalHandle, newValue: Double): Unit = {
+		val slot = handle.resolve(registry)
+		if (slot != null) {
+			scheduledUpdates.putDouble(slot, newValue)
+		} else {
+			scheduledUpdates.put(handle.name, newValue)
+		}
+	}
+
+	/**
+	 * Updates a numeric signal from outside the simulation between two time steps; the value is applied in the first
+	 * delta cycle of the next step. Unlike [[scheduleSignalUpdate()]], this does not allocate once the signal is
+	 * defined. Pending updates are not part of a [[checkpoint()]].
+	 */
+	def updateBeforeStep(handle: SignalHandle, newValue: Double): Unit = updateSignalValue(handle, newValue)
+
+	override def scheduleSignalUpdate(delta: Int, signalName: String, newValue: Any): Unit = {
+		// as in the actor-based bus, the last update for a time step wins
+		futureScheduledUpdates.getOrElseUpdate(time + delta, new mutable.HashMap[String, Any]()).put(signalName, newValue)
+	}
+
+	override def stopSimulation(): Unit = stopRequested = true
+
+}
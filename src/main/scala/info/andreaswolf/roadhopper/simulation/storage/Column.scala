@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2015 Andreas Wolf
+ *
+ * See te LICENSE file in the project root for further copyright information.
+ */
+
+package info.andreaswolf.roadhopper.simulation.storage
+
+import java.nio.ByteBuffer
+
+
+/**
+ * A column of primitive values, stored in chunks of a [[MappedColumnFile]].
+ * <p/>
+ * Values can only be appended. A column may be written by one thread and read by any number of threads at the same
+ * time; readers only see values that were completely written.
+ *
+ * @param firstRow The first row this column has a value for. Columns for signals that appear later in a simulation
+ *                 start at a later row.
+ * @param elementSize The size of one value in bytes
+ */
+abstract class Column(val file: MappedColumnFile, val firstRow: Int, val elementSize: Int) {
+
+	private val valuesPerChunk = file.chunkSize / elementSize
+
+	@volatile
+	private var chunks = Vector[MappedColumnFile.Chunk]()
+
+	@volatile
+	private var _length = 0
+
+	/** The number of values in this column */
+	def length = _length
+
+	/** The row after the last row this column has a value for */
+	def endRow = firstRow + _length
+
+	/**
+	 * Returns the buffer for the next value, allocating a new chunk if the current one is full.
+	 */
+	protected def nextBuffer(): ByteBuffer = {
+		val chunkIndex = _length / valuesPerChunk
+		if (chunkIndex == chunks.size) {
+			chunks = chunks :+ file.allocateChunk()
+		}
+		chunks(chunkIndex).buffer
+	}
+
+	/** The position of the next value in the buffer returned by [[nextBuffer()]] */
+	protected def nextOffset: Int = (_length % valuesPerChunk) * elementSize
+
+	/** Publishes the value written to the next position to readers. */
+	protected def committed(): Unit = _length += 1
+
+	protected def bufferAt(index: Int): ByteBuffer = chunks(index / valuesPerChunk).buffer
+
+	protected def offsetAt(index: Int): Int = (index % valuesPerChunk) * elementSize
+
+	/** The index of the given row in this column, or -1 if there is no value for the row */
+	protected def indexOf(row: Int): Int = {
+		val index = row - firstRow
+		if (index < 0 || index >= _length) -1 else index
+	}
+
+}
+
+
+class DoubleColumn(file: MappedColumnFile, firstRow: Int) extends Column(file, firstRow, 8) {
+
+	def append(value: Double): Unit = {
+		nextBuffer().putDouble(nextOffset, value)
+		committed()
+	}
+
+	/**
+	 * @return The value for the given row, or NaN if there is none
+	 */
+	def apply(row: Int): Double = {
+		val index = indexOf(row)
+		if (index < 0) Double.NaN else bufferAt(index).getDouble(offsetAt(index))
+	}
+
+}
+
+
+class IntColumn(file: MappedColumnFile, firstRow: Int) extends Column(file, firstRow, 4) {
+
+	def append(value: Int): Unit = {
+		nextBuffer().putInt(nextOffset, value)
+		committed()
+	}
+
+	def apply(row: Int): Int = {
+		val index = indexOf(row)
+		if (index < 0) throw new IndexOutOfBoundsException(s"No value for row $row") else bufferAt(index).getInt(offsetAt(index))
+	}
+
+}
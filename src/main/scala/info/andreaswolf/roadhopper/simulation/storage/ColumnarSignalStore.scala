@@ -0,0 +1,227 @@
+/*
+ * Copyright (c) 2015 Andreas Wolf
+ *
+ * See te LICENSE file in the project root for further copyright information.
+ */
+
+package info.andreaswolf.roadhopper.simulation.storage
+
+import java.util
+
+import info.andreaswolf.roadhopper.simulation.signals.{SignalRegistry, SignalState}
+
+
+object ColumnarSignalStore {
+
+	/**
+	 * Is notified whenever a row was appended to a store, see [[ColumnarSignalStore.addListener()]].
+	 */
+	trait RowListener {
+
+		/**
+		 * Called on the thread that appended the row (i.e. usually the simulation), so this must return quickly.
+		 *
+		 * @param rowCount The number of rows after appending
+		 */
+		def rowAppended(rowCount: Int): Unit
+
+	}
+
+}
+
+
+/**
+ * Stores the logged signal states of a simulation column by column.
+ * <p/>
+ * Each numeric signal gets its own [[DoubleColumn]]; the times of the logged states are kept in a separate column. Rows
+ * before the first value of a signal or without a value are stored as NaN. Non-numeric signals (e.g. the position or
+ * current road segment) are not stored.
+ * <p/>
+ * All columns share one memory-mapped file, which is only created when the first state is logged. The store must be
+ * closed to remove the file.
+ * <p/>
+ * Readers that follow a running simulation can wait for new rows with [[awaitRows()]], or be notified of them by a
+ * [[ColumnarSignalStore.RowListener]].
+ *
+ * @param chunkSize The size of the chunks the columns are allocated in, in bytes
+ */
+class ColumnarSignalStore(val chunkSize: Int = 64 * 1024) {
+
+	import ColumnarSignalStore.RowListener
+
+	/** The backing file; created with the first row */
+	private var file: MappedColumnFile = null
+
+	private var times: IntColumn = null
+
+	/** The registry of the logged states; all states must come from the same signal bus. */
+	private var registry: SignalRegistry = null
+
+	private var columnsBySlot = new Array[DoubleColumn](0)
+
+	@volatile
+	private var columns = Map[String, DoubleColumn]()
+
+	@volatile
+	private var _rowCount = 0
+
+	@volatile
+	private var listeners = List[RowListener]()
+
+
+	/**
+	 * Appends the numeric values of the given state as a new row.
+	 *
+	 * @param time The time of the state; must be larger than the time of the last row
+	 */
+	def append(time: Int, state: SignalState): Unit = {
+		val rowCount = appendRow(time, state)
+		listeners.foreach(_.rowAppended(rowCount))
+	}
+
+	private def appendRow(time: Int, state: SignalState): Int = synchronized {
+		if (_rowCount > 0 && time <= times(_rowCount - 1)) {
+			throw new IllegalArgumentException(s"Rows must be appended in time order: $time after ${times(_rowCount - 1)}")
+		}
+		if (file == null) {
+			file = MappedColumnFile.createTemporary(chunkSize)
+			times = new IntColumn(file, 0)
+		}
+		if (registry == null) {
+			registry = state.registry
+		} else if (registry ne state.registry) {
+			throw new IllegalArgumentException("All states must belong to the same signal registry")
+		}
+
+		val size = registry.size
+		if (columnsBySlot.length < size) {
+			columnsBySlot = util.Arrays.copyOf(columnsBySlot, size)
+		}
+		var i = 0
+		while (i < size) {
+			val slot = registry.slotAt(i)
+			if (slot.numeric) {
+				var column = columnsBySlot(i)
+				if (column == null) {
+					column = new DoubleColumn(file, _rowCount)
+					columnsBySlot(i) = column
+					columns += slot.name -> column
+				}
+				column.append(state.doubleValue(slot, Double.NaN))
+			}
+			i += 1
+		}
+		times.append(time)
+		_rowCount += 1
+		notifyAll()
+		_rowCount
+	}
+
+	/**
+	 * Registers a listener that is notified of each row appended from now on.
+	 */
+	def addListener(listener: RowListener): Unit = synchronized {
+		listeners = listener :: listeners
+	}
+
+	def removeListener(listener: RowListener): Unit = synchronized {
+		listeners = listeners.filterNot(_ eq listener)
+	}
+
+	/**
+	 * Blocks until there are more than the given number of rows, or the timeout has passed.
+	 *
+	 * @return The current number of rows
+	 */
+	def awaitRows(knownRows: Int, timeout: Long): Int = synchronized {
+		val deadline = System.currentTimeMillis() + timeout
+		var remaining = timeout
+		while (_rowCount <= knownRows && remaining > 0) {
+			wait(remaining)
+			remaining = deadline - System.currentTimeMillis()
+		}
+		_rowCount
+	}
+
+	/** The size of the backing file in bytes */
+	def sizeInBytes: Long = synchronized {
+		if (file == null) 0L else file.size
+	}
+
+	/** The number of logged states */
+	def rowCount = _rowCount
+
+	def isEmpty = _rowCount == 0
+
+	/** The names of all stored signals */
+	def signalNames: Iterable[String] = columns.keys
+
+	def column(signalName: String): Option[DoubleColumn] = columns.get(signalName)
+
+	/** The time of the given row */
+	def time(row: Int): Int = times(row)
+
+	/** The column with the times of all rows; null if no row was logged yet */
+	def timeColumn: IntColumn = times
+
+	/**
+	 * Finds the first row at or after the given time.
+	 *
+	 * @param rowCount The number of rows to search, to get consistent results while new rows are appended
+	 * @return The row, or rowCount if all rows are before the time
+	 */
+	def rowAt(time: Int, rowCount: Int = _rowCount): Int = {
+		var low = 0
+		var high = rowCount
+		while (low < high) {
+			val middle = (low + high) >>> 1
+			if (times(middle) < time) low = middle + 1 else high = middle
+		}
+		low
+	}
+
+	/**
+	 * Selects the rows within a time range, keeping at most one row per step.
+	 *
+	 * @param from The start time (inclusive)
+	 * @param to The end time (inclusive)
+	 * @param step The minimum time between two selected rows; 0 selects all rows in the range
+	 * @return The selected rows in ascending order
+	 */
+	def selectRows(from: Int = 0, to: Int = Int.MaxValue, step: Int = 0): Iterator[Int] = {
+		val rowCount = _rowCount
+		val (start, end) = selectRange(from, to, rowCount)
+		if (step <= 0) {
+			Iterator.range(start, end)
+		} else {
+			// jump from row to row via the time index instead of looking at every row
+			Iterator.iterate(start)(row => rowAt(times(row) + step, rowCount)).takeWhile(_ < end)
+		}
+	}
+
+	/**
+	 * Finds the rows within a time range.
+	 *
+	 * @param from The start time (inclusive)
+	 * @param to The end time (inclusive)
+	 * @return The first row in the range and the row after the last row in the range
+	 */
+	def selectRange(from: Int = 0, to: Int = Int.MaxValue, rowCount: Int = _rowCount): (Int, Int) = {
+		if (rowCount == 0) {
+			return (0, 0)
+		}
+		val start = rowAt(from, rowCount)
+		val end = if (to == Int.MaxValue) rowCount else rowAt(to + 1, rowCount)
+		(start, Math.max(start, end))
+	}
+
+	/**
+	 * Removes the backing file. The store must not be used afterwards.
+	 */
+	def close(): Unit = synchronized {
+		if (file != null) {
+			file.close()
+		}
+	}
+
+}
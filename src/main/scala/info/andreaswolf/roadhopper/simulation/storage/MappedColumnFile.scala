@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2015 Andreas Wolf
+ *
+ * See te LICENSE file in the project root for further copyright information.
+ */
+
+package info.andreaswolf.roadhopper.simulation.storage
+
+import java.io.File
+import java.nio.MappedByteBuffer
+import java.nio.channels.FileChannel.MapMode
+import java.nio.channels.FileChannel
+import java.nio.file.StandardOpenOption
+
+import org.slf4j.LoggerFactory
+
+
+object MappedColumnFile {
+
+	/**
+	 * A fixed-size part of the file that belongs to one column.
+	 *
+	 * @param offset The position of the chunk in the file
+	 */
+	class Chunk(val offset: Long, val buffer: MappedByteBuffer)
+
+	/**
+	 * Creates a file in the temporary directory; the file is removed when it is closed or the JVM exits.
+	 */
+	def createTemporary(chunkSize: Int = 64 * 1024): MappedColumnFile = {
+		val file = File.createTempFile("roadhopper-signals-", ".bin")
+		file.deleteOnExit()
+		new MappedColumnFile(file, chunkSize)
+	}
+
+}
+
+/**
+ * An append-only file holding the chunks of several columns.
+ * <p/>
+ * The file grows by one chunk whenever a column needs more space; each chunk is memory-mapped, so the column values
+ * live outside of the Java heap. Chunks of different columns are interleaved in the order they were allocated.
+ *
+ * @param chunkSize The size of a chunk in bytes
+ */
+class MappedColumnFile(val file: File, val chunkSize: Int) {
+
+	import MappedColumnFile.Chunk
+
+	val log = LoggerFactory.getLogger(this.getClass)
+
+	private val channel = FileChannel.open(file.toPath,
+		StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)
+
+	/** The number of bytes allocated for chunks */
+	private var allocated = 0L
+
+	@volatile
+	private var closed = false
+
+
+	/**
+	 * Appends a new chunk to the file and maps it into memory.
+	 */
+	def allocateChunk(): Chunk = synchronized {
+		if (closed) {
+			throw new IllegalStateException(s"Column file $file is already closed")
+		}
+		val offset = allocated
+		allocated += chunkSize
+		new Chunk(offset, channel.map(MapMode.READ_WRITE, offset, chunkSize))
+	}
+
+	/** The current size of the file in bytes */
+	def size: Long = synchronized { allocated }
+
+	/**
+	 * Closes and removes the file. The mapped chunks must not be used afterwards.
+	 */
+	def close(): Unit = synchronized {
+		if (!closed) {
+			closed = true
+			channel.close()
+			if (!file.delete()) {
+				log.warn(s"Could not delete column file $file")
+			}
+		}
+	}
+
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) 2015 Andreas Wolf
+ *
+ * See te LICENSE file in the project root for further copyright information.
+ */
+
+package info.andreaswolf.roadhopper.simulation.sweep
+
+import info.andreaswolf.roadhopper.road.Route
+import info.andreaswolf.roadhopper.simulation.SimulationParameters
+import info.andreaswolf.roadhopper.simulation.SimulationParameters.{PedalParameters, VelocityControllerParameters}
+import info.andreaswolf.roadhopper.simulation.vehicle.VehicleParameters
+
+
+/**
+ * The values to try for each parameter in a [[ParameterSweep]]. Every combination of the values becomes one variant,
+ * so the number of variants is the product of the number of values for each parameter.
+ * <p/>
+ * The defaults are the values used for single simulation runs.
+ */
+class ParameterGrid(val gasPedalGains: List[Double] = List(100.0),
+                    val brakePedalGains: List[Double] = List(-200.0),
+                    val proportionalGains: List[Double] = List(SimulationParameters.velocityControllerDefaults.proportionalGain),
+                    val integratorGains: List[Double] = List(SimulationParameters.velocityControllerDefaults.integratorGain),
+                    val differentiatorGains: List[Double] = List(SimulationParameters.velocityControllerDefaults.differentiatorGain),
+                    val vehicles: List[VehicleParameters] = List(VehicleParameters.CompactCar)) {
+
+	/** The number of variants in this grid */
+	def size: Int = gasPedalGains.size * brakePedalGains.size * proportionalGains.size * integratorGains.size *
+		differentiatorGains.size * vehicles.size
+
+	/**
+	 * Creates the simulation parameters for all variants of the grid.
+	 */
+	def variants(route: Route): List[SimulationParameters] = for (
+		vehicle <- vehicles;
+		gasPedalGain <- gasPedalGains;
+		brakePedalGain <- brakePedalGains;
+		proportionalGain <- proportionalGains;
+		integratorGain <- integratorGains;
+		differentiatorGain <- differentiatorGains
+	) yield new SimulationParameters(
+		velocityController = new VelocityControllerParameters(proportionalGain, integratorGain, differentiatorGain),
+		pedal = new PedalParameters(gasPedalGain, brakePedalGain),
+		vehicle = vehicle,
+		route = route
+	)
+
+}
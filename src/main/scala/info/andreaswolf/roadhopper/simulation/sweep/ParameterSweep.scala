@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2015 Andreas Wolf
+ *
+ * See te LICENSE file in the project root for further copyright information.
+ */
+
+package info.andreaswolf.roadhopper.simulation.sweep
+
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.{Executors, ThreadFactory}
+
+import info.andreaswolf.roadhopper.road.Route
+import info.andreaswolf.roadhopper.simulation.{CompiledSignalBasedSimulation, SimulationCheckpoint, SimulationParameters, SimulationResult}
+import org.slf4j.LoggerFactory
+
+import scala.concurrent.{ExecutionContext, Future}
+
+
+/**
+ * The outcome of one variant of a parameter sweep: either a summary or the error that aborted the simulation.
+ *
+ * @param index The index of the variant in the list of variants passed to the sweep
+ */
+class SweepResult(val index: Int, val parameters: SimulationParameters, val summary: Option[SimulationSummary],
+                  val error: Option[String] = None) {
+
+}
+
+
+/**
+ * Runs many simulations with different parameters at once, e.g. to calibrate the controller gains.
+ * <p/>
+ * Each variant is run as a [[CompiledSignalBasedSimulation]] on a single thread; the variants are distributed over a
+ * fixed pool of threads that is shared by all sweeps. No signal states are logged; instead, a [[SimulationSummary]] is
+ * collected for each variant.
+ * <p/>
+ * To compare the variants on a specific part of a route, they can also be forked from a common simulation (see
+ * [[runForked()]]), so the journey up to this part is only simulated once.
+ *
+ * @param parallelism The number of variants to run at the same time
+ */
+class ParameterSweep(val parallelism: Int) {
+
+	def this() = this(Runtime.getRuntime.availableProcessors())
+
+	val log = LoggerFactory.getLogger(this.getClass)
+
+	/**
+	 * The simulation time (in milliseconds) after which a variant is aborted. Unsuitable parameters might prevent the
+	 * vehicle from ever reaching the end of the route.
+	 */
+	var maximumSimulationTime = 3600 * 1000
+
+	private val threadCounter = new AtomicInteger()
+
+	private val executor = Executors.newFixedThreadPool(parallelism, new ThreadFactory {
+		override def newThread(r: Runnable): Thread = {
+			val thread = new Thread(r, s"simulation-sweep-${threadCounter.incrementAndGet()}")
+			thread.setDaemon(true)
+			thread
+		}
+	})
+
+	implicit val executionContext = ExecutionContext.fromExecutorService(executor)
+
+
+	/**
+	 * Runs all variants of the given grid on the route.
+	 */
+	def run(route: Route, grid: ParameterGrid): Future[List[SweepResult]] = run(grid.variants(route))
+
+	/**
+	 * Runs the given variants. The results are in the same order as the variants.
+	 */
+	def run(variants: List[SimulationParameters]): Future[List[SweepResult]] = {
+		log.info(s"Starting parameter sweep with ${variants.size} variants on $parallelism threads")
+		runAll(variants, None)
+	}
+
+	/**
+	 * Simulates the journey with the base parameters up to the given time, and then continues with each of the variants
+	 * from there. The variants must use the same route object as the base parameters.
+	 * <p/>
+	 * The summaries of the variants include the common part of the journey, but their computation time does not.
+	 *
+	 * @param forkTime The simulation time in milliseconds at which the variants take over
+	 */
+	def runForked(base: SimulationParameters, forkTime: Int,
+	              variants: List[SimulationParameters]): Future[List[SweepResult]] = {
+		log.info(s"Starting parameter sweep with ${variants.size} variants forked at $forkTime on $parallelism threads")
+		Future {
+			val (simulation, _) = createSimulation(base)
+			simulation.run(Math.min(forkTime, maximumSimulationTime))
+			simulation.checkpoint()
+		}.flatMap(checkpoint => runAll(variants, Some(checkpoint)))
+	}
+
+	private def runAll(variants: List[SimulationParameters],
+	                   checkpoint: Option[SimulationCheckpoint]): Future[List[SweepResult]] = {
+		Future.sequence(variants.zipWithIndex.map({ case (parameters, index) =>
+			Future {
+				runVariant(index, parameters, checkpoint)
+			}
+		}))
+	}
+
+	/**
+	 * Runs a single variant on the current thread.
+	 *
+	 * @param checkpoint The checkpoint to continue from; if not set, the variant is simulated from the start
+	 */
+	def runVariant(index: Int, parameters: SimulationParameters,
+	               checkpoint: Option[SimulationCheckpoint] = None): SweepResult = {
+		val startTime = System.currentTimeMillis()
+		try {
+			val (simulation, summary) = createSimulation(parameters)
+			checkpoint.foreach(simulation.restore)
+
+			val finished = simulation.run(maximumSimulationTime)
+			new SweepResult(index, parameters, Some(summary.summary(finished, System.currentTimeMillis() - startTime)))
+		} catch {
+			case e: Exception =>
+				log.warn(s"Variant $index of parameter sweep failed", e)
+				new SweepResult(index, parameters, None, Some(e.getMessage))
+		}
+	}
+
+	private def createSimulation(parameters: SimulationParameters): (CompiledSignalBasedSimulation, SimulationSummaryComponent) = {
+		val simulation = new CompiledSignalBasedSimulation(parameters, new SimulationResult(), signalLogInterval = 0)
+		val summary = new SimulationSummaryComponent
+		simulation.addComponent(summary, List("time"))
+		(simulation, summary)
+	}
+
+	/**
+	 * Stops the thread pool. Variants that are already queued are still run.
+	 */
+	def shutdown(): Unit = executor.shutdown()
+
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2015 Andreas Wolf
+ *
+ * See te LICENSE file in the project root for further copyright information.
+ */
+
+package info.andreaswolf.roadhopper.simulation.sweep
+
+import info.andreaswolf.roadhopper.simulation.signals.{SignalComponent, SignalHandle, SignalSink, SignalState}
+
+
+/**
+ * The key figures of one simulation run. Summaries are sent back by the workers of a distributed sweep, so they must
+ * be serializable.
+ *
+ * @param duration The simulated time in milliseconds
+ * @param finished True if the journey ended, false if the simulation was aborted
+ * @param distance The travelled distance in meters
+ * @param averageVelocity The average velocity in m/s
+ * @param maximumVelocity The maximum velocity in m/s
+ * @param maximumAcceleration The maximum acceleration in m/s²
+ * @param maximumDeceleration The maximum deceleration in m/s² (as a positive value)
+ * @param timeOverSpeedLimit The time in milliseconds the vehicle was faster than the speed limit
+ * @param computationTime The wall clock time the simulation took, in milliseconds
+ */
+class SimulationSummary(val duration: Int, val finished: Boolean, val distance: Double,
+                        val averageVelocity: Double, val maximumVelocity: Double,
+                        val maximumAcceleration: Double, val maximumDeceleration: Double,
+                        val timeOverSpeedLimit: Int, val computationTime: Long) extends Serializable {
+
+}
+
+
+/**
+ * Collects the figures for a [[SimulationSummary]] while a simulation is running, without storing any signal states.
+ * Must be subscribed to "time".
+ */
+class SimulationSummaryComponent extends SignalComponent {
+
+	private val v = new SignalHandle("v")
+	private val a = new SignalHandle("a")
+	private val s = new SignalHandle("s")
+	private val vLimit = new SignalHandle("v_limit")
+
+	var distance = 0.0
+
+	var maximumVelocity = 0.0
+
+	var maximumAcceleration = 0.0
+
+	var maximumDeceleration = 0.0
+
+	var timeOverSpeedLimit = 0
+
+	private var lastInvocationTime = 0
+
+
+	override def invoke(signals: SignalState, bus: SignalSink): Unit = {
+		val velocity = signals.doubleValue(v, 0.0)
+		val acceleration = signals.doubleValue(a, 0.0)
+
+		distance = signals.doubleValue(s, 0.0)
+		maximumVelocity = Math.max(maximumVelocity, velocity)
+		maximumAcceleration = Math.max(maximumAcceleration, acceleration)
+		maximumDeceleration = Math.max(maximumDeceleration, -acceleration)
+		if (velocity > signals.doubleValue(vLimit, Double.PositiveInfinity)) {
+			timeOverSpeedLimit += time - lastInvocationTime
+		}
+		lastInvocationTime = time
+	}
+
+	def summary(finished: Boolean, computationTime: Long): SimulationSummary = new SimulationSummary(
+		time, finished, distance,
+		if (time > 0) distance / (time / 1000.0) else 0.0, maximumVelocity,
+		maximumAcceleration, maximumDeceleration,
+		timeOverSpeedLimit, computationTime
+	)
+
+	override def saveState(): Any = (distance, maximumVelocity, maximumAcceleration, maximumDeceleration,
+		timeOverSpeedLimit, lastInvocationTime)
+
+	override def restoreState(state: Any): Unit = state match {
+		case (d: Double, vMax: Double, aMax: Double, decelerationMax: Double, overSpeedLimit: Int, lastInvocation: Int) =>
+			distance = d
+			maximumVelocity = vMax
+			maximumAcceleration = aMax
+			maximumDeceleration = decelerationMax
+			timeOverSpeedLimit = overSpeedLimit
+			lastInvocationTime = lastInvocation
+	}
+
+}
@@ -0,0 +1,241 @@
+/*
+ * Copyright (c) 2015 Andreas Wolf
+ *
+ * See te LICENSE file in the project root for further copyright information.
+ */
+
+package info.andreaswolf.roadhopper.simulation.traffic
+
+import java.util.concurrent.{ForkJoinPool, ForkJoinTask, RecursiveAction}
+
+import info.andreaswolf.roadhopper.road.Route
+import info.andreaswolf.roadhopper.simulation.signals.SignalHandle
+import info.andreaswolf.roadhopper.simulation.sweep.{SimulationSummary, SimulationSummaryComponent}
+import info.andreaswolf.roadhopper.simulation.{CompiledSignalBasedSimulation, Simulation, SimulationParameters, SimulationResult}
+import org.slf4j.LoggerFactory
+
+
+/**
+ * One vehicle of a [[TrafficSimulation]]: a [[CompiledSignalBasedSimulation]] with its own signal bus and components,
+ * which is stepped by the traffic simulation instead of running on its own.
+ * <p/>
+ * Until the departure time, the vehicle waits at the start of the route.
+ *
+ * @param departureTime The simulation time (in milliseconds) at which the vehicle starts its journey
+ */
+class TrafficVehicle(val parameters: SimulationParameters, val departureTime: Int = 0) {
+
+	val log = LoggerFactory.getLogger(this.getClass)
+
+	val simulation = new CompiledSignalBasedSimulation(parameters, new SimulationResult(), signalLogInterval = 0)
+
+	private val summaryComponent = new SimulationSummaryComponent
+	simulation.addComponent(summaryComponent, List("time"))
+
+	private val s = new SignalHandle("s")
+
+	private val vFollow = new SignalHandle("v_follow")
+
+	/** The error that aborted the simulation of this vehicle */
+	var error: Option[String] = None
+
+	def route: Route = parameters.route
+
+	def bus = simulation.bus
+
+	/** True once the journey has ended or the simulation failed */
+	def finished: Boolean = bus.stopRequested || error.isDefined
+
+	/** The distance travelled along the route, in meters */
+	def position: Double = bus.signals.doubleValue(s, 0.0)
+
+	def step(time: Int): Unit = {
+		try {
+			bus.step(time)
+		} catch {
+			case e: Exception =>
+				log.warn(s"Vehicle ${simulation.identifier} failed at ${bus.time}", e)
+				error = Some(e.getMessage)
+		}
+	}
+
+	/**
+	 * Limits the velocity of the vehicle in the next time step, see
+	 * [[info.andreaswolf.roadhopper.simulation.driver.VelocityControllerComponent]].
+	 */
+	def limitVelocity(velocity: Double): Unit = bus.updateBeforeStep(vFollow, velocity)
+
+	def summary(computationTime: Long): SimulationSummary = summaryComponent.summary(bus.stopRequested, computationTime)
+
+}
+
+
+object TrafficSimulation {
+
+	/**
+	 * Creates vehicles with the same parameters that depart one after another.
+	 *
+	 * @param departureInterval The time between two departures in milliseconds
+	 */
+	def vehicles(parameters: SimulationParameters, count: Int, departureInterval: Int): List[TrafficVehicle] = {
+		List.tabulate(count)(i => new TrafficVehicle(parameters, i * departureInterval))
+	}
+
+}
+
+
+/**
+ * Simulates many vehicles at once, e.g. on a shared route.
+ * <p/>
+ * Each vehicle is a complete signal-based simulation with its own bus (see [[TrafficVehicle]]). The vehicles are
+ * advanced in lockstep: in each time step, all vehicles are stepped in parallel on a fork/join pool, and the next step
+ * only starts once all of them have finished. Between two steps, the vehicles see each other: each vehicle keeps a safe
+ * distance to the vehicle ahead of it on the same route (see [[VehiclePositionIndex]]) by limiting its velocity in the
+ * next step to `(distance - minimumDistance) / timeHeadway`.
+ * <p/>
+ * As all vehicles must take the same steps, the simulations never take larger steps in steady state.
+ *
+ * @param pool The pool to step the vehicles on; its work stealing balances vehicles that take longer to step
+ */
+class TrafficSimulation(val vehicles: List[TrafficVehicle], val pool: ForkJoinPool = ForkJoinPool.commonPool())
+	extends Simulation(new SimulationResult()) {
+
+	val log = LoggerFactory.getLogger(this.getClass)
+
+	/** The time gap (in seconds) a vehicle keeps to the vehicle ahead of it */
+	var timeHeadway = 1.5
+
+	/**
+	 * The distance (in meters) between the positions of two vehicles at standstill; this includes the length of the
+	 * vehicle ahead.
+	 */
+	var minimumDistance = 10.0
+
+	/** The number of vehicles that are stepped in one task, to keep the overhead of the tasks low */
+	var batchSize = 8
+
+	val stepSize = vehicles.headOption.map(_.simulation.stepSize).getOrElse(10)
+
+	private val allVehicles = vehicles.toArray
+
+	private val positions = new VehiclePositionIndex(allVehicles.length)
+
+	/** The indexes of the vehicles that have not finished yet */
+	private var active: Array[Int] = allVehicles.indices.toArray
+
+	@volatile
+	private var time = 0
+
+	@volatile
+	private var finished = false
+
+	@volatile
+	private var aborted = false
+
+	/**
+	 * Runs the simulation on the current thread until all vehicles have finished their journey.
+	 *
+	 * @param maximumTime The simulation time (in milliseconds) after which the simulation is aborted
+	 * @return True if all vehicles have finished their journey, false if the simulation was aborted
+	 */
+	def run(maximumTime: Int = Int.MaxValue): Boolean = {
+		if (startTime == 0) {
+			startTime = System.currentTimeMillis()
+		}
+		log.info(s"Starting traffic simulation $identifier with ${allVehicles.length} vehicles")
+		try {
+			updateDistances()
+			while (active.nonEmpty && !aborted && time + stepSize <= maximumTime) {
+				time += stepSize
+				pool.invoke(new StepVehicles(time, 0, active.length))
+				if (active.exists(allVehicles(_).finished)) {
+					active = active.filterNot(allVehicles(_).finished)
+				}
+				updateDistances()
+			}
+			log.info(s"Traffic simulation $identifier ended at $time; ${active.length} vehicles still on the road")
+			active.isEmpty
+		} finally {
+			allVehicles.foreach(_.bus.publishMetrics())
+			endTime = System.currentTimeMillis()
+			finished = true
+		}
+	}
+
+	/**
+	 * Finds the vehicle ahead of each vehicle and limits its velocity for the next step accordingly. Vehicles that have
+	 * not departed yet are held at the start.
+	 */
+	private def updateDistances(): Unit = {
+		var i = 0
+		while (i < active.length) {
+			val vehicle = allVehicles(active(i))
+			if (vehicle.departureTime <= time) {
+				positions.update(active(i), vehicle.route, vehicle.position)
+			}
+			i += 1
+		}
+		positions.sort()
+
+		i = 0
+		while (i < active.length) {
+			val vehicle = allVehicles(active(i))
+			if (vehicle.departureTime <= time) {
+				val distance = positions.distanceToVehicleAhead(active(i))
+				vehicle.limitVelocity(Math.max(0.0, (distance - minimumDistance) / timeHeadway))
+			} else {
+				vehicle.limitVelocity(0.0)
+			}
+			i += 1
+		}
+	}
+
+	/**
+	 * Steps the active vehicles in the given range, splitting the range until it is at most [[batchSize]] vehicles.
+	 */
+	private class StepVehicles(time: Int, from: Int, until: Int) extends RecursiveAction {
+		override def compute(): Unit = {
+			if (until - from <= batchSize) {
+				var i = from
+				while (i < until) {
+					allVehicles(active(i)).step(time)
+					i += 1
+				}
+			} else {
+				val middle = (from + until) >>> 1
+				ForkJoinTask.invokeAll(new StepVehicles(time, from, middle), new StepVehicles(time, middle, until))
+			}
+		}
+	}
+
+	/** Starts the simulation on a separate thread */
+	override def start(): Unit = {
+		val thread = new Thread(new Runnable {
+			override def run(): Unit = try {
+				TrafficSimulation.this.run()
+			} catch {
+				case e: Exception =>
+					log.error(s"Traffic simulation $identifier failed at $time", e)
+			}
+		}, s"traffic-simulation-$identifier")
+		thread.setDaemon(true)
+		thread.start()
+	}
+
+	/**
+	 * The summaries of all vehicles, in the order of [[vehicles]]. The computation time is the time of the whole
+	 * simulation.
+	 */
+	def summaries: List[SimulationSummary] = {
+		val computationTime = (if (endTime > 0) endTime else System.currentTimeMillis()) - startTime
+		vehicles.map(_.summary(computationTime))
+	}
+
+	override def isFinished: Boolean = finished
+
+	override def simulatedTime: Int = time
+
+	/** Aborts a running simulation after the current time step */
+	override def shutdown(): Unit = aborted = true
+
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2015 Andreas Wolf
+ *
+ * See te LICENSE file in the project root for further copyright information.
+ */
+
+package info.andreaswolf.roadhopper.simulation.traffic
+
+import info.andreaswolf.roadhopper.road.Route
+
+import scala.collection.mutable
+import scala.collection.mutable.ArrayBuffer
+
+
+/**
+ * The positions of the vehicles of a [[TrafficSimulation]] in one time step, for finding the vehicle ahead of each
+ * vehicle on the same route.
+ * <p/>
+ * In each time step, the positions of all vehicles on the road are passed with [[update()]]; [[sort()]] then orders the
+ * vehicles on each route by their position. The order is kept between the time steps: as the vehicles only move a
+ * little in one step, it hardly changes, and sorting it again by insertion takes linear time.
+ * <p/>
+ * The vehicles are identified by their index, from 0 until the given size. Vehicles on different routes do not see
+ * each other, even if the routes share some roads.
+ *
+ * @param size The number of vehicles
+ */
+class VehiclePositionIndex(val size: Int) {
+
+	private val positions = new Array[Double](size)
+
+	/** Set for the vehicles that were updated since the last sort */
+	private val updated = new Array[Boolean](size)
+
+	/** The route each vehicle is currently on, or null if it is not in the index */
+	private val routes = new Array[Route](size)
+
+	/** The vehicles on each route, ordered by their position after each sort (the last one is the foremost) */
+	private val orders = new mutable.HashMap[Route, ArrayBuffer[Int]]()
+
+	private val vehiclesAhead = Array.fill(size)(-1)
+
+
+	/**
+	 * Sets the position of a vehicle in the current time step. Vehicles that are not updated before the next
+	 * [[sort()]] (e.g. because they have finished their journey) are removed from the index.
+	 *
+	 * @param position The distance from the start of the route in meters
+	 */
+	def update(vehicle: Int, route: Route, position: Double): Unit = {
+		if (routes(vehicle) ne route) {
+			if (routes(vehicle) != null) {
+				orders(routes(vehicle)) -= vehicle
+			}
+			routes(vehicle) = route
+			// new vehicles start at the back, so they stay behind the vehicles at the same position
+			orders.getOrElseUpdate(route, new ArrayBuffer[Int]()).prepend(vehicle)
+		}
+		positions(vehicle) = position
+		updated(vehicle) = true
+	}
+
+	/**
+	 * Orders the vehicles on each route by their position and finds the vehicle ahead of each one. If two vehicles are
+	 * at the same position, the one that was added to the index first is ahead.
+	 */
+	def sort(): Unit = {
+		orders.values.foreach(order => {
+			removeVehiclesNotUpdated(order)
+
+			var i = 1
+			while (i < order.length) {
+				val vehicle = order(i)
+				var j = i - 1
+				while (j >= 0 && isBehind(vehicle, order(j))) {
+					order(j + 1) = order(j)
+					j -= 1
+				}
+				order(j + 1) = vehicle
+				i += 1
+			}
+
+			i = 0
+			while (i < order.length) {
+				vehiclesAhead(order(i)) = if (i + 1 < order.length) order(i + 1) else -1
+				updated(order(i)) = false
+				i += 1
+			}
+		})
+	}
+
+	private def removeVehiclesNotUpdated(order: ArrayBuffer[Int]): Unit = {
+		var kept = 0
+		var i = 0
+		while (i < order.length) {
+			val vehicle = order(i)
+			if (updated(vehicle)) {
+				order(kept) = vehicle
+				kept += 1
+			} else {
+				routes(vehicle) = null
+				vehiclesAhead(vehicle) = -1
+			}
+			i += 1
+		}
+		order.reduceToSize(kept)
+	}
+
+	/**
+	 * Checks if the vehicle must be sorted before the other one; vehicles at the same position keep their order.
+	 */
+	private def isBehind(vehicle: Int, other: Int): Boolean = positions(vehicle) < positions(other)
+
+	/**
+	 * The vehicle directly ahead of the given vehicle on its route as of the last [[sort()]], or -1 if there is none
+	 * (or the vehicle is not in the index).
+	 */
+	def vehicleAhead(vehicle: Int): Int = vehiclesAhead(vehicle)
+
+	/**
+	 * The distance from the given vehicle to the vehicle ahead of it, or infinity if there is none.
+	 */
+	def distanceToVehicleAhead(vehicle: Int): Double = {
+		val ahead = vehiclesAhead(vehicle)
+		if (ahead < 0) Double.PositiveInfinity else positions(ahead) - positions(vehicle)
+	}
+
+}
@@ -6,12 +6,13 @@
 
 package info.andreaswolf.roadhopper.simulation.vehicle
 
-import akka.actor.{Props, ActorLogging, ActorRef}
+import akka.actor.{Props, ActorRef}
 import akka.pattern.ask
 import info.andreaswolf.roadhopper.simulation.SimulationActor
-import info.andreaswolf.roadhopper.simulation.control.{FirstOrderBlock, DeadTime, PT1}
-import info.andreaswolf.roadhopper.simulation.signals.SignalBus.{SubscribeToSignal, UpdateSignalValue}
-import info.andreaswolf.roadhopper.simulation.signals.{SignalBus, SignalState, Process}
+import info.andreaswolf.roadhopper.simulation.control.{FirstOrderBlock, PT1}
+import info.andreaswolf.roadhopper.simulation.signals.SignalBus.SubscribeToSignal
+import info.andreaswolf.roadhopper.simulation.signals.{ComponentProcess, SignalComponent, SignalHandle, SignalSink, SignalState}
+import org.slf4j.LoggerFactory
 
 import scala.concurrent.{Await, Future}
 import scala.concurrent.duration._
@@ -22,9 +23,19 @@ class PowerTrain(val throttle: ActorRef, val motor: ActorRef,
 }
 
 class Brake(val inputSignalName: String, val outputSignalName: String, val delay: Int,
-            signalBus: ActorRef) extends Process(signalBus) {
+            signalBus: ActorRef)
+	extends ComponentProcess(new BrakeComponent(inputSignalName, outputSignalName, delay), signalBus) {
 
-	import context.dispatcher
+}
+
+/**
+ * The logic of the [[Brake]].
+ */
+class BrakeComponent(val inputSignalName: String, val outputSignalName: String, val delay: Int)
+	extends SignalComponent {
+
+	private val inputSignal = new SignalHandle(inputSignalName)
+	private val outputSignal = new SignalHandle(outputSignalName)
 
 	val controlBlock = new FirstOrderBlock {
 		/**
@@ -37,38 +48,68 @@ class Brake(val inputSignalName: String, val outputSignalName: String, val delay
 		}
 	}
 
-	override def timeAdvanced(oldTime: Int, newTime: Int): Future[Unit] = Future {
+	override def timeAdvanced(oldTime: Int, newTime: Int): Unit = {
 		controlBlock.timeAdvanced(oldTime, newTime)
 	}
 
 	/**
 	 * The central routine of a process. This is invoked whenever a subscribed signal’s value changes.
 	 */
-	override def invoke(signals: SignalState): Future[Any] = {
-		if (controlBlock.update(signals.signalValue[Double](inputSignalName, 0.0))) {
-			signalBus ? UpdateSignalValue(outputSignalName, controlBlock.nextState.currentOutput)
-		} else {
-			Future.successful()
+	override def invoke(signals: SignalState, bus: SignalSink): Unit = {
+		if (controlBlock.update(signals.doubleValue(inputSignal, 0.0))) {
+			bus.updateSignalValue(outputSignal, controlBlock.nextState.currentOutput)
 		}
 	}
+
+	override def saveState(): Any = controlBlock.saveState()
+
+	override def restoreState(state: Any): Unit = {
+		controlBlock.restoreState(state.asInstanceOf[FirstOrderBlock.State])
+	}
 }
 
 
 /**
  *
  */
-class Engine(val vehicleParameters: VehicleParameters, signalBus: ActorRef) extends Process(signalBus) with ActorLogging {
+class Engine(val vehicleParameters: VehicleParameters, signalBus: ActorRef)
+	extends ComponentProcess(new EngineComponent(vehicleParameters), signalBus) {
 
 	import context.dispatcher
 
+	// The delay of the torque from the motor to the wheels
+	val powerTrainInertia = context.actorOf(Props(
+		new PT1("M", "M*", timeConstant = 100, amplification = vehicleParameters.transmissionRatio, bus = signalBus)
+	))
+
+	Await.result(Future.sequence(List(
+		signalBus ? SubscribeToSignal("M", powerTrainInertia),
+		signalBus ? SubscribeToSignal("time", powerTrainInertia)
+	)), 1 second)
+
+
+}
+
+/**
+ * The logic of the [[Engine]]. Note that the power train inertia (a PT1 element from "M" to "M*") is not part of this
+ * component and must be created separately.
+ */
+class EngineComponent(val vehicleParameters: VehicleParameters) extends SignalComponent {
+
+	val log = LoggerFactory.getLogger(this.getClass)
+
+	private val alpha = new SignalHandle("alpha*")
+	private val v = new SignalHandle("v")
+	private val M = new SignalHandle("M")
+
 	/**
 	 * Calculate the engine force
 	 */
-	override def invoke(signals: SignalState): Future[Any] = {
-		val loadFactor = signals.signalValue("alpha*", 0.0).round.min(100).max(0)
+	override def invoke(signals: SignalState, bus: SignalSink): Unit = {
+		val loadFactor = signals.doubleValue(alpha, 0.0).round.min(100).max(0)
 		val wheelAngularVelocity: Double =
 			// make sure the vehicle is not rolling backwards; even if it is, the engine will only move it forward
-			Math.max(0.0, signals.signalValue("v", 0.0)) / (2.0 * Math.PI * vehicleParameters.wheelRadius / 100.0)
+			Math.max(0.0, signals.doubleValue(v, 0.0)) / (2.0 * Math.PI * vehicleParameters.wheelRadius / 100.0)
 
 		// the engine’s rotational speed in [1/s]; if the engine reaches the velocity limit, the rotation is set to
 		// infinity to make the torque very small so the wheel/engine velocity does not exceed the limit (it might exceed
@@ -79,38 +120,45 @@ class Engine(val vehicleParameters: VehicleParameters, signalBus: ActorRef) exte
 			case x if x * vehicleParameters.transmissionRatio > (vehicleParameters.maximumEngineRpm / 60) => Double.PositiveInfinity
 			case x => wheelAngularVelocity * vehicleParameters.transmissionRatio
 		}
-		val M = Math.min(
+		val torque = Math.min(
 			vehicleParameters.maximumEngineTorque,
 			loadFactor / 100.0 * vehicleParameters.maximumEnginePower / (2.0 * Math.PI * rotation)
 		)
-		log.debug(s"loadFactor: $loadFactor, angular wheel velocity: $wheelAngularVelocity, rotation: $rotation, M: $M")
+		if (log.isDebugEnabled) {
+			log.debug(s"loadFactor: $loadFactor, angular wheel velocity: $wheelAngularVelocity, rotation: $rotation, M: $torque")
+		}
 
-		signalBus ? UpdateSignalValue("M", M)
+		bus.updateSignalValue(M, torque)
 	}
 
-	// The delay of the torque from the motor to the wheels
-	val powerTrainInertia = context.actorOf(Props(
-		new PT1("M", "M*", timeConstant = 100, amplification = vehicleParameters.transmissionRatio, bus = signalBus)
-	))
+}
 
-	Await.result(Future.sequence(List(
-		signalBus ? SubscribeToSignal("M", powerTrainInertia),
-		signalBus ? SubscribeToSignal("time", powerTrainInertia)
-	)), 1 second)
 
+class Wheels(val vehicleParameters: VehicleParameters, bus: ActorRef)
+	extends ComponentProcess(new WheelsComponent(vehicleParameters), bus) {
 
 }
 
+/**
+ * The logic of the [[Wheels]]: sums up all forces acting on the vehicle and derives the acceleration.
+ */
+class WheelsComponent(val vehicleParameters: VehicleParameters) extends SignalComponent {
 
-class Wheels(val vehicleParameters: VehicleParameters, bus: ActorRef) extends Process(bus) with ActorLogging {
+	val log = LoggerFactory.getLogger(this.getClass)
+
+	private val v = new SignalHandle("v")
+	private val gradeSignal = new SignalHandle("grade")
+	private val engineTorque = new SignalHandle("M*")
+	private val brakePedal = new SignalHandle("beta*")
+	private val a = new SignalHandle("a")
 
 	/**
 	 * The central routine of a process. This is invoked whenever a subscribed signal’s value changes.
 	 */
-	override def invoke(signals: SignalState): Future[Any] = {
-		val currentVelocity = signals.signalValue("v", 0.0)
+	override def invoke(signals: SignalState, bus: SignalSink): Unit = {
+		val currentVelocity = signals.doubleValue(v, 0.0)
 
-		val grade: Double = signals.signalValue("grade", 0.0)
+		val grade: Double = signals.doubleValue(gradeSignal, 0.0)
 		val climbingResistance = currentVelocity match {
 			case x if x > 0.0 => Math.sin(grade) * 9.81 * vehicleParameters.mass
 			// no climbing resistance if the vehicle is not moving => avoid rolling backwards
@@ -134,22 +182,24 @@ class Wheels(val vehicleParameters: VehicleParameters, bus: ActorRef) extends Pr
 			* vehicleParameters.dragCoefficient * vehicleParameters.dragReferenceArea * currentVelocity * currentVelocity)
 
 		// M* is the engine torque in [Nm]. Dividing it by the wheel radius (in [m]!) results in the force in Newton.
-		val engineForce: Double = signals.signalValue("M*", 0.0) / (vehicleParameters.wheelRadius / 100.0)
+		val engineForce: Double = signals.doubleValue(engineTorque, 0.0) / (vehicleParameters.wheelRadius / 100.0)
 
 		val brakeForce = currentVelocity match {
 			case x if x > 0.0 =>
-				signals.signalValue("beta*", 0.0) * vehicleParameters.maximumBrakingForce
+				signals.doubleValue(brakePedal, 0.0) * vehicleParameters.maximumBrakingForce
 			case x =>
 				0.0
 		}
 
 		val effectiveForce = engineForce - rollingFrictionForce - dragForce - brakeForce - climbingResistance
-		log.info(s"forces: (eff/engine/drag/rolling/brake/climbing): $effectiveForce/$engineForce/$dragForce/$rollingFrictionForce/$brakeForce/$climbingResistance")
+		if (log.isDebugEnabled) {
+			log.debug(s"forces: (eff/engine/drag/rolling/brake/climbing): $effectiveForce/$engineForce/$dragForce/$rollingFrictionForce/$brakeForce/$climbingResistance")
+		}
 
 		// TODO add a factor for rotational inertia
 		val acceleration = effectiveForce / vehicleParameters.mass
 
-		bus ? UpdateSignalValue("a", acceleration)
+		bus.updateSignalValue(a, acceleration)
 	}
 
 }
@@ -56,6 +56,34 @@ var Simulation = function (id) {
 		})
 	};
 
+	/**
+	 * Follows the progress of the simulation via server-sent events; the result is fetched once the simulation has
+	 * finished. Falls back to polling the status if the browser does not support EventSource.
+	 */
+	Simulation.prototype.followProgress = function () {
+		var sim = this;
+		if (typeof(EventSource) == "undefined") {
+			sim.checkStatus();
+			return;
+		}
+		var source = new EventSource(host + '/roadhopper/simulationstream?id=' + sim.id + '&signal=v&step=1000');
+		source.onmessage = function (event) {
+			var data = JSON.parse(event.data);
+			$simulationDataContainer.find('.simulationstatus').text("Simulating… "
+					+ Math.round(data["time"] / 1000) + "s");
+		};
+		source.addEventListener("finished", function () {
+			source.close();
+			sim.checkStatus();
+		});
+		source.onerror = function () {
+			if (source.readyState == EventSource.CLOSED) {
+				// the stream could not be opened at all, poll instead
+				sim.checkStatus();
+			}
+		};
+	};
+
 	Simulation.prototype.updateSimulationData = function (JSONdata) {
 		if (!playback) {
 			playback = new TimeSeriesPlayback();
@@ -95,7 +123,7 @@ var Simulation = function (id) {
 					currentSimulation = new Simulation(json["simulation"]);
 					$simulationDataContainer.empty().text("Simulation ID: " + currentSimulation.id);
 					$simulationDataContainer.append('<div class="simulationstatus" />')
-					currentSimulation.checkStatus();
+					currentSimulation.followProgress();
 				}
 			});
 		});
@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2015 Andreas Wolf
+ *
+ * See te LICENSE file in the project root for further copyright information.
+ */
+
+package info.andreaswolf.roadhopper.benchmark
+
+import java.util.Locale
+
+import com.graphhopper.util.shapes.GHPoint3D
+import info.andreaswolf.roadhopper.road.{RoadSegment, Route}
+import info.andreaswolf.roadhopper.simulation.SimulationParameters.PedalParameters
+import info.andreaswolf.roadhopper.simulation.vehicle.VehicleParameters
+import info.andreaswolf.roadhopper.simulation.{CompiledSignalBasedSimulation, SimulationParameters, SimulationResult}
+
+import scala.collection.mutable.ListBuffer
+import scala.util.Random
+
+
+/**
+ * Synthetic input data for the JMH benchmarks (see src/benchmark/java), so they run without an OSM import or any
+ * network access.
+ * <p/>
+ * All data is created from a fixed seed, so the results of different runs are comparable. The elevation of the
+ * segments is calculated here instead of being looked up in the SRTM data.
+ */
+object BenchmarkFixtures {
+
+	/** The length of one degree of latitude in meters */
+	val metersPerDegree = 111195.0
+
+	val speedLimits = List(30.0, 50.0, 70.0, 100.0).map(_ / 3.6)
+
+	/**
+	 * Creates a road with the given number of segments of 5 to 100 m. The road is mostly straight with slight bends and
+	 * a sharp turn every 20 segments on average; the speed limit and the road name change every 50 segments.
+	 */
+	def createSegments(count: Int, seed: Long = 42): List[RoadSegment] = {
+		val random = new Random(seed)
+		val segments = new ListBuffer[RoadSegment]()
+
+		var start = new GHPoint3D(49.0, 8.4, elevation(0.0))
+		var orientation = 0.0
+		var distance = 0.0
+		(0 until count).foreach(i => {
+			orientation += (if (random.nextInt(20) == 0) (random.nextDouble() - 0.5) * Math.PI else random.nextGaussian() * 0.05)
+			val length = 5.0 + random.nextDouble() * 95.0
+			distance += length
+
+			val lat = start.lat + Math.cos(orientation) * length / metersPerDegree
+			val lon = start.lon + Math.sin(orientation) * length / (metersPerDegree * Math.cos(start.lat.toRadians))
+			val end = new GHPoint3D(lat, lon, elevation(distance))
+
+			val segment = new RoadSegment(start, end, speedLimits((i / 50) % speedLimits.size))
+			segment.setRoadName(s"Road ${i / 50}")
+			segments append segment
+			start = end
+		})
+		segments.toList
+	}
+
+	def createRoute(segmentCount: Int): Route = new Route(createSegments(segmentCount))
+
+	/** Gentle hills, up to 20 m high */
+	private def elevation(distance: Double): Double = 100.0 + 20.0 * Math.sin(distance / 2000.0)
+
+	/**
+	 * Creates lines as found in the measurement files, including the header line: one point every 100 ms, with a
+	 * standstill of 20 seconds every 5000 lines (which starts a new measurement).
+	 */
+	def createMeasurementLines(count: Int, seed: Long = 42): Array[String] = {
+		val random = new Random(seed)
+		val lines = new Array[String](count + 1)
+		lines(0) = "Zeit;Breite;Länge;Geschwindigkeit;Kurs"
+
+		var lat = 49.0107960
+		var lon = 8.3754440
+		(1 to count).foreach(i => {
+			val time = 36000000L + i * 100L
+			val seconds = time / 1000
+			val velocity = if (i % 5000 < 200) 0.0 else 30.0 + random.nextDouble() * 40.0
+			lat += velocity / 3.6 / 10 / metersPerDegree
+			lon += random.nextGaussian() * 1e-6
+			lines(i) = String.format(Locale.ROOT, "%02d%02d%02d,%02d;%.7f;%.7f;%.3f;%.2f", Long.box(seconds / 3600),
+				Long.box(seconds / 60 % 60), Long.box(seconds % 60), Long.box(time % 1000 / 10), Double.box(lat), Double.box(lon),
+				Double.box(velocity), Double.box(random.nextDouble() * 360))
+		})
+		lines
+	}
+
+	/**
+	 * Creates a simulation of a compact car on the given route; the signals are logged as in the server.
+	 */
+	def createSimulation(route: Route): CompiledSignalBasedSimulation = new CompiledSignalBasedSimulation(
+		new SimulationParameters(
+			pedal = new PedalParameters(gasPedalGain = 500.0, brakePedalGain = -500.0),
+			vehicle = VehicleParameters.CompactCar,
+			route = route
+		), new SimulationResult
+	)
+
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright (c) 2015 Andreas Wolf
+ *
+ * See te LICENSE file in the project root for further copyright information.
+ */
+
+package info.andreaswolf.roadhopper.measurements
+
+import org.scalatest.FunSuite
+
+
+class MatchedRoadTest extends FunSuite {
+
+	test("Edges and coordinates can be read back") {
+		val coordinates = List((8.3754440, 49.0107960), (8.3756123, 49.0109871), (-0.1275, 51.5072178))
+		val subject = MatchedRoad("test", List(12, 7, 3154), coordinates)
+
+		assert(subject.isMatched)
+		assertResult(Array(12, 7, 3154))(subject.edgeIds)
+		val decoded = subject.coordinateIterator.toList
+		assertResult(3)(decoded.size)
+		decoded.zip(coordinates).foreach({ case ((lon, lat), (originalLon, originalLat)) =>
+			assert(Math.abs(lon - originalLon) < 1e-7)
+			assert(Math.abs(lat - originalLat) < 1e-7)
+		})
+	}
+
+	test("Failed matching has no road") {
+		val subject = MatchedRoad.failed("test", "Sequence is broken")
+
+		assert(!subject.isMatched)
+		assertResult("Sequence is broken")(subject.error)
+		assert(subject.edgeIds.isEmpty)
+		assert(subject.coordinateIterator.isEmpty)
+	}
+
+	test("Failed matching without a message still counts as failed") {
+		assert(!MatchedRoad.failed("test", null).isMatched)
+	}
+
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2015 Andreas Wolf
+ *
+ * See te LICENSE file in the project root for further copyright information.
+ */
+
+package info.andreaswolf.roadhopper.measurements
+
+import org.scalatest.FunSuite
+
+
+class MeasurementLineParserTest extends FunSuite {
+
+	test("Fields with comma as decimal separator are parsed") {
+		val subject = new MeasurementLineParser
+		subject.parse("123456,00; 49,0107960 ; 8,3754440 ;  52,370;271,50")
+
+		assertResult(49.010796)(subject.latitude)
+		assertResult(8.375444)(subject.longitude)
+		assertResult(52.37)(subject.velocity)
+		assertResult(271.5)(subject.heading)
+	}
+
+	test("Numbers are parsed exactly like with toDouble") {
+		List("0.1", "-12.345", "49,0127100", "0,000", "1e3", "123456789012345678901", "+7.5").foreach(number => {
+			assertResult(number.replace(",", ".").toDouble, number)(
+				MeasurementLineParser.parseDouble(number, 0, number.length)
+			)
+		})
+	}
+
+	test("Invalid numbers lead to an exception") {
+		intercept[NumberFormatException] {
+			MeasurementLineParser.parseDouble("12a", 0, 3)
+		}
+		intercept[NumberFormatException] {
+			MeasurementLineParser.parseDouble("", 0, 0)
+		}
+	}
+
+	test("Time is converted to milliseconds of the day") {
+		val subject = new MeasurementLineParser
+		subject.parse("102030,50;49.0;8.0;10.0;0.0")
+
+		assertResult((10 * 3600 + 20 * 60 + 30) * 1000 + 500)(subject.time)
+		assert(!subject.fullSecond)
+
+		subject.parse("102031,00;49.0;8.0;10.0;0.0")
+		assert(subject.fullSecond)
+	}
+
+	test("Invalid time is marked") {
+		val subject = new MeasurementLineParser
+		subject.parse("1020xx,00;49.0;8.0;10.0;0.0")
+
+		assertResult(-1)(subject.time)
+		assertResult("1020xx,00")(subject.timeText("1020xx,00;49.0;8.0;10.0;0.0"))
+	}
+
+	test("Lines with a wrong number of fields are rejected") {
+		val subject = new MeasurementLineParser
+		intercept[IllegalArgumentException] {
+			subject.parse("102030,00;49.0;8.0;10.0")
+		}
+		intercept[IllegalArgumentException] {
+			subject.parse("102030,00;49.0;8.0;10.0;0.0;1.0")
+		}
+	}
+
+}
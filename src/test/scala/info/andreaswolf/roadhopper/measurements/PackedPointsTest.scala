@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2015 Andreas Wolf
+ *
+ * See te LICENSE file in the project root for further copyright information.
+ */
+
+package info.andreaswolf.roadhopper.measurements
+
+import info.andreaswolf.roadhopper.map.Point
+import org.scalatest.FunSuite
+
+
+class PackedPointsTest extends FunSuite {
+
+	/** One point per second, driving north-east */
+	def createPoints(count: Int): List[DataPoint] = (0 until count).map(i =>
+		DataPoint(36000000L + i * 1000, Point(49.0107960 + i * 1.5e-5, 8.3754440 + i * 2.0e-5, 0.0), 13.889 - i * 0.01,
+			(271.5 - i).toRadians)
+	).toList
+
+	test("Points can be read back") {
+		val points = createPoints(200)
+		val subject = PackedPoints.encode(points, blockSize = 16)
+
+		assertResult(200)(subject.size)
+		subject.iterator.zip(points.iterator).foreach({ case (decoded, original) =>
+			assertResult(original.date)(decoded.date)
+			assert(Math.abs(decoded.position.lat - original.position.lat) < 1e-7)
+			assert(Math.abs(decoded.position.lon - original.position.lon) < 1e-7)
+			assert(Math.abs(decoded.velocity - original.velocity) < 1e-3)
+			assert(Math.abs(decoded.orientation - original.orientation) < 1e-5)
+		})
+		assertResult(200)(subject.iterator.size)
+	}
+
+	test("Packed points are smaller than plain values") {
+		val subject = PackedPoints.encode(createPoints(1000))
+
+		// five doubles per point would take 40 bytes
+		assert(subject.bytes.length < 1000 * 20)
+	}
+
+	test("Slice only contains the points in the time range") {
+		val subject = PackedPoints.encode(createPoints(200), blockSize = 16)
+
+		val slice = subject.slice(36000000L + 50000, 36000000L + 99000).toList
+		assertResult(50)(slice.size)
+		assertResult(36000000L + 50000)(slice.head.date)
+		assertResult(36000000L + 99000)(slice.last.date)
+	}
+
+	test("Empty series can be encoded") {
+		val subject = PackedPoints.encode(List())
+
+		assert(subject.isEmpty)
+		assert(subject.iterator.isEmpty)
+	}
+
+	test("Unknown format is rejected") {
+		intercept[IllegalArgumentException] {
+			new PackedPoints(Array[Byte](42, 0, 0, 0, 0))
+		}
+	}
+
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2015 Andreas Wolf
+ *
+ * See te LICENSE file in the project root for further copyright information.
+ */
+
+package info.andreaswolf.roadhopper.metrics
+
+import org.scalatest.FunSuite
+
+
+class MetricsTest extends FunSuite {
+
+	test("Histogram reports count, mean and maximum") {
+		val subject = new Histogram
+		subject.record(10)
+		subject.record(20)
+		subject.record(30, times = 2)
+
+		assertResult(4)(subject.count)
+		assertResult(22.5)(subject.mean)
+		assertResult(30)(subject.maximum)
+	}
+
+	test("Histogram percentiles are the upper bound of their bucket") {
+		val subject = new Histogram
+		(1 to 90).foreach(_ => subject.record(5))
+		(1 to 10).foreach(_ => subject.record(1000))
+
+		// 5 is in [4, 8), 1000 in [512, 1024); the maximum is never exceeded
+		assertResult(7)(subject.percentile(0.5))
+		assertResult(7)(subject.percentile(0.9))
+		assertResult(1000)(subject.percentile(0.99))
+	}
+
+	test("Empty histogram reports zeros") {
+		val subject = new Histogram
+
+		assertResult(0)(subject.count)
+		assertResult(0.0)(subject.mean)
+		assertResult(0)(subject.percentile(0.99))
+	}
+
+	test("Timer calculates the mean from the sampled invocations only") {
+		val subject = new Timer
+		subject.recordCount(100)
+		subject.recordSampled(2, 3000)
+		subject.record(3000)
+
+		assertResult(101)(subject.invocations)
+		assertResult(2000.0)(subject.meanNanos)
+		assertResult(202000.0)(subject.totalNanos)
+	}
+
+	test("Registry returns the same metric for a name") {
+		assert(Metrics.counter("test.counter") eq Metrics.counter("test.counter"))
+		Metrics.counter("test.counter").increment()
+		Metrics.counter("test.counter").increment()
+		Metrics.counter("test.counter").decrement()
+
+		assertResult(1)(Metrics.allCounters("test.counter").get)
+	}
+
+	test("Gauge reads its value when it is reported") {
+		var value = 1L
+		Metrics.gauge("test.gauge", () => value)
+		value = 3L
+
+		assertResult(3)(Metrics.allGauges("test.gauge").get)
+	}
+
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2015 Andreas Wolf
+ *
+ * See te LICENSE file in the project root for further copyright information.
+ */
+
+package info.andreaswolf.roadhopper.persistence
+
+import org.scalatest.FunSuite
+
+import scala.collection.mutable.ListBuffer
+
+
+class EvictingRepositoryTest extends FunSuite {
+
+	test("Least recently used entry is evicted if there are too many entries") {
+		val evicted = new ListBuffer[String]()
+		val subject = new EvictingRepository[String](maxEntries = 2, onEviction = evicted += _)
+
+		subject.put("a", "A")
+		subject.put("b", "B")
+		subject.get("a")
+		subject.put("c", "C")
+
+		assertResult(List("B"))(evicted.toList)
+		assert(subject.contains("a"))
+		assert(!subject.contains("b"))
+	}
+
+	test("Entries are evicted if their weight exceeds the limit") {
+		val subject = new EvictingRepository[String](maxEntries = 10, maxWeight = 5, weigher = _.length.toLong)
+
+		subject.put("a", "123")
+		subject.put("b", "456")
+
+		assertResult(1)(subject.size)
+		assert(subject.contains("b"))
+	}
+
+	test("Only mutable entries are weighed again") {
+		class Item(var weight: Long, var growing: Boolean)
+		val fixed = new Item(1, growing = false)
+		val growing = new Item(1, growing = true)
+		val subject = new EvictingRepository[Item](maxEntries = 10, maxWeight = 5, weigher = _.weight,
+			isMutable = _.growing)
+
+		subject.put("a", fixed)
+		subject.put("b", growing)
+		fixed.weight = 100
+		growing.weight = 3
+		assertResult(4)(subject.statistics.weight)
+
+		// the last change before the entry became immutable is still counted
+		growing.weight = 4
+		growing.growing = false
+		assertResult(5)(subject.statistics.weight)
+		growing.weight = 100
+		assertResult(5)(subject.statistics.weight)
+		assertResult(2)(subject.size)
+	}
+
+	test("Entries expire if they were not accessed") {
+		var now = 0L
+		val subject = new EvictingRepository[String](maxEntries = 10, timeToLive = 1000, currentTime = () => now)
+
+		subject.put("a", "A")
+		subject.put("b", "B")
+		now = 800
+		subject.get("a")
+		now = 1500
+
+		assertResult(Some("A"))(subject.get("a"))
+		assertResult(None)(subject.get("b"))
+	}
+
+	test("Entries that are not evictable are kept") {
+		val subject = new EvictingRepository[String](maxEntries = 1, isEvictable = _ != "running")
+
+		subject.put("a", "running")
+		subject.put("b", "finished")
+		subject.put("c", "finished")
+
+		assert(subject.contains("a"))
+		assert(!subject.contains("b"))
+		assert(subject.contains("c"))
+	}
+
+	test("Hits, misses and evictions are counted") {
+		val subject = new EvictingRepository[String](maxEntries = 1)
+
+		subject.put("a", "A")
+		subject.get("a")
+		subject.get("b")
+		subject.put("b", "B")
+
+		assertResult(RepositoryStatistics(size = 1, weight = 0, hits = 1, misses = 1, evictions = 1))(subject.statistics)
+		assertResult(0.5)(subject.statistics.hitRate)
+	}
+
+	test("Clearing evicts all entries") {
+		val evicted = new ListBuffer[String]()
+		val subject = new EvictingRepository[String](maxEntries = 10, isEvictable = _ => false, onEviction = evicted += _)
+
+		subject.put("a", "A")
+		subject.put("b", "B")
+		subject.clear()
+
+		assertResult(0)(subject.size)
+		assertResult(List("A", "B"))(evicted.toList)
+	}
+
+	test("Listing the entries does not count as access") {
+		val subject = new EvictingRepository[String](maxEntries = 2)
+
+		subject.put("a", "A")
+		subject.put("b", "B")
+		assertResult(List("A", "B"))(subject.values)
+		subject.put("c", "C")
+
+		assertResult(List("B", "C"))(subject.values)
+		assertResult(0)(subject.statistics.hits)
+	}
+
+}
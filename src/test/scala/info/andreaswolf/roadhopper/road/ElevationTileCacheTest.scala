@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2015 Andreas Wolf
+ *
+ * See te LICENSE file in the project root for further copyright information.
+ */
+
+package info.andreaswolf.roadhopper.road
+
+import com.graphhopper.reader.dem.ElevationProvider
+import com.graphhopper.util.shapes.GHPoint
+import org.scalamock.scalatest.MockFactory
+import org.scalatest.FunSuite
+
+import scala.collection.mutable.ListBuffer
+
+
+class ElevationTileCacheTest extends FunSuite with MockFactory {
+
+	/** Creates stub providers that return the latitude as elevation */
+	def createSubject(maxTiles: Int, providers: ListBuffer[ElevationProvider]) = {
+		new ElevationTileCache(maxTiles, () => {
+			val provider = stub[ElevationProvider]
+			(provider.getEle _).when(*, *).onCall((lat: Double, lon: Double) => lat)
+			providers += provider
+			provider
+		})
+	}
+
+	test("One provider is used per tile") {
+		val providers = new ListBuffer[ElevationProvider]()
+		val subject = createSubject(4, providers)
+
+		subject.getEle(49.1, 8.1)
+		subject.getEle(49.9, 8.9)
+		subject.getEle(50.1, 8.1)
+
+		assertResult(2)(providers.size)
+	}
+
+	test("Least recently used tile is released") {
+		val providers = new ListBuffer[ElevationProvider]()
+		val subject = createSubject(2, providers)
+
+		subject.getEle(49.5, 8.5)
+		subject.getEle(50.5, 8.5)
+		subject.getEle(49.5, 8.5)
+		subject.getEle(51.5, 8.5)
+
+		assertResult(2)(subject.size)
+		(providers(1).release _).verify().once()
+		(providers.head.release _).verify().never()
+	}
+
+	test("Batch lookup returns elevations in the order of the points") {
+		val subject = createSubject(4, new ListBuffer[ElevationProvider]())
+
+		val elevations = subject.getEle(List(new GHPoint(49.5, 8.5), new GHPoint(50.5, 8.5), new GHPoint(49.7, 8.5)))
+
+		assertResult(List(49.5, 50.5, 49.7))(elevations.toList)
+	}
+
+}
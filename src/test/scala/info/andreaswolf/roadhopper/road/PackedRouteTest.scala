@@ -0,0 +1,98 @@
+package info.andreaswolf.roadhopper.road
+
+import com.graphhopper.util.shapes.GHPoint3D
+import org.scalatest.FunSuite
+
+
+class PackedRouteTest extends FunSuite {
+
+	/** Three segments of 100, 200 and 100 m; the first two are on the same road */
+	def createSegments = {
+		val segments = new RoadBuilder(new GHPoint3D(49.0, 8.0, 100.0))
+			.addSegment(100, 0).addSegment(200, 90).addSegment(100, 0).build
+		segments(0).setRoadName("Main Street")
+		segments(1).setRoadName("Main Street")
+		segments(2).setRoadName("Side Street")
+		segments(1).setRoadSign(new StopSign(1, segments(1).end))
+		segments
+	}
+
+	test("Segment attributes are the same as for the road segments") {
+		val segments = createSegments
+		val subject = PackedRoute.fromSegments(segments.iterator)
+
+		assertResult(3)(subject.size)
+		segments.zipWithIndex.foreach({ case (segment, i) =>
+			val view = subject.segment(i)
+			assertResult(segment.start)(view.start)
+			assertResult(segment.end)(view.end)
+			assertResult(segment.length)(view.length)
+			assertResult(segment.orientation)(view.orientation)
+			assertResult(segment.grade)(view.grade)
+			assertResult(segment.speedLimit)(view.speedLimit)
+			assertResult(segment.roadName)(view.roadName)
+			assertResult(segment.roadSign)(view.roadSign)
+		})
+		assertResult(new Route(segments).length)(subject.length)
+	}
+
+	test("Road names are stored once") {
+		val subject = PackedRoute.fromSegments(createSegments.iterator)
+
+		assertResult(List("Main Street", "Side Street"))(subject.roadNames.toList)
+		assert(subject.segment(0) isOnSameRoadAs subject.segment(1))
+		assert(!(subject.segment(1) isOnSameRoadAs subject.segment(2)))
+	}
+
+	test("Next road sign is found from the sparse sign table") {
+		val subject = PackedRoute.fromSegments(createSegments.iterator)
+
+		assertResult(1)(subject.nextSignIndex(0, classOf[StopSign]))
+		assertResult(1)(subject.nextSignIndex(1, classOf[StopSign]))
+		assertResult(-1)(subject.nextSignIndex(2, classOf[StopSign]))
+		assertResult(-1)(subject.nextSignIndex(0, classOf[TrafficLight]))
+	}
+
+	test("Segment that does not start at the end of its predecessor keeps its start point") {
+		val segments = List(
+			RoadSegment.fromPoints(new GHPoint3D(49.0, 8.0, 0.0), new GHPoint3D(49.1, 8.0, 0.0)),
+			RoadSegment.fromPoints(new GHPoint3D(49.2, 8.0, 0.0), new GHPoint3D(49.3, 8.0, 0.0))
+		)
+		val subject = PackedRoute.fromSegments(segments.iterator)
+
+		assertResult(segments(1).start)(subject.segment(1).start)
+		assertResult(segments(1))(subject.toRoadSegment(1))
+	}
+
+	test("Full road segment can be created from the packed route") {
+		val segments = createSegments
+		val segment = PackedRoute.fromSegments(segments.iterator).toRoadSegment(1)
+
+		assertResult(segments(1))(segment)
+		assertResult(Some("Main Street"))(segment.roadName)
+		assert(segment.roadSign.get eq segments(1).roadSign.get)
+	}
+
+	test("Segment can be found by position") {
+		val route = new Route(createSegments)
+		val subject = route.packed
+
+		assertResult(0)(subject.segmentIndexAt(0.0))
+		assertResult(0)(subject.segmentIndexAt(route.offsets(1)))
+		assertResult(1)(subject.segmentIndexAt(route.offsets(1) + 0.1))
+		assertResult(2)(subject.segmentIndexAt(route.length))
+		intercept[IllegalArgumentException] {
+			subject.segmentIndexAt(route.length + 0.1)
+		}
+	}
+
+	test("Bends are the same as for the road segments") {
+		val segments = createSegments
+		val analyzer = new RoadBendAnalyzer
+
+		val bends = analyzer.findBends(PackedRoute.fromSegments(segments.iterator))
+
+		assertResult(analyzer.findBends(segments).map(_.toString))(bends.map(_.toString))
+	}
+
+}
@@ -1,5 +1,6 @@
 package info.andreaswolf.roadhopper.road
 
+import com.graphhopper.util.shapes.GHPoint3D
 import org.scalatest.FunSuite
 import org.scalatest.prop.Tables.Table
 import org.scalatest.prop.TableDrivenPropertyChecks._
@@ -50,6 +51,13 @@ class RoadSegment$Test extends FunSuite {
 		Assert.assertTrue(subject.roadSign.nonEmpty)
 	}
 
+	test("new segment has interpolated elevation") {
+		val base = new RoadSegment(new GHPoint3D(49.0, 8.0, 100.0), new GHPoint3D(49.0, 8.001, 110.0))
+
+		Assert.assertEquals(105.0, RoadSegment.fromExisting(base.length / 2, base).start.ele, 10e-6)
+		Assert.assertEquals(102.5, RoadSegment.fromExisting(base, base.length * 0.75).end.ele, 10e-6)
+	}
+
 	// lengths calculated using <http://www.movable-type.co.uk/scripts/latlong.html>
 	val coordinatesForExisting = Table(
 		("name", "lat1", "lon1", "lat2", "lon2"),
@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) 2015 Andreas Wolf
+ *
+ * See te LICENSE file in the project root for further copyright information.
+ */
+
+package info.andreaswolf.roadhopper.road
+
+import com.graphhopper.util.shapes.GHPoint
+import info.andreaswolf.roadhopper.RoadHopper
+import org.scalamock.scalatest.MockFactory
+import org.scalatest.FunSuite
+
+
+class RouteCacheTest extends FunSuite with MockFactory {
+
+	val points = List(new GHPoint(49.010796, 8.375444), new GHPoint(49.01271, 8.418016))
+
+	test("Points closer than the precision have the same key") {
+		val subject = new RouteCache(mock[RoadHopper])
+
+		val nearbyPoints = List(new GHPoint(49.0107961, 8.3754442), new GHPoint(49.0127099, 8.418016))
+
+		assertResult(subject.cacheKey(points, RouteOptions()))(subject.cacheKey(nearbyPoints, RouteOptions()))
+	}
+
+	test("Points further apart than the precision have different keys") {
+		val subject = new RouteCache(mock[RoadHopper])
+
+		val otherPoints = List(new GHPoint(49.01081, 8.375444), new GHPoint(49.01271, 8.418016))
+
+		assert(subject.cacheKey(points, RouteOptions()) != subject.cacheKey(otherPoints, RouteOptions()))
+	}
+
+	test("Routing options are part of the key") {
+		val subject = new RouteCache(mock[RoadHopper])
+
+		assert(subject.cacheKey(points, RouteOptions()) != subject.cacheKey(points, RouteOptions(simplify = false)))
+		assert(subject.cacheKey(points, RouteOptions()) != subject.cacheKey(points, RouteOptions(weighting = "shortest")))
+	}
+
+}
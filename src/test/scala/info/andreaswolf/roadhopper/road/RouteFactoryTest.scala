@@ -1,5 +1,6 @@
 package info.andreaswolf.roadhopper.road
 
+import com.graphhopper.util.shapes.GHPoint3D
 import info.andreaswolf.roadhopper.RoadHopper
 import junit.framework.Assert
 import org.scalamock.scalatest.MockFactory
@@ -63,4 +64,48 @@ class RouteFactoryTest extends FunSuite with MockFactory with Matchers {
 		Assert.assertEquals(8.2, simplifiedRoute.parts.apply(1).asInstanceOf[RoadSegment].end.lon)
 	}
 
+	test("Building a route simplifies the segments, marks turns and finds bends in one pass") {
+		val road = new RoadBuilder(new GHPoint3D(49.0, 8.0, 0.0))
+			.addSegment(100.0, 0.0).addSegment(100.0, 0.5).addSegment(100.0, 60.0)
+			.addSegment(50.0, 80.0).addSegment(50.0, 100.0).addSegment(200.0, 100.0).build
+
+		val route = RouteFactory.buildRoute(road.iterator, RouteOptions(simplify = true, markTurns = true))
+
+		// the first two and the last two segments are merged, and the turn of about 60° is marked 5 m before it
+		assertResult(5)(route.parts.length)
+		route.parts.map(_.length).zip(List(195.0, 5.0, 100.0, 50.0, 250.0)).foreach({ case (length, expected) =>
+			assert(Math.abs(length - expected) < 0.1, s"$length != $expected")
+		})
+		def coordinates(point: GHPoint3D) = (point.lat, point.lon)
+		assertResult(coordinates(route.parts(1).start))(coordinates(route.parts.head.end))
+		List(1 -> road(1), 2 -> road(2), 3 -> road(3), 4 -> road(5)).foreach({ case (index, segment) =>
+			assertResult(coordinates(segment.end))(coordinates(route.parts(index).end))
+		})
+
+		// one right bend from the segment before the turn to the end; the bend length leaves out the first and last segment,
+		// but counts the second and second last twice
+		assertResult(1)(route.bends.length)
+		val bend = route.bends.head
+		assertResult(4)(bend.segmentCount)
+		assertResult(TurnDirection.RIGHT)(bend.direction)
+		assert(Math.abs(bend.angle - 99.75.toRadians) < 1.0e-3, s"${bend.angle.toDegrees}° != 99.75°")
+		assert(Math.abs(bend.length - 300.0) < 0.1, s"${bend.length} != 300")
+	}
+
+	test("Simplify keeps the road sign at the end of a merged segment") {
+		val roadSegments = List(
+			RoadSegment.fromCoordinates(49.0, 8.0, 49.1, 8.0),
+			RoadSegment.fromCoordinates(49.1, 8.0, 49.2, 8.0),
+			RoadSegment.fromCoordinates(49.2, 8.0, 49.3, 8.0)
+		)
+		val sign = new StopSign(1, new GHPoint3D(49.2, 8.0, 0.0))
+		roadSegments(1).setRoadSign(Some(sign))
+
+		val simplified = RouteFactory.simplifyRoadSegments(roadSegments.iterator, 2.0).toList
+
+		assertResult(2)(simplified.length)
+		assertResult(Some(sign))(simplified.head.roadSign)
+		assertResult(49.2)(simplified.head.end.lat)
+	}
+
 }
@@ -10,6 +10,55 @@ class RouteTest extends org.scalatest.FunSuite with MockFactory {
 		val list = List()
 		Assert.assertEquals(0.0, new Route(list).length)
 	}
+
+	/** Three segments of 100, 200 and 100 m */
+	def createSegments =
+		new RoadBuilder(new GHPoint3D(49.0, 8.0, 0.0)).addSegment(100, 0).addSegment(200, 90).addSegment(100, 0).build
+
+	def createRoute = new Route(createSegments)
+
+	/** The start and end coordinates of a segment, as segments are created anew for each access */
+	def coordinates(segment: RoadSegment) =
+		(segment.start.lat, segment.start.lon, segment.end.lat, segment.end.lon)
+
+	test("Length is the sum of all segment lengths") {
+		Assert.assertEquals(400.0, createRoute.length, 10e-3)
+	}
+
+	test("Segment can be found by position") {
+		val route = createRoute
+
+		assertResult(0)(route.segmentIndexAt(0.0))
+		assertResult(0)(route.segmentIndexAt(route.offsets(1)))
+		assertResult(1)(route.segmentIndexAt(route.offsets(1) + 0.1))
+		assertResult(2)(route.segmentIndexAt(route.length))
+		assertResult(coordinates(route.parts(1)))(coordinates(route.getSegmentForPosition(150.0)))
+	}
+
+	test("Position after the end of the route leads to an exception") {
+		intercept[IllegalArgumentException] {
+			createRoute.segmentIndexAt(400.1)
+		}
+	}
+
+	test("Segments ahead include all segments starting within the distance") {
+		val route = createRoute
+
+		assertResult(1)(route.endOfSegmentsStartingBefore(0, route.offsets(1)))
+		assertResult(2)(route.endOfSegmentsStartingBefore(0, route.offsets(1) + 1.0))
+		assertResult(3)(route.endOfSegmentsStartingBefore(0, 1000.0))
+		assertResult(2)(route.endOfSegmentsStartingBefore(1, 0.0))
+	}
+
+	test("Distance to the next road sign is measured to the end of its segment") {
+		val segments = createSegments
+		segments(1).setRoadSign(new StopSign(1, segments(1).end))
+		val route = new Route(segments)
+
+		Assert.assertEquals(route.offsets(2) - 50.0, route.distanceToNextSign(50.0, classOf[StopSign]).get, 10e-6)
+		assertResult(None)(route.distanceToNextSign(route.offsets(2) + 1.0, classOf[StopSign]))
+		assertResult(None)(route.distanceToNextSign(50.0, classOf[TrafficLight]))
+	}
 /* TODO rework these tests to work again
 	test("A route with two segments should have the length of both segments") {
 		val firstSegment = mock[RoadSegment]
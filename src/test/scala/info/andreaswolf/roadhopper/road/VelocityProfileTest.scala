@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2015 Andreas Wolf
+ *
+ * See te LICENSE file in the project root for further copyright information.
+ */
+
+package info.andreaswolf.roadhopper.road
+
+import com.graphhopper.util.shapes.GHPoint3D
+import org.scalatest.FunSuite
+
+
+class VelocityProfileTest extends FunSuite {
+
+	/**
+	 * Creates the segments of a straight route with one segment of 100 m per speed limit.
+	 */
+	def createSegments(speedLimits: Double*): List[RoadSegment] = {
+		val builder = new RoadBuilder(new GHPoint3D(49.0, 8.0, 0.0))
+		speedLimits.foreach(_ => builder.addSegment(100, 0))
+		builder.build.zip(speedLimits).map({
+			case (segment, speedLimit) => new RoadSegment(segment.start, segment.end, speedLimit)
+		})
+	}
+
+	def createRoute(speedLimits: Double*): Route = new Route(createSegments(speedLimits: _*))
+
+	test("Allowed velocities are the speed limits on a straight road") {
+		val profile = createRoute(10.0, 20.0, 30.0).velocityProfile
+
+		assertResult(List(10.0, 20.0, 30.0))(profile.allowedVelocities.toList)
+	}
+
+	test("Minimum velocity is found for any range of segments") {
+		val profile = createRoute(30.0, 20.0, 25.0, 10.0, 15.0).velocityProfile
+
+		assertResult(30.0)(profile.minimumVelocity(0, 1))
+		assertResult(20.0)(profile.minimumVelocity(0, 3))
+		assertResult(20.0)(profile.minimumVelocity(1, 3))
+		assertResult(10.0)(profile.minimumVelocity(2, 5))
+		assertResult(15.0)(profile.minimumVelocity(4, 5))
+	}
+
+	test("Segments without a speed limit do not restrict the velocity") {
+		val profile = createRoute(0.0, 20.0).velocityProfile
+
+		assert(profile.minimumVelocity(0, 1).isPosInfinity)
+		assertResult(20.0)(profile.minimumVelocity(0, 2))
+	}
+
+	test("Velocity ahead covers the segments starting within the look-ahead distance") {
+		val route = createRoute(30.0, 20.0, 10.0)
+		val profile = route.velocityProfile
+		val endOfFirst = route.offsets(1)
+
+		assertResult(30.0)(profile.minimumVelocityAhead(10.0, endOfFirst - 10.0))
+		assertResult(20.0)(profile.minimumVelocityAhead(10.0, endOfFirst - 10.0 + 1.0))
+		assertResult(10.0)(profile.minimumVelocityAhead(10.0, 1000.0))
+		assertResult(10.0)(profile.minimumVelocityAhead(route.length, 10.0))
+	}
+
+	test("Distance to a stop sign is taken from the route") {
+		val segments = createSegments(30.0, 20.0, 10.0)
+		segments(1).setRoadSign(new StopSign(1, segments(1).end))
+		val route = new Route(segments)
+
+		assertResult(Some(route.offsets(2) - 50.0))(route.velocityProfile.distanceToStopSign(50.0))
+		assertResult(None)(route.velocityProfile.distanceToStopSign(route.offsets(2) + 1.0))
+	}
+
+}
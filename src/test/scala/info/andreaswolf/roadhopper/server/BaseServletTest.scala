@@ -0,0 +1,34 @@
+/*
+ * Copyright (c) 2015 Andreas Wolf
+ *
+ * See te LICENSE file in the project root for further copyright information.
+ */
+
+package info.andreaswolf.roadhopper.server
+
+import org.scalatest.FunSuite
+
+
+class BaseServletTest extends FunSuite {
+
+	test("gzip is accepted if it is listed") {
+		assert(BaseServlet.acceptsGzip("gzip"))
+		assert(BaseServlet.acceptsGzip("gzip, deflate, br"))
+		assert(BaseServlet.acceptsGzip("deflate;q=1.0, GZIP;q=0.5"))
+		assert(BaseServlet.acceptsGzip("x-gzip"))
+	}
+
+	test("gzip is accepted via wildcard") {
+		assert(BaseServlet.acceptsGzip("*"))
+		assert(BaseServlet.acceptsGzip("identity, *;q=0.1"))
+	}
+
+	test("gzip is not accepted if it is missing or refused") {
+		assert(!BaseServlet.acceptsGzip(null))
+		assert(!BaseServlet.acceptsGzip(""))
+		assert(!BaseServlet.acceptsGzip("deflate, br"))
+		assert(!BaseServlet.acceptsGzip("gzip;q=0"))
+		assert(!BaseServlet.acceptsGzip("gzip;q=0.0, *"))
+	}
+
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2015 Andreas Wolf
+ *
+ * See te LICENSE file in the project root for further copyright information.
+ */
+
+package info.andreaswolf.roadhopper.server
+
+import java.io.{ByteArrayInputStream, ByteArrayOutputStream, DataInputStream}
+
+import com.graphhopper.util.shapes.GHPoint3D
+import info.andreaswolf.roadhopper.road.{RoadBuilder, Route, TrafficLight}
+import org.scalatest.FunSuite
+
+
+class BinaryRouteEncoderTest extends FunSuite {
+
+	/** Three segments of 100, 200 and 100 m */
+	def createRoute = {
+		val segments =
+			new RoadBuilder(new GHPoint3D(49.0, 8.0, 0.0)).addSegment(100, 0).addSegment(200, 90).addSegment(100, 0).build
+		segments(0).setRoadName("Kaiserstraße")
+		segments(2).setRoadName("Kaiserstraße")
+		segments(1).setRoadSign(new TrafficLight(42, new GHPoint3D(49.001, 8.002, 0.0)))
+		new Route(segments)
+	}
+
+	def encode(route: Route): DataInputStream = {
+		val output = new ByteArrayOutputStream()
+		new BinaryRouteEncoder().encodeRoute(route, output)
+		new DataInputStream(new ByteArrayInputStream(output.toByteArray))
+	}
+
+	test("Route is encoded as columns") {
+		val route = createRoute
+		val input = encode(route)
+
+		assertResult(BinaryRouteEncoder.MAGIC)(input.readInt())
+		assertResult(BinaryRouteEncoder.VERSION)(input.readByte())
+		assertResult(route.identifier)(input.readUTF())
+		assertResult(3)(input.readInt())
+
+		// points
+		val points = (0 to 3).map(_ => (input.readInt() / 1e7, input.readInt() / 1e7, input.readFloat()))
+		assert(Math.abs(points.head._1 - 8.0) < 1e-7)
+		assert(Math.abs(points.head._2 - 49.0) < 1e-7)
+		assert(Math.abs(points(3)._1 - route.parts(2).end.lon) < 1e-7)
+		assert(Math.abs(points(3)._2 - route.parts(2).end.lat) < 1e-7)
+		// no gaps
+		assertResult(0)(input.readInt())
+
+		val lengths = (0 to 2).map(_ => input.readFloat())
+		assertResult(route.parts.map(_.length.toFloat).toList)(lengths.toList)
+		val orientations = (0 to 2).map(_ => input.readFloat())
+		assertResult(route.parts.map(_.orientation.toFloat).toList)(orientations.toList)
+		(0 to 2).foreach(_ => input.readFloat()) // grade
+		(0 to 2).foreach(_ => assertResult((50 / 3.6).toFloat)(input.readFloat()))
+
+		// road names
+		assertResult(2)(input.readInt())
+		assertResult("")(input.readUTF())
+		assertResult("Kaiserstraße")(input.readUTF())
+		assertResult(List(1, 0, 1))((0 to 2).map(_ => input.readInt()).toList)
+
+		// road signs
+		assertResult(1)(input.readInt())
+		assertResult(1)(input.readInt())
+		assertResult(42)(input.readInt())
+		assertResult("TrafficLight")(input.readUTF())
+		assertResult(80020000)(input.readInt())
+		assertResult(490010000)(input.readInt())
+
+		// road bends; their number depends on the bend detection, but each one refers to a segment
+		val bendCount = input.readInt()
+		(0 until bendCount).foreach(_ => {
+			val firstSegment = input.readInt()
+			assert(firstSegment >= 0 && firstSegment < 3)
+			input.readInt()
+			input.readFloat()
+			input.readFloat()
+			input.readFloat()
+			input.readByte()
+		})
+		assertResult(-1)(input.read())
+	}
+
+	test("Empty route can be encoded") {
+		val input = encode(new Route(List()))
+
+		input.readInt()
+		input.readByte()
+		input.readUTF()
+		assertResult(0)(input.readInt())
+		assertResult(0)(input.readInt()) // gaps
+		assertResult(1)(input.readInt()) // the empty road name
+		assertResult("")(input.readUTF())
+		assertResult(0)(input.readInt()) // signs
+		assertResult(0)(input.readInt()) // bends
+		assertResult(-1)(input.read())
+	}
+
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2015 Andreas Wolf
+ *
+ * See te LICENSE file in the project root for further copyright information.
+ */
+
+package info.andreaswolf.roadhopper.server
+
+import java.io.{PrintWriter, StringWriter}
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.{CountDownLatch, TimeUnit}
+import javax.servlet.http.{HttpServletRequest, HttpServletResponse}
+import javax.servlet.{AsyncContext, ServletRequest, ServletResponse}
+
+import info.andreaswolf.roadhopper.metrics.Metrics
+import org.scalamock.scalatest.MockFactory
+import org.scalatest.FunSuite
+
+
+class RequestExecutorTest extends FunSuite with MockFactory {
+
+	def createRequest(asyncSupported: Boolean = true, context: AsyncContext = stub[AsyncContext]): HttpServletRequest = {
+		val request = stub[HttpServletRequest]
+		(request.isAsyncSupported _).when().returns(asyncSupported)
+		(request.startAsync(_: ServletRequest, _: ServletResponse)).when(*, *).returns(context)
+		request
+	}
+
+	def createResponse(body: StringWriter = new StringWriter()): HttpServletResponse = {
+		val response = stub[HttpServletResponse]
+		(response.getWriter _).when().returns(new PrintWriter(body))
+		response
+	}
+
+	/** An async context that releases the latch when the request is completed */
+	def createContext(completed: CountDownLatch): AsyncContext = {
+		val context = stub[AsyncContext]
+		(context.complete _).when().onCall(() => completed.countDown())
+		context
+	}
+
+	/** A handler that blocks until the latch is released */
+	class BlockingHandler(latch: CountDownLatch) extends RequestHandler {
+		override def handle(req: HttpServletRequest, resp: HttpServletResponse): Unit = latch.await(10, TimeUnit.SECONDS)
+	}
+
+	test("Request is handled on the calling thread if async processing is not supported") {
+		val subject = new RequestExecutor("test-sync", 1, 1)
+		var handlingThread: Thread = null
+
+		subject.execute(createRequest(asyncSupported = false), createResponse(), new RequestHandler {
+			override def handle(req: HttpServletRequest, resp: HttpServletResponse): Unit = {
+				handlingThread = Thread.currentThread()
+			}
+		})
+
+		assert(handlingThread eq Thread.currentThread())
+		subject.shutdown()
+	}
+
+	test("Request is rejected with status 429 if the queue is full") {
+		val subject = new RequestExecutor("test-rejected", 1, 1)
+		val latch = new CountDownLatch(1)
+		val rejectedResponse = createResponse()
+
+		// the first request occupies the only thread, the second one waits in the queue
+		subject.execute(createRequest(), createResponse(), new BlockingHandler(latch))
+		subject.execute(createRequest(), createResponse(), new BlockingHandler(latch))
+		subject.execute(createRequest(), rejectedResponse, new BlockingHandler(latch))
+		latch.countDown()
+		subject.shutdown()
+
+		(rejectedResponse.setStatus(_: Int)).verify(429)
+		(rejectedResponse.setHeader _).verify("Retry-After", "5")
+		assertResult(1)(Metrics.counter("executor.test-rejected.rejected").get)
+	}
+
+	test("Queued request is answered with status 503 after the timeout, running request is left alone") {
+		val subject = new RequestExecutor("test-timeout", 1, 1, timeout = 100)
+		val latch = new CountDownLatch(1)
+		val runningCompleted = new CountDownLatch(1)
+		val queuedCompleted = new CountDownLatch(1)
+		val runningResponse = createResponse()
+		val queuedBody = new StringWriter()
+		val queuedResponse = createResponse(queuedBody)
+		val queuedHandlerCalled = new AtomicBoolean(false)
+
+		subject.execute(createRequest(context = createContext(runningCompleted)), runningResponse,
+			new BlockingHandler(latch))
+		subject.execute(createRequest(context = createContext(queuedCompleted)), queuedResponse, new RequestHandler {
+			override def handle(req: HttpServletRequest, resp: HttpServletResponse): Unit = queuedHandlerCalled.set(true)
+		})
+
+		assert(queuedCompleted.await(5, TimeUnit.SECONDS))
+		(queuedResponse.setStatus(_: Int)).verify(503)
+		assert(queuedBody.toString.contains("\"error\""))
+		// the running handler is still blocked, so its response must not have been touched
+		assertResult(1)(runningCompleted.getCount)
+
+		latch.countDown()
+		assert(runningCompleted.await(5, TimeUnit.SECONDS))
+		(runningResponse.setStatus(_: Int)).verify(*).never()
+		(runningResponse.getWriter _).verify().never()
+
+		// the timed out request was removed from the queue, so its handler is never called
+		subject.shutdown()
+		Thread.sleep(200)
+		assert(!queuedHandlerCalled.get())
+	}
+
+	test("Queue length is reported as gauge") {
+		val subject = new RequestExecutor("test-gauge", 1, 2)
+		val latch = new CountDownLatch(1)
+
+		subject.execute(createRequest(), createResponse(), new BlockingHandler(latch))
+		subject.execute(createRequest(), createResponse(), new BlockingHandler(latch))
+
+		assertResult(1)(Metrics.allGauges("executor.test-gauge.queued").get)
+		latch.countDown()
+		subject.shutdown()
+	}
+
+}
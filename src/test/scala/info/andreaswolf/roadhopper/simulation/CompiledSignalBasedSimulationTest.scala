@@ -0,0 +1,193 @@
+/*
+ * Copyright (c) 2015 Andreas Wolf
+ *
+ * See te LICENSE file in the project root for further copyright information.
+ */
+
+package info.andreaswolf.roadhopper.simulation
+
+import com.graphhopper.util.shapes.GHPoint3D
+import info.andreaswolf.roadhopper.road.{RoadBuilder, Route, StopSign}
+import info.andreaswolf.roadhopper.simulation.SimulationParameters.PedalParameters
+import info.andreaswolf.roadhopper.simulation.signals.{SignalComponent, SignalSink, SignalState}
+import info.andreaswolf.roadhopper.simulation.sweep.{ParameterSweep, SimulationSummary}
+import info.andreaswolf.roadhopper.simulation.vehicle.VehicleParameters
+import org.scalatest.FunSuite
+
+import scala.concurrent.Await
+import scala.concurrent.duration._
+
+
+class CompiledSignalBasedSimulationTest extends FunSuite {
+
+	/**
+	 * A short route with a turn and a stop sign, so all modes of the driver model are used.
+	 */
+	def createRoute: Route = {
+		val segments = new RoadBuilder(new GHPoint3D(49.0, 8.0, 0.0)).addSegment(150, 0).addSegment(100, 90).build
+		segments.head.setRoadSign(new StopSign(1, segments.head.end))
+		new Route(segments)
+	}
+
+	/** A long straight road with a stop sign after 800 m, so the vehicle cruises before and after stopping */
+	def createLongRoute: Route = {
+		val segments = new RoadBuilder(new GHPoint3D(49.0, 8.0, 0.0)).addSegment(800, 0).addSegment(800, 0).build
+		segments.head.setRoadSign(new StopSign(1, segments.head.end))
+		new Route(segments)
+	}
+
+	/** Counts the time steps and records where the vehicle first stopped after starting */
+	class StopRecorder extends SignalComponent {
+
+		var steps = 0
+
+		var stoppedAt: Option[Double] = None
+
+		override def invoke(signals: SignalState, bus: SignalSink): Unit = {
+			steps += 1
+			val position = signals.signalValue("s", 0.0)
+			if (stoppedAt.isEmpty && position > 10.0 && signals.signalValue("v", 0.0) < 0.01) {
+				stoppedAt = Some(position)
+			}
+		}
+
+	}
+
+	def parameters(route: Route) = new SimulationParameters(
+		pedal = new PedalParameters(gasPedalGain = 100.0, brakePedalGain = -200.0),
+		vehicle = VehicleParameters.CompactCar,
+		route = route
+	)
+
+	/** The logged values of a signal with the time they were logged at */
+	def loggedValues(result: SimulationResult, signalName: String): List[(Int, Double)] = {
+		val store = result.signals
+		val column = store.column(signalName).get
+		(0 until store.rowCount).map(row => (store.time(row), column(row))).toList
+	}
+
+	/** All figures of a summary except for the computation time */
+	def figures(summary: SimulationSummary) = (summary.duration, summary.finished, summary.distance,
+		summary.averageVelocity, summary.maximumVelocity, summary.maximumAcceleration, summary.maximumDeceleration,
+		summary.timeOverSpeedLimit)
+
+	/** Times spread over a journey of the given duration (in milliseconds) at which simulations are forked */
+	def forkTimes(duration: Int) = List(duration / 4, duration / 2, duration * 3 / 4).map(_ / 100 * 100)
+
+	test("Logged signals match the actor-based simulation") {
+		val route = createRoute
+		val actorResult = new SimulationResult
+		val actorSimulation = new SignalBasedSimulation(parameters(route), actorResult)
+		actorSimulation.start()
+		actorSimulation.actorSystem.awaitTermination(2.minutes)
+		assert(actorSimulation.isFinished)
+
+		val compiledResult = new SimulationResult
+		val compiledSimulation = new CompiledSignalBasedSimulation(parameters(route), compiledResult,
+			actorSimulation.signalLogInterval)
+		assert(compiledSimulation.run())
+
+		try {
+			List("v", "s").foreach(signalName => {
+				val expected = loggedValues(actorResult, signalName)
+				val actual = loggedValues(compiledResult, signalName)
+
+				assert(expected.nonEmpty)
+				assertResult(expected.map(_._1))(actual.map(_._1))
+				expected.zip(actual).foreach({ case ((time, e), (_, a)) =>
+					assert((e.isNaN && a.isNaN) || Math.abs(e - a) < 1.0e-6, s"$signalName differs at $time: $e != $a")
+				})
+			})
+		} finally {
+			actorResult.close()
+			compiledResult.close()
+		}
+	}
+
+	test("Forked simulation with the same parameters continues like an unforked one") {
+		val route = createRoute
+		val unforkedResult = new SimulationResult
+		val unforked = new CompiledSignalBasedSimulation(parameters(route), unforkedResult)
+		assert(unforked.run())
+
+		try {
+			forkTimes(unforked.simulatedTime).foreach(forkTime => {
+				val base = new CompiledSignalBasedSimulation(parameters(route), new SimulationResult)
+				assert(!base.run(forkTime))
+				val forkedResult = new SimulationResult
+				try {
+					assert(base.fork(parameters(route), forkedResult).run())
+
+					List("v", "s").foreach(signalName => {
+						val actual = loggedValues(forkedResult, signalName)
+						assert(actual.nonEmpty)
+						assert(actual.head._1 >= forkTime)
+						val expected = loggedValues(unforkedResult, signalName).filter(_._1 >= actual.head._1)
+
+						assertResult(expected, s"$signalName forked at $forkTime")(actual)
+					})
+				} finally {
+					base.result.close()
+					forkedResult.close()
+				}
+			})
+		} finally {
+			unforkedResult.close()
+		}
+	}
+
+	test("Forked parameter sweep with the same parameters gives the same summary as an unforked one") {
+		val route = createRoute
+		val sweep = new ParameterSweep(2)
+		try {
+			val unforked = Await.result(sweep.run(List(parameters(route))), 1.minute).head
+			assert(unforked.summary.get.finished)
+
+			forkTimes(unforked.summary.get.duration).foreach(forkTime => {
+				val forked = Await.result(sweep.runForked(parameters(route), forkTime, List(parameters(route))), 1.minute).head
+
+				assertResult(None)(forked.error)
+				assertResult(figures(unforked.summary.get), s"forked at $forkTime")(figures(forked.summary.get))
+			})
+		} finally {
+			sweep.shutdown()
+		}
+	}
+
+	test("Larger steps in steady state give nearly the same journey") {
+		val route = createLongRoute
+
+		/** Runs the journey without a logger, so only the components of the simulation limit the step size */
+		def run(maximumStepSize: Int) = {
+			val simulation = new CompiledSignalBasedSimulation(parameters(route), new SimulationResult,
+				signalLogInterval = 0, maximumStepSize = maximumStepSize)
+			val recorder = new StopRecorder
+			simulation.addComponent(recorder, List("time"))
+			try {
+				assert(simulation.run(600000), s"Journey with steps of up to $maximumStepSize ms did not finish")
+			} finally {
+				simulation.result.close()
+			}
+			(simulation, recorder)
+		}
+
+		val (fine, fineRecorder) = run(10)
+		val (coarse, coarseRecorder) = run(200)
+
+		assert(coarseRecorder.steps < fineRecorder.steps, "No larger steps were taken")
+
+		// the vehicle must still stop at the stop sign, not run over it
+		val signPosition = route.offsets(1)
+		List(fineRecorder, coarseRecorder).foreach(recorder => {
+			assert(recorder.stoppedAt.isDefined, "Vehicle did not stop")
+			assert(recorder.stoppedAt.get > signPosition - 20.0 && recorder.stoppedAt.get < signPosition + 1.0,
+				s"Vehicle stopped at ${recorder.stoppedAt.get}, the stop sign is at $signPosition")
+		})
+		assert(Math.abs(coarseRecorder.stoppedAt.get - fineRecorder.stoppedAt.get) < 2.0)
+
+		val duration = fine.simulatedTime
+		assert(Math.abs(coarse.simulatedTime - duration) < duration * 0.02,
+			s"Journey took ${coarse.simulatedTime} ms with larger steps, $duration ms without")
+	}
+
+}
@@ -0,0 +1,204 @@
+/*
+ * Copyright (c) 2015 Andreas Wolf
+ *
+ * See te LICENSE file in the project root for further copyright information.
+ */
+
+package info.andreaswolf.roadhopper.simulation.distributed
+
+import java.io.{ByteArrayInputStream, ByteArrayOutputStream, ObjectInputStream, ObjectOutputStream}
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.{CountDownLatch, TimeUnit}
+
+import com.graphhopper.util.shapes.GHPoint3D
+import com.typesafe.config.ConfigFactory
+import info.andreaswolf.roadhopper.road.{RoadBuilder, Route, StopSign}
+import info.andreaswolf.roadhopper.simulation.SimulationParameters
+import info.andreaswolf.roadhopper.simulation.sweep.{ParameterGrid, SimulationSummary, SweepResult}
+import org.scalatest.FunSuite
+
+import scala.concurrent.duration._
+import scala.concurrent.{Await, ExecutionContext, Future, Promise}
+import scala.util.Try
+
+
+/**
+ * Runs the coordinator and the workers in separate actor systems that talk to each other via remoting on localhost.
+ */
+class DistributedSweepTest extends FunSuite {
+
+	/** Detects lost workers within a few seconds */
+	val config = ConfigFactory.parseString(
+		"""
+		  |akka.remote.watch-failure-detector.heartbeat-interval = 200 ms
+		  |akka.remote.watch-failure-detector.acceptable-heartbeat-pause = 1 s
+		  |akka.remote.watch-failure-detector.expected-response-after = 1 s
+		  |akka.remote.watch-failure-detector.unreachable-nodes-reaper-interval = 200 ms
+		""".stripMargin)
+
+	def createRoute = {
+		val segments = new RoadBuilder(new GHPoint3D(49.0, 8.0, 100.0))
+			.addSegment(100, 0).addSegment(200, 90).addSegment(100, 0).build
+		segments(0).setRoadName("Main Street")
+		segments(1).setRoadSign(new StopSign(1, segments(1).end))
+		new Route(segments)
+	}
+
+	/** Returns a summary whose distance is the gas pedal gain, so the results can be matched to the variants */
+	def runImmediately(parameters: SimulationParameters): Future[SweepResult] = Future.successful(new SweepResult(0,
+		parameters, Some(new SimulationSummary(0, true, parameters.pedal.gasPedalGain, 0, 0, 0, 0, 0, 0))))
+
+	def startWorker(subject: DistributedSweep, capacity: Int, run: SimulationParameters => Future[SweepResult]) = {
+		val address = subject.address.get
+		SimulationWorker.start("127.0.0.1", 0, s"${address.host.get}:${address.port.get}", capacity, run, config)
+	}
+
+	/**
+	 * Runs the variants once a worker is registered; the workers register asynchronously after they were started, and
+	 * the coordinator rejects sweeps while there is none.
+	 */
+	def runOnWorkers(subject: DistributedSweep, variants: List[SimulationParameters]): Future[List[SweepResult]] = {
+		val deadline = 30.seconds.fromNow
+		var results = subject.run(variants)
+		while (Try(Await.result(results, 1.second)).failed.toOption.exists(_.isInstanceOf[IllegalStateException])
+			&& deadline.hasTimeLeft()) {
+			Thread.sleep(100)
+			results = subject.run(variants)
+		}
+		results
+	}
+
+	test("Route is the same after being transferred") {
+		val route = createRoute
+
+		val output = new ByteArrayOutputStream()
+		new ObjectOutputStream(output).writeObject(RouteData.fromRoute(1, route))
+		val data = new ObjectInputStream(new ByteArrayInputStream(output.toByteArray)).readObject().asInstanceOf[RouteData]
+		val transferred = data.toRoute
+
+		assertResult(route.parts)(transferred.parts)
+		assertResult(route.parts.map(_.speedLimit))(transferred.parts.map(_.speedLimit))
+		assertResult(route.parts.map(_.roadName))(transferred.parts.map(_.roadName))
+		assertResult(1)(transferred.parts(1).roadSign.get.id)
+		assert(transferred.parts(1).roadSign.get.isInstanceOf[StopSign])
+		assertResult(route.parts(1).end.lat)(transferred.parts(1).roadSign.get.coordinates.lat)
+	}
+
+	test("Variants are run on the workers") {
+		val subject = new DistributedSweep("127.0.0.1", 0, 60000, config)
+		val workers = List(startWorker(subject, 1, runImmediately), startWorker(subject, 2, runImmediately))
+		try {
+			val variants = new ParameterGrid(gasPedalGains = List(10.0, 20.0, 30.0, 40.0)).variants(createRoute)
+
+			val results = Await.result(runOnWorkers(subject, variants), 30.seconds)
+
+			assertResult(List(0, 1, 2, 3))(results.map(_.index))
+			assertResult(List(10.0, 20.0, 30.0, 40.0))(results.map(_.summary.get.distance))
+			assert(results.zip(variants).forall({ case (result, parameters) => result.parameters eq parameters }))
+		} finally {
+			workers.foreach(_.shutdown())
+			subject.shutdown()
+		}
+	}
+
+	test("Jobs of a lost worker are run on another worker") {
+		val subject = new DistributedSweep("127.0.0.1", 0, 60000, config)
+		val started = new CountDownLatch(2)
+		val lostWorker = startWorker(subject, 2, parameters => {
+			started.countDown()
+			Promise[SweepResult]().future
+		})
+		var otherWorker: Option[akka.actor.ActorSystem] = None
+		try {
+			val variants = new ParameterGrid(gasPedalGains = List(10.0, 20.0)).variants(createRoute)
+			val results = runOnWorkers(subject, variants)
+			assert(started.await(30, TimeUnit.SECONDS))
+
+			otherWorker = Some(startWorker(subject, 2, runImmediately))
+			lostWorker.shutdown()
+
+			assertResult(List(10.0, 20.0))(Await.result(results, 30.seconds).map(_.summary.get.distance))
+		} finally {
+			otherWorker.foreach(_.shutdown())
+			lostWorker.shutdown()
+			subject.shutdown()
+		}
+	}
+
+	test("Sweep fails right away if no worker is registered") {
+		val subject = new DistributedSweep("127.0.0.1", 0, 60000, config)
+		try {
+			val variants = new ParameterGrid(gasPedalGains = List(10.0, 20.0)).variants(createRoute)
+
+			intercept[IllegalStateException] {
+				Await.result(subject.run(variants), 5.seconds)
+			}
+		} finally {
+			subject.shutdown()
+		}
+	}
+
+	test("Jobs that do not finish in time are run on another worker") {
+		val subject = new DistributedSweep("127.0.0.1", 0, 1000, config)
+		val started = new CountDownLatch(2)
+		val hungWorker = startWorker(subject, 2, parameters => {
+			started.countDown()
+			Promise[SweepResult]().future
+		})
+		var otherWorker: Option[akka.actor.ActorSystem] = None
+		try {
+			val variants = new ParameterGrid(gasPedalGains = List(10.0, 20.0)).variants(createRoute)
+			val results = runOnWorkers(subject, variants)
+			assert(started.await(30, TimeUnit.SECONDS))
+
+			// the hung worker stays connected, but its slots are still taken by the jobs that timed out
+			otherWorker = Some(startWorker(subject, 2, runImmediately))
+
+			assertResult(List(10.0, 20.0))(Await.result(results, 30.seconds).map(_.summary.get.distance))
+		} finally {
+			otherWorker.foreach(_.shutdown())
+			hungWorker.shutdown()
+			subject.shutdown()
+		}
+	}
+
+	test("Late result of a timed out attempt does not free the slot of the retry on the same worker") {
+		val subject = new DistributedSweep("127.0.0.1", 0, 2000, config)
+		val calls = new AtomicInteger()
+		val concurrent = new AtomicInteger()
+		val maximumConcurrent = new AtomicInteger()
+		// the first attempt finishes 500 ms after its deadline, while the retry runs from 2 s to 3.5 s
+		val worker = startWorker(subject, 2, parameters => {
+			val duration = calls.incrementAndGet() match {
+				case 1 => 2500
+				case 2 => 1500
+				case _ => 200
+			}
+			val running = concurrent.incrementAndGet()
+			maximumConcurrent.synchronized {
+				if (running > maximumConcurrent.get()) {
+					maximumConcurrent.set(running)
+				}
+			}
+			Future({
+				Thread.sleep(duration)
+				concurrent.decrementAndGet()
+				Await.result(runImmediately(parameters), 1.second)
+			})(ExecutionContext.global)
+		})
+		try {
+			val first = runOnWorkers(subject, new ParameterGrid(gasPedalGains = List(10.0)).variants(createRoute))
+			assertResult(List(10.0))(Await.result(first, 30.seconds).map(_.summary.get.distance))
+
+			// the retry is still running, so only one of these may start before it has finished
+			val second = subject.run(new ParameterGrid(gasPedalGains = List(20.0, 30.0)).variants(createRoute))
+			assertResult(List(20.0, 30.0))(Await.result(second, 30.seconds).map(_.summary.get.distance))
+
+			assertResult(2)(maximumConcurrent.get())
+		} finally {
+			worker.shutdown()
+			subject.shutdown()
+		}
+	}
+
+}
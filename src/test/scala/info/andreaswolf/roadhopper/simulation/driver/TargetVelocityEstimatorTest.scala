@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2015 Andreas Wolf
+ *
+ * See te LICENSE file in the project root for further copyright information.
+ */
+
+package info.andreaswolf.roadhopper.simulation.driver
+
+import com.graphhopper.util.shapes.GHPoint3D
+import info.andreaswolf.roadhopper.road.{RoadBuilder, RoadSegment, Route, StopSign}
+import info.andreaswolf.roadhopper.simulation.signals.{SignalSink, SignalState}
+import org.scalatest.FunSuite
+
+import scala.collection.immutable.HashMap
+import scala.collection.mutable
+
+
+class TargetVelocityEstimatorTest extends FunSuite {
+
+	class RecordingSink extends SignalSink {
+
+		val values = new mutable.HashMap[String, Any]()
+
+		override def updateSignalValue(signalName: String, newValue: Any): Unit = values.put(signalName, newValue)
+
+		override def scheduleSignalUpdate(delta: Int, signalName: String, newValue: Any): Unit = {}
+
+		override def stopSimulation(): Unit = {}
+	}
+
+	/**
+	 * A straight route with one segment of 100 m per speed limit and a stop sign at the end of the second segment.
+	 */
+	def createRoute(speedLimits: Double*): Route = {
+		val builder = new RoadBuilder(new GHPoint3D(49.0, 8.0, 0.0))
+		speedLimits.foreach(_ => builder.addSegment(100, 0))
+		val segments = builder.build.zip(speedLimits).map({
+			case (segment, speedLimit) => new RoadSegment(segment.start, segment.end, speedLimit)
+		})
+		segments(1).setRoadSign(new StopSign(1, segments(1).end))
+		new Route(segments)
+	}
+
+	/**
+	 * Runs one update of the estimator at the given position and velocity.
+	 *
+	 * @return The new target velocity, if any, and whether the estimator switched to the stop sign mode
+	 */
+	def estimate(estimator: TargetVelocityEstimatorComponent, position: Double, velocity: Double): (Option[Any], Boolean) = {
+		val sink = new RecordingSink
+		estimator.advanceTime(estimator.updateInterval)
+		estimator.invoke(new SignalState(HashMap("s" -> position, "v" -> velocity)), sink)
+		(sink.values.get("v_target"), estimator.approachingStopSign)
+	}
+
+	/**
+	 * Runs one update of a new estimator for the route used in these tests.
+	 */
+	def estimate(position: Double, velocity: Double): (Option[Any], Boolean) = {
+		val route = createRoute(20.0, 15.0, 25.0, 10.0, 30.0)
+		estimate(new VelocityProfileEstimatorComponent(route.velocityProfile), position, velocity)
+	}
+
+	test("Target velocity is the lowest speed limit of the segments within the look ahead distance") {
+		// standing still: only the current segment counts
+		assertResult((Some(20.0), false))(estimate(2.5, 0.0))
+		// 13 m look ahead reach the second segment
+		assertResult((Some(15.0), false))(estimate(95.0, 10.0))
+		// 50 m look ahead end before the fourth segment …
+		assertResult((Some(25.0), false))(estimate(240.0, 20.0))
+		// … or reach into it
+		assertResult((Some(10.0), false))(estimate(260.0, 20.0))
+	}
+
+	test("Stop sign mode is entered for a stop sign within the look ahead distance") {
+		// the stop sign is 20 m ahead, within the 28 m look ahead
+		assertResult((Some(15.0), true))(estimate(180.0, 15.0))
+		// the stop sign is more than the 13 m look ahead away
+		assertResult((Some(20.0), false))(estimate(50.0, 10.0))
+		// less than 5 m before the sign, the vehicle is taken to have stopped there already
+		assertResult((Some(15.0), false))(estimate(197.0, 10.0))
+		// the sign is behind the vehicle
+		assertResult((Some(25.0), false))(estimate(205.0, 10.0))
+	}
+
+}
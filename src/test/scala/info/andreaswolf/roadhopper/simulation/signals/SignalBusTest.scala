@@ -225,4 +225,26 @@ with FunSuiteLike with ImplicitSender with Matchers with BeforeAndAfterAll {
 		testReceiver.expectMsg(2.0)
 	}
 
+	test("Process subscribed with a sample interval is only invoked in its time steps") {
+		val subject = TestActorRef(new SignalBus(new TestProbe(system).ref))
+
+		val testReceiver = TestProbe()
+
+		val process = TestActorRef(new Process(subject) {
+			override def invoke(state: SignalState): Future[Any] = {
+				testReceiver.ref ! time
+				Future.successful()
+			}
+		})
+		subject ? SubscribeToSignal("time", process, sampleInterval = 20)
+
+		subject ? TellTime(10)
+		subject ? StepUpdate()
+		testReceiver.expectNoMsg(100 millis)
+
+		subject ? TellTime(20)
+		subject ? StepUpdate()
+		testReceiver.expectMsg(20)
+	}
+
 }
@@ -77,4 +77,42 @@ class SignalStateTest extends FunSuite {
 		assert(subject.getUpdated == updateMap)
 	}
 
+	test("Numeric values can be read via a handle") {
+		val subject = new SignalState(HashMap("foo" -> 1.0, "bar" -> 2))
+
+		assertResult(1.0)(subject.doubleValue(new SignalHandle("foo"), 0.0))
+		assertResult(2.0)(subject.doubleValue(new SignalHandle("bar"), 0.0))
+		assertResult(5.0)(subject.doubleValue(new SignalHandle("baz"), 5.0))
+	}
+
+	test("Handle can be used with states from different registries") {
+		val handle = new SignalHandle("foo")
+		val first = new SignalState(HashMap("bar" -> 2.0, "foo" -> 1.0))
+		val second = new SignalState(HashMap("foo" -> 3.0))
+
+		assertResult(1.0)(first.doubleValue(handle, 0.0))
+		assertResult(3.0)(second.doubleValue(handle, 0.0))
+		assert(!second.isUpdated(handle))
+	}
+
+	test("Base state is not modified by updates") {
+		val oldMap = new SignalState(HashMap("foo" -> 1.0, "bar" -> "x"))
+		val subject = new SignalState(HashMap("foo" -> 3.0, "baz" -> "y"), oldMap)
+
+		assertResult(Some(1.0))(oldMap.signalValue("foo"))
+		assertResult(None)(oldMap.signalValue("baz"))
+		assertResult(Some("y"))(subject.signalValue("baz"))
+		assertResult(Some("x"))(subject.signalValue("bar"))
+	}
+
+	test("Numeric signal does not accept other values") {
+		val registry = new SignalRegistry
+		registry.define("foo", SignalType.Numeric)
+		val updates = new SignalUpdates(registry)
+
+		intercept[IllegalArgumentException] {
+			updates.put("foo", "bar")
+		}
+	}
+
 }
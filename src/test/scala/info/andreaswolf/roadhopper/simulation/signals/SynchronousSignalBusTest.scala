@@ -0,0 +1,197 @@
+/*
+ * Copyright (c) 2015 Andreas Wolf
+ *
+ * See te LICENSE file in the project root for further copyright information.
+ */
+
+package info.andreaswolf.roadhopper.simulation.signals
+
+import info.andreaswolf.roadhopper.simulation.control.{DeadTimeComponent, PT1Component}
+import org.scalatest.FunSuite
+
+import scala.collection.mutable.ListBuffer
+
+
+class SynchronousSignalBusTest extends FunSuite {
+
+	/**
+	 * A component that records its invocations and optionally emits a signal update.
+	 */
+	class RecordingComponent(val name: String, val log: ListBuffer[String], output: Option[(String, Any)] = None)
+		extends SignalComponent {
+
+		val receivedStates = new ListBuffer[SignalState]()
+
+		override def invoke(signals: SignalState, bus: SignalSink): Unit = {
+			log append name
+			receivedStates append signals
+			output.foreach({ case (signal, value) => bus.updateSignalValue(signal, value) })
+		}
+	}
+
+	test("Time signal is triggered with each step") {
+		val subject = new SynchronousSignalBus
+		val log = new ListBuffer[String]()
+		val component = new RecordingComponent("a", log)
+		subject.register(component, List("time"))
+
+		subject.step(10)
+		subject.step(20)
+
+		assertResult(List("a", "a"))(log.toList)
+		assertResult(20)(component.time)
+		assertResult(20)(component.receivedStates.last.signalValue("time").get)
+	}
+
+	test("Updating another signal from a component triggers second delta cycle") {
+		val subject = new SynchronousSignalBus
+		val log = new ListBuffer[String]()
+		subject.register(new RecordingComponent("first", log, Some("second" -> 2.0)), List("time"), List("second"))
+		val second = new RecordingComponent("second", log)
+		subject.register(second, List("second"))
+
+		val cycles = subject.step(10)
+
+		assertResult(2)(cycles)
+		assertResult(List("first", "second"))(log.toList)
+		assertResult(2.0)(second.receivedStates.head.signalValue("second").get)
+	}
+
+	test("Components are invoked in topological order, regardless of registration order") {
+		val subject = new SynchronousSignalBus
+		val log = new ListBuffer[String]()
+		// both are subscribed to "time", but "consumer" also reads the output of "producer"
+		subject.register(new RecordingComponent("consumer", log), List("time", "x"))
+		subject.register(new RecordingComponent("producer", log, Some("x" -> 1.0)), List("time"), List("x"))
+
+		subject.step(10)
+
+		assertResult(List("producer", "consumer", "consumer"))(log.toList)
+	}
+
+	test("Subscriber for two changed signals is only called once") {
+		val subject = new SynchronousSignalBus
+		val log = new ListBuffer[String]()
+		subject.register(new RecordingComponent("subscriber", log), List("first", "second"))
+		subject.scheduleSignalUpdate(10, "first", 2.0)
+		subject.scheduleSignalUpdate(10, "second", 3.0)
+
+		subject.step(10)
+
+		assertResult(List("subscriber"))(log.toList)
+	}
+
+	test("Value updates scheduled for the future are executed in the first delta cycle of their time step") {
+		val subject = new SynchronousSignalBus
+		val log = new ListBuffer[String]()
+		val component = new RecordingComponent("subscriber", log)
+		subject.register(component, List("test"))
+		subject.register(new SignalComponent {
+			override def invoke(signals: SignalState, bus: SignalSink): Unit = {
+				if (time == 10) bus.scheduleSignalUpdate(20, "test", 2.0)
+			}
+		}, List("time"))
+
+		subject.step(10)
+		subject.step(20)
+		assert(log.isEmpty)
+
+		subject.step(30)
+		assertResult(2.0)(component.receivedStates.head.signalValue("test").get)
+	}
+
+	test("Unchanged signal values are carried through to the next time step") {
+		val subject = new SynchronousSignalBus
+		val log = new ListBuffer[String]()
+		val component = new RecordingComponent("subscriber", log)
+		subject.register(new RecordingComponent("writer", log, Some("first" -> 2.0)), List("time"), List("first"))
+		subject.register(component, List("time"))
+
+		subject.step(10)
+		subject.step(20)
+
+		assertResult(2.0)(component.receivedStates.last.signalValue("first").get)
+	}
+
+	test("Component with a sample interval is only invoked in its time steps") {
+		val subject = new SynchronousSignalBus
+		val log = new ListBuffer[String]()
+		val component = new RecordingComponent("sampled", log)
+		subject.register(component, List("time"), sampleInterval = 30)
+
+		(1 to 7).foreach(i => subject.step(i * 10))
+
+		assertResult(List(30, 60))(component.receivedStates.map(_.signalValue("time").get).toList)
+		assertResult(60)(component.time)
+	}
+
+	test("Next event time includes sample intervals and scheduled updates") {
+		val subject = new SynchronousSignalBus
+		subject.register(new RecordingComponent("sampled", new ListBuffer[String]()), List("time"), sampleInterval = 100)
+		subject.step(10)
+
+		assertResult(50)(subject.nextEventTime(50))
+		assertResult(100)(subject.nextEventTime(1000))
+
+		subject.scheduleSignalUpdate(40, "test", 1.0)
+		assertResult(50)(subject.nextEventTime(1000))
+	}
+
+	test("Stop request is recorded") {
+		val subject = new SynchronousSignalBus
+		subject.register(new SignalComponent {
+			override def invoke(signals: SignalState, bus: SignalSink): Unit = bus.stopSimulation()
+		}, List("time"))
+
+		subject.step(10)
+
+		assert(subject.stopRequested)
+	}
+
+	/**
+	 * Creates a bus with a constant input, a dead time (which keeps pending updates on the bus) and a PT1 element (which
+	 * has an internal state).
+	 */
+	def createDelayedPT1Bus(): SynchronousSignalBus = {
+		val bus = new SynchronousSignalBus
+		bus.register(new RecordingComponent("source", new ListBuffer[String](), Some("in" -> 1.0)), List("time"), List("in"))
+		bus.register(new DeadTimeComponent("in", 20, "in*"), List("in"))
+		bus.register(new PT1Component("in*", "out", 100), List("in*"), List("out"))
+		bus
+	}
+
+	test("Bus restored from a checkpoint continues like the original bus") {
+		val original = createDelayedPT1Bus()
+		(10 to 100 by 10).foreach(original.step)
+		val checkpoint = original.checkpoint()
+
+		val expected = (110 to 300 by 10).map(time => {
+			original.step(time)
+			original.signals.signalValue("out").get
+		})
+
+		// the checkpoint must not be affected by the steps of the original bus after it was taken
+		val subject = createDelayedPT1Bus()
+		subject.restore(checkpoint)
+		assertResult(100)(subject.time)
+		val actual = (110 to 300 by 10).map(time => {
+			subject.step(time)
+			subject.signals.signalValue("out").get
+		})
+
+		assertResult(expected)(actual)
+	}
+
+	test("Checkpoint cannot be restored on a bus with different components") {
+		val original = createDelayedPT1Bus()
+		original.step(10)
+
+		val subject = new SynchronousSignalBus
+		subject.register(new PT1Component("in*", "out", 100), List("in*"), List("out"))
+
+		intercept[IllegalArgumentException] {
+			subject.restore(original.checkpoint())
+		}
+	}
+
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2015 Andreas Wolf
+ *
+ * See te LICENSE file in the project root for further copyright information.
+ */
+
+package info.andreaswolf.roadhopper.simulation.storage
+
+import info.andreaswolf.roadhopper.simulation.signals.SignalState
+import org.scalatest.{BeforeAndAfter, FunSuite}
+
+import scala.collection.immutable.HashMap
+import scala.collection.mutable.ListBuffer
+
+
+class ColumnarSignalStoreTest extends FunSuite with BeforeAndAfter {
+
+	var subject: ColumnarSignalStore = null
+
+	before {
+		// small chunks, so the tests span multiple chunks
+		subject = new ColumnarSignalStore(chunkSize = 64)
+	}
+
+	after {
+		subject.close()
+	}
+
+	/** Logs one row every 10ms with v = time / 10 */
+	def appendRows(count: Int): Unit = {
+		var state = new SignalState()
+		(1 to count).foreach(i => {
+			state = new SignalState(HashMap("v" -> i.toDouble), state)
+			subject.append(i * 10, state)
+		})
+	}
+
+	test("Values can be read back by row") {
+		appendRows(100)
+
+		assertResult(100)(subject.rowCount)
+		assertResult(10)(subject.time(0))
+		assertResult(1.0)(subject.column("v").get(0))
+		assertResult(100.0)(subject.column("v").get(99))
+	}
+
+	test("Non-numeric signals are not stored") {
+		subject.append(10, new SignalState(HashMap("v" -> 1.0, "road" -> "Main Street")))
+
+		assertResult(Set("v"))(subject.signalNames.toSet)
+	}
+
+	test("Signals appearing later have no values for earlier rows") {
+		val first = new SignalState(HashMap("v" -> 1.0))
+		subject.append(10, first)
+		subject.append(20, new SignalState(HashMap("a" -> 2.0), first))
+
+		assert(subject.column("a").get(0).isNaN)
+		assertResult(2.0)(subject.column("a").get(1))
+	}
+
+	test("Rows must be appended in time order") {
+		appendRows(2)
+
+		intercept[IllegalArgumentException] {
+			subject.append(20, new SignalState())
+		}
+	}
+
+	test("Rows can be selected by time range") {
+		appendRows(100)
+
+		assertResult((4 to 9).toList)(subject.selectRows(from = 50, to = 100).toList)
+		assertResult((5, 10))(subject.selectRange(from = 51, to = 109))
+	}
+
+	test("Rows can be decimated") {
+		appendRows(100)
+
+		assertResult(List(0, 5, 10))(subject.selectRows(to = 110, step = 50).toList)
+	}
+
+	test("Waiting for rows returns immediately if there are new rows") {
+		appendRows(5)
+
+		assertResult(5)(subject.awaitRows(3, 10000))
+	}
+
+	test("Waiting for rows returns the known row count after the timeout") {
+		appendRows(5)
+
+		assertResult(5)(subject.awaitRows(5, 10))
+	}
+
+	test("Waiting for rows is woken up by appended rows") {
+		val writer = new Thread(new Runnable {
+			override def run(): Unit = {
+				Thread.sleep(50)
+				appendRows(1)
+			}
+		})
+		writer.start()
+
+		assertResult(1)(subject.awaitRows(0, 10000))
+		writer.join()
+	}
+
+	test("Listeners are notified of appended rows") {
+		val counts = new ListBuffer[Int]()
+		val listener = new ColumnarSignalStore.RowListener {
+			override def rowAppended(rowCount: Int): Unit = counts append rowCount
+		}
+		subject.addListener(listener)
+		var state = new SignalState()
+		(1 to 3).foreach(i => {
+			if (i == 3) {
+				subject.removeListener(listener)
+			}
+			state = new SignalState(HashMap("v" -> i.toDouble), state)
+			subject.append(i * 10, state)
+		})
+
+		assertResult(List(1, 2))(counts.toList)
+	}
+
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright (c) 2015 Andreas Wolf
+ *
+ * See te LICENSE file in the project root for further copyright information.
+ */
+
+package info.andreaswolf.roadhopper.simulation.sweep
+
+import info.andreaswolf.roadhopper.road.Route
+import info.andreaswolf.roadhopper.simulation.vehicle.VehicleParameters
+import org.scalatest.FunSuite
+
+
+class ParameterGridTest extends FunSuite {
+
+	val route = new Route(List())
+
+	test("Default grid has exactly one variant") {
+		val subject = new ParameterGrid()
+
+		assertResult(1)(subject.size)
+		assertResult(1)(subject.variants(route).size)
+	}
+
+	test("Grid contains every combination of values") {
+		val subject = new ParameterGrid(
+			gasPedalGains = List(80.0, 100.0),
+			proportionalGains = List(-0.005, -0.006, -0.007),
+			vehicles = List(VehicleParameters.CompactCar, VehicleParameters.Ampera)
+		)
+
+		val variants = subject.variants(route)
+
+		assertResult(12)(subject.size)
+		assertResult(12)(variants.size)
+		assertResult(12)(variants.map(p => (p.pedal.gasPedalGain, p.velocityController.proportionalGain, p.vehicle)).distinct.size)
+		assert(variants.forall(_.route eq route))
+	}
+
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2015 Andreas Wolf
+ *
+ * See te LICENSE file in the project root for further copyright information.
+ */
+
+package info.andreaswolf.roadhopper.simulation.traffic
+
+import com.graphhopper.util.shapes.GHPoint3D
+import info.andreaswolf.roadhopper.road.{RoadBuilder, Route}
+import info.andreaswolf.roadhopper.simulation.SimulationParameters
+import info.andreaswolf.roadhopper.simulation.SimulationParameters.PedalParameters
+import info.andreaswolf.roadhopper.simulation.vehicle.VehicleParameters
+import org.scalatest.FunSuite
+
+
+class TrafficSimulationTest extends FunSuite {
+
+	/** A straight road of 900 m, so the vehicles only interact through their distance */
+	def createRoute: Route = new Route(
+		new RoadBuilder(new GHPoint3D(49.0, 8.0, 0.0)).addSegment(300, 0).addSegment(300, 0).addSegment(300, 0).build
+	)
+
+	def parameters(route: Route) = new SimulationParameters(
+		pedal = new PedalParameters(gasPedalGain = 100.0, brakePedalGain = -200.0),
+		vehicle = VehicleParameters.CompactCar,
+		route = route
+	)
+
+	test("Vehicles wait for their departure and keep their distance to the vehicle ahead") {
+		// the second vehicle departs before the first one is minimumDistance away, so it must wait for it
+		val vehicles = TrafficSimulation.vehicles(parameters(createRoute), 3, 2000)
+		val simulation = new TrafficSimulation(vehicles)
+		// once a vehicle was further than minimumDistance behind the vehicle ahead, it must stay there
+		val keepsDistance = Array.fill(vehicles.length)(false)
+
+		try {
+			var time = 0
+			var allFinished = false
+			while (!allFinished && time < 300000) {
+				time += 100
+				allFinished = simulation.run(time)
+
+				vehicles.zipWithIndex.foreach({ case (vehicle, i) =>
+					if (time < vehicle.departureTime) {
+						assert(vehicle.position < 0.01, s"Vehicle $i moved before its departure at $time")
+					}
+
+					if (i > 0 && !vehicles(i - 1).finished && !vehicle.finished) {
+						val distance = vehicles(i - 1).position - vehicle.position
+						assert(distance >= 0.0, s"Vehicle $i overtook the vehicle ahead at $time")
+
+						if (keepsDistance(i)) {
+							// the velocity is only adjusted every 500 ms, so the vehicle may come a bit closer
+							assert(distance > simulation.minimumDistance - 1.0,
+								f"Vehicle $i is only $distance%.2f m behind the vehicle ahead at $time")
+						} else if (distance > simulation.minimumDistance) {
+							keepsDistance(i) = true
+						}
+					}
+				})
+			}
+
+			assert(allFinished)
+			assert(vehicles.forall(_.error.isEmpty))
+			assert(keepsDistance.tail.forall(identity))
+		} finally {
+			vehicles.foreach(_.simulation.result.close())
+		}
+	}
+
+}
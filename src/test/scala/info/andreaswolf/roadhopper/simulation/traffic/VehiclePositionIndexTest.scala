@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2015 Andreas Wolf
+ *
+ * See te LICENSE file in the project root for further copyright information.
+ */
+
+package info.andreaswolf.roadhopper.simulation.traffic
+
+import info.andreaswolf.roadhopper.road.Route
+import org.scalatest.FunSuite
+
+
+class VehiclePositionIndexTest extends FunSuite {
+
+	val route = new Route(List())
+
+	val otherRoute = new Route(List())
+
+	test("Vehicle ahead is the next vehicle by position on the same route") {
+		val subject = new VehiclePositionIndex(4)
+		subject.update(0, route, 100.0)
+		subject.update(1, route, 50.0)
+		subject.update(2, otherRoute, 75.0)
+		subject.update(3, route, 150.0)
+		subject.sort()
+
+		assertResult(0)(subject.vehicleAhead(1))
+		assertResult(3)(subject.vehicleAhead(0))
+		assertResult(-1)(subject.vehicleAhead(3))
+		assertResult(-1)(subject.vehicleAhead(2))
+		assertResult(50.0)(subject.distanceToVehicleAhead(1))
+		assertResult(Double.PositiveInfinity)(subject.distanceToVehicleAhead(3))
+	}
+
+	test("Order is updated when a vehicle overtakes another one") {
+		val subject = new VehiclePositionIndex(2)
+		subject.update(0, route, 100.0)
+		subject.update(1, route, 50.0)
+		subject.sort()
+		subject.update(0, route, 110.0)
+		subject.update(1, route, 120.0)
+		subject.sort()
+
+		assertResult(1)(subject.vehicleAhead(0))
+		assertResult(-1)(subject.vehicleAhead(1))
+	}
+
+	test("Vehicles that are not updated are removed") {
+		val subject = new VehiclePositionIndex(3)
+		subject.update(0, route, 10.0)
+		subject.update(1, route, 20.0)
+		subject.update(2, route, 30.0)
+		subject.sort()
+		subject.update(0, route, 11.0)
+		subject.update(2, route, 31.0)
+		subject.sort()
+
+		assertResult(2)(subject.vehicleAhead(0))
+		assertResult(-1)(subject.vehicleAhead(1))
+	}
+
+	test("Vehicle added later stays behind a vehicle at the same position") {
+		val subject = new VehiclePositionIndex(2)
+		subject.update(0, route, 0.0)
+		subject.sort()
+		subject.update(0, route, 0.0)
+		subject.update(1, route, 0.0)
+		subject.sort()
+
+		assertResult(0)(subject.vehicleAhead(1))
+		assertResult(0.0)(subject.distanceToVehicleAhead(1))
+	}
+
+}